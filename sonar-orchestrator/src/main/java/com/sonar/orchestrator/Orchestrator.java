@@ -40,6 +40,16 @@ import com.sonar.orchestrator.server.ServerProcess;
 import com.sonar.orchestrator.server.ServerProcessImpl;
 import com.sonar.orchestrator.server.ServerZipFinder;
 import com.sonar.orchestrator.server.StartupLogWatcher;
+import com.sonar.orchestrator.util.ConsoleLog;
+import com.sonar.orchestrator.util.LogPipeline;
+import com.sonar.orchestrator.util.Timings;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
@@ -49,6 +59,7 @@ import org.sonar.wsclient.services.PropertyUpdateQuery;
 
 import static com.sonar.orchestrator.container.Server.ADMIN_LOGIN;
 import static com.sonar.orchestrator.container.Server.ADMIN_PASSWORD;
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkState;
 import static com.sonar.orchestrator.util.OrchestratorUtils.isEmpty;
 import static java.util.Objects.requireNonNull;
 
@@ -57,11 +68,17 @@ public class Orchestrator extends SingleStartExternalResource {
   private static final Logger LOG = LoggerFactory.getLogger(Orchestrator.class);
 
   private static final String ORCHESTRATOR_IS_NOT_STARTED = "Orchestrator is not started";
+  private static final int STAGE_THREADS = 3;
+  static final String BUILD_RUN_PHASE = "build.run";
+  static final String BUILD_WAIT_PHASE = "build.waitForComputeEngine";
+  static final String BUILD_WORKERS_PROPERTY = "orchestrator.buildWorkers";
+  static final String TIMINGS_REPORT = "orchestrator-timings.json";
 
   private final Configuration config;
   private final SonarDistribution distribution;
   private final Licenses licenses;
   private final AtomicBoolean started = new AtomicBoolean(false);
+  private final Timings timings = new Timings();
 
   private DefaultDatabase database;
   private Server server;
@@ -99,27 +116,155 @@ public class Orchestrator extends SingleStartExternalResource {
    * 3/ starts SonarQube server on next available port
    * 4/ sets profile
    * 5/ download and install plugins
+   *
+   * @see #startAsync()
     */
   public void start() {
+    try {
+      startAsync().join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Fail to start Orchestrator", cause);
+    }
+  }
+
+  /**
+   * Same as {@link #start()}, but steps are executed as a dependency graph:
+   * <ul>
+   *   <li>preparation of database and installation of server (download, unzip, plugins) are executed concurrently</li>
+   *   <li>server is started when both are done</li>
+   *   <li>then profile backups are restored, and licenses are installed, in the same order as {@link #start()}</li>
+   * </ul>
+   * If a stage fails, then the stages still running are awaited, server and database are stopped
+   * and the returned future completes exceptionally. Orchestrator can then be started again.
+   * Duration of each stage is logged when the returned future completes, and recorded in {@link #getTimings()}.
+   *
+   * @since 3.16
+   */
+  public CompletableFuture<Orchestrator> startAsync() {
     if (started.getAndSet(true)) {
       throw new IllegalStateException("Orchestrator is already started");
     }
+    long startedAt = System.nanoTime();
+    ExecutorService executor;
+    StartupGraph graph;
+    try {
+      ConsoleLog.configure(config);
+      database = new DefaultDatabase(config);
+      FileSystem fs = config.fileSystem();
+      ServerZipFinder zipFinder = new ServerZipFinder(fs, config.updateCenter());
+      ServerInstaller serverInstaller = new ServerInstaller(zipFinder, config, database.getClient(), timings);
+      graph = new StartupGraph(timings,
+        database::start,
+        () -> server = serverInstaller.install(distribution),
+        () -> {
+          process = new ServerProcessImpl(new ServerCommandLineFactory(fs), server, startupLogWatcher);
+          if (database.isSnapshotEnabled()) {
+            startFromDatabaseSnapshot();
+          } else {
+            startWithFixtures();
+          }
+        },
+        this::restoreProfiles,
+        this::installLicenses,
+        this::rollbackStart);
+      executor = Executors.newFixedThreadPool(STAGE_THREADS);
+    } catch (RuntimeException e) {
+      started.set(false);
+      throw e;
+    }
 
-    database = new DefaultDatabase(config);
-    database.start();
+    return graph.execute(executor)
+      .thenApply(v -> {
+        buildRunner = new BuildRunner(config);
+        timings.record("start", startedAt, System.nanoTime() - startedAt);
+        logStageDurations();
+        writeTimingsReport();
+        return this;
+      })
+      .whenComplete((o, e) -> executor.shutdown());
+  }
 
-    FileSystem fs = config.fileSystem();
-    ServerZipFinder zipFinder = new ServerZipFinder(fs, config.updateCenter());
-    ServerInstaller serverInstaller = new ServerInstaller(zipFinder, config, database.getClient());
-    server = serverInstaller.install(distribution);
+  /**
+   * Stops what has been started by a failed startup, so that {@link #start()} can be called again.
+   */
+  private void rollbackStart() {
+    try {
+      if (process != null) {
+        process.stop();
+      }
+    } finally {
+      try {
+        database.stop();
+      } finally {
+        started.set(false);
+      }
+    }
+  }
+
+  /**
+   * The first startup on a new version of SonarQube or on a new set of plugins creates the snapshot
+   * of the freshly migrated database. Server is restarted once for that. The next startups
+   * restore the snapshot instead of executing migrations.
+   */
+  private void startFromDatabaseSnapshot() {
+    String serverVersion = server.version().toString();
+    boolean restored = database.restoreSnapshot(serverVersion, server.getHome());
+    if (!restored) {
+      process.start();
+      process.stop();
+      database.createSnapshot(serverVersion, server.getHome());
+    }
+    if (database.isEmbedded()) {
+      startAndLoadFixtures();
+    } else {
+      checkFixturesLoaded();
+      process.start();
+    }
+  }
+
+  /**
+   * Fixtures are loaded before startup of server. If tables do not exist yet, server
+   * is started once to create them.
+   */
+  private void startWithFixtures() {
+    if (database.isEmbedded()) {
+      startAndLoadFixtures();
+      return;
+    }
+    if (!database.loadFixtures()) {
+      process.start();
+      process.stop();
+      checkFixturesLoaded();
+    }
+    process.start();
+  }
 
-    process = new ServerProcessImpl(new ServerCommandLineFactory(fs), server, startupLogWatcher);
+  /**
+   * The embedded database is served by server, so fixtures can be loaded only once server is up.
+   */
+  private void startAndLoadFixtures() {
     process.start();
+    checkFixturesLoaded();
+  }
+
+  private void checkFixturesLoaded() {
+    checkState(database.loadFixtures(), "Fail to load database fixtures, tables do not exist");
+  }
 
+  private void restoreProfiles() {
     for (Location backup : distribution.getProfileBackups()) {
       server.restoreProfile(backup);
     }
+  }
 
+  private void installLicenses() {
     for (String pluginKey : distribution.getLicensedPluginKeys()) {
       String license = licenses.get(pluginKey);
       if (!isEmpty(license)) {
@@ -130,8 +275,49 @@ public class Orchestrator extends SingleStartExternalResource {
     if (distribution.isActivateLicense()) {
       activateLicense();
     }
+  }
 
-    buildRunner = new BuildRunner(config);
+  private void logStageDurations() {
+    StringBuilder sb = new StringBuilder();
+    long total = 0L;
+    for (Map.Entry<String, Long> entry : timings.getTotalNanosByPhase().entrySet()) {
+      if ("start".equals(entry.getKey())) {
+        total = entry.getValue();
+      } else if (entry.getKey().startsWith(StartupGraph.PHASE_PREFIX)) {
+        sb.append(sb.length() == 0 ? "" : ", ")
+          .append(entry.getKey().substring(StartupGraph.PHASE_PREFIX.length())).append(": ")
+          .append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append(" ms");
+      }
+    }
+    LOG.info("Orchestrator started in {} ms ({})", TimeUnit.NANOSECONDS.toMillis(total), sb);
+  }
+
+  private void writeTimingsReport() {
+    File report = new File(config.fileSystem().workspace(), TIMINGS_REPORT);
+    try {
+      timings.writeJson(report);
+    } catch (IllegalStateException e) {
+      LOG.warn("Fail to write timings report", e);
+    }
+  }
+
+  /**
+   * Durations of the phases executed since instantiation:
+   * <ul>
+   *   <li>start: "start", "start.database" (including drop and creation of schema), "start.install",
+   *   "start.process", "start.profiles", "start.licenses"</li>
+   *   <li>installation of server: "install.zipLookup" (including download), "install.unzip",
+   *   "install.plugins", "install.configuration"</li>
+   *   <li>builds: "build.run" (execution of scanner), "build.waitForComputeEngine", "build.parallel" (wall-clock
+   *   duration of {@link #executeBuildsInParallel(int, boolean, Build[])})</li>
+   * </ul>
+   * Timings are also written in the JSON file orchestrator-timings.json of the workspace
+   * when Orchestrator is started and stopped.
+   *
+   * @since 3.16
+   */
+  public Timings getTimings() {
+    return timings;
   }
 
   /**
@@ -193,6 +379,16 @@ public class Orchestrator extends SingleStartExternalResource {
     if (database != null) {
       database.stop();
     }
+    writeTimingsReport();
+    logConsoleStats();
+  }
+
+  private static void logConsoleStats() {
+    LogPipeline console = ConsoleLog.get();
+    console.flush();
+    if (console.getDroppedLines() > 0 || console.getBlockedLines() > 0) {
+      LOG.info("Console was too slow: {} lines of logs dropped, {} lines blocked", console.getDroppedLines(), console.getBlockedLines());
+    }
   }
 
   /**
@@ -205,6 +401,22 @@ public class Orchestrator extends SingleStartExternalResource {
     }
   }
 
+  /**
+   * Stops server, restores the snapshot of the freshly migrated database, then restarts server.
+   * Profile backups and licenses are installed again. That requires the property
+   * "orchestrator.databaseSnapshots" to be enabled.
+   *
+   * @since 3.16
+   */
+  public void resetDatabase() {
+    requireNonNull(buildRunner, ORCHESTRATOR_IS_NOT_STARTED);
+    checkState(database.isSnapshotEnabled(), "Database snapshots are not enabled");
+    process.stop();
+    startFromDatabaseSnapshot();
+    restoreProfiles();
+    installLicenses();
+  }
+
   public Database getDatabase() {
     return database;
   }
@@ -250,12 +462,12 @@ public class Orchestrator extends SingleStartExternalResource {
 
     BuildResult buildResult;
     if (quietly) {
-      buildResult = buildRunner.runQuietly(server, build);
+      buildResult = timings.call(BUILD_RUN_PHASE, () -> buildRunner.runQuietly(server, build));
     } else {
-      buildResult = buildRunner.run(server, build);
+      buildResult = timings.call(BUILD_RUN_PHASE, () -> buildRunner.run(server, build));
     }
     if (waitForComputeEngine) {
-      new SynchronousAnalyzer(server).waitForDone();
+      timings.run(BUILD_WAIT_PHASE, () -> new SynchronousAnalyzer(server, config).waitForDone(buildResult));
     }
     return buildResult;
   }
@@ -265,12 +477,45 @@ public class Orchestrator extends SingleStartExternalResource {
 
     BuildResult[] results = new BuildResult[builds.length];
     for (int index = 0; index < builds.length; index++) {
-      results[index] = buildRunner.run(server, builds[index]);
+      Build<?> build = builds[index];
+      results[index] = timings.call(BUILD_RUN_PHASE, () -> buildRunner.run(server, build));
     }
-    new SynchronousAnalyzer(server).waitForDone();
+    timings.run(BUILD_WAIT_PHASE, () -> new SynchronousAnalyzer(server, config).waitForDone(results));
     return results;
   }
 
+  /**
+   * Executes independent builds concurrently, with at most "orchestrator.buildWorkers" builds at the
+   * same time (number of processors by default). Execution stops at the first failure.
+   *
+   * @see #executeBuildsInParallel(int, boolean, Build[])
+   * @since 3.16
+   */
+  public BuildResult[] executeBuildsInParallel(Build<?>... builds) {
+    return executeBuildsInParallel(config.getInt(BUILD_WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors()), true, builds);
+  }
+
+  /**
+   * Executes independent builds concurrently, then waits once for the Compute Engine to process
+   * all the submitted analyses. Each build has its own {@link BuildResult}. Builds must not share
+   * the same working directory, for example ".scannerwork" or "target/sonar".
+   * <p/>
+   * Wall-clock duration is recorded in {@link #getTimings()} as "build.parallel", while the duration
+   * of each build is recorded as "build.run".
+   *
+   * @param maxWorkers max number of builds executed at the same time
+   * @param failFast if true, then builds are not started anymore after the first failure, which is thrown
+   *                 as {@link com.sonar.orchestrator.build.BuildFailureException} once the running builds
+   *                 are completed. If false, then all the builds are executed and failed builds are
+   *                 returned, like with {@link #executeBuildQuietly(Build)}.
+   * @return the results, in the same order as builds
+   * @since 3.16
+   */
+  public BuildResult[] executeBuildsInParallel(int maxWorkers, boolean failFast, Build<?>... builds) {
+    requireNonNull(buildRunner, ORCHESTRATOR_IS_NOT_STARTED);
+    return new ParallelBuilds(timings, buildRunner, server, new SynchronousAnalyzer(server, config)).execute(maxWorkers, failFast, builds);
+  }
+
   /**
    * Reset inspection measures and some other data (manual rules, etc.)
    */
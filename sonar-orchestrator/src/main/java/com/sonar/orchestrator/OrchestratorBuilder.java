@@ -337,6 +337,17 @@ public class OrchestratorBuilder {
     return this;
   }
 
+  /**
+   * Do not install some files of the SonarQube ZIP, for example "web/docs/*".
+   *
+   * @see SonarDistribution#addZipExclusion(String)
+   * @since 3.16
+   */
+  public OrchestratorBuilder addZipExclusion(String pattern) {
+    distribution.addZipExclusion(pattern);
+    return this;
+  }
+
   public Orchestrator build() {
     getSonarVersion().ifPresent(s -> this.distribution.setVersion(Version.create(s)));
     checkState(distribution.getZipFile().isPresent() || distribution.version().isPresent(), "Version or path to ZIP of SonarQube is missing");
@@ -0,0 +1,127 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator;
+
+import com.sonar.orchestrator.build.Build;
+import com.sonar.orchestrator.build.BuildResult;
+import com.sonar.orchestrator.build.BuildRunner;
+import com.sonar.orchestrator.build.SynchronousAnalyzer;
+import com.sonar.orchestrator.container.Server;
+import com.sonar.orchestrator.util.Timings;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkArgument;
+
+/**
+ * Execution of independent builds by a pool of workers, see {@link Orchestrator#executeBuildsInParallel(int, boolean, Build[])}.
+ * The Compute Engine is awaited once, after all the builds are completed.
+ */
+class ParallelBuilds {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelBuilds.class);
+
+  static final String PARALLEL_PHASE = "build.parallel";
+
+  private final Timings timings;
+  private final BuildRunner buildRunner;
+  private final Server server;
+  private final SynchronousAnalyzer analyzer;
+
+  ParallelBuilds(Timings timings, BuildRunner buildRunner, @Nullable Server server, SynchronousAnalyzer analyzer) {
+    this.timings = timings;
+    this.buildRunner = buildRunner;
+    this.server = server;
+    this.analyzer = analyzer;
+  }
+
+  BuildResult[] execute(int maxWorkers, boolean failFast, Build<?>... builds) {
+    checkArgument(maxWorkers > 0, "Number of workers must be positive: %s", maxWorkers);
+
+    long startedAt = System.nanoTime();
+    BuildResult[] results = new BuildResult[builds.length];
+    AtomicBoolean failed = new AtomicBoolean(false);
+    AtomicLong sumOfBuildNanos = new AtomicLong();
+    int workers = Math.max(1, Math.min(maxWorkers, builds.length));
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(workers, r -> new Thread(r, "orchestrator-build-" + threadCount.incrementAndGet()));
+    List<Future<?>> futures = new ArrayList<>();
+    for (int index = 0; index < builds.length; index++) {
+      int buildIndex = index;
+      Build<?> build = builds[index];
+      futures.add(executor.submit(() -> {
+        if (failFast && failed.get()) {
+          return;
+        }
+        long buildStartedAt = System.nanoTime();
+        try {
+          results[buildIndex] = timings.call(Orchestrator.BUILD_RUN_PHASE, () -> failFast ? buildRunner.run(server, build) : buildRunner.runQuietly(server, build));
+        } catch (RuntimeException e) {
+          failed.set(true);
+          throw e;
+        } finally {
+          sumOfBuildNanos.addAndGet(System.nanoTime() - buildStartedAt);
+        }
+      }));
+    }
+    executor.shutdown();
+
+    RuntimeException failure = null;
+    try {
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          RuntimeException cause = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+          if (failure == null) {
+            failure = cause;
+          } else {
+            failure.addSuppressed(cause);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      executor.shutdownNow();
+      throw new IllegalStateException("Interrupted while executing builds", e);
+    }
+    long wallNanos = System.nanoTime() - startedAt;
+    timings.record(PARALLEL_PHASE, startedAt, wallNanos);
+    LOG.info("Executed {} builds in {} ms with {} workers. Sum of build durations is {} ms", builds.length,
+      TimeUnit.NANOSECONDS.toMillis(wallNanos), workers, TimeUnit.NANOSECONDS.toMillis(sumOfBuildNanos.get()));
+    if (failure != null) {
+      throw failure;
+    }
+
+    timings.run(Orchestrator.BUILD_WAIT_PHASE, () -> analyzer.waitForDone(results));
+    return results;
+  }
+}
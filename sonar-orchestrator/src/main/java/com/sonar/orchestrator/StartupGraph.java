@@ -0,0 +1,97 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator;
+
+import com.sonar.orchestrator.util.Timings;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Dependency graph of the stages executed by {@link Orchestrator#startAsync()}:
+ * <ul>
+ *   <li>"database" and "install" are executed concurrently</li>
+ *   <li>"process" is executed when both are done</li>
+ *   <li>then "profiles", and "licenses" once profiles are restored, like in {@link Orchestrator#start()}</li>
+ * </ul>
+ * If a stage fails, then the stages that depend on it are not executed, the stages already
+ * running are awaited, and rollback is executed before the returned future completes.
+ * The duration of each stage is recorded as "start.&lt;stage&gt;".
+ */
+class StartupGraph {
+
+  static final String PHASE_PREFIX = "start.";
+
+  private final Timings timings;
+  private final Runnable database;
+  private final Runnable install;
+  private final Runnable process;
+  private final Runnable profiles;
+  private final Runnable licenses;
+  private final Runnable rollback;
+
+  StartupGraph(Timings timings, Runnable database, Runnable install, Runnable process, Runnable profiles, Runnable licenses, Runnable rollback) {
+    this.timings = timings;
+    this.database = database;
+    this.install = install;
+    this.process = process;
+    this.profiles = profiles;
+    this.licenses = licenses;
+    this.rollback = rollback;
+  }
+
+  CompletableFuture<Void> execute(Executor executor) {
+    CompletableFuture<Void> databaseStarted = runAsync("database", database, executor);
+    CompletableFuture<Void> serverInstalled = runAsync("install", install, executor);
+
+    // allOf() completes when both stages are completed, even if one of them fails
+    CompletableFuture<Void> processStarted = CompletableFuture.allOf(databaseStarted, serverInstalled)
+      .thenRunAsync(() -> run("process", process), executor);
+
+    CompletableFuture<Void> profilesRestored = processStarted.thenRunAsync(() -> run("profiles", profiles), executor);
+    CompletableFuture<Void> licensesInstalled = profilesRestored.thenRunAsync(() -> run("licenses", licenses), executor);
+
+    return licensesInstalled
+      .handle((v, e) -> {
+        if (e != null) {
+          rollback(e);
+        }
+        return v;
+      });
+  }
+
+  private void rollback(Throwable failure) {
+    Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    try {
+      rollback.run();
+    } catch (RuntimeException e) {
+      cause.addSuppressed(e);
+    }
+    throw new CompletionException(cause);
+  }
+
+  private CompletableFuture<Void> runAsync(String stage, Runnable task, Executor executor) {
+    return CompletableFuture.runAsync(() -> run(stage, task), executor);
+  }
+
+  private void run(String stage, Runnable task) {
+    timings.run(PHASE_PREFIX + stage, task);
+  }
+}
@@ -36,7 +36,7 @@ class AntBuildExecutor extends AbstractBuildExecutor<AntBuild> {
 
   @Override
   BuildResult execute(AntBuild build, Configuration config, Map<String, String> adjustedProperties, CommandExecutor commandExecutor) {
-    BuildResult result = new BuildResult();
+    BuildResult result = new BuildResult(config);
     for (String target : build.getTargets()) {
       executeTarget(build, config, adjustedProperties, target, result, commandExecutor);
     }
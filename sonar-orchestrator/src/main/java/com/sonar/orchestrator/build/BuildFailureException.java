@@ -46,6 +46,6 @@ public class BuildFailureException extends RuntimeException {
       result.getStatuses().stream()
         .map(Object::toString)
         .collect(Collectors.joining(", "))
-      + "] logs=[" + result.getLogs() + "]";
+      + "] logs=[" + result.getLogsSummary() + "]";
   }
 }
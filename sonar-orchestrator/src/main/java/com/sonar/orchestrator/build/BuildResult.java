@@ -19,24 +19,129 @@
  */
 package com.sonar.orchestrator.build;
 
-import java.io.StringWriter;
+import com.sonar.orchestrator.config.Configuration;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
+/**
+ * Result of a build. Logs are kept in memory up to "orchestrator.buildLogsInMemoryKb" kilo-characters
+ * (1024 by default). Larger logs are spilled to a file of the workspace. The methods {@link #logsContain(String)},
+ * {@link #findLogLines(Pattern)} and {@link #forEachLogLine(Consumer)} do not load them in memory,
+ * contrary to {@link #getLogs()}.
+ */
 public class BuildResult {
 
-  // StringWriter does not need to be closed
-  private StringWriter logs = new StringWriter();
+  static final String LOGS_IN_MEMORY_PROPERTY = "orchestrator.buildLogsInMemoryKb";
+  private static final int DEFAULT_LOGS_IN_MEMORY_KB = 1024;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final LogStorage logs;
   private List<Integer> statuses = new ArrayList<>();
 
+  public BuildResult() {
+    this(() -> new File(System.getProperty("java.io.tmpdir")), DEFAULT_LOGS_IN_MEMORY_KB);
+  }
+
+  BuildResult(Configuration config) {
+    this(() -> new File(config.fileSystem().workspace(), "build-logs"), config.getInt(LOGS_IN_MEMORY_PROPERTY, DEFAULT_LOGS_IN_MEMORY_KB));
+  }
+
+  private BuildResult(Supplier<File> spillDir, int logsInMemoryKb) {
+    int halfLimit = logsInMemoryKb * 1024 / 2;
+    this.logs = new LogStorage(spillDir, halfLimit, halfLimit);
+  }
+
   public Writer getLogsWriter() {
     return logs;
   }
 
+  /**
+   * All the logs. Prefer {@link #logsContain(String)}, {@link #findLogLines(Pattern)}
+   * or {@link #forEachLogLine(Consumer)} for large logs.
+   */
   public String getLogs() {
-    return logs.toString();
+    try {
+      return logs.content();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read logs from " + logs.file(), e);
+    }
+  }
+
+  /**
+   * @since 3.16
+   */
+  public boolean logsContain(String text) {
+    if (text.isEmpty()) {
+      return true;
+    }
+    // the text may overlap two chunks, so the end of the previous chunk is kept
+    StringBuilder window = new StringBuilder();
+    char[] buffer = new char[BUFFER_SIZE];
+    try (Reader reader = logs.openReader()) {
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        window.append(buffer, 0, read);
+        if (window.indexOf(text) >= 0) {
+          return true;
+        }
+        window.delete(0, Math.max(0, window.length() - text.length() + 1));
+      }
+      return false;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read logs from " + logs.file(), e);
+    }
+  }
+
+  /**
+   * The lines of logs that contain the given pattern
+   * @since 3.16
+   */
+  public List<String> findLogLines(Pattern pattern) {
+    List<String> lines = new ArrayList<>();
+    forEachLogLine(line -> {
+      if (pattern.matcher(line).find()) {
+        lines.add(line);
+      }
+    });
+    return lines;
+  }
+
+  /**
+   * @since 3.16
+   */
+  public void forEachLogLine(Consumer<String> consumer) {
+    try (BufferedReader reader = new BufferedReader(logs.openReader())) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        consumer.accept(line);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read logs from " + logs.file(), e);
+    }
+  }
+
+  /**
+   * Number of characters of logs
+   * @since 3.16
+   */
+  public long getLogsLength() {
+    return logs.length();
+  }
+
+  /**
+   * All the logs if they are small, else their head and tail
+   */
+  String getLogsSummary() {
+    return logs.summary();
   }
 
   /**
@@ -60,8 +165,17 @@ public class BuildResult {
     return Collections.unmodifiableList(statuses);
   }
 
+  /**
+   * Adds the exit status of a completed process. The file of spilled logs is closed, until
+   * logs of a next process are written.
+   */
   public BuildResult addStatus(Integer status) {
     statuses.add(status);
+    try {
+      logs.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to close logs " + logs.file(), e);
+    }
     return this;
   }
 
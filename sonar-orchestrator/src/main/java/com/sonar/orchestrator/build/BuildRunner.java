@@ -21,6 +21,7 @@ package com.sonar.orchestrator.build;
 
 import com.sonar.orchestrator.config.Configuration;
 import com.sonar.orchestrator.container.Server;
+import com.sonar.orchestrator.util.ConsoleLog;
 import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -35,7 +36,12 @@ public class BuildRunner {
   }
 
   public BuildResult runQuietly(@Nullable Server server, Build<?> build) {
-    return build.execute(config, adjustProperties(server, build));
+    try {
+      return build.execute(config, adjustProperties(server, build));
+    } finally {
+      // output of build is printed before the next logs
+      ConsoleLog.get().flush();
+    }
   }
 
   public BuildResult run(@Nullable Server server, Build<?> build) {
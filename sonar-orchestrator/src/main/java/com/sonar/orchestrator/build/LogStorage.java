@@ -0,0 +1,184 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.FileUtils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Storage of build logs. Logs are kept in memory as long as they are smaller than
+ * {@code headLimit + tailLimit} characters. Beyond that, they are spilled to a file, and only their first
+ * {@code headLimit} and last {@code tailLimit} characters are kept in memory, for {@link #summary()}.
+ * <p/>
+ * Closing the writer releases the file, which is reopened in append mode if more logs are written.
+ * Spilled logs are not deleted, so that they can be inspected after the build. Logs can be read at any time.
+ * This class is thread-safe.
+ */
+class LogStorage extends Writer {
+
+  private final Supplier<File> dirSupplier;
+  private final int headLimit;
+  private final int tailLimit;
+
+  // all the logs, until spilled to file
+  private StringBuilder memory = new StringBuilder();
+  private final StringBuilder head = new StringBuilder();
+  // ring buffer of the last characters
+  private final char[] tail;
+  private int tailEnd = 0;
+  private int tailSize = 0;
+  private long length = 0L;
+  private File file;
+  private Writer fileWriter;
+
+  LogStorage(Supplier<File> dirSupplier, int headLimit, int tailLimit) {
+    this.dirSupplier = dirSupplier;
+    this.headLimit = headLimit;
+    this.tailLimit = tailLimit;
+    this.tail = new char[tailLimit];
+  }
+
+  @Override
+  public synchronized void write(char[] chars, int off, int len) throws IOException {
+    if (memory != null && length + len > (long) headLimit + tailLimit) {
+      spill();
+    }
+    if (memory != null) {
+      memory.append(chars, off, len);
+    } else {
+      openFileWriter().write(chars, off, len);
+    }
+    if (head.length() < headLimit) {
+      head.append(chars, off, Math.min(len, headLimit - head.length()));
+    }
+    appendToTail(chars, off, len);
+    length += len;
+  }
+
+  private void spill() throws IOException {
+    File dir = dirSupplier.get();
+    FileUtils.forceMkdir(dir);
+    file = File.createTempFile("build-", ".log", dir);
+    fileWriter = Files.newBufferedWriter(file.toPath(), UTF_8);
+    fileWriter.append(memory);
+    memory = null;
+  }
+
+  private Writer openFileWriter() throws IOException {
+    if (fileWriter == null) {
+      fileWriter = Files.newBufferedWriter(file.toPath(), UTF_8, StandardOpenOption.APPEND);
+    }
+    return fileWriter;
+  }
+
+  private void appendToTail(char[] chars, int off, int len) {
+    if (tailLimit == 0) {
+      return;
+    }
+    int from = off;
+    int count = len;
+    if (count > tailLimit) {
+      from = off + count - tailLimit;
+      count = tailLimit;
+    }
+    int firstPart = Math.min(count, tailLimit - tailEnd);
+    System.arraycopy(chars, from, tail, tailEnd, firstPart);
+    System.arraycopy(chars, from + firstPart, tail, 0, count - firstPart);
+    tailEnd = (tailEnd + count) % tailLimit;
+    tailSize = Math.min(tailLimit, tailSize + count);
+  }
+
+  private String tailAsString() {
+    int start = (tailEnd - tailSize + tailLimit) % tailLimit;
+    if (start + tailSize <= tailLimit) {
+      return new String(tail, start, tailSize);
+    }
+    return new String(tail, start, tailLimit - start) + new String(tail, 0, tailEnd);
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    if (fileWriter != null) {
+      fileWriter.flush();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (fileWriter != null) {
+      fileWriter.close();
+      fileWriter = null;
+    }
+  }
+
+  synchronized long length() {
+    return length;
+  }
+
+  /**
+   * @return the file containing all the logs, or {@code null} if logs are in memory
+   */
+  @CheckForNull
+  synchronized File file() {
+    return file;
+  }
+
+  /**
+   * Reader of all the logs, from file if they are spilled
+   */
+  synchronized Reader openReader() throws IOException {
+    if (memory != null) {
+      return new StringReader(memory.toString());
+    }
+    flush();
+    return Files.newBufferedReader(file.toPath(), UTF_8);
+  }
+
+  /**
+   * All the logs. Be careful, spilled logs are fully loaded in memory.
+   */
+  synchronized String content() throws IOException {
+    if (memory != null) {
+      return memory.toString();
+    }
+    flush();
+    return new String(Files.readAllBytes(file.toPath()), UTF_8);
+  }
+
+  /**
+   * All the logs if they are in memory, else their head and tail
+   */
+  synchronized String summary() {
+    if (memory != null) {
+      return memory.toString();
+    }
+    return head + "\n[... " + (length - head.length() - tailSize) + " characters truncated, see " + file + " ...]\n" + tailAsString();
+  }
+}
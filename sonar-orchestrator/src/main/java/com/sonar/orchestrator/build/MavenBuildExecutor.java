@@ -39,7 +39,7 @@ class MavenBuildExecutor extends AbstractBuildExecutor<MavenBuild> {
 
   @Override
   BuildResult execute(MavenBuild build, Configuration config, Map<String, String> adjustedProperties, CommandExecutor commandExecutor) {
-    BuildResult result = new BuildResult();
+    BuildResult result = new BuildResult(config);
     for (String goal : build.getGoals()) {
       appendCoverageArgumentToOpts(build.getEnvironmentVariables(), config, MAVEN_OPTS);
       executeGoal(build, config, adjustedProperties, goal, result, commandExecutor);
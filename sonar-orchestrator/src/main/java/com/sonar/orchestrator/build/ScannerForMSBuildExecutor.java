@@ -38,8 +38,8 @@ class ScannerForMSBuildExecutor extends AbstractBuildExecutor<ScannerForMSBuild>
 
   BuildResult execute(ScannerForMSBuild build, Configuration config, Map<String, String> adjustedProperties, ScannerForMSBuildInstaller installer,
     CommandExecutor commandExecutor) {
-    BuildResult result = new BuildResult();
-    File runnerScript = installer.install(build.scannerVersion(), build.getLocation(), config.fileSystem().workspace(), build.isUseOldRunnerScript());
+    BuildResult result = new BuildResult(config);
+    File runnerScript = installer.acquire(build.scannerVersion(), build.getLocation(), config.fileSystem().workspace(), build.isUseOldRunnerScript());
     try {
       Command command = createCommand(build, adjustedProperties, runnerScript);
       LoggerFactory.getLogger(ScannerForMSBuild.class).info("Execute: {}", command);
@@ -50,6 +50,8 @@ class ScannerForMSBuildExecutor extends AbstractBuildExecutor<ScannerForMSBuild>
 
     } catch (Exception e) {
       throw new IllegalStateException("Fail to execute SonarQube Scanner", e);
+    } finally {
+      installer.release(runnerScript);
     }
   }
 
@@ -41,6 +41,8 @@ import org.slf4j.LoggerFactory;
 public class ScannerForMSBuildInstaller {
   public static final String DEFAULT_SCANNER_VERSION = "2.2.0.24";
   private static final Logger LOG = LoggerFactory.getLogger(ScannerForMSBuildInstaller.class);
+  private static final Object INSTALL_LOCK = new Object();
+  private static final ScannerUsages USAGES = new ScannerUsages();
 
   private final FileSystem fileSystem;
   private final Locators locators;
@@ -51,18 +53,45 @@ public class ScannerForMSBuildInstaller {
   }
 
   /**
-   * Installs an ephemeral Scanner for MSBuild and returns the path to the exe to execute
+   * Installs an ephemeral Scanner for MSBuild and returns the path to the exe to execute.
+   * Installation is synchronized, because parallel builds share the same directory.
    */
   public File install(@Nullable Version scannerVersion, @Nullable Location location, File toDir, boolean useOldScript) {
-    if (location != null) {
-      return install(location, toDir, useOldScript);
-    } else if (scannerVersion != null) {
-      return install(scannerVersion, toDir, useOldScript);
-    } else {
-      return install(Version.create(DEFAULT_SCANNER_VERSION), toDir, useOldScript);
+    synchronized (INSTALL_LOCK) {
+      if (location != null) {
+        return install(location, toDir, useOldScript);
+      } else if (scannerVersion != null) {
+        return install(scannerVersion, toDir, useOldScript);
+      } else {
+        return install(Version.create(DEFAULT_SCANNER_VERSION), toDir, useOldScript);
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #install(Version, Location, File, boolean)}, but the installation is marked as used
+   * until {@link #release(File)} is called. A cached installation is not deleted by the other builds
+   * while it is used.
+   *
+   * @since 3.16
+   */
+  public File acquire(@Nullable Version scannerVersion, @Nullable Location location, File toDir, boolean useOldScript) {
+    synchronized (INSTALL_LOCK) {
+      File exe = install(scannerVersion, location, toDir, useOldScript);
+      USAGES.use(exe.getAbsoluteFile().getParentFile());
+      return exe;
     }
   }
 
+  /**
+   * Releases an installation returned by {@link #acquire(Version, Location, File, boolean)}.
+   *
+   * @since 3.16
+   */
+  public void release(File exe) {
+    USAGES.release(exe.getAbsoluteFile().getParentFile());
+  }
+
   private File install(Location location, File toDir, boolean useOldScript) {
     clearCachedSnapshot(null, toDir);
     if (!isInstalled(null, toDir)) {
@@ -134,6 +163,10 @@ public class ScannerForMSBuildInstaller {
   private static void clearCachedSnapshot(@Nullable Version scannerVersion, File toDir) {
     File scannerDir = new File(toDir, directoryName(scannerVersion));
     if ((scannerVersion == null || scannerVersion.isSnapshot()) && scannerDir.exists()) {
+      if (USAGES.isUsed(scannerDir)) {
+        LOG.info("Keep Scanner for MSBuild cache used by another build: {}", scannerDir);
+        return;
+      }
       LOG.info("Delete Scanner for MSBuild cache: {}", scannerDir);
       FileUtils.deleteQuietly(scannerDir);
     }
@@ -0,0 +1,46 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.build;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the builds that execute the scanner installed in a directory. Parallel builds
+ * share the installations of the workspace, so a cached SNAPSHOT installation must not
+ * be deleted while another build is executing it.
+ */
+class ScannerUsages {
+
+  private final Map<File, Integer> countByDir = new HashMap<>();
+
+  synchronized void use(File installDir) {
+    countByDir.merge(installDir.getAbsoluteFile(), 1, Integer::sum);
+  }
+
+  synchronized void release(File installDir) {
+    countByDir.computeIfPresent(installDir.getAbsoluteFile(), (dir, count) -> count > 1 ? (count - 1) : null);
+  }
+
+  synchronized boolean isUsed(File installDir) {
+    return countByDir.containsKey(installDir.getAbsoluteFile());
+  }
+}
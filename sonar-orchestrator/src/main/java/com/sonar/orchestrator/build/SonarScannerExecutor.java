@@ -41,8 +41,8 @@ class SonarScannerExecutor extends AbstractBuildExecutor<SonarRunner> {
 
   BuildResult execute(SonarRunner build, Configuration config, Map<String, String> adjustedProperties, SonarScannerInstaller installer,
     CommandExecutor commandExecutor) {
-    BuildResult result = new BuildResult();
-    File runnerScript = installer.install(build.runnerVersion(), build.classifier(), config.fileSystem().workspace(), build.isUseOldSonarRunnerScript());
+    BuildResult result = new BuildResult(config);
+    File runnerScript = installer.acquire(build.runnerVersion(), build.classifier(), config.fileSystem().workspace(), build.isUseOldSonarRunnerScript());
     try {
       appendCoverageArgumentToOpts(build.getEnvironmentVariables(), config, build.isUseOldSonarRunnerScript() ? SONAR_RUNNER_OPTS : SONAR_SCANNER_OPTS);
       Command command = createCommand(build, adjustedProperties, runnerScript);
@@ -54,6 +54,8 @@ class SonarScannerExecutor extends AbstractBuildExecutor<SonarRunner> {
 
     } catch (Exception e) {
       throw new IllegalStateException("Fail to execute SonarQube Scanner", e);
+    } finally {
+      installer.release(runnerScript);
     }
   }
 
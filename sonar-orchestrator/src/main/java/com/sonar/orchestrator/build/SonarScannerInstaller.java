@@ -42,6 +42,8 @@ import org.slf4j.LoggerFactory;
  */
 public class SonarScannerInstaller {
   private static final Logger LOG = LoggerFactory.getLogger(SonarScannerInstaller.class);
+  private static final Object INSTALL_LOCK = new Object();
+  private static final ScannerUsages USAGES = new ScannerUsages();
 
   private final FileSystem fileSystem;
 
@@ -56,13 +58,47 @@ public class SonarScannerInstaller {
     return install(scannerVersion, null, toDir, useOldScript);
   }
 
+  /**
+   * Installation is synchronized, because parallel builds share the same directory.
+   */
   public File install(Version scannerVersion, @Nullable String classifier, File toDir, boolean useOldScript) {
-    clearCachedSnapshot(scannerVersion, classifier, toDir);
-    if (!isInstalled(scannerVersion, classifier, toDir)) {
-      LOG.info("Installing sonar-scanner {}", scannerVersion);
-      doInstall(scannerVersion, classifier, toDir);
+    synchronized (INSTALL_LOCK) {
+      clearCachedSnapshot(scannerVersion, classifier, toDir);
+      if (!isInstalled(scannerVersion, classifier, toDir)) {
+        LOG.info("Installing sonar-scanner {}", scannerVersion);
+        doInstall(scannerVersion, classifier, toDir);
+      }
+      return locateInstalledScript(scannerVersion, classifier, toDir, useOldScript);
+    }
+  }
+
+  /**
+   * Same as {@link #install(Version, String, File, boolean)}, but the installation is marked as used
+   * until {@link #release(File)} is called. A cached SNAPSHOT installation is not deleted
+   * by the other builds while it is used.
+   *
+   * @since 3.16
+   */
+  public File acquire(Version scannerVersion, @Nullable String classifier, File toDir, boolean useOldScript) {
+    synchronized (INSTALL_LOCK) {
+      File script = install(scannerVersion, classifier, toDir, useOldScript);
+      USAGES.use(installDir(script));
+      return script;
     }
-    return locateInstalledScript(scannerVersion, classifier, toDir, useOldScript);
+  }
+
+  /**
+   * Releases an installation returned by {@link #acquire(Version, String, File, boolean)}.
+   *
+   * @since 3.16
+   */
+  public void release(File script) {
+    USAGES.release(installDir(script));
+  }
+
+  private static File installDir(File script) {
+    // script is <install dir>/bin/<script>
+    return script.getAbsoluteFile().getParentFile().getParentFile();
   }
 
   void doInstall(Version scannerVersion, File toDir) {
@@ -133,6 +169,10 @@ public class SonarScannerInstaller {
   private static void clearCachedSnapshot(Version runnerVersion, @Nullable String classifier, File toDir) {
     File runnerDir = new File(toDir, directoryName(runnerVersion, classifier));
     if (runnerVersion.isSnapshot() && runnerDir.exists()) {
+      if (USAGES.isUsed(runnerDir)) {
+        LOG.info("Keep sonar-scanner cache used by another build: {}", runnerDir);
+        return;
+      }
       LOG.info("Delete sonar-scanner cache: {}", runnerDir);
       FileUtils.deleteQuietly(runnerDir);
     }
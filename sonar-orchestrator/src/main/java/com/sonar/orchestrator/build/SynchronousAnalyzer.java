@@ -19,11 +19,29 @@
  */
 package com.sonar.orchestrator.build;
 
+import com.sonar.orchestrator.config.Configuration;
 import com.sonar.orchestrator.container.Server;
+import com.sonar.orchestrator.http.HttpException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static java.lang.String.format;
+
 /**
+ * Waits for the analysis reports to be processed by the Compute Engine. When the ids of tasks
+ * are known, only these tasks are waited for, so that concurrent analyses do not wait for each other.
+ * Polling starts with a short delay, which is doubled up to "orchestrator.computeEngineMaxPollingIntervalMs"
+ * (500ms by default). An {@link IllegalStateException} is raised if tasks are not processed before
+ * "orchestrator.computeEngineTimeoutMs" (30 minutes by default).
+ * <p/>
  * See http://jira.sonarsource.com/browse/ORCH-263
  */
 public class SynchronousAnalyzer {
@@ -31,50 +49,180 @@ public class SynchronousAnalyzer {
   private static final Logger LOGGER = LoggerFactory.getLogger(SynchronousAnalyzer.class);
 
   static final String RELATIVE_PATH = "/api/analysis_reports/is_queue_empty";
+  static final String TASK_PATH = "/api/ce/task";
+  static final String MAX_POLLING_INTERVAL_PROPERTY = "orchestrator.computeEngineMaxPollingIntervalMs";
+  static final String TIMEOUT_PROPERTY = "orchestrator.computeEngineTimeoutMs";
+  private static final long INITIAL_DELAY_MS = 5L;
+  private static final long DEFAULT_MAX_DELAY_MS = 500L;
+  private static final long DEFAULT_TIMEOUT_MS = 30L * 60L * 1000L;
+  private static final long LOG_INTERVAL_MS = 1000L;
+  // logged by scanners: "More about the report processing at http://localhost:9000/api/ce/task?id=AVsP3TXlp5ey6KJPHjUn"
+  private static final Pattern TASK_URL = Pattern.compile("/api/ce/task\\?id=([\\w\\-]+)");
+  private static final Pattern TASK_STATUS = Pattern.compile("\"status\"\\s*:\\s*\"(\\w+)\"");
 
   private final Server server;
-  private final long delayMs;
-  private final int logFrequency;
+  private final long initialDelayMs;
+  private final long maxDelayMs;
+  private final long timeoutMs;
 
   public SynchronousAnalyzer(Server server) {
-    // check every 100ms and log every seconds
-    this(server, 100L, 10);
+    this(server, INITIAL_DELAY_MS, DEFAULT_MAX_DELAY_MS, DEFAULT_TIMEOUT_MS);
+  }
+
+  /**
+   * @since 3.16
+   */
+  public SynchronousAnalyzer(Server server, Configuration config) {
+    this(server, INITIAL_DELAY_MS, config.getInt(MAX_POLLING_INTERVAL_PROPERTY, (int) DEFAULT_MAX_DELAY_MS),
+      config.getInt(TIMEOUT_PROPERTY, (int) DEFAULT_TIMEOUT_MS));
   }
 
-  SynchronousAnalyzer(Server server, long delayMs, int logFrequency) {
+  SynchronousAnalyzer(Server server, long initialDelayMs, long maxDelayMs, long timeoutMs) {
     this.server = server;
-    this.delayMs = delayMs;
-    this.logFrequency = logFrequency;
+    this.initialDelayMs = Math.min(initialDelayMs, maxDelayMs);
+    this.maxDelayMs = maxDelayMs;
+    this.timeoutMs = timeoutMs;
   }
 
+  /**
+   * Waits for the queue of Compute Engine to be empty
+   */
   public void waitForDone() {
-    boolean empty = false;
-    int count = 0;
-    while (!empty) {
-      if (count % logFrequency == 0) {
-        LOGGER.info("Waiting for analysis reports to be integrated");
+    Poller poller = new Poller();
+    while (!"true".equals(server.newHttpCall(RELATIVE_PATH).setAdminCredentials().execute().getBodyAsString())) {
+      if (!poller.sleep("analysis reports to be integrated")) {
+        return;
       }
-      try {
-        String response = server.newHttpCall(RELATIVE_PATH)
-          .setAdminCredentials()
-          .execute()
-          .getBodyAsString();
-        empty = "true".equals(response);
-        Thread.sleep(delayMs);
-        count++;
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for the tasks submitted by the given builds. Falls back to {@link #waitForDone()} if
+   * the ids of tasks can't be found in the logs of a build.
+   *
+   * @since 3.16
+   */
+  public void waitForDone(BuildResult... results) {
+    Set<String> taskIds = new LinkedHashSet<>();
+    for (BuildResult result : results) {
+      // logs of large builds are not loaded in memory
+      List<String> ids = findTaskIds(String.join("\n", result.findLogLines(TASK_URL)));
+      if (ids.isEmpty()) {
+        LOGGER.debug("Compute Engine tasks are not found in logs of build. Waiting for the queue to be empty.");
+        waitForDone();
         return;
       }
+      taskIds.addAll(ids);
+    }
+    waitForTasks(taskIds);
+  }
+
+  /**
+   * Waits for the given Compute Engine tasks to be processed. Falls back to {@link #waitForDone()}
+   * if the web service api/ce/task is not supported by server.
+   *
+   * @since 3.16
+   */
+  public void waitForTasks(Collection<String> taskIds) {
+    Poller poller = new Poller();
+    for (String taskId : taskIds) {
+      String status;
+      while (!isFinal(status = getTaskStatus(taskId))) {
+        if (status == null) {
+          waitForDone();
+          return;
+        }
+        if (!poller.sleep("task " + taskId + " to be processed")) {
+          return;
+        }
+      }
+      if (!"SUCCESS".equals(status)) {
+        LOGGER.warn("Compute Engine task {} has status {}", taskId, status);
+      }
+    }
+  }
+
+  /**
+   * @return the status of task, or {@code null} if the web service does not exist
+   */
+  @CheckForNull
+  private String getTaskStatus(String taskId) {
+    String json;
+    try {
+      json = server.newHttpCall(TASK_PATH)
+        .setAdminCredentials()
+        .setParam("id", taskId)
+        .execute()
+        .getBodyAsString();
+    } catch (HttpException e) {
+      if (e.getCode() == 404 && !e.getBody().contains(taskId)) {
+        return null;
+      }
+      throw e;
+    }
+    Matcher matcher = TASK_STATUS.matcher(json);
+    if (!matcher.find()) {
+      throw new IllegalStateException(format("Status of Compute Engine task %s is missing: %s", taskId, json));
+    }
+    return matcher.group(1);
+  }
+
+  private static boolean isFinal(@CheckForNull String status) {
+    return "SUCCESS".equals(status) || "FAILED".equals(status) || "CANCELED".equals(status);
+  }
+
+  /**
+   * Ids of the Compute Engine tasks that are logged by scanners
+   */
+  public static List<String> findTaskIds(String logs) {
+    Set<String> ids = new LinkedHashSet<>();
+    Matcher matcher = TASK_URL.matcher(logs);
+    while (matcher.find()) {
+      ids.add(matcher.group(1));
     }
+    return new ArrayList<>(ids);
   }
 
-  long getDelayMs() {
-    return delayMs;
+  long getInitialDelayMs() {
+    return initialDelayMs;
   }
 
-  int getLogFrequency() {
-    return logFrequency;
+  long getMaxDelayMs() {
+    return maxDelayMs;
   }
 
+  long getTimeoutMs() {
+    return timeoutMs;
+  }
+
+  /**
+   * Exponential backoff, under a deadline
+   */
+  private class Poller {
+    private final long startedAt = System.currentTimeMillis();
+    private long delayMs = initialDelayMs;
+    private long lastLogAt = 0L;
+
+    /**
+     * @return false if thread is interrupted
+     */
+    boolean sleep(String waitedFor) {
+      long now = System.currentTimeMillis();
+      if (now - startedAt > timeoutMs) {
+        throw new IllegalStateException(format("Timeout of %d ms while waiting for %s", timeoutMs, waitedFor));
+      }
+      if (now - lastLogAt >= LOG_INTERVAL_MS) {
+        LOGGER.info("Waiting for {}", waitedFor);
+        lastLogAt = now;
+      }
+      try {
+        Thread.sleep(delayMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      delayMs = Math.min(delayMs * 2, maxDelayMs);
+      return true;
+    }
+  }
 }
@@ -20,7 +20,9 @@
 package com.sonar.orchestrator.container;
 
 import com.sonar.orchestrator.config.FileSystem;
+import com.sonar.orchestrator.http.HttpBatch;
 import com.sonar.orchestrator.http.HttpCall;
+import com.sonar.orchestrator.http.HttpClient;
 import com.sonar.orchestrator.http.HttpClientFactory;
 import com.sonar.orchestrator.http.HttpMethod;
 import com.sonar.orchestrator.locator.FileLocation;
@@ -30,7 +32,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import okhttp3.HttpUrl;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -71,20 +76,33 @@ public class Server {
   public static final String ADMIN_LOGIN = "admin";
   public static final String ADMIN_PASSWORD = "admin";
 
+  // effectively capped by the HTTP dispatcher, see property "orchestrator.httpMaxRequestsPerHost"
+  private static final int BULK_CONCURRENCY = 10;
+
   private final FileSystem fileSystem;
   private final File home;
   private final SonarDistribution distribution;
   private HttpUrl url;
+  private final HttpClient httpClient;
   private Sonar wsClient;
   private Sonar adminWsClient;
   private SonarClient sonarClient;
   private SonarClient adminSonarClient;
 
   public Server(FileSystem fileSystem, File home, SonarDistribution distribution, HttpUrl url) {
+    this(fileSystem, home, distribution, url, HttpClientFactory.create());
+  }
+
+  /**
+   * @param httpClient the client of {@link #newHttpCall(String)}, for example {@link HttpClientFactory#create(com.sonar.orchestrator.config.Configuration)}
+   * @since 3.16
+   */
+  public Server(FileSystem fileSystem, File home, SonarDistribution distribution, HttpUrl url, HttpClient httpClient) {
     this.fileSystem = fileSystem;
     this.home = home;
     this.distribution = distribution;
     this.url = url;
+    this.httpClient = httpClient;
   }
 
   public File getHome() {
@@ -321,6 +339,23 @@ public class Server {
       .execute();
   }
 
+  /**
+   * Provision new projects concurrently. Keys of map are project keys, values are
+   * project names. The default administrator account is used.
+   * @throws IllegalStateException if at least one project fails to be provisioned
+   * @since 3.16
+   */
+  public void provisionProjects(Map<String, String> projectNamesByKey) {
+    List<HttpCall> calls = projectNamesByKey.entrySet().stream()
+      .map(e -> newHttpCall("/api/projects/create")
+        .setMethod(HttpMethod.POST)
+        .setAdminCredentials()
+        .setParam("key", e.getKey())
+        .setParam("name", e.getValue()))
+      .collect(Collectors.toList());
+    HttpBatch.execute(calls, BULK_CONCURRENCY).failIfAnyFailure();
+  }
+
   /**
    * @deprecated in 3.15. Replaced by {@link #newHttpCall(String)}.
    */
@@ -347,7 +382,7 @@ public class Server {
    */
   public HttpCall newHttpCall(String relativePath) {
     String segments = StringUtils.strip(relativePath, "/");
-    return HttpClientFactory.create().newCall(url.newBuilder().addPathSegments(segments).build());
+    return httpClient.newCall(url.newBuilder().addPathSegments(segments).build());
   }
 
   /**
@@ -363,4 +398,21 @@ public class Server {
       .setParam("profileName", profileName)
       .execute();
   }
+
+  /**
+   * Associate projects concurrently to a given quality profile for the given language.
+   * @throws IllegalStateException if at least one project fails to be associated
+   * @since 3.16
+   */
+  public void associateProjectsToQualityProfile(Collection<String> projectKeys, String languageKey, String profileName) {
+    List<HttpCall> calls = projectKeys.stream()
+      .map(projectKey -> newHttpCall("/api/qualityprofiles/add_project")
+        .setMethod(HttpMethod.POST)
+        .setAdminCredentials()
+        .setParam("projectKey", projectKey)
+        .setParam("language", languageKey)
+        .setParam("profileName", profileName))
+      .collect(Collectors.toList());
+    HttpBatch.execute(calls, BULK_CONCURRENCY).failIfAnyFailure();
+  }
 }
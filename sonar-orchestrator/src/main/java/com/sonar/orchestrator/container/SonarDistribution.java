@@ -40,6 +40,7 @@ public final class SonarDistribution {
   private List<String> licensedPluginKeys = new ArrayList<>();
   private boolean activateLicense;
   private boolean removeDistributedPlugins = true;
+  private List<String> zipExclusions = new ArrayList<>();
   private File zipFile;
 
   public SonarDistribution() {
@@ -154,4 +155,21 @@ public final class SonarDistribution {
     this.removeDistributedPlugins = remove;
     return this;
   }
+
+  /**
+   * Files of the SonarQube ZIP that are not installed, for example "web/docs/*" or
+   * "elasticsearch/modules/*". Paths are relative to SonarQube home. Wildcards "*" (including
+   * directory separators) and "?" are supported.
+   *
+   * @since 3.16
+   */
+  public SonarDistribution addZipExclusion(String pattern) {
+    requireNonNull(pattern);
+    zipExclusions.add(pattern);
+    return this;
+  }
+
+  public List<String> getZipExclusions() {
+    return Collections.unmodifiableList(zipExclusions);
+  }
 }
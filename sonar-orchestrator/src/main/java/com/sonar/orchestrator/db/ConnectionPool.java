@@ -0,0 +1,294 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of the JDBC connections opened by {@link DefaultDatabase}.
+ * <ul>
+ *   <li>at most {@code maxSize} connections are borrowed at the same time. Callers wait
+ *   for a connection to be released, up to {@code timeoutMs}</li>
+ *   <li>{@link Connection#close()} returns the connection to pool. Pending transaction is rolled back.</li>
+ *   <li>connections idle for more than {@link #VALIDATION_INTERVAL_MS} are validated before being borrowed</li>
+ *   <li>{@link #drain()} closes the idle connections. The borrowed ones are closed when they are released.</li>
+ *   <li>prepared statements are cached per physical connection, see {@link StatementCache}</li>
+ * </ul>
+ */
+class ConnectionPool {
+
+  @FunctionalInterface
+  interface ConnectionFactory {
+    Connection open() throws SQLException;
+  }
+
+  static final long VALIDATION_INTERVAL_MS = 5_000L;
+  private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+  private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+
+  private final ConnectionFactory factory;
+  private final int maxSize;
+  private final long timeoutMs;
+  private final long validationIntervalMs;
+  private final int statementCacheSize;
+  private final Semaphore permits;
+  private final Deque<IdleConnection> idle = new ArrayDeque<>();
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong borrowed = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+  private final AtomicLong statementHits = new AtomicLong();
+  private final AtomicLong statementMisses = new AtomicLong();
+  private int active = 0;
+  // incremented by drain(), so that borrowed connections are closed when released
+  private int generation = 0;
+
+  ConnectionPool(ConnectionFactory factory, int maxSize, long timeoutMs) {
+    this(factory, maxSize, timeoutMs, VALIDATION_INTERVAL_MS, StatementCache.DEFAULT_MAX_SIZE);
+  }
+
+  ConnectionPool(ConnectionFactory factory, int maxSize, long timeoutMs, long validationIntervalMs) {
+    this(factory, maxSize, timeoutMs, validationIntervalMs, StatementCache.DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * @param statementCacheSize maximum number of prepared statements cached per connection. Zero disables the cache.
+   */
+  ConnectionPool(ConnectionFactory factory, int maxSize, long timeoutMs, long validationIntervalMs, int statementCacheSize) {
+    this.factory = factory;
+    this.maxSize = maxSize;
+    this.timeoutMs = timeoutMs;
+    this.validationIntervalMs = validationIntervalMs;
+    this.statementCacheSize = statementCacheSize;
+    this.permits = new Semaphore(maxSize, true);
+  }
+
+  Connection borrow() throws SQLException {
+    long start = System.nanoTime();
+    try {
+      if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+        throw new SQLException("Timeout of " + timeoutMs + " ms reached while waiting for a JDBC connection. "
+          + "Are connections closed? " + getStats());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a JDBC connection", e);
+    } finally {
+      waitNanos.addAndGet(System.nanoTime() - start);
+    }
+    try {
+      int gen;
+      synchronized (this) {
+        gen = generation;
+      }
+      PhysicalConnection physical = pollValidConnection();
+      if (physical == null) {
+        physical = new PhysicalConnection(factory.open(), new StatementCache(statementCacheSize, statementHits, statementMisses));
+        created.incrementAndGet();
+      }
+      synchronized (this) {
+        active++;
+      }
+      borrowed.incrementAndGet();
+      return newProxy(physical, gen);
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  private PhysicalConnection pollValidConnection() {
+    while (true) {
+      IdleConnection candidate;
+      synchronized (this) {
+        candidate = idle.pollFirst();
+      }
+      if (candidate == null) {
+        return null;
+      }
+      if (System.currentTimeMillis() - candidate.releasedAt < validationIntervalMs || isValid(candidate.physical.connection)) {
+        return candidate.physical;
+      }
+      LOG.debug("Discard invalid JDBC connection");
+      closeQuietly(candidate.physical);
+    }
+  }
+
+  private static boolean isValid(Connection connection) {
+    try {
+      return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  private void release(PhysicalConnection physical, int gen) {
+    boolean reusable = reset(physical.connection);
+    synchronized (this) {
+      active--;
+      if (reusable && gen == generation) {
+        idle.addFirst(new IdleConnection(physical));
+        physical = null;
+      }
+    }
+    if (physical != null) {
+      closeQuietly(physical);
+    }
+    permits.release();
+  }
+
+  private static boolean reset(Connection connection) {
+    try {
+      if (connection.isClosed()) {
+        return false;
+      }
+      if (!connection.getAutoCommit()) {
+        connection.rollback();
+        connection.setAutoCommit(true);
+      }
+      connection.clearWarnings();
+      return true;
+    } catch (SQLException e) {
+      LOG.debug("Fail to reset JDBC connection", e);
+      return false;
+    }
+  }
+
+  /**
+   * Closes all the idle connections. Borrowed connections will be closed when released.
+   */
+  void drain() {
+    List<IdleConnection> toClose;
+    synchronized (this) {
+      generation++;
+      toClose = new ArrayList<>(idle);
+      idle.clear();
+    }
+    toClose.forEach(c -> closeQuietly(c.physical));
+  }
+
+  synchronized ConnectionPoolStats getStats() {
+    return new ConnectionPoolStats(maxSize, active, idle.size(), created.get(), borrowed.get(),
+      TimeUnit.NANOSECONDS.toMillis(waitNanos.get()), statementHits.get(), statementMisses.get());
+  }
+
+  private static void closeQuietly(PhysicalConnection physical) {
+    physical.statements.closeAll();
+    try {
+      physical.connection.close();
+    } catch (SQLException e) {
+      LOG.debug("Fail to close JDBC connection", e);
+    }
+  }
+
+  private Connection newProxy(PhysicalConnection physical, int gen) {
+    return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class[] {Connection.class},
+      new PooledConnectionHandler(physical, gen));
+  }
+
+  private static class PhysicalConnection {
+    private final Connection connection;
+    private final StatementCache statements;
+
+    PhysicalConnection(Connection connection, StatementCache statements) {
+      this.connection = connection;
+      this.statements = statements;
+    }
+  }
+
+  private static class IdleConnection {
+    private final PhysicalConnection physical;
+    private final long releasedAt = System.currentTimeMillis();
+
+    IdleConnection(PhysicalConnection physical) {
+      this.physical = physical;
+    }
+  }
+
+  private class PooledConnectionHandler implements InvocationHandler {
+    private final PhysicalConnection physical;
+    private final int gen;
+    private boolean closed = false;
+
+    PooledConnectionHandler(PhysicalConnection physical, int gen) {
+      this.physical = physical;
+      this.gen = gen;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          if (!closed) {
+            closed = true;
+            release(physical, gen);
+          }
+          return null;
+        case "isClosed":
+          return closed || physical.connection.isClosed();
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Pooled[" + physical.connection + "]";
+        default:
+          if (closed) {
+            throw new SQLException("Connection is closed");
+          }
+          if (isCacheablePrepare(method)) {
+            int resultSetType = args.length == 3 ? (int) args[1] : ResultSet.TYPE_FORWARD_ONLY;
+            int resultSetConcurrency = args.length == 3 ? (int) args[2] : ResultSet.CONCUR_READ_ONLY;
+            return physical.statements.prepare(physical.connection, (Connection) proxy, (String) args[0], resultSetType, resultSetConcurrency);
+          }
+          try {
+            return method.invoke(physical.connection, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+      }
+    }
+
+    /**
+     * prepareStatement(String) and prepareStatement(String, int, int). Variants with generated keys or holdability are not cached.
+     */
+    private boolean isCacheablePrepare(Method method) {
+      if (!"prepareStatement".equals(method.getName())) {
+        return false;
+      }
+      Class<?>[] types = method.getParameterTypes();
+      return types.length == 1 || (types.length == 3 && types[1] == int.class && types[2] == int.class);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+/**
+ * Immutable metrics of the pool of JDBC connections of {@link DefaultDatabase}.
+ *
+ * @since 3.16
+ */
+public final class ConnectionPoolStats {
+
+  private final int maxSize;
+  private final int active;
+  private final int idle;
+  private final long created;
+  private final long borrowed;
+  private final long waitTimeMs;
+  private final long statementCacheHits;
+  private final long statementCacheMisses;
+
+  ConnectionPoolStats(int maxSize, int active, int idle, long created, long borrowed, long waitTimeMs,
+    long statementCacheHits, long statementCacheMisses) {
+    this.maxSize = maxSize;
+    this.active = active;
+    this.idle = idle;
+    this.created = created;
+    this.borrowed = borrowed;
+    this.waitTimeMs = waitTimeMs;
+    this.statementCacheHits = statementCacheHits;
+    this.statementCacheMisses = statementCacheMisses;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Number of connections currently borrowed
+   */
+  public int getActive() {
+    return active;
+  }
+
+  /**
+   * Number of connections available in pool
+   */
+  public int getIdle() {
+    return idle;
+  }
+
+  /**
+   * Number of physical connections opened since creation of pool
+   */
+  public long getCreated() {
+    return created;
+  }
+
+  /**
+   * Number of calls to {@link DefaultDatabase#openConnection()}
+   */
+  public long getBorrowed() {
+    return borrowed;
+  }
+
+  /**
+   * Total time spent waiting for a connection to be available
+   */
+  public long getWaitTimeMs() {
+    return waitTimeMs;
+  }
+
+  /**
+   * Number of prepared statements reused from cache
+   */
+  public long getStatementCacheHits() {
+    return statementCacheHits;
+  }
+
+  /**
+   * Number of prepared statements created because they were not in cache
+   */
+  public long getStatementCacheMisses() {
+    return statementCacheMisses;
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionPoolStats{maxSize=" + maxSize + ", active=" + active + ", idle=" + idle + ", created=" + created
+      + ", borrowed=" + borrowed + ", waitTimeMs=" + waitTimeMs + ", statementCacheHits=" + statementCacheHits
+      + ", statementCacheMisses=" + statementCacheMisses + "}";
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.CheckForNull;
+
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkState;
+
+/**
+ * CSV as defined by RFC 4180. The first line declares the names of columns.
+ * <ul>
+ *   <li>values are separated by commas. Values containing commas, quotes or line breaks are quoted.</li>
+ *   <li>quotes are escaped by another quote</li>
+ *   <li>unquoted empty values are SQL NULL, quoted empty values ({@code ""}) are empty strings</li>
+ *   <li>blank lines are ignored</li>
+ * </ul>
+ */
+class CsvFixtureReader implements FixtureReader {
+
+  private static final char SEPARATOR = ',';
+  private static final char QUOTE = '"';
+
+  private final PushbackReader in;
+  private final List<String> columns;
+  private int rows = 0;
+
+  CsvFixtureReader(Reader reader) throws IOException {
+    this.in = new PushbackReader(reader, 1);
+    String[] header = readRecord();
+    checkState(header != null, "CSV fixture is empty. First line must declare the names of columns.");
+    this.columns = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(header)));
+  }
+
+  @Override
+  public List<String> getColumns() {
+    return columns;
+  }
+
+  @Override
+  @CheckForNull
+  public String[] next() throws IOException {
+    String[] values = readRecord();
+    if (values != null) {
+      rows++;
+      checkState(values.length == columns.size(), "Row %s of CSV fixture has %s values but %s columns are declared", rows, values.length, columns.size());
+    }
+    return values;
+  }
+
+  @CheckForNull
+  private String[] readRecord() throws IOException {
+    int c = in.read();
+    while (c == '\r' || c == '\n') {
+      c = in.read();
+    }
+    if (c == -1) {
+      return null;
+    }
+    List<String> values = new ArrayList<>();
+    StringBuilder value = new StringBuilder();
+    boolean quoted = false;
+    while (true) {
+      if (c == -1 || c == '\r' || c == '\n' || c == SEPARATOR) {
+        values.add(quoted || value.length() > 0 ? value.toString() : null);
+        if (c != SEPARATOR) {
+          return values.toArray(new String[values.size()]);
+        }
+        value.setLength(0);
+        quoted = false;
+      } else if (c == QUOTE && !quoted && value.length() == 0) {
+        quoted = true;
+        readQuoted(value);
+      } else {
+        value.append((char) c);
+      }
+      c = in.read();
+    }
+  }
+
+  private void readQuoted(StringBuilder value) throws IOException {
+    while (true) {
+      int c = in.read();
+      checkState(c != -1, "Unterminated quoted value in row %s of CSV fixture", rows + 1);
+      if (c == QUOTE) {
+        int next = in.read();
+        if (next != QUOTE) {
+          if (next != -1) {
+            in.unread(next);
+          }
+          return;
+        }
+      }
+      value.append((char) c);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -19,9 +19,14 @@
  */
 package com.sonar.orchestrator.db;
 
+import java.io.File;
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public interface Database {
 
@@ -32,16 +37,86 @@ public interface Database {
    */
   Database truncate(String tableName);
 
+  /**
+   * Truncate tables in a single batch. Tables that do not exist are ignored.
+   *
+   * @since 3.16
+   */
+  Database truncate(Collection<String> tableNames);
+
+  /**
+   * Truncate all the tables, except the given ones and the table schema_migrations.
+   * Tables are listed once, when this method is called for the first time.
+   *
+   * @since 3.16
+   */
+  Database truncateAll(String... exceptTableNames);
+
   /**
    * Example : countSql("count(kee) from metrics")
    */
   int countSql(String sql);
 
+  /**
+   * Parameterized version of {@link #countSql(String)}, for example
+   * {@code countSql(SqlQuery.create("select count(*) from projects where kee = ?", projectKey))}.
+   * Prepared statements are cached by the pooled connections, so executing the same request
+   * with different parameters is cheaper than concatenating values in raw SQL.
+   *
+   * @since 3.16
+   */
+  int countSql(SqlQuery query);
+
   /**
    * Execute SQL request and return a list of rows. A row is a map of column name (in upper case) to string value.
    */
   List<Map<String, String>> executeSql(String sql);
 
+  /**
+   * Parameterized version of {@link #executeSql(String)}. Column names are the labels in upper case.
+   *
+   * @since 3.16
+   */
+  List<Map<String, String>> executeSql(SqlQuery query);
+
+  /**
+   * Execute SQL request and call the handler for each row, without loading all the rows in memory.
+   * The {@link Row} instance is shared by all the rows.
+   * <p/>
+   * Example: {@code forEachRow(SqlQuery.create("select kee from projects where qualifier = ?", "TRK"), row -> keys.add(row.getString(1)))}
+   *
+   * @since 3.16
+   */
+  void forEachRow(SqlQuery query, Consumer<Row> handler);
+
+  /**
+   * Execute SQL request and stream the rows converted by {@code mapper}. The JDBC resources are released
+   * when all the rows are consumed or when the stream is closed, so partially consumed streams must be closed:
+   * <pre>
+   * try (Stream&lt;String&gt; keys = db.stream(SqlQuery.create("select kee from projects"), row -&gt; row.getString(1))) {
+   *   return keys.findFirst();
+   * }
+   * </pre>
+   *
+   * @since 3.16
+   */
+  <T> Stream<T> stream(SqlQuery query, Function<Row, T> mapper);
+
+  /**
+   * Streams the rows of a fixture file into an existing table, without loading the file in memory.
+   * The format is guessed from the file extension:
+   * <ul>
+   *   <li>".csv": RFC 4180, encoded in UTF-8. First line declares the columns. Unquoted empty values are NULL.</li>
+   *   <li>".json": array of flat objects, encoded in UTF-8. Columns are the keys of the first object.</li>
+   * </ul>
+   * Rows are inserted by JDBC batches, whose size is configured by the property "orchestrator.databaseFixturesBatchSize"
+   * (1000 by default). CSV files are loaded by COPY on PostgreSQL and by CSVREAD on H2.
+   *
+   * @return the number of inserted rows
+   * @since 3.16
+   */
+  long load(String tableName, File fixture);
+
   Connection openConnection();
 
   /**
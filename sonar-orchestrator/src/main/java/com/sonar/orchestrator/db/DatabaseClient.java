@@ -24,7 +24,9 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -48,6 +50,7 @@ public abstract class DatabaseClient {
   private int dbMajorVersion;
   private int dbMinorVersion;
   private String dbProductName;
+  private volatile boolean dbMetadataLoaded = false;
 
   protected DatabaseClient(Builder builder) {
     dropAndCreate = builder.dropAndCreate;
@@ -150,6 +153,92 @@ public abstract class DatabaseClient {
     return null;
   }
 
+  /**
+   * Requests killing the given connections. They are executed in a single batch.
+   * By default one request per connection, see {@link #getKillConnectionSql(String)}.
+   * @since 3.16
+   */
+  public List<String> getKillConnectionsSql(List<String> connectionIds) {
+    List<String> sqls = new ArrayList<>();
+    for (String connectionId : connectionIds) {
+      String sql = getKillConnectionSql(connectionId);
+      if (sql != null) {
+        sqls.add(sql);
+      }
+    }
+    return sqls;
+  }
+
+  /**
+   * SQL requests executed with the root connection to copy the SonarQube database into
+   * the snapshot {@code snapshotName}, when server is stopped.
+   *
+   * @param tables the tables of SonarQube database
+   * @return null if the dialect does not support snapshots
+   * @since 3.16
+   */
+  @CheckForNull
+  public String[] getCreateSnapshotDdl(String snapshotName, List<String> tables) {
+    // to be overridden
+    return null;
+  }
+
+  /**
+   * SQL requests executed with the root connection to replace the SonarQube database by
+   * the snapshot {@code snapshotName}. The other connections are killed beforehand.
+   *
+   * @param tables the tables of the snapshot
+   * @return null if the dialect does not support snapshots
+   * @since 3.16
+   */
+  @CheckForNull
+  public String[] getRestoreSnapshotDdl(String snapshotName, List<String> tables) {
+    // to be overridden
+    return null;
+  }
+
+  /**
+   * @since 3.16
+   */
+  public String[] getDropSnapshotDdl(String snapshotName) {
+    // to be overridden
+    return new String[0];
+  }
+
+  /**
+   * SQL requests that truncate the given tables
+   *
+   * @since 3.16
+   */
+  public String[] getTruncateSql(List<String> tables) {
+    String[] sqls = new String[tables.size()];
+    for (int i = 0; i < sqls.length; i++) {
+      sqls[i] = "TRUNCATE TABLE " + tables.get(i);
+    }
+    return sqls;
+  }
+
+  /**
+   * Maximum number of connections used to truncate tables concurrently. Greater than 1 only
+   * for the databases that commit each truncation independently.
+   *
+   * @since 3.16
+   */
+  public int getTruncateParallelism() {
+    return 1;
+  }
+
+  /**
+   * Schema of the SonarQube tables, as expected by {@link java.sql.DatabaseMetaData#getTables(String, String, String, String[])}.
+   * Null if tables are not filtered by schema.
+   *
+   * @since 3.16
+   */
+  @CheckForNull
+  public String getMetadataSchema() {
+    return schema;
+  }
+
   public final Map<String, String> getProperties() {
     Map<String, String> props = new HashMap<>();
     props.putAll(additionalProperties);
@@ -194,12 +283,19 @@ public abstract class DatabaseClient {
     return conn;
   }
 
+  /**
+   * Metadata is loaded from the first opened connection only
+   */
   private void fillDbMetadata(Connection conn) {
+    if (dbMetadataLoaded) {
+      return;
+    }
     try {
       DatabaseMetaData meta = conn.getMetaData();
       dbMajorVersion = meta.getDatabaseMajorVersion();
       dbMinorVersion = meta.getDatabaseMinorVersion();
       dbProductName = meta.getDatabaseProductName();
+      dbMetadataLoaded = true;
     } catch (SQLException e) {
       throw new IllegalStateException("Can't get JDBC metadata", e);
     }
@@ -30,6 +30,10 @@ import static com.sonar.orchestrator.util.OrchestratorUtils.isEmpty;
 
 public final class DatabaseFactory {
 
+  static final String H2_STORAGE_PROPERTY = "orchestrator.h2Storage";
+  static final String H2_TMPFS_DIR_PROPERTY = "orchestrator.h2TmpfsDir";
+  private static final File DEFAULT_TMPFS_DIR = new File("/dev/shm");
+
   private DatabaseFactory() {
     // only static methods
   }
@@ -41,6 +45,9 @@ public final class DatabaseFactory {
   static DatabaseClient create(Configuration config, FileSystem fileSystem) {
     String url = config.getString("sonar.jdbc.url");
     DatabaseClient.Builder builder = newBuilderForUrl(url);
+    if (builder instanceof H2.H2Builder) {
+      configureH2Storage(config, (H2.H2Builder) builder, isEmpty(url));
+    }
 
     String s = config.getString("sonar.jdbc.schema");
     if (!isEmpty(s)) {
@@ -84,6 +91,36 @@ public final class DatabaseFactory {
     return builder.build();
   }
 
+  /**
+   * Storage of embedded database is configured by the property "orchestrator.h2Storage": "disk" (default),
+   * "memory" or "tmpfs". The RAM-backed directory used by "tmpfs" is defined by "orchestrator.h2TmpfsDir",
+   * by default /dev/shm if it exists, else the temp directory.
+   */
+  private static void configureH2Storage(Configuration config, H2.H2Builder builder, boolean defaultUrl) {
+    String value = config.getString(H2_STORAGE_PROPERTY);
+    if (isEmpty(value)) {
+      return;
+    }
+    H2.Storage storage = null;
+    for (H2.Storage candidate : H2.Storage.values()) {
+      if (candidate.name().equalsIgnoreCase(value.trim())) {
+        storage = candidate;
+      }
+    }
+    checkArgument(storage != null, "Unsupported value of property %s: %s. Supported values are disk, memory and tmpfs", H2_STORAGE_PROPERTY, value);
+    checkArgument(defaultUrl || storage == H2.Storage.DISK, "Property %s can't be used when sonar.jdbc.url is defined", H2_STORAGE_PROPERTY);
+    File tmpfsDir = null;
+    if (storage == H2.Storage.TMPFS) {
+      String dir = config.getString(H2_TMPFS_DIR_PROPERTY);
+      if (!isEmpty(dir)) {
+        tmpfsDir = new File(dir);
+      } else {
+        tmpfsDir = DEFAULT_TMPFS_DIR.isDirectory() ? DEFAULT_TMPFS_DIR : new File(System.getProperty("java.io.tmpdir"));
+      }
+    }
+    builder.setStorage(storage, tmpfsDir);
+  }
+
   private static void feedDriverMavenKey(FileSystem fileSystem, DatabaseClient.Builder builder, String propertyValue) {
     String[] fields = propertyValue.split(":");
     checkArgument(fields.length == 3, "Format is groupId:artifactId:version. Please check the property sonar.jdbc.driverMavenKey: %s", propertyValue);
@@ -0,0 +1,224 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import com.sonar.orchestrator.util.Checksums;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.FileFilterUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registry of the snapshots of databases freshly created and migrated by SonarQube.
+ * <ul>
+ *   <li>a snapshot is identified by the version of SonarQube, the plugins installed in
+ *   SonarQube home and the JDBC URL</li>
+ *   <li>each snapshot is described by the file "&lt;name&gt;.properties"</li>
+ *   <li>the files of the embedded H2 database are copied from/to the data directory of SonarQube,
+ *   see {@link H2#getDataDir(File)}. In-memory H2 databases are not supported. Other dialects copy the database on server side, see
+ *   {@link DatabaseClient#getCreateSnapshotDdl(String, List)}</li>
+ * </ul>
+ */
+class DatabaseSnapshots {
+
+  static final String ENABLED_PROPERTY = "orchestrator.databaseSnapshots";
+  static final String DIR_PROPERTY = "orchestrator.databaseSnapshotsDir";
+
+  private static final String NAME_PREFIX = "sonar_snapshot_";
+  private static final List<String> PLUGINS_DIRS = Arrays.asList("extensions/downloads", "extensions/plugins");
+  private static final List<String> H2_DATA_FILES = Arrays.asList("sonar.h2.db", "sonar.mv.db");
+
+  private final DatabaseClient client;
+  private final Supplier<File> dirSupplier;
+  private File dir;
+
+  DatabaseSnapshots(DatabaseClient client, Supplier<File> dirSupplier) {
+    this.client = requireNonNull(client);
+    this.dirSupplier = dirSupplier;
+  }
+
+  static boolean isSupported(DatabaseClient client) {
+    if (isEmbedded(client)) {
+      return ((H2) client).getStorage() != H2.Storage.MEMORY;
+    }
+    return client.isDropAndCreate() && client.getCreateSnapshotDdl(NAME_PREFIX, Collections.emptyList()) != null;
+  }
+
+  /**
+   * Embedded H2 database is started by SonarQube from its home directory.
+   */
+  static boolean isEmbedded(DatabaseClient client) {
+    return client instanceof H2;
+  }
+
+  /**
+   * Plugins are identified by the JAR files of "extensions/downloads", where Orchestrator copies them before startup,
+   * and of "extensions/plugins", where SonarQube moves them when starting up. Note that SonarQube may also
+   * remove the bundled plugins replaced by the downloaded ones, so name should be computed before the
+   * first startup of server, see {@link DefaultDatabase#restoreSnapshot(String, File)}.
+   */
+  String name(String serverVersion, File sonarHome) {
+    MessageDigest digest = Checksums.newDigest("SHA-256");
+    update(digest, serverVersion);
+    update(digest, client.getDialect());
+    update(digest, client.getUrl());
+    update(digest, client.getLogin());
+    Map<String, Long> plugins = new TreeMap<>();
+    for (String pluginsDir : PLUGINS_DIRS) {
+      File dir = new File(sonarHome, pluginsDir);
+      if (dir.isDirectory()) {
+        for (File plugin : FileUtils.listFiles(dir, FileFilterUtils.suffixFileFilter(".jar"), TrueFileFilter.INSTANCE)) {
+          plugins.put(plugin.getName(), plugin.length());
+        }
+      }
+    }
+    for (Map.Entry<String, Long> plugin : plugins.entrySet()) {
+      update(digest, plugin.getKey());
+      update(digest, String.valueOf(plugin.getValue()));
+    }
+    return NAME_PREFIX + Checksums.toHex(digest.digest()).substring(0, 16);
+  }
+
+  private static void update(MessageDigest digest, String s) {
+    digest.update(String.valueOf(s).getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  /**
+   * @return the tables of the snapshot, or null if the snapshot does not exist
+   */
+  @CheckForNull
+  List<String> getTables(String name) {
+    File file = descriptor(name);
+    if (!file.isFile() || (isEmbedded(client) && !new File(dir(), name).isDirectory())) {
+      return null;
+    }
+    String tables = load(file).getProperty("tables", "");
+    return tables.isEmpty() ? Collections.emptyList() : Arrays.asList(tables.split(","));
+  }
+
+  void register(String name, Collection<String> tables) {
+    Properties props = new Properties();
+    props.setProperty("dialect", client.getDialect());
+    props.setProperty("url", client.getUrl());
+    props.setProperty("login", String.valueOf(client.getLogin()));
+    props.setProperty("tables", String.join(",", tables));
+    File file = descriptor(name);
+    try {
+      FileUtils.forceMkdir(file.getParentFile());
+      try (OutputStream output = FileUtils.openOutputStream(file)) {
+        props.store(output, null);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write " + file, e);
+    }
+  }
+
+  /**
+   * @return the names of the registered snapshots of the database
+   */
+  List<String> list() {
+    List<String> names = new ArrayList<>();
+    File[] files = dir().listFiles((d, filename) -> filename.startsWith(NAME_PREFIX) && filename.endsWith(".properties"));
+    if (files != null) {
+      for (File file : files) {
+        Properties props = load(file);
+        if (client.getUrl().equals(props.getProperty("url")) && String.valueOf(client.getLogin()).equals(props.getProperty("login"))) {
+          names.add(file.getName().substring(0, file.getName().length() - ".properties".length()));
+        }
+      }
+    }
+    return names;
+  }
+
+  void unregister(String name) {
+    FileUtils.deleteQuietly(descriptor(name));
+    FileUtils.deleteQuietly(new File(dir(), name));
+  }
+
+  void copyEmbeddedDatabaseToSnapshot(String name, File sonarHome) {
+    File toDir = new File(dir(), name);
+    FileUtils.deleteQuietly(toDir);
+    copyDataFiles(h2DataDir(sonarHome), toDir);
+  }
+
+  void copySnapshotToEmbeddedDatabase(String name, File sonarHome) {
+    copyDataFiles(new File(dir(), name), h2DataDir(sonarHome));
+  }
+
+  private File h2DataDir(File sonarHome) {
+    File dataDir = ((H2) client).getDataDir(sonarHome);
+    checkState(dataDir != null, "H2 database is stored in memory");
+    return dataDir;
+  }
+
+  private static void copyDataFiles(File fromDir, File toDir) {
+    try {
+      FileUtils.forceMkdir(toDir);
+      for (String filename : H2_DATA_FILES) {
+        File file = new File(fromDir, filename);
+        if (file.isFile()) {
+          FileUtils.copyFileToDirectory(file, toDir);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to copy H2 database from " + fromDir + " to " + toDir, e);
+    }
+  }
+
+  private File descriptor(String name) {
+    return new File(dir(), name + ".properties");
+  }
+
+  private File dir() {
+    if (dir == null) {
+      dir = dirSupplier.get();
+    }
+    return dir;
+  }
+
+  private static Properties load(File file) {
+    Properties props = new Properties();
+    try (InputStream input = FileUtils.openInputStream(file)) {
+      props.load(input);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read " + file, e);
+    }
+    return props;
+  }
+}
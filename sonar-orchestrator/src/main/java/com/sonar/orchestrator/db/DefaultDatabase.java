@@ -20,7 +20,10 @@
 package com.sonar.orchestrator.db;
 
 import com.sonar.orchestrator.config.Configuration;
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
@@ -28,50 +31,280 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkState;
 import static com.sonar.orchestrator.util.OrchestratorUtils.isEmpty;
 
 public final class DefaultDatabase implements Database {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultDatabase.class);
+  private static final String POOL_SIZE_PROPERTY = "orchestrator.databasePoolSize";
+  private static final String POOL_TIMEOUT_PROPERTY = "orchestrator.databasePoolTimeoutMs";
+  private static final int DEFAULT_POOL_SIZE = 10;
+  private static final int DEFAULT_POOL_TIMEOUT_MS = 60_000;
+  private static final String STATEMENT_CACHE_SIZE_PROPERTY = "orchestrator.databaseStatementCacheSize";
+  private static final String KILL_ATTEMPTS_PROPERTY = "orchestrator.databaseKillAttempts";
+  private static final String KILL_TIMEOUT_PROPERTY = "orchestrator.databaseKillTimeoutMs";
+  private static final int DEFAULT_KILL_ATTEMPTS = 10;
+  private static final int DEFAULT_KILL_TIMEOUT_MS = 15_000;
+  private static final long KILL_INITIAL_BACKOFF_MS = 50L;
+  private static final long KILL_MAX_BACKOFF_MS = 2_000L;
+  private static final String FIXTURES_PROPERTY = "orchestrator.databaseFixtures";
+  private static final String FIXTURES_BATCH_SIZE_PROPERTY = "orchestrator.databaseFixturesBatchSize";
 
   private DatabaseClient databaseClient;
+  private DatabaseSnapshots snapshots;
+  // names of snapshots by server version and home, computed before the first startup of server
+  private final Map<String, String> snapshotNames = new HashMap<>();
+  private final ConnectionPool pool;
+  private final int killAttempts;
+  private final long killTimeoutMs;
+  private FixtureLoader fixtureLoader;
+  private List<File> fixtures = Collections.emptyList();
+  // cache of the tables listed by truncateAll(). Reset when database is re-created.
+  private volatile List<String> tables;
   private boolean started = false;
 
   public DefaultDatabase(Configuration config) {
     this.databaseClient = DatabaseFactory.create(config);
+    this.pool = new ConnectionPool(databaseClient::openConnection,
+      config.getInt(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE), config.getInt(POOL_TIMEOUT_PROPERTY, DEFAULT_POOL_TIMEOUT_MS),
+      ConnectionPool.VALIDATION_INTERVAL_MS, config.getInt(STATEMENT_CACHE_SIZE_PROPERTY, StatementCache.DEFAULT_MAX_SIZE));
+    this.killAttempts = config.getInt(KILL_ATTEMPTS_PROPERTY, DEFAULT_KILL_ATTEMPTS);
+    this.killTimeoutMs = config.getInt(KILL_TIMEOUT_PROPERTY, DEFAULT_KILL_TIMEOUT_MS);
+    this.fixtureLoader = new FixtureLoader(databaseClient, config.getInt(FIXTURES_BATCH_SIZE_PROPERTY, FixtureLoader.DEFAULT_BATCH_SIZE));
+    String fixturePaths = config.getString(FIXTURES_PROPERTY);
+    if (!isEmpty(fixturePaths)) {
+      this.fixtures = new ArrayList<>();
+      for (String path : fixturePaths.split(",")) {
+        if (!path.trim().isEmpty()) {
+          fixtures.add(new File(path.trim()));
+        }
+      }
+    }
+    if (Boolean.parseBoolean(config.getString(DatabaseSnapshots.ENABLED_PROPERTY, "false"))) {
+      if (DatabaseSnapshots.isSupported(databaseClient)) {
+        this.snapshots = new DatabaseSnapshots(databaseClient, () -> {
+          String dir = config.getString(DatabaseSnapshots.DIR_PROPERTY);
+          return isEmpty(dir) ? new File(config.fileSystem().sonarInstallsDir(), "db-snapshots") : new File(dir);
+        });
+      } else {
+        LOG.info("Database snapshots are not supported by {}", databaseClient.getDialect());
+      }
+    }
   }
 
   public DefaultDatabase(DatabaseClient client) {
+    this(client, DEFAULT_KILL_ATTEMPTS, DEFAULT_KILL_TIMEOUT_MS);
+  }
+
+  DefaultDatabase(DatabaseClient client, int killAttempts, long killTimeoutMs) {
     this.databaseClient = client;
+    this.pool = new ConnectionPool(client::openConnection, DEFAULT_POOL_SIZE, DEFAULT_POOL_TIMEOUT_MS);
+    this.killAttempts = killAttempts;
+    this.killTimeoutMs = killTimeoutMs;
+    this.fixtureLoader = new FixtureLoader(client, FixtureLoader.DEFAULT_BATCH_SIZE);
+  }
+
+  DefaultDatabase(DatabaseClient client, File snapshotsDir) {
+    this(client);
+    this.snapshots = new DatabaseSnapshots(client, () -> snapshotsDir);
   }
 
+  /**
+   * When snapshots are enabled, the database is not re-created. That is done
+   * by {@link #restoreSnapshot(String, File)}.
+   */
   public void start() {
     if (!started) {
       registerDriver();
-      if (databaseClient.isDropAndCreate()) {
+      if (databaseClient.isDropAndCreate() && !isSnapshotEnabled()) {
         dropAndCreateDatabase();
       }
       started = true;
     }
   }
 
+  /**
+   * The embedded H2 database is served by the web process of SonarQube. It can be requested
+   * only while server is up.
+   *
+   * @since 3.16
+   */
+  public boolean isEmbedded() {
+    return DatabaseSnapshots.isEmbedded(databaseClient);
+  }
+
+  /**
+   * Snapshots are enabled by the property "orchestrator.databaseSnapshots". They are stored in the directory
+   * defined by "orchestrator.databaseSnapshotsDir", by default "db-snapshots" in the SonarQube installs directory.
+   *
+   * @since 3.16
+   */
+  public boolean isSnapshotEnabled() {
+    return snapshots != null;
+  }
+
+  /**
+   * Replaces the database by the snapshot of the given version of SonarQube and of the plugins installed
+   * in {@code sonarHome}. If such a snapshot does not exist, then the obsolete snapshots of the database
+   * are dropped and the database is re-created.
+   * <p/>
+   * Must be called before the first startup of server, as the installed plugins are then moved by
+   * SonarQube. The name of snapshot is kept for the next calls of {@link #createSnapshot(String, File)}
+   * and of this method on the same {@code sonarHome}.
+   *
+   * @return true if the database has been restored, false if it has been re-created
+   * @since 3.16
+   */
+  public boolean restoreSnapshot(String serverVersion, File sonarHome) {
+    checkState(started && snapshots != null, "Database snapshots are not enabled");
+    String name = snapshotName(serverVersion, sonarHome);
+    List<String> tables = snapshots.getTables(name);
+    if (tables != null) {
+      try {
+        restoreSnapshot(name, tables, sonarHome);
+        LOG.info("Database restored from snapshot {}", name);
+        return true;
+      } catch (RuntimeException e) {
+        LOG.warn("Fail to restore database snapshot " + name + ". Database is re-created.", e);
+      }
+    }
+    dropSnapshots();
+    if (databaseClient.isDropAndCreate()) {
+      dropAndCreateDatabase();
+    }
+    return false;
+  }
+
+  /**
+   * Copies the database, which must be freshly migrated, into the snapshot of the given version of SonarQube
+   * and of the plugins installed in {@code sonarHome}, as identified by {@link #restoreSnapshot(String, File)}.
+   * Server must be stopped.
+   *
+   * @since 3.16
+   */
+  public void createSnapshot(String serverVersion, File sonarHome) {
+    checkState(started && snapshots != null, "Database snapshots are not enabled");
+    String name = snapshotName(serverVersion, sonarHome);
+    LOG.info("Create database snapshot {}", name);
+    List<String> tables = new ArrayList<>();
+    if (DatabaseSnapshots.isEmbedded(databaseClient)) {
+      snapshots.copyEmbeddedDatabaseToSnapshot(name, sonarHome);
+    } else {
+      tables = selectTables();
+      executeRootDdl(databaseClient.getCreateSnapshotDdl(name, tables), true);
+    }
+    snapshots.register(name, tables);
+  }
+
+  private String snapshotName(String serverVersion, File sonarHome) {
+    synchronized (snapshotNames) {
+      return snapshotNames.computeIfAbsent(serverVersion + ":" + sonarHome.getAbsolutePath(), k -> snapshots.name(serverVersion, sonarHome));
+    }
+  }
+
+  private void restoreSnapshot(String name, List<String> tables, File sonarHome) {
+    this.tables = null;
+    if (DatabaseSnapshots.isEmbedded(databaseClient)) {
+      snapshots.copySnapshotToEmbeddedDatabase(name, sonarHome);
+    } else {
+      executeRootDdl(databaseClient.getRestoreSnapshotDdl(name, tables), true);
+    }
+  }
+
+  private void dropSnapshots() {
+    for (String name : snapshots.list()) {
+      LOG.info("Drop obsolete database snapshot {}", name);
+      if (!DatabaseSnapshots.isEmbedded(databaseClient)) {
+        try {
+          executeRootDdl(databaseClient.getDropSnapshotDdl(name), false);
+        } catch (RuntimeException e) {
+          LOG.warn("Fail to drop database snapshot " + name, e);
+        }
+      }
+      snapshots.unregister(name);
+    }
+  }
+
+  private void executeRootDdl(String[] ddls, boolean killOtherConnections) {
+    Connection connection = null;
+    try {
+      connection = databaseClient.openRootConnection();
+      if (killOtherConnections) {
+        killOtherConnections(connection);
+      }
+      executeDdl(connection, ddls);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to execute DDL with root connection", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Killing of connections got interrupted", e);
+    } finally {
+      closeQuietly(connection);
+    }
+  }
+
+  private List<String> selectTables() {
+    Connection connection = openConnection();
+    try {
+      DatabaseMetaData metaData = connection.getMetaData();
+      List<String> tables = new ArrayList<>();
+      try (ResultSet rs = metaData.getTables(connection.getCatalog(), databaseClient.getMetadataSchema(), "%", new String[] {"TABLE"})) {
+        while (rs.next()) {
+          tables.add(rs.getString("TABLE_NAME"));
+        }
+      }
+      return tables;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to list tables", e);
+    } finally {
+      closeQuietly(connection);
+    }
+  }
+
+  /**
+   * Server must be stopped before. The RAM-backed data directory of embedded database, if any, is deleted.
+   */
   public void stop() {
     if (started) {
+      pool.drain();
+      tables = null;
       deregisterDriver();
       started = false;
+      if (databaseClient instanceof H2) {
+        ((H2) databaseClient).deleteTmpfsDataDir();
+      }
     }
   }
 
+  /**
+   * @since 3.16
+   */
+  public ConnectionPoolStats getConnectionPoolStats() {
+    return pool.getStats();
+  }
+
   @Override
   public Map<String, String> getSonarProperties() {
     return databaseClient.getProperties();
@@ -94,6 +327,168 @@ public final class DefaultDatabase implements Database {
     }
   }
 
+  @Override
+  public Database truncate(Collection<String> tableNames) {
+    Map<String, String> existingTables = new HashMap<>();
+    for (String table : listTables()) {
+      existingTables.put(table.toLowerCase(Locale.ENGLISH), table);
+    }
+    List<String> toTruncate = new ArrayList<>();
+    for (String tableName : tableNames) {
+      checkLowerCase(tableName);
+      String table = existingTables.get(tableName);
+      if (table == null) {
+        LOG.warn("Table {} does not exist", tableName);
+      } else {
+        toTruncate.add(table);
+      }
+    }
+    truncateTables(toTruncate);
+    return this;
+  }
+
+  @Override
+  public Database truncateAll(String... exceptTableNames) {
+    Set<String> excluded = new HashSet<>();
+    excluded.add("schema_migrations");
+    for (String exceptTableName : exceptTableNames) {
+      excluded.add(exceptTableName.toLowerCase(Locale.ENGLISH));
+    }
+    List<String> toTruncate = new ArrayList<>();
+    for (String table : listTables()) {
+      if (!excluded.contains(table.toLowerCase(Locale.ENGLISH))) {
+        toTruncate.add(table);
+      }
+    }
+    truncateTables(toTruncate);
+    return this;
+  }
+
+  /**
+   * Loads the CSV or JSON file into the table. See {@link Database#load(String, File)}.
+   */
+  @Override
+  public long load(String tableName, File fixture) {
+    checkLowerCase(tableName);
+    String table = findTable(tableName);
+    checkState(table != null, "Table %s does not exist", tableName);
+    long start = System.currentTimeMillis();
+    Connection connection = openConnection();
+    try {
+      long rows = fixtureLoader.load(connection, table, fixture);
+      LOG.info("{} rows loaded into table {} in {} ms", rows, tableName, System.currentTimeMillis() - start);
+      return rows;
+    } catch (SQLException | IOException e) {
+      throw new IllegalStateException("Fail to load fixture " + fixture + " into table " + tableName, e);
+    } finally {
+      closeQuietly(connection);
+    }
+  }
+
+  /**
+   * Loads the fixtures declared by the property "orchestrator.databaseFixtures", a comma-separated list
+   * of CSV or JSON files named after the tables, for example "fixtures/projects.csv,fixtures/issues.json".
+   * Fixtures must be loaded while server is stopped, before its startup, except for the embedded database
+   * which is available only while server is up, see {@link #isEmbedded()}.
+   *
+   * @return {@code false} if nothing is loaded because some tables do not exist yet. They are created
+   * by SonarQube during its first startup.
+   */
+  public boolean loadFixtures() {
+    if (fixtures.isEmpty()) {
+      return true;
+    }
+    for (File fixture : fixtures) {
+      if (findTable(tableOf(fixture)) == null) {
+        LOG.info("Fixtures can not be loaded, table {} does not exist yet", tableOf(fixture));
+        return false;
+      }
+    }
+    for (File fixture : fixtures) {
+      load(tableOf(fixture), fixture);
+    }
+    return true;
+  }
+
+  private static String tableOf(File fixture) {
+    String name = fixture.getName();
+    int dot = name.lastIndexOf('.');
+    return (dot > 0 ? name.substring(0, dot) : name).toLowerCase(Locale.ENGLISH);
+  }
+
+  @CheckForNull
+  private String findTable(String tableName) {
+    for (String table : listTables()) {
+      if (table.equalsIgnoreCase(tableName)) {
+        return table;
+      }
+    }
+    return null;
+  }
+
+  private List<String> listTables() {
+    List<String> result = tables;
+    if (result == null) {
+      result = Collections.unmodifiableList(selectTables());
+      // an empty schema is not cached, as tables are created by SonarQube at startup
+      if (!result.isEmpty()) {
+        tables = result;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Tables are truncated in a single transaction, or concurrently by a few connections when
+   * database commits each truncation (see {@link DatabaseClient#getTruncateParallelism()}).
+   */
+  private void truncateTables(List<String> tablesToTruncate) {
+    if (tablesToTruncate.isEmpty()) {
+      return;
+    }
+    LOG.info("Truncate {} tables", tablesToTruncate.size());
+    int parallelism = Math.min(databaseClient.getTruncateParallelism(), tablesToTruncate.size());
+    if (parallelism <= 1) {
+      truncateInTransaction(tablesToTruncate);
+      return;
+    }
+    List<List<String>> partitions = new ArrayList<>();
+    for (int i = 0; i < parallelism; i++) {
+      partitions.add(new ArrayList<>());
+    }
+    for (int i = 0; i < tablesToTruncate.size(); i++) {
+      partitions.get(i % parallelism).add(tablesToTruncate.get(i));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    try {
+      CompletableFuture.allOf(partitions.stream()
+        .map(partition -> CompletableFuture.runAsync(() -> truncateInTransaction(partition), executor))
+        .toArray(CompletableFuture[]::new))
+        .join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void truncateInTransaction(List<String> tablesToTruncate) {
+    Connection connection = openConnection();
+    try (Statement stmt = connection.createStatement()) {
+      connection.setAutoCommit(false);
+      for (String sql : databaseClient.getTruncateSql(tablesToTruncate)) {
+        LOG.debug("Execute: {}", sql);
+        stmt.addBatch(sql);
+      }
+      stmt.executeBatch();
+      connection.commit();
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to truncate tables " + tablesToTruncate, e);
+    } finally {
+      closeQuietly(connection);
+    }
+  }
+
   @Override
   public int countSql(String sql) {
     LOG.info("Count sql");
@@ -117,6 +512,31 @@ public final class DefaultDatabase implements Database {
     }
   }
 
+  /**
+   * The prepared statement is cached by the pooled connection, so the request is parsed
+   * once by database whatever the values of parameters.
+   */
+  @Override
+  public int countSql(SqlQuery query) {
+    try (QueryCursor cursor = QueryCursor.execute(query, openConnection())) {
+      checkState(cursor.next(), "No result for SQL request: %s", query);
+      return cursor.row().getInt(1);
+    }
+  }
+
+  @Override
+  public List<Map<String, String>> executeSql(SqlQuery query) {
+    List<Map<String, String>> list = new ArrayList<>();
+    forEachRow(query, row -> {
+      Map<String, String> map = new HashMap<>();
+      for (int i = 1; i <= row.getColumnCount(); i++) {
+        map.put(row.getColumnName(i), row.getString(i));
+      }
+      list.add(map);
+    });
+    return list;
+  }
+
   @Override
   public List<Map<String, String>> executeSql(String sql) {
     Connection connection = openConnection();
@@ -130,6 +550,16 @@ public final class DefaultDatabase implements Database {
     }
   }
 
+  @Override
+  public void forEachRow(SqlQuery query, Consumer<Row> handler) {
+    QueryCursor.execute(query, openConnection()).forEach(handler);
+  }
+
+  @Override
+  public <T> Stream<T> stream(SqlQuery query, Function<Row, T> mapper) {
+    return QueryCursor.execute(query, openConnection()).stream(mapper);
+  }
+
   private List<Map<String, String>> executeSql(Connection connection, String sql) {
     List<Map<String, String>> list = new ArrayList<>();
     Statement stmt = null;
@@ -158,12 +588,17 @@ public final class DefaultDatabase implements Database {
     }
   }
 
+  /**
+   * Connections are pooled, see {@link #getConnectionPoolStats()}. Closing the connection
+   * returns it to the pool. The size of pool is defined by the property "orchestrator.databasePoolSize",
+   * 10 by default.
+   */
   @Override
   public Connection openConnection() {
     if (started) {
       try {
-        LOG.info("Open connection");
-        return databaseClient.openConnection();
+        LOG.debug("Borrow connection");
+        return pool.borrow();
 
       } catch (SQLException e) {
         throw new IllegalStateException("Fail to open a JDBC connection", e);
@@ -172,11 +607,15 @@ public final class DefaultDatabase implements Database {
     throw new IllegalStateException("Can not open a JDBC connection as long as the database is not started");
   }
 
-  private DefaultDatabase truncate(String tableName, Connection connection) {
+  private static void checkLowerCase(String tableName) {
     if (!tableName.matches("[\\p{javaLowerCase}_]*")) {
       // ORCH-172
       throw new IllegalStateException("Table name [" + tableName + "] should be lowercase to avoid issues");
     }
+  }
+
+  private DefaultDatabase truncate(String tableName, Connection connection) {
+    checkLowerCase(tableName);
     try (Statement stmt = connection.createStatement()) {
       stmt.execute("TRUNCATE TABLE " + tableName);
       // commit is useless on some databases
@@ -223,6 +662,7 @@ public final class DefaultDatabase implements Database {
   }
 
   private DefaultDatabase dropAndCreateDatabase() {
+    tables = null;
     Connection connection = null;
     try {
       // get a connection as root, to be be allowed to kill the other connections
@@ -264,47 +704,79 @@ public final class DefaultDatabase implements Database {
   /**
    * kills all the user connections, but myself
    * requires elevated privilege, (rootLogin)
-   * some of the databases requires some delay to kill the connections, let's give several tries
+   * some of the databases requires some delay to kill the connections, so the remaining connections
+   * are polled again with an exponential backoff, until the maximum number of attempts or the
+   * deadline is reached.
+   *
+   * @return the duration of the cleanup, in milliseconds
    */
-  void killOtherConnections(Connection connection) throws SQLException, InterruptedException {
+  long killOtherConnections(Connection connection) throws SQLException, InterruptedException {
+    // pooled connections would be killed
+    pool.drain();
+
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(killTimeoutMs);
+    long backoffMs = KILL_INITIAL_BACKOFF_MS;
+    int attempts = 0;
+    List<String> spids = selectOtherConnections(connection);
+    while (!spids.isEmpty()) {
+      if (attempts >= killAttempts || System.nanoTime() - deadline >= 0) {
+        throw new SQLException("Some connections remains dangling after killing " + spids.toString());
+      }
+      attempts++;
+      killConnections(connection, spids);
 
-    final long kNbAttempts = 3;
-    final long kSecBetweenKillFactor = 5;
+      spids = selectOtherConnections(connection);
+      long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (!spids.isEmpty() && remainingMs > 0) {
+        LOG.warn("Killing of orphan requires additional attempt {}", spids);
+        TimeUnit.MILLISECONDS.sleep(Math.min(backoffMs, remainingMs));
+        backoffMs = Math.min(backoffMs * 2, KILL_MAX_BACKOFF_MS);
+        spids = selectOtherConnections(connection);
+      }
+    }
 
-    long attemptToGo = kNbAttempts;
-    List<String> spids = selectOtherConnections(connection);
-    while (attemptToGo > 0 && !spids.isEmpty()) {
-      // will make sleep 5 at loop 1, 10 at loop 2
-      TimeUnit.SECONDS.sleep(kSecBetweenKillFactor * (kNbAttempts - attemptToGo));
+    long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    if (attempts > 0) {
+      LOG.info("Orphan connections killed in {} ms ({} attempts)", durationMs, attempts);
+    }
+    return durationMs;
+  }
 
-      for (String spid : spids) {
+  /**
+   * Kill statements are sent in a single batch. Some drivers reject batches, for example
+   * when statements return results, then statements are executed one by one.
+   */
+  private void killConnections(Connection connection, List<String> spids) {
+    List<String> sqls = databaseClient.getKillConnectionsSql(spids);
+    LOG.warn("Kill JDBC orphans {}", sqls);
+    try (Statement stmt = connection.createStatement()) {
+      if (sqls.size() == 1) {
+        stmt.execute(sqls.get(0));
+      } else {
+        for (String sql : sqls) {
+          stmt.addBatch(sql);
+        }
+        stmt.executeBatch();
+      }
+      commitIfNeeded(connection);
+    } catch (SQLException batchError) {
+      LOG.debug("Fail to kill connections in batch, kill them one by one", batchError);
+      for (String sql : sqls) {
         try (Statement stmt = connection.createStatement()) {
-          String sql = databaseClient.getKillConnectionSql(spid);
-          LOG.warn("Kill JDBC orphan {}", sql);
           stmt.execute(sql);
-          // commit is useless on some databases
-          if (!connection.getAutoCommit()) {
-            connection.commit();
-          }
+          commitIfNeeded(connection);
         } catch (SQLException e) {
           LOG.error("Issue while killing connection", e);
         }
       }
-
-      // prepare next loop
-      spids = selectOtherConnections(connection);
-      if (!spids.isEmpty()) {
-        attemptToGo--;
-        LOG.warn("Killing of orphan requires additional attempt {}", spids);
-      } else {
-        // we are finished.
-        break;
-      }
     }
+  }
 
-    // final check
-    if (!spids.isEmpty()) {
-      throw new SQLException("Some connections remains dangling after killing " + spids.toString());
+  private static void commitIfNeeded(Connection connection) throws SQLException {
+    // commit is useless on some databases
+    if (!connection.getAutoCommit()) {
+      connection.commit();
     }
   }
 
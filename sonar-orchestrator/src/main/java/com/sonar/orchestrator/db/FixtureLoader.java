@@ -0,0 +1,181 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Loads fixture files into tables:
+ * <ul>
+ *   <li>CSV files are copied by the command COPY on PostgreSQL, through the CopyManager of JDBC driver</li>
+ *   <li>CSV files are read by the function CSVREAD on H2</li>
+ *   <li>otherwise rows are streamed and inserted by JDBC batches of {@code batchSize} rows</li>
+ * </ul>
+ * Names of columns are declared by fixtures, see {@link FixtureReader}.
+ */
+class FixtureLoader {
+
+  static final int DEFAULT_BATCH_SIZE = 1_000;
+  private static final Logger LOG = LoggerFactory.getLogger(FixtureLoader.class);
+
+  private final DatabaseClient client;
+  private final int batchSize;
+
+  FixtureLoader(DatabaseClient client, int batchSize) {
+    this.client = client;
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  /**
+   * @return the number of inserted rows
+   */
+  long load(Connection connection, String table, File fixture) throws IOException, SQLException {
+    if (FixtureReader.isCsv(fixture)) {
+      if (client instanceof PostgreSql) {
+        Long copied = copy(connection, table, fixture);
+        if (copied != null) {
+          return copied;
+        }
+      } else if (client instanceof H2) {
+        return csvRead(connection, table, fixture);
+      }
+    }
+    return batchInsert(connection, table, fixture);
+  }
+
+  long batchInsert(Connection connection, String table, File fixture) throws IOException, SQLException {
+    try (FixtureReader reader = FixtureReader.open(fixture)) {
+      List<String> columns = reader.getColumns();
+      if (columns.isEmpty()) {
+        return 0L;
+      }
+      int[] types = columnTypes(connection, table, columns);
+      String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + placeholders(columns.size()) + ")";
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        long count = 0;
+        String[] values;
+        while ((values = reader.next()) != null) {
+          for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+              statement.setNull(i + 1, types[i]);
+            } else {
+              statement.setObject(i + 1, values[i], types[i]);
+            }
+          }
+          statement.addBatch();
+          count++;
+          if (count % batchSize == 0) {
+            statement.executeBatch();
+            connection.commit();
+          }
+        }
+        statement.executeBatch();
+        connection.commit();
+        return count;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    }
+  }
+
+  private static int[] columnTypes(Connection connection, String table, List<String> columns) throws SQLException {
+    try (Statement statement = connection.createStatement();
+      ResultSet rs = statement.executeQuery("SELECT " + String.join(", ", columns) + " FROM " + table + " WHERE 1=0")) {
+      ResultSetMetaData metaData = rs.getMetaData();
+      int[] types = new int[columns.size()];
+      for (int i = 0; i < types.length; i++) {
+        types[i] = metaData.getColumnType(i + 1);
+      }
+      return types;
+    }
+  }
+
+  private static String placeholders(int count) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      sb.append(i == 0 ? "?" : ", ?");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The PostgreSQL driver is loaded at runtime, so CopyManager is called by reflection.
+   *
+   * @return the number of copied rows, or {@code null} if driver does not support COPY
+   */
+  private static Long copy(Connection connection, String table, File fixture) throws IOException, SQLException {
+    List<String> columns;
+    try (FixtureReader reader = FixtureReader.open(fixture)) {
+      columns = reader.getColumns();
+    }
+    Object copyManager;
+    Method copyIn;
+    try {
+      Connection physical = connection.unwrap(Connection.class);
+      copyManager = physical.getClass().getMethod("getCopyAPI").invoke(physical);
+      copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+    } catch (ReflectiveOperationException | SQLException e) {
+      LOG.debug("COPY is not supported by JDBC driver, rows are inserted by batches", e);
+      return null;
+    }
+    String sql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN WITH CSV HEADER";
+    try (Reader reader = Files.newBufferedReader(fixture.toPath(), UTF_8)) {
+      return (Long) copyIn.invoke(copyManager, sql, reader);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      }
+      throw new SQLException("Fail to execute " + sql, cause);
+    } catch (IllegalAccessException e) {
+      throw new SQLException("Fail to execute " + sql, e);
+    }
+  }
+
+  private static long csvRead(Connection connection, String table, File fixture) throws IOException, SQLException {
+    List<String> columns;
+    try (FixtureReader reader = FixtureReader.open(fixture)) {
+      columns = reader.getColumns();
+    }
+    String path = fixture.getAbsolutePath().replace("'", "''");
+    String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") SELECT * FROM CSVREAD('" + path + "', NULL, 'charset=UTF-8')";
+    try (Statement statement = connection.createStatement()) {
+      return statement.executeUpdate(sql);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+import javax.annotation.CheckForNull;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Streams the rows of a fixture file loaded by {@link FixtureLoader}. Rows are read one at a time,
+ * so that large files are not loaded in memory.
+ */
+interface FixtureReader extends Closeable {
+
+  /**
+   * Names of columns, as declared by the fixture
+   */
+  List<String> getColumns();
+
+  /**
+   * @return the values of the next row, in the order of {@link #getColumns()}, or {@code null}
+   * if all the rows have been read. Values are {@code null} for SQL NULL.
+   */
+  @CheckForNull
+  String[] next() throws IOException;
+
+  /**
+   * Format is guessed from the file extension: ".csv" or ".json". File is encoded in UTF-8.
+   */
+  static FixtureReader open(File file) throws IOException {
+    Reader reader = Files.newBufferedReader(file.toPath(), UTF_8);
+    try {
+      if (isCsv(file)) {
+        return new CsvFixtureReader(reader);
+      }
+      if (file.getName().toLowerCase(Locale.ENGLISH).endsWith(".json")) {
+        return new JsonFixtureReader(reader);
+      }
+      throw new IllegalArgumentException("Unsupported format of fixture " + file + ". Supported extensions are .csv and .json");
+    } catch (IOException | RuntimeException e) {
+      reader.close();
+      throw e;
+    }
+  }
+
+  static boolean isCsv(File file) {
+    return file.getName().toLowerCase(Locale.ENGLISH).endsWith(".csv");
+  }
+}
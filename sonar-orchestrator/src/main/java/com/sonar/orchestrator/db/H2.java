@@ -21,15 +21,90 @@ package com.sonar.orchestrator.db;
 
 import java.io.File;
 import java.net.InetAddress;
-import org.apache.commons.lang.StringUtils;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
 
 import static com.sonar.orchestrator.util.NetworkUtils.getNextAvailablePort;
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkArgument;
 import static java.lang.String.format;
 
 public final class H2 extends DatabaseClient {
 
-  private H2(Builder builder) {
+  /**
+   * Where the embedded database stores its data. See {@link H2Builder#setStorage(Storage, File)}.
+   *
+   * @since 3.16
+   */
+  public enum Storage {
+    /**
+     * Files in the directory data/ of SonarQube. This is the default mode.
+     */
+    DISK,
+
+    /**
+     * Memory of the web server process, which runs the embedded database. Data is lost
+     * when server is stopped, so database snapshots are not supported and fixtures are lost on restart.
+     */
+    MEMORY,
+
+    /**
+     * Files in a RAM-backed directory, for example /dev/shm on Linux. The whole data directory
+     * of SonarQube, including Elasticsearch indices, is moved to this directory.
+     */
+    TMPFS
+  }
+
+  static final String DATA_DIR_PROPERTY = "sonar.path.data";
+  private static final String PORT_PROPERTY = "sonar.embeddedDatabase.port";
+  private static final Pattern TCP_PORT = Pattern.compile("^jdbc:h2:tcp://[^/]*:(\\d+)/.*");
+  private static final String DISK_URL = "jdbc:h2:tcp://%s:%d/sonar;USER=sonar;PASSWORD=sonar";
+  private static final String MEMORY_URL = "jdbc:h2:tcp://%s:%d/mem:sonar;DB_CLOSE_DELAY=-1;USER=sonar;PASSWORD=sonar";
+  // Durability is useless in RAM: transaction log is disabled and page cache is increased to 128MB (default is 16MB)
+  private static final String TMPFS_URL = "jdbc:h2:tcp://%s:%d/sonar;LOG=0;CACHE_SIZE=131072;USER=sonar;PASSWORD=sonar";
+
+  private final Storage storage;
+  private final File dataDir;
+
+  private H2(H2Builder builder) {
     super(builder);
+    this.storage = builder.storage;
+    this.dataDir = builder.dataDir;
+  }
+
+  /**
+   * @since 3.16
+   */
+  public Storage getStorage() {
+    return storage;
+  }
+
+  /**
+   * Directory of the database files, or {@code null} if data is stored in memory.
+   *
+   * @since 3.16
+   */
+  @CheckForNull
+  public File getDataDir(File sonarHome) {
+    switch (storage) {
+      case MEMORY:
+        return null;
+      case TMPFS:
+        return dataDir;
+      default:
+        return new File(sonarHome, "data");
+    }
+  }
+
+  /**
+   * Releases the RAM used by {@link Storage#TMPFS}. Server must be stopped.
+   */
+  void deleteTmpfsDataDir() {
+    if (storage == Storage.TMPFS) {
+      FileUtils.deleteQuietly(dataDir);
+    }
   }
 
   @Override
@@ -52,14 +127,46 @@ public final class H2 extends DatabaseClient {
   }
 
   public static final class H2Builder extends Builder<H2> {
+    private final InetAddress address;
+    private final int port;
+    private Storage storage = Storage.DISK;
+    private File dataDir;
+
     private H2Builder() {
       // set default values
       setDropAndCreate(false);
       setDriverClassName("org.h2.Driver");
 
-      InetAddress address = InetAddress.getLoopbackAddress();
-      int port = getNextAvailablePort(address);
-      setUrl(format("jdbc:h2:tcp://%s:%d/sonar;USER=sonar;PASSWORD=sonar", address.getHostAddress(), port));
+      address = InetAddress.getLoopbackAddress();
+      port = getNextAvailablePort(address);
+      setUrl(format(DISK_URL, address.getHostAddress(), port));
+    }
+
+    /**
+     * Overrides the URL with the one of the requested storage.
+     *
+     * @param tmpfsDir the RAM-backed directory, required by {@link Storage#TMPFS}. The data directory
+     *                 of SonarQube is created in this directory.
+     * @since 3.16
+     */
+    public H2Builder setStorage(Storage storage, @Nullable File tmpfsDir) {
+      this.storage = storage;
+      String host = address.getHostAddress();
+      switch (storage) {
+        case MEMORY:
+          setUrl(format(MEMORY_URL, host, port));
+          break;
+        case TMPFS:
+          checkArgument(tmpfsDir != null, "Directory is required by H2 storage %s", storage);
+          dataDir = new File(tmpfsDir, "sonarqube-data-" + port);
+          addProperty(DATA_DIR_PROPERTY, dataDir.getAbsolutePath());
+          setUrl(format(TMPFS_URL, host, port));
+          break;
+        default:
+          setUrl(format(DISK_URL, host, port));
+          break;
+      }
+      return this;
     }
 
     @Override
@@ -76,9 +183,10 @@ public final class H2 extends DatabaseClient {
 
     @Override
     public Builder<H2> setUrl(String s) {
-      String path = StringUtils.substringAfterLast(s, ":");
-      String port = StringUtils.substringBefore(path, "/");
-      addProperty("sonar.embeddedDatabase.port", port);
+      Matcher matcher = TCP_PORT.matcher(s);
+      if (matcher.matches()) {
+        addProperty(PORT_PROPERTY, matcher.group(1));
+      }
       return super.setUrl(s);
     }
 
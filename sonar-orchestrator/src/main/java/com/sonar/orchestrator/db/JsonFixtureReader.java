@@ -0,0 +1,206 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkState;
+
+/**
+ * JSON array of flat objects, for example {@code [{"kee": "struts", "enabled": true}, {"kee": "log4j", "enabled": false}]}.
+ * Columns are the keys of the first object. Missing keys are SQL NULL. Nested objects and arrays
+ * are not supported. Numbers and booleans are converted to strings, the database converting
+ * them to the type of columns.
+ */
+class JsonFixtureReader implements FixtureReader {
+
+  private final PushbackReader in;
+  private final List<String> columns = new ArrayList<>();
+  private Map<String, String> first;
+  private boolean end = false;
+  private int rows = 0;
+
+  JsonFixtureReader(Reader reader) throws IOException {
+    this.in = new PushbackReader(reader, 1);
+    expect('[');
+    int c = readNonWhitespace();
+    check(c != -1, "']' expected");
+    if (c == ']') {
+      end = true;
+    } else {
+      in.unread(c);
+      first = readObject();
+      columns.addAll(first.keySet());
+    }
+  }
+
+  @Override
+  public List<String> getColumns() {
+    return Collections.unmodifiableList(columns);
+  }
+
+  @Override
+  @CheckForNull
+  public String[] next() throws IOException {
+    Map<String, String> object;
+    if (first != null) {
+      object = first;
+      first = null;
+    } else {
+      if (end) {
+        return null;
+      }
+      int c = readNonWhitespace();
+      if (c == ']') {
+        end = true;
+        return null;
+      }
+      check(c == ',', "',' or ']' expected");
+      object = readObject();
+    }
+    check(columns.containsAll(object.keySet()), "keys are not declared by the first object: " + object.keySet());
+    rows++;
+    String[] values = new String[columns.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = object.get(columns.get(i));
+    }
+    return values;
+  }
+
+  private Map<String, String> readObject() throws IOException {
+    expect('{');
+    Map<String, String> object = new LinkedHashMap<>();
+    int c = readNonWhitespace();
+    if (c == '}') {
+      return object;
+    }
+    in.unread(c);
+    while (true) {
+      expect('"');
+      String key = readString();
+      expect(':');
+      object.put(key, readValue());
+      c = readNonWhitespace();
+      if (c == '}') {
+        return object;
+      }
+      check(c == ',', "',' or '}' expected");
+    }
+  }
+
+  @CheckForNull
+  private String readValue() throws IOException {
+    int c = readNonWhitespace();
+    if (c == '"') {
+      return readString();
+    }
+    check(c != '{' && c != '[', "nested objects and arrays are not supported");
+    StringBuilder literal = new StringBuilder();
+    while (c != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+      literal.append((char) c);
+      c = in.read();
+    }
+    if (c != -1) {
+      in.unread(c);
+    }
+    check(literal.length() > 0, "value expected");
+    String value = literal.toString();
+    return "null".equals(value) ? null : value;
+  }
+
+  private String readString() throws IOException {
+    StringBuilder value = new StringBuilder();
+    while (true) {
+      int c = in.read();
+      check(c != -1, "unterminated string");
+      if (c == '"') {
+        return value.toString();
+      }
+      if (c == '\\') {
+        value.append(readEscaped());
+      } else {
+        value.append((char) c);
+      }
+    }
+  }
+
+  private char readEscaped() throws IOException {
+    int c = in.read();
+    switch (c) {
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        char[] hex = new char[4];
+        for (int i = 0; i < hex.length; i++) {
+          int h = in.read();
+          check(h != -1, "unterminated string");
+          hex[i] = (char) h;
+        }
+        try {
+          return (char) Integer.parseInt(new String(hex), 16);
+        } catch (NumberFormatException e) {
+          throw new IllegalStateException("Invalid JSON fixture: bad unicode escape \\u" + new String(hex), e);
+        }
+      case '"':
+      case '\\':
+      case '/':
+        return (char) c;
+      default:
+        throw new IllegalStateException("Invalid JSON fixture: bad escape character in string");
+    }
+  }
+
+  private void expect(char expected) throws IOException {
+    check(readNonWhitespace() == expected, "'" + expected + "' expected");
+  }
+
+  private int readNonWhitespace() throws IOException {
+    int c = in.read();
+    while (c != -1 && Character.isWhitespace(c)) {
+      c = in.read();
+    }
+    return c;
+  }
+
+  private void check(boolean expression, String message) {
+    checkState(expression, "Invalid JSON fixture: %s (object %s)", message, rows + 1);
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
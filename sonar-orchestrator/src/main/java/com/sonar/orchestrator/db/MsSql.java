@@ -19,6 +19,8 @@
  */
 package com.sonar.orchestrator.db;
 
+import java.util.List;
+
 public final class MsSql extends DatabaseClient {
 
   private MsSql(Builder builder) {
@@ -79,6 +81,32 @@ public final class MsSql extends DatabaseClient {
     };
   }
 
+  /**
+   * Snapshot is a backup file written in the default backup directory of server. A single file is
+   * kept per database, whatever the snapshot name.
+   */
+  @Override
+  public String[] getCreateSnapshotDdl(String snapshotName, List<String> tables) {
+    return new String[] {
+      "BACKUP DATABASE [" + getLogin() + "] TO DISK = N'" + backupFile() + "' WITH INIT, COPY_ONLY"};
+  }
+
+  @Override
+  public String[] getRestoreSnapshotDdl(String snapshotName, List<String> tables) {
+    return new String[] {
+      "USE [master]",
+      "RESTORE DATABASE [" + getLogin() + "] FROM DISK = N'" + backupFile() + "' WITH REPLACE",
+      // re-map the database user to the login, in case the login has been re-created
+      "USE [" + getLogin() + "]",
+      "ALTER USER [" + getLogin() + "] WITH LOGIN = [" + getLogin() + "]",
+      "USE [master]"
+    };
+  }
+
+  private String backupFile() {
+    return getLogin() + "-orchestrator-snapshot.bak";
+  }
+
   @Override
   public String getSelectConnectionIdsSql() {
     return "SELECT spid as id FROM sys.sysprocesses "
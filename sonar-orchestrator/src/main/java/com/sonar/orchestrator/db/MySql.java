@@ -19,6 +19,9 @@
  */
 package com.sonar.orchestrator.db;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public final class MySql extends DatabaseClient {
 
   private MySql(Builder builder) {
@@ -68,6 +71,43 @@ public final class MySql extends DatabaseClient {
     };
   }
 
+  /**
+   * Tables are copied one by one, with their indexes.
+   */
+  @Override
+  public String[] getCreateSnapshotDdl(String snapshotName, List<String> tables) {
+    return copyDatabase(getSchema(), snapshotName, tables);
+  }
+
+  @Override
+  public String[] getRestoreSnapshotDdl(String snapshotName, List<String> tables) {
+    return copyDatabase(snapshotName, getSchema(), tables);
+  }
+
+  @Override
+  public String[] getDropSnapshotDdl(String snapshotName) {
+    return new String[] {"drop database IF EXISTS `" + snapshotName + "`"};
+  }
+
+  private static String[] copyDatabase(String from, String to, List<String> tables) {
+    List<String> ddls = new ArrayList<>();
+    ddls.add("drop database IF EXISTS `" + to + "`");
+    ddls.add("create database `" + to + "`");
+    for (String table : tables) {
+      ddls.add(String.format("create table `%s`.`%s` like `%s`.`%s`", to, table, from, table));
+      ddls.add(String.format("insert into `%s`.`%s` select * from `%s`.`%s`", to, table, from, table));
+    }
+    return ddls.toArray(new String[ddls.size()]);
+  }
+
+  /**
+   * TRUNCATE is a DDL statement that implicitly commits
+   */
+  @Override
+  public int getTruncateParallelism() {
+    return 4;
+  }
+
   @Override
   public String getSelectConnectionIdsSql() {
     return "SELECT ID FROM information_schema.PROCESSLIST WHERE USER = '" + getLogin() + "'";
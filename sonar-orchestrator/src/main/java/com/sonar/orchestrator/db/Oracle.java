@@ -19,6 +19,8 @@
  */
 package com.sonar.orchestrator.db;
 
+import java.util.Locale;
+
 public final class Oracle extends DatabaseClient {
 
   private Oracle(Builder builder) {
@@ -70,6 +72,22 @@ public final class Oracle extends DatabaseClient {
       "GRANT CREATE SEQUENCE to " + getLogin()};
   }
 
+  /**
+   * TRUNCATE is a DDL statement that implicitly commits
+   */
+  @Override
+  public int getTruncateParallelism() {
+    return 4;
+  }
+
+  /**
+   * The schema is the user
+   */
+  @Override
+  public String getMetadataSchema() {
+    return getLogin().toUpperCase(Locale.ENGLISH);
+  }
+
   @Override
   public String getSelectConnectionIdsSql() {
     return "SELECT SID || ',' || SERIAL# AS ID  FROM sys.v_$session WHERE USERNAME = '" + getLogin().toUpperCase() + "'";
@@ -19,6 +19,9 @@
  */
 package com.sonar.orchestrator.db;
 
+import java.util.Collections;
+import java.util.List;
+
 public final class PostgreSql extends DatabaseClient {
 
   private PostgreSql(Builder builder) {
@@ -64,6 +67,36 @@ public final class PostgreSql extends DatabaseClient {
         getLogin(), getPassword())};
   }
 
+  /**
+   * The database is used as a template, so it is copied at file level by server.
+   */
+  @Override
+  public String[] getCreateSnapshotDdl(String snapshotName, List<String> tables) {
+    return new String[] {
+      "drop database IF EXISTS \"" + snapshotName + "\"",
+      "create database \"" + snapshotName + "\" template \"" + getLogin() + "\""};
+  }
+
+  @Override
+  public String[] getRestoreSnapshotDdl(String snapshotName, List<String> tables) {
+    return new String[] {
+      "drop database IF EXISTS \"" + getLogin() + "\"",
+      "create database \"" + getLogin() + "\" template \"" + snapshotName + "\" owner \"" + getLogin() + "\""};
+  }
+
+  @Override
+  public String[] getDropSnapshotDdl(String snapshotName) {
+    return new String[] {"drop database IF EXISTS \"" + snapshotName + "\""};
+  }
+
+  /**
+   * All the tables are truncated by a single request
+   */
+  @Override
+  public String[] getTruncateSql(List<String> tables) {
+    return new String[] {"TRUNCATE TABLE " + String.join(", ", tables)};
+  }
+
   @Override
   public String getSelectConnectionIdsSql() {
     if(getDBMajorVersion()==8) {
@@ -79,4 +112,12 @@ public final class PostgreSql extends DatabaseClient {
 
   }
 
+  /**
+   * A single query, as the JDBC driver does not accept queries in batches
+   */
+  @Override
+  public List<String> getKillConnectionsSql(List<String> processIDs) {
+    return Collections.singletonList("SELECT pg_terminate_backend(id) FROM unnest(ARRAY[" + String.join(",", processIDs) + "]) AS id");
+  }
+
 }
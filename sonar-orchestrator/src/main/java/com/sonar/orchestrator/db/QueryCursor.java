@@ -0,0 +1,161 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterates over the rows of a {@link SqlQuery}. The JDBC resources, including the connection,
+ * are released by {@link #close()}.
+ */
+class QueryCursor implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(QueryCursor.class);
+
+  private final SqlQuery query;
+  private final Connection connection;
+  private PreparedStatement statement;
+  private ResultSet rs;
+  private ResultSetRow row;
+  private boolean closed = false;
+
+  private QueryCursor(SqlQuery query, Connection connection) {
+    this.query = query;
+    this.connection = connection;
+  }
+
+  static QueryCursor execute(SqlQuery query, Connection connection) {
+    QueryCursor cursor = new QueryCursor(query, connection);
+    try {
+      cursor.execute();
+      return cursor;
+    } catch (SQLException | RuntimeException e) {
+      cursor.close();
+      throw new IllegalStateException("Fail to execute SQL request: " + query, e);
+    }
+  }
+
+  private void execute() throws SQLException {
+    LOG.debug("Execute: {}", query);
+    if (query.getFetchSize() != 0) {
+      // required by PostgreSQL to load rows by chunks. Transaction is rolled back when connection is released.
+      connection.setAutoCommit(false);
+    }
+    statement = connection.prepareStatement(query.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    if (query.getFetchSize() != 0) {
+      statement.setFetchSize(query.getFetchSize());
+    }
+    bind(statement, query.getParams());
+    rs = statement.executeQuery();
+    row = new ResultSetRow(rs);
+  }
+
+  static void bind(PreparedStatement statement, List<Object> params) throws SQLException {
+    for (int i = 0; i < params.size(); i++) {
+      Object param = params.get(i);
+      if (param == null) {
+        statement.setNull(i + 1, Types.VARCHAR);
+      } else {
+        statement.setObject(i + 1, param);
+      }
+    }
+  }
+
+  boolean next() {
+    if (closed) {
+      return false;
+    }
+    try {
+      if (rs.next()) {
+        return true;
+      }
+      close();
+      return false;
+    } catch (SQLException e) {
+      close();
+      throw new IllegalStateException("Fail to read results of SQL request: " + query, e);
+    }
+  }
+
+  Row row() {
+    return row;
+  }
+
+  void forEach(Consumer<Row> handler) {
+    try {
+      while (next()) {
+        handler.accept(row);
+      }
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * Resources are released when all the rows are consumed or when stream is closed.
+   */
+  <T> Stream<T> stream(Function<Row, T> mapper) {
+    Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+      @Override
+      public boolean tryAdvance(Consumer<? super T> action) {
+        if (next()) {
+          action.accept(mapper.apply(row));
+          return true;
+        }
+        return false;
+      }
+    };
+    return StreamSupport.stream(spliterator, false).onClose(this::close);
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    closeQuietly(rs);
+    closeQuietly(statement);
+    closeQuietly(connection);
+  }
+
+  private static void closeQuietly(AutoCloseable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (Exception e) {
+        LOG.warn("Fail to close JDBC resource", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@link Row} backed by a {@link ResultSet}. Column metadata is loaded once per query.
+ */
+class ResultSetRow implements Row {
+
+  private final ResultSet rs;
+  private final String[] columnNames;
+  private final Map<String, Integer> columnIndexes = new HashMap<>();
+
+  ResultSetRow(ResultSet rs) throws SQLException {
+    this.rs = rs;
+    ResultSetMetaData metaData = rs.getMetaData();
+    this.columnNames = new String[metaData.getColumnCount()];
+    for (int i = 1; i <= columnNames.length; i++) {
+      String name = metaData.getColumnLabel(i).toUpperCase(Locale.ENGLISH);
+      columnNames[i - 1] = name;
+      columnIndexes.putIfAbsent(name, i);
+    }
+  }
+
+  @Override
+  public int getColumnCount() {
+    return columnNames.length;
+  }
+
+  @Override
+  public String getColumnName(int columnIndex) {
+    return columnNames[columnIndex - 1];
+  }
+
+  @Override
+  public int getColumnIndex(String columnName) {
+    Integer index = columnIndexes.get(columnName);
+    if (index == null) {
+      index = columnIndexes.get(columnName.toUpperCase(Locale.ENGLISH));
+    }
+    if (index == null) {
+      throw new IllegalArgumentException("Column " + columnName + " does not exist. Available columns are " + String.join(", ", columnNames));
+    }
+    return index;
+  }
+
+  @Override
+  public String getString(int columnIndex) {
+    try {
+      return rs.getString(columnIndex);
+    } catch (SQLException e) {
+      throw fail(columnIndex, e);
+    }
+  }
+
+  @Override
+  public String getString(String columnName) {
+    return getString(getColumnIndex(columnName));
+  }
+
+  @Override
+  public long getLong(int columnIndex) {
+    try {
+      return rs.getLong(columnIndex);
+    } catch (SQLException e) {
+      throw fail(columnIndex, e);
+    }
+  }
+
+  @Override
+  public long getLong(String columnName) {
+    return getLong(getColumnIndex(columnName));
+  }
+
+  @Override
+  public int getInt(int columnIndex) {
+    try {
+      return rs.getInt(columnIndex);
+    } catch (SQLException e) {
+      throw fail(columnIndex, e);
+    }
+  }
+
+  @Override
+  public int getInt(String columnName) {
+    return getInt(getColumnIndex(columnName));
+  }
+
+  @Override
+  public double getDouble(int columnIndex) {
+    try {
+      return rs.getDouble(columnIndex);
+    } catch (SQLException e) {
+      throw fail(columnIndex, e);
+    }
+  }
+
+  @Override
+  public double getDouble(String columnName) {
+    return getDouble(getColumnIndex(columnName));
+  }
+
+  @Override
+  public boolean getBoolean(int columnIndex) {
+    try {
+      return rs.getBoolean(columnIndex);
+    } catch (SQLException e) {
+      throw fail(columnIndex, e);
+    }
+  }
+
+  @Override
+  public boolean getBoolean(String columnName) {
+    return getBoolean(getColumnIndex(columnName));
+  }
+
+  @Override
+  public Object getObject(int columnIndex) {
+    try {
+      return rs.getObject(columnIndex);
+    } catch (SQLException e) {
+      throw fail(columnIndex, e);
+    }
+  }
+
+  @Override
+  public Object getObject(String columnName) {
+    return getObject(getColumnIndex(columnName));
+  }
+
+  @Override
+  public boolean wasNull() {
+    try {
+      return rs.wasNull();
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to read result set", e);
+    }
+  }
+
+  private IllegalStateException fail(int columnIndex, SQLException e) {
+    return new IllegalStateException("Fail to read column " + columnIndex + " (" + getColumnName(columnIndex) + ")", e);
+  }
+}
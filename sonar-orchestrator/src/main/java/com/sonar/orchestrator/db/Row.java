@@ -0,0 +1,81 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Current row of a {@link SqlQuery}. The same instance is used for all the rows of the
+ * query, so it must not be kept after the call of row handler. Columns are designated by
+ * their index, starting from 1, or by their case-insensitive name. Getters by index
+ * do not allocate memory for primitive types.
+ * <p/>
+ * Getters of primitive types return 0 or false if value is null. Use {@link #wasNull()}
+ * to distinguish them.
+ *
+ * @since 3.16
+ */
+public interface Row {
+
+  int getColumnCount();
+
+  /**
+   * @return the upper-case name of column
+   */
+  String getColumnName(int columnIndex);
+
+  /**
+   * @throws IllegalArgumentException if the column does not exist
+   */
+  int getColumnIndex(String columnName);
+
+  @CheckForNull
+  String getString(int columnIndex);
+
+  @CheckForNull
+  String getString(String columnName);
+
+  long getLong(int columnIndex);
+
+  long getLong(String columnName);
+
+  int getInt(int columnIndex);
+
+  int getInt(String columnName);
+
+  double getDouble(int columnIndex);
+
+  double getDouble(String columnName);
+
+  boolean getBoolean(int columnIndex);
+
+  boolean getBoolean(String columnName);
+
+  @CheckForNull
+  Object getObject(int columnIndex);
+
+  @CheckForNull
+  Object getObject(String columnName);
+
+  /**
+   * @return true if the last read value is null
+   */
+  boolean wasNull();
+}
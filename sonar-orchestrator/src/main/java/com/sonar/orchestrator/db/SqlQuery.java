@@ -0,0 +1,83 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+import static java.util.Arrays.asList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * SQL request with parameters, executed by {@link Database#forEachRow(SqlQuery, java.util.function.Consumer)}
+ * and {@link Database#stream(SqlQuery, java.util.function.Function)}.
+ * <p/>
+ * Example: {@code SqlQuery.create("select kee from projects where qualifier = ?", "TRK").setFetchSize(1000)}
+ *
+ * @since 3.16
+ */
+public final class SqlQuery {
+
+  private final String sql;
+  private final List<Object> params;
+  private int fetchSize = 0;
+
+  private SqlQuery(String sql, List<Object> params) {
+    this.sql = requireNonNull(sql, "SQL request must be set");
+    this.params = params;
+  }
+
+  /**
+   * @param params values of the placeholders "?", in the same order. Nulls are supported.
+   */
+  public static SqlQuery create(String sql, @Nullable Object... params) {
+    List<Object> list = params == null ? new ArrayList<>() : new ArrayList<>(asList(params));
+    return new SqlQuery(sql, list);
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  public List<Object> getParams() {
+    return Collections.unmodifiableList(params);
+  }
+
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /**
+   * Number of rows loaded from database at once. Zero, the default value, keeps the default value
+   * of JDBC driver, which loads all the rows at once on PostgreSQL and MySQL. Note that MySQL
+   * streams rows only when value is {@link Integer#MIN_VALUE}.
+   */
+  public SqlQuery setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return params.isEmpty() ? sql : (sql + " " + params);
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepared statements of a physical connection of {@link ConnectionPool}. Statements
+ * are not closed but returned to cache, so that the requests executed many times with different
+ * parameters are parsed and planned only once by database.
+ * <ul>
+ *   <li>{@link PreparedStatement#close()} closes the last result set, clears parameters and restores
+ *   the initial fetch size, max rows and query timeout</li>
+ *   <li>least recently used statements are closed when more than {@code maxSize} statements are cached</li>
+ *   <li>a statement already in use, for example by nested requests, is prepared again</li>
+ * </ul>
+ */
+class StatementCache {
+
+  static final int DEFAULT_MAX_SIZE = 50;
+  private static final Logger LOG = LoggerFactory.getLogger(StatementCache.class);
+
+  private final int maxSize;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+  private final Map<String, PreparedStatement> idle;
+
+  StatementCache(int maxSize, AtomicLong hits, AtomicLong misses) {
+    this.maxSize = maxSize;
+    this.hits = hits;
+    this.misses = misses;
+    this.idle = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * @param owner the connection returned by {@link PreparedStatement#getConnection()}
+   */
+  PreparedStatement prepare(Connection physical, Connection owner, String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+    String key = resultSetType + ":" + resultSetConcurrency + ":" + sql;
+    PreparedStatement statement;
+    synchronized (this) {
+      statement = idle.remove(key);
+    }
+    if (statement == null) {
+      misses.incrementAndGet();
+      statement = physical.prepareStatement(sql, resultSetType, resultSetConcurrency);
+    } else {
+      hits.incrementAndGet();
+    }
+    return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(), new Class[] {PreparedStatement.class},
+      new CachedStatementHandler(key, statement, owner));
+  }
+
+  private void release(String key, PreparedStatement statement, Limits initialLimits) {
+    if (maxSize <= 0 || !reset(statement, initialLimits)) {
+      closeQuietly(statement);
+      return;
+    }
+    List<PreparedStatement> toClose = new ArrayList<>();
+    synchronized (this) {
+      PreparedStatement previous = idle.put(key, statement);
+      if (previous != null) {
+        toClose.add(previous);
+      }
+      Iterator<PreparedStatement> eldest = idle.values().iterator();
+      while (idle.size() > maxSize) {
+        toClose.add(eldest.next());
+        eldest.remove();
+      }
+    }
+    toClose.forEach(StatementCache::closeQuietly);
+  }
+
+  private static boolean reset(PreparedStatement statement, Limits initialLimits) {
+    try {
+      if (statement.isClosed()) {
+        return false;
+      }
+      statement.clearParameters();
+      statement.clearWarnings();
+      initialLimits.restore(statement);
+      return true;
+    } catch (SQLException e) {
+      LOG.debug("Fail to reset JDBC statement", e);
+      return false;
+    }
+  }
+
+  /**
+   * Closes the cached statements. Statements in use are closed when released.
+   */
+  void closeAll() {
+    List<PreparedStatement> toClose;
+    synchronized (this) {
+      toClose = new ArrayList<>(idle.values());
+      idle.clear();
+    }
+    toClose.forEach(StatementCache::closeQuietly);
+  }
+
+  synchronized int size() {
+    return idle.size();
+  }
+
+  private static void closeQuietly(AutoCloseable closeable) {
+    try {
+      closeable.close();
+    } catch (Exception e) {
+      LOG.debug("Fail to close JDBC resource", e);
+    }
+  }
+
+  private class CachedStatementHandler implements InvocationHandler {
+    private final String key;
+    private final PreparedStatement statement;
+    private final Connection owner;
+    private final Limits initialLimits;
+    private ResultSet lastResultSet;
+    private boolean closed = false;
+
+    CachedStatementHandler(String key, PreparedStatement statement, Connection owner) throws SQLException {
+      this.key = key;
+      this.statement = statement;
+      this.owner = owner;
+      this.initialLimits = new Limits(statement);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          if (!closed) {
+            closed = true;
+            if (lastResultSet != null) {
+              closeQuietly(lastResultSet);
+            }
+            release(key, statement, initialLimits);
+          }
+          return null;
+        case "isClosed":
+          return closed || statement.isClosed();
+        case "getConnection":
+          return owner;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Cached[" + statement + "]";
+        default:
+          if (closed) {
+            throw new SQLException("Statement is closed");
+          }
+          try {
+            Object result = method.invoke(statement, args);
+            if (result instanceof ResultSet) {
+              lastResultSet = (ResultSet) result;
+            }
+            return result;
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+      }
+    }
+  }
+
+  /**
+   * Settings of a statement that may be changed by callers, and that must not leak to the next users
+   */
+  private static class Limits {
+    private final int fetchSize;
+    private final int maxRows;
+    private final int queryTimeout;
+
+    Limits(PreparedStatement statement) throws SQLException {
+      this.fetchSize = statement.getFetchSize();
+      this.maxRows = statement.getMaxRows();
+      this.queryTimeout = statement.getQueryTimeout();
+    }
+
+    void restore(PreparedStatement statement) throws SQLException {
+      if (statement.getFetchSize() != fetchSize) {
+        statement.setFetchSize(fetchSize);
+      }
+      if (statement.getMaxRows() != maxRows) {
+        statement.setMaxRows(maxRows);
+      }
+      if (statement.getQueryTimeout() != queryTimeout) {
+        statement.setQueryTimeout(queryTimeout);
+      }
+    }
+  }
+}
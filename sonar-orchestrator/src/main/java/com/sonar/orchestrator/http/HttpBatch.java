@@ -0,0 +1,139 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.http;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkArgument;
+
+/**
+ * Executes many {@link HttpCall}s concurrently, at most {@code maxConcurrency} at the same time.
+ * A failed call does not stop the others. Responses and failures are collected per call in
+ * {@link HttpBatchResult}.
+ * <p/>
+ * Note that the dispatcher of {@link HttpClient} also limits the number of concurrent requests
+ * per host (5 by default, see property "orchestrator.httpMaxRequestsPerHost").
+ * <p/>
+ * Example:
+ * <pre>
+ * List&lt;HttpCall&gt; calls = keys.stream()
+ *   .map(key -&gt; server.newHttpCall("/api/projects/create").setMethod(HttpMethod.POST).setAdminCredentials().setParam("key", key).setParam("name", key))
+ *   .collect(Collectors.toList());
+ * HttpBatch.execute(calls, 10).failIfAnyFailure();
+ * </pre>
+ *
+ * @since 3.16
+ */
+public final class HttpBatch {
+
+  private HttpBatch() {
+    // only static methods
+  }
+
+  /**
+   * Blocks until all the calls are completed.
+   */
+  public static HttpBatchResult execute(Collection<HttpCall> calls, int maxConcurrency) {
+    try {
+      return executeAsync(calls, maxConcurrency).join();
+    } catch (CompletionException e) {
+      // not expected, as failures of calls are collected
+      throw new IllegalStateException("Fail to execute HTTP calls", e.getCause());
+    }
+  }
+
+  public static CompletableFuture<HttpBatchResult> executeAsync(Collection<HttpCall> calls, int maxConcurrency) {
+    checkArgument(maxConcurrency > 0, "Max concurrency must be positive: %s", maxConcurrency);
+    Execution execution = new Execution(new ArrayList<>(calls));
+    if (calls.isEmpty()) {
+      execution.result.complete(execution.toResult());
+    } else {
+      for (int i = 0; i < Math.min(maxConcurrency, calls.size()); i++) {
+        execution.launchNext();
+      }
+    }
+    return execution.result;
+  }
+
+  private static class Execution {
+    private final List<HttpCall> calls;
+    private final HttpResponse[] responses;
+    private final Throwable[] failures;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger pendingLaunches = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final CompletableFuture<HttpBatchResult> result = new CompletableFuture<>();
+
+    Execution(List<HttpCall> calls) {
+      this.calls = calls;
+      this.responses = new HttpResponse[calls.size()];
+      this.failures = new Throwable[calls.size()];
+      this.remaining = new AtomicInteger(calls.size());
+    }
+
+    /**
+     * Calls can complete synchronously, for example when they fail before being sent. Their completion
+     * then requests the next launch from the thread that is already launching, which executes it in its
+     * loop instead of recursively.
+     */
+    void launchNext() {
+      if (pendingLaunches.getAndIncrement() > 0) {
+        return;
+      }
+      do {
+        launch(next.getAndIncrement());
+      } while (pendingLaunches.decrementAndGet() > 0);
+    }
+
+    private void launch(int index) {
+      if (index >= calls.size()) {
+        return;
+      }
+      CompletableFuture<HttpResponse> future;
+      try {
+        future = calls.get(index).executeAsync();
+      } catch (RuntimeException e) {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+      }
+      future.whenComplete((response, failure) -> {
+        if (failure == null) {
+          responses[index] = response;
+        } else {
+          failures[index] = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        }
+        if (remaining.decrementAndGet() == 0) {
+          result.complete(toResult());
+        } else {
+          launchNext();
+        }
+      });
+    }
+
+    HttpBatchResult toResult() {
+      return new HttpBatchResult(calls, responses, failures);
+    }
+  }
+}
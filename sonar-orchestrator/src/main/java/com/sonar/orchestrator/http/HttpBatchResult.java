@@ -0,0 +1,131 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+
+/**
+ * Responses and failures of the calls executed by {@link HttpBatch}, in the order of calls.
+ *
+ * @since 3.16
+ */
+public final class HttpBatchResult {
+
+  private static final int MAX_REPORTED_FAILURES = 10;
+
+  private final List<HttpCall> calls;
+  private final HttpResponse[] responses;
+  private final Throwable[] failures;
+
+  HttpBatchResult(List<HttpCall> calls, HttpResponse[] responses, Throwable[] failures) {
+    this.calls = Collections.unmodifiableList(calls);
+    this.responses = responses;
+    this.failures = failures;
+  }
+
+  public int size() {
+    return calls.size();
+  }
+
+  public HttpCall getCall(int index) {
+    return calls.get(index);
+  }
+
+  /**
+   * @return the response of call, or {@code null} if call failed
+   */
+  @CheckForNull
+  public HttpResponse getResponse(int index) {
+    return responses[index];
+  }
+
+  /**
+   * @return the failure of call, or {@code null} if call succeeded. Unsuccessful responses
+   * are {@link HttpException}s.
+   */
+  @CheckForNull
+  public Throwable getFailure(int index) {
+    return failures[index];
+  }
+
+  /**
+   * Responses of the successful calls, in the order of calls
+   */
+  public List<HttpResponse> getResponses() {
+    List<HttpResponse> result = new ArrayList<>();
+    for (HttpResponse response : responses) {
+      if (response != null) {
+        result.add(response);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Failures of the failed calls, in the order of calls
+   */
+  public Map<HttpCall, Throwable> getFailures() {
+    Map<HttpCall, Throwable> result = new LinkedHashMap<>();
+    for (int i = 0; i < failures.length; i++) {
+      if (failures[i] != null) {
+        result.put(calls.get(i), failures[i]);
+      }
+    }
+    return result;
+  }
+
+  public boolean isSuccessful() {
+    for (Throwable failure : failures) {
+      if (failure != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @throws IllegalStateException if at least one call failed. The failures are attached as suppressed exceptions.
+   */
+  public HttpBatchResult failIfAnyFailure() {
+    Map<HttpCall, Throwable> failuresByCall = getFailures();
+    if (failuresByCall.isEmpty()) {
+      return this;
+    }
+    StringBuilder message = new StringBuilder();
+    message.append(failuresByCall.size()).append(" of ").append(calls.size()).append(" HTTP calls failed:");
+    int reported = 0;
+    for (Map.Entry<HttpCall, Throwable> entry : failuresByCall.entrySet()) {
+      if (reported == MAX_REPORTED_FAILURES) {
+        message.append("\n  ...");
+        break;
+      }
+      message.append("\n  ").append(entry.getKey().getBaseUrl()).append(": ").append(entry.getValue().getMessage());
+      reported++;
+    }
+    IllegalStateException exception = new IllegalStateException(message.toString());
+    failuresByCall.values().stream().limit(MAX_REPORTED_FAILURES).forEach(exception::addSuppressed);
+    throw exception;
+  }
+}
@@ -19,16 +19,17 @@
  */
 package com.sonar.orchestrator.http;
 
+import com.sonar.orchestrator.util.Checksums;
 import java.io.File;
 import java.io.IOException;
-import java.net.ProtocolException;
-import java.net.SocketException;
-import java.net.SocketTimeoutException;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import javax.annotation.Nullable;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.Credentials;
 import okhttp3.FormBody;
 import okhttp3.HttpUrl;
@@ -50,15 +51,17 @@ public class HttpCall {
 
   private static final String DEFAULT_USER_AGENT = "Orchestrator";
 
-  private final OkHttpClient okClient;
+  private final HttpClient client;
   private final HttpUrl baseUrl;
   private HttpMethod method = HttpMethod.GET;
   private final Map<String, String> parameters = new LinkedHashMap<>();
   private final Map<String, String> headers = new LinkedHashMap<>();
   private Long timeoutMs = null;
+  private String expectedChecksumAlgorithm = null;
+  private String expectedChecksum = null;
 
-  HttpCall(OkHttpClient okClient, HttpUrl baseUrl) {
-    this.okClient = okClient;
+  HttpCall(HttpClient client, HttpUrl baseUrl) {
+    this.client = client;
     this.baseUrl = baseUrl;
     this.headers.put("User-Agent", DEFAULT_USER_AGENT);
   }
@@ -131,6 +134,21 @@ public class HttpCall {
     return this;
   }
 
+  /**
+   * Checksum to be verified by {@link #downloadToFile(File)} and {@link #downloadToDirectory(File)}.
+   * It is computed while downloading.
+   *
+   * @param algorithm for example "SHA-256" or "MD5"
+   * @param hexChecksum the expected checksum, in hexadecimal
+   * @since 3.16
+   */
+  public HttpCall setExpectedChecksum(String algorithm, String hexChecksum) {
+    Checksums.newDigest(algorithm);
+    this.expectedChecksumAlgorithm = algorithm;
+    this.expectedChecksum = hexChecksum;
+    return this;
+  }
+
   public HttpResponse execute() {
     Request okRequest = buildOkHttpRequest();
     try (Response okResponse = doExecute(okRequest)) {
@@ -143,66 +161,115 @@ public class HttpCall {
     }
   }
 
-  public HttpResponse executeUnsafely() {
+  /**
+   * Non-blocking version of {@link #execute()}. The request is executed by the dispatcher of OkHttp, whose
+   * concurrency is limited, see {@link HttpClient.Builder#setConfiguration(com.sonar.orchestrator.config.Configuration)}.
+   * The future completes exceptionally with {@link HttpException} if the response is not successful, and
+   * with {@link IllegalStateException} on network failure. Cancelling the future cancels the request.
+   *
+   * @since 3.16
+   */
+  public CompletableFuture<HttpResponse> executeAsync() {
     Request okRequest = buildOkHttpRequest();
-    try (Response okResponse = doExecute(okRequest)) {
-      return HttpResponse.from(okResponse);
-    } catch (IOException e) {
-      throw new IllegalStateException(format("Can not call %s due to network failure", okRequest.url()), e);
-    }
+    Call okCall = okClient().newCall(okRequest);
+    CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+    future.whenComplete((response, failure) -> {
+      if (future.isCancelled()) {
+        okCall.cancel();
+      }
+    });
+    okCall.enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        future.completeExceptionally(new IllegalStateException(format("Can not call %s due to network failure", okRequest.url()), e));
+      }
+
+      @Override
+      public void onResponse(Call call, Response okResponse) {
+        try (Response r = okResponse) {
+          if (!r.isSuccessful()) {
+            future.completeExceptionally(new HttpException(okRequest.url(), r.code(), r.body().string()));
+          } else {
+            future.complete(HttpResponse.from(r));
+          }
+        } catch (IOException e) {
+          onFailure(call, e);
+        }
+      }
+    });
+    return future;
   }
 
-  public void downloadToFile(File file) {
+  /**
+   * Executes the request without loading the response body in memory. Recommended for large payloads,
+   * for example when exporting data from server. The returned response must be closed.
+   *
+   * @throws HttpException if response code is not 2xx. The error body is loaded in memory.
+   * @since 3.16
+   */
+  public HttpStreamingResponse executeStreaming() {
     Request okRequest = buildOkHttpRequest();
+    Response okResponse;
     try {
-      doDownloadToFile(okRequest, file);
-    } catch (ProtocolException|SocketException|SocketTimeoutException se) {
-      // retry, because of some false-positives when downloading files from GitHub
-      try {
-        doDownloadToFile(okRequest, file);
-      } catch (IOException e2) {
-        throw new IllegalStateException(format("Can not call %s", okRequest.url()), e2);
-      }
+      okResponse = doExecute(okRequest);
     } catch (IOException e) {
-      throw new IllegalStateException(format("Can not call %s", okRequest.url()), e);
+      throw new IllegalStateException(format("Can not call %s due to network failure", okRequest.url()), e);
     }
+    if (!okResponse.isSuccessful()) {
+      try (Response r = okResponse) {
+        throw new HttpException(okRequest.url(), r.code(), r.body().string());
+      } catch (IOException e) {
+        throw new IllegalStateException(format("Can not call %s due to network failure", okRequest.url()), e);
+      }
+    }
+    return new HttpStreamingResponse(okResponse);
   }
 
-  private void doDownloadToFile(Request okRequest, File file) throws IOException {
+  public HttpResponse executeUnsafely() {
+    Request okRequest = buildOkHttpRequest();
     try (Response okResponse = doExecute(okRequest)) {
-      if (!okResponse.isSuccessful()) {
-        throw new HttpException(okRequest.url(), okResponse.code(), okResponse.body().string());
-      }
-      FileUtils.copyInputStreamToFile(okResponse.body().byteStream(), file);
+      return HttpResponse.from(okResponse);
+    } catch (IOException e) {
+      throw new IllegalStateException(format("Can not call %s due to network failure", okRequest.url()), e);
     }
   }
 
+  /**
+   * Downloads the response body to the given file. Large files are downloaded in parallel with range
+   * requests, and interrupted downloads are resumed, see {@link HttpClient.Builder#setConfiguration(com.sonar.orchestrator.config.Configuration)}.
+   *
+   * @throws HttpException if response code is not 2xx
+   * @throws IllegalStateException on network failure or if the checksum defined by {@link #setExpectedChecksum(String, String)}
+   *                               does not match
+   */
+  public void downloadToFile(File file) {
+    download(okResponse -> file);
+  }
+
+  /**
+   * Downloads the response body to the given directory. The filename is defined by
+   * the header "Content-Disposition" or by the URL.
+   *
+   * @see #downloadToFile(File)
+   */
   public File downloadToDirectory(File dir) {
+    return download(okResponse -> new File(dir, extractFilename(okResponse)));
+  }
+
+  private File download(Function<Response, File> targetResolver) {
     Request okRequest = buildOkHttpRequest();
+    RangeDownloader.Download download;
     try {
-      return doDownloadToDirectory(dir, okRequest);
-    } catch (ProtocolException|SocketException|SocketTimeoutException se) {
-      // retry, because of some false-positives when downloading files from GitHub
-      try {
-        return doDownloadToDirectory(dir, okRequest);
-      } catch (IOException e2) {
-        throw new IllegalStateException(format("Can not call %s", okRequest.url()), e2);
-      }
+      download = client.newDownloader(okClient()).download(okRequest, targetResolver, expectedChecksumAlgorithm);
     } catch (IOException e) {
       throw new IllegalStateException(format("Can not call %s", okRequest.url()), e);
     }
-  }
-
-  private File doDownloadToDirectory(File dir, Request okRequest) throws IOException {
-    try (Response okResponse = doExecute(okRequest)) {
-      if (!okResponse.isSuccessful()) {
-        throw new HttpException(okRequest.url(), okResponse.code(), okResponse.body().string());
-      }
-      String filename = extractFilename(okResponse);
-      File toFile = new File(dir, filename);
-      FileUtils.copyInputStreamToFile(okResponse.body().byteStream(), toFile);
-      return toFile;
+    if (expectedChecksum != null && !expectedChecksum.equalsIgnoreCase(download.getChecksum())) {
+      FileUtils.deleteQuietly(download.getFile());
+      throw new IllegalStateException(format("%s checksum of %s is %s, expected %s",
+        expectedChecksumAlgorithm, okRequest.url(), download.getChecksum(), expectedChecksum));
     }
+    return download.getFile();
   }
 
   private Request buildOkHttpRequest() {
@@ -237,15 +304,11 @@ public class HttpCall {
   }
 
   private Response doExecute(Request okRequest) throws IOException {
-    OkHttpClient copy = okClient;
-    if (timeoutMs != null) {
-      // see https://github.com/square/okhttp/wiki/Recipes#per-call-configuration
-      copy = okClient.newBuilder()
-        .readTimeout(timeoutMs, TimeUnit.MILLISECONDS)
-        .writeTimeout(timeoutMs, TimeUnit.MILLISECONDS)
-        .build();
-    }
-    return copy.newCall(okRequest).execute();
+    return okClient().newCall(okRequest).execute();
+  }
+
+  private OkHttpClient okClient() {
+    return timeoutMs == null ? client.getUnderlying() : client.getUnderlying(timeoutMs);
   }
 
   private static String extractFilename(Response response) {
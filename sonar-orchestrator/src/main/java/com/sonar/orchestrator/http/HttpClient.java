@@ -19,12 +19,27 @@
  */
 package com.sonar.orchestrator.http;
 
+import com.sonar.orchestrator.config.Configuration;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import okhttp3.Authenticator;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
 import okhttp3.Credentials;
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -32,42 +47,139 @@ import okhttp3.Route;
 
 import static com.sonar.orchestrator.util.OrchestratorUtils.isEmpty;
 
+/**
+ * HTTP client backed by OkHttp. All the calls share the same pool of connections and the same
+ * dispatcher, including the calls that override timeouts, see {@link HttpCall#setTimeoutMs(long)}.
+ */
 public class HttpClient {
 
+  static final String CONNECT_TIMEOUT_PROPERTY = "orchestrator.httpConnectTimeoutMs";
+  static final String READ_TIMEOUT_PROPERTY = "orchestrator.httpReadTimeoutMs";
+  static final String WRITE_TIMEOUT_PROPERTY = "orchestrator.httpWriteTimeoutMs";
+  static final String MAX_IDLE_CONNECTIONS_PROPERTY = "orchestrator.httpMaxIdleConnections";
+  static final String KEEP_ALIVE_PROPERTY = "orchestrator.httpKeepAliveMs";
+  static final String MAX_REQUESTS_PROPERTY = "orchestrator.httpMaxRequests";
+  static final String MAX_REQUESTS_PER_HOST_PROPERTY = "orchestrator.httpMaxRequestsPerHost";
+  static final String DOWNLOAD_SEGMENTS_PROPERTY = "orchestrator.httpDownloadSegments";
+  static final String DOWNLOAD_MIN_SEGMENT_SIZE_PROPERTY = "orchestrator.httpDownloadMinSegmentSizeMb";
+  static final String DOWNLOAD_MAX_ATTEMPTS_PROPERTY = "orchestrator.httpDownloadMaxAttempts";
+  static final List<String> SETTINGS = Arrays.asList(CONNECT_TIMEOUT_PROPERTY, READ_TIMEOUT_PROPERTY, WRITE_TIMEOUT_PROPERTY,
+    MAX_IDLE_CONNECTIONS_PROPERTY, KEEP_ALIVE_PROPERTY, MAX_REQUESTS_PROPERTY, MAX_REQUESTS_PER_HOST_PROPERTY,
+    DOWNLOAD_SEGMENTS_PROPERTY, DOWNLOAD_MIN_SEGMENT_SIZE_PROPERTY, DOWNLOAD_MAX_ATTEMPTS_PROPERTY);
+  private static final long MB = 1024L * 1024L;
+
   private final OkHttpClient okClient;
+  // clients overriding the read and write timeouts, by timeout in milliseconds
+  private final Map<Long, OkHttpClient> okClientsByTimeout = new ConcurrentHashMap<>();
+  private final ConnectionTracker connectionTracker;
+  private final int downloadSegments;
+  private final long downloadMinSegmentSize;
+  private final int downloadMaxAttempts;
 
-  private HttpClient(OkHttpClient okClient) {
+  private HttpClient(OkHttpClient okClient, ConnectionTracker connectionTracker, Builder builder) {
     this.okClient = okClient;
+    this.connectionTracker = connectionTracker;
+    this.downloadSegments = builder.getInt(DOWNLOAD_SEGMENTS_PROPERTY, 4);
+    this.downloadMinSegmentSize = builder.getInt(DOWNLOAD_MIN_SEGMENT_SIZE_PROPERTY, 8) * MB;
+    this.downloadMaxAttempts = builder.getInt(DOWNLOAD_MAX_ATTEMPTS_PROPERTY, 5);
   }
 
   public HttpCall newCall(HttpUrl url) {
-    return new HttpCall(okClient, url);
+    return new HttpCall(this, url);
   }
 
   OkHttpClient getUnderlying() {
     return okClient;
   }
 
+  /**
+   * Clients are cached, so that calls with the same timeout do not create
+   * a new client. See https://github.com/square/okhttp/wiki/Recipes#per-call-configuration
+   */
+  OkHttpClient getUnderlying(long timeoutMs) {
+    return okClientsByTimeout.computeIfAbsent(timeoutMs, t -> okClient.newBuilder()
+      .readTimeout(t, TimeUnit.MILLISECONDS)
+      .writeTimeout(t, TimeUnit.MILLISECONDS)
+      .build());
+  }
+
+  RangeDownloader newDownloader(OkHttpClient client) {
+    return new RangeDownloader(client, downloadSegments, downloadMinSegmentSize, downloadMaxAttempts);
+  }
+
+  /**
+   * @since 3.16
+   */
+  public HttpClientStats getStats() {
+    ConnectionPool pool = okClient.connectionPool();
+    Dispatcher dispatcher = okClient.dispatcher();
+    return new HttpClientStats(connectionTracker.requests.get(), connectionTracker.created.get(), connectionTracker.reused.get(),
+      pool.idleConnectionCount(), pool.connectionCount(), dispatcher.runningCallsCount(), dispatcher.queuedCallsCount(),
+      okClientsByTimeout.size());
+  }
+
   public static class Builder {
     private SystemProperties system = SystemProperties.INSTANCE;
+    private final Map<String, String> settings = new HashMap<>();
 
     Builder setSystemProperties(SystemProperties sp) {
       this.system = sp;
       return this;
     }
 
+    /**
+     * Settings of timeouts, pool of connections and dispatcher:
+     * <ul>
+     *   <li>"orchestrator.httpConnectTimeoutMs": 30 seconds by default</li>
+     *   <li>"orchestrator.httpReadTimeoutMs" and "orchestrator.httpWriteTimeoutMs": 5 minutes by default</li>
+     *   <li>"orchestrator.httpMaxIdleConnections": 5 by default</li>
+     *   <li>"orchestrator.httpKeepAliveMs": duration of idle connections in pool, 5 minutes by default</li>
+     *   <li>"orchestrator.httpMaxRequests" and "orchestrator.httpMaxRequestsPerHost": concurrency of asynchronous calls,
+     *   64 and 5 by default</li>
+     *   <li>"orchestrator.httpDownloadSegments": max number of parallel range requests when downloading a file, 4 by default</li>
+     *   <li>"orchestrator.httpDownloadMinSegmentSizeMb": min size of the ranges, 8 MB by default</li>
+     *   <li>"orchestrator.httpDownloadMaxAttempts": attempts to resume an interrupted range, 5 by default</li>
+     * </ul>
+     *
+     * @since 3.16
+     */
+    public Builder setConfiguration(Configuration config) {
+      for (String key : SETTINGS) {
+        setSetting(key, config.getString(key));
+      }
+      return this;
+    }
+
+    Builder setSetting(String key, @Nullable String value) {
+      if (isEmpty(value)) {
+        settings.remove(key);
+      } else {
+        settings.put(key, value);
+      }
+      return this;
+    }
+
     public HttpClient build() {
+      Dispatcher dispatcher = new Dispatcher();
+      dispatcher.setMaxRequests(getInt(MAX_REQUESTS_PROPERTY, 64));
+      dispatcher.setMaxRequestsPerHost(getInt(MAX_REQUESTS_PER_HOST_PROPERTY, 5));
+      ConnectionTracker connectionTracker = new ConnectionTracker();
+
       OkHttpClient.Builder okClient = new OkHttpClient.Builder()
         // make the default values of OkHttp explicit
         .followRedirects(true)
         .followSslRedirects(true)
         .retryOnConnectionFailure(true)
+        .connectionPool(new ConnectionPool(getInt(MAX_IDLE_CONNECTIONS_PROPERTY, 5),
+          getInt(KEEP_ALIVE_PROPERTY, 300_000), TimeUnit.MILLISECONDS))
+        .dispatcher(dispatcher)
+        .addNetworkInterceptor(connectionTracker)
 
         // super high timeouts because Orchestrator targets build environments
         // (that are known to be slow or often under pressure...)
-        .connectTimeout(30L, TimeUnit.SECONDS)
-        .readTimeout(5L, TimeUnit.MINUTES)
-        .writeTimeout(5L, TimeUnit.MINUTES);
+        .connectTimeout(getInt(CONNECT_TIMEOUT_PROPERTY, 30_000), TimeUnit.MILLISECONDS)
+        .readTimeout(getInt(READ_TIMEOUT_PROPERTY, 300_000), TimeUnit.MILLISECONDS)
+        .writeTimeout(getInt(WRITE_TIMEOUT_PROPERTY, 300_000), TimeUnit.MILLISECONDS);
 
       // OkHttp detects 'http.proxyHost' java property, but credentials should be filled
       String proxyLogin = system.getProperty("http.proxyUser");
@@ -75,7 +187,36 @@ public class HttpClient {
         okClient.proxyAuthenticator(new ProxyAuthenticator(proxyLogin, system.getProperty("http.proxyPassword")));
       }
 
-      return new HttpClient(okClient.build());
+      return new HttpClient(okClient.build(), connectionTracker, this);
+    }
+
+    private int getInt(String key, int defaultValue) {
+      String value = settings.get(key);
+      return value == null ? defaultValue : Integer.parseInt(value);
+    }
+  }
+
+  /**
+   * Counts the connections opened and reused by network requests
+   */
+  private static class ConnectionTracker implements Interceptor {
+    private final Set<Connection> seen = Collections.newSetFromMap(new WeakHashMap<>());
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      requests.incrementAndGet();
+      Connection connection = chain.connection();
+      if (connection != null) {
+        boolean added;
+        synchronized (seen) {
+          added = seen.add(connection);
+        }
+        (added ? created : reused).incrementAndGet();
+      }
+      return chain.proceed(chain.request());
     }
   }
 
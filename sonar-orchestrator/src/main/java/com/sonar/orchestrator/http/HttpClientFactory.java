@@ -19,21 +19,32 @@
  */
 package com.sonar.orchestrator.http;
 
+import com.sonar.orchestrator.config.Configuration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class HttpClientFactory {
 
   private static transient volatile boolean initialized;
   private static HttpClient singleton;
+  // clients configured by Orchestrator, by values of HTTP settings
+  private static final Map<String, HttpClient> CLIENTS_BY_SETTINGS = new ConcurrentHashMap<>();
 
   private HttpClientFactory() {
     // prevent instantiation, only static methods for the time being
   }
 
+  /**
+   * The shared client is configured by the system properties and environment variables only,
+   * see {@link HttpClient.Builder#setConfiguration(Configuration)}. The configuration of Orchestrator
+   * is not loaded. Use {@link #create(Configuration)} to apply the settings of Orchestrator.
+   */
   public static HttpClient create() {
     // A 2-field variant of Double Checked Locking.
     if (!initialized) {
       synchronized (HttpClient.class) {
         if (!initialized) {
-          singleton = new HttpClient.Builder().build();
+          singleton = systemSettings(new HttpClient.Builder()).build();
           initialized = true;
           return singleton;
         }
@@ -41,4 +52,28 @@ public class HttpClientFactory {
     }
     return singleton;
   }
+
+  private static HttpClient.Builder systemSettings(HttpClient.Builder builder) {
+    for (String key : HttpClient.SETTINGS) {
+      // system properties override environment variables, as in Configuration#createEnv()
+      builder.setSetting(key, System.getProperty(key, System.getenv(key)));
+    }
+    return builder;
+  }
+
+  /**
+   * Client configured by the HTTP settings of {@code config}, for example the properties file and
+   * the {@link com.sonar.orchestrator.OrchestratorBuilder} of Orchestrator. See
+   * {@link HttpClient.Builder#setConfiguration(Configuration)}. The configurations that have the same
+   * HTTP settings share the same client, and so the same pool of connections.
+   *
+   * @since 3.16
+   */
+  public static HttpClient create(Configuration config) {
+    StringBuilder settings = new StringBuilder();
+    for (String key : HttpClient.SETTINGS) {
+      settings.append(key).append('=').append(config.getString(key)).append(';');
+    }
+    return CLIENTS_BY_SETTINGS.computeIfAbsent(settings.toString(), k -> new HttpClient.Builder().setConfiguration(config).build());
+  }
 }
@@ -0,0 +1,120 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.http;
+
+/**
+ * Immutable metrics of the connection pool and dispatcher shared by the calls of a {@link HttpClient}.
+ *
+ * @since 3.16
+ */
+public final class HttpClientStats {
+
+  private final long requests;
+  private final long connectionsCreated;
+  private final long connectionsReused;
+  private final int idleConnections;
+  private final int connections;
+  private final int runningCalls;
+  private final int queuedCalls;
+  private final int timeoutVariants;
+
+  HttpClientStats(long requests, long connectionsCreated, long connectionsReused, int idleConnections, int connections,
+    int runningCalls, int queuedCalls, int timeoutVariants) {
+    this.requests = requests;
+    this.connectionsCreated = connectionsCreated;
+    this.connectionsReused = connectionsReused;
+    this.idleConnections = idleConnections;
+    this.connections = connections;
+    this.runningCalls = runningCalls;
+    this.queuedCalls = queuedCalls;
+    this.timeoutVariants = timeoutVariants;
+  }
+
+  /**
+   * Number of requests sent over network, including redirects and retries
+   */
+  public long getRequests() {
+    return requests;
+  }
+
+  /**
+   * Number of connections opened since creation of client
+   */
+  public long getConnectionsCreated() {
+    return connectionsCreated;
+  }
+
+  /**
+   * Number of requests sent over an already opened connection, which was in pool
+   */
+  public long getConnectionsReused() {
+    return connectionsReused;
+  }
+
+  /**
+   * Number of connections currently idle in pool
+   */
+  public int getIdleConnections() {
+    return idleConnections;
+  }
+
+  /**
+   * Number of open connections, idle or in use
+   */
+  public int getConnections() {
+    return connections;
+  }
+
+  /**
+   * Number of connections closed since creation of client, because they were idle for more
+   * than keep-alive duration, because pool was full or because server closed them
+   */
+  public long getEvictions() {
+    return Math.max(0L, connectionsCreated - connections);
+  }
+
+  /**
+   * Number of asynchronous calls being executed
+   */
+  public int getRunningCalls() {
+    return runningCalls;
+  }
+
+  /**
+   * Number of asynchronous calls waiting for the limits of dispatcher
+   */
+  public int getQueuedCalls() {
+    return queuedCalls;
+  }
+
+  /**
+   * Number of clients cached for the calls overriding timeouts, see {@link HttpCall#setTimeoutMs(long)}
+   */
+  public int getTimeoutVariants() {
+    return timeoutVariants;
+  }
+
+  @Override
+  public String toString() {
+    return "HttpClientStats{requests=" + requests + ", connectionsCreated=" + connectionsCreated + ", connectionsReused=" + connectionsReused
+      + ", idleConnections=" + idleConnections + ", connections=" + connections + ", evictions=" + getEvictions()
+      + ", runningCalls=" + runningCalls + ", queuedCalls=" + queuedCalls + ", timeoutVariants=" + timeoutVariants + "}";
+  }
+}
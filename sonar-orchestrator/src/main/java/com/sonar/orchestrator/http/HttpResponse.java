@@ -33,6 +33,8 @@ public class HttpResponse {
   private final Charset charset;
   private final byte[] body;
   private final Headers headers;
+  // decoded lazily, only once
+  private String bodyAsString;
 
   HttpResponse(int code, Charset charset, byte[] body, Headers headers) {
     this.code = code;
@@ -54,7 +56,10 @@ public class HttpResponse {
   }
 
   public String getBodyAsString() {
-    return new String(body, charset);
+    if (bodyAsString == null) {
+      bodyAsString = new String(body, charset);
+    }
+    return bodyAsString;
   }
 
   @CheckForNull
@@ -71,8 +76,11 @@ public class HttpResponse {
   }
 
   static HttpResponse from(Response okResponse) throws IOException {
+    return new HttpResponse(okResponse.code(), charsetOf(okResponse), okResponse.body().bytes(), okResponse.headers());
+  }
+
+  static Charset charsetOf(Response okResponse) {
     MediaType contentType = okResponse.body().contentType();
-    Charset charset = contentType != null ? contentType.charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8;
-    return new HttpResponse(okResponse.code(), charset, okResponse.body().bytes(), okResponse.headers());
+    return contentType != null ? contentType.charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8;
   }
 }
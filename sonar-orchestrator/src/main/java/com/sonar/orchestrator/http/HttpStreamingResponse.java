@@ -0,0 +1,106 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.http;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import javax.annotation.CheckForNull;
+import okhttp3.Response;
+
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkState;
+
+/**
+ * Response whose body is not loaded in memory but read from network on demand.
+ * The body can be consumed only once, either as an {@link InputStream} or as a {@link Reader}.
+ * The response must be closed in order to release the HTTP connection:
+ * <pre>
+ * try (HttpStreamingResponse response = server.newHttpCall("/api/system/info").setAdminCredentials().executeStreaming();
+ *   Reader reader = response.getReader()) {
+ *   ...
+ * }
+ * </pre>
+ *
+ * @since 3.16
+ */
+public class HttpStreamingResponse implements Closeable {
+
+  private final Response okResponse;
+  private final Charset charset;
+  private boolean consumed = false;
+
+  HttpStreamingResponse(Response okResponse) {
+    this.okResponse = okResponse;
+    this.charset = HttpResponse.charsetOf(okResponse);
+  }
+
+  public int getCode() {
+    return okResponse.code();
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  @CheckForNull
+  public String getHeader(String key) {
+    return okResponse.header(key);
+  }
+
+  /**
+   * Returns true if the code is in [200..300), which means the request was successfully received,
+   * understood, and accepted.
+   */
+  public boolean isSuccessful() {
+    return okResponse.isSuccessful();
+  }
+
+  /**
+   * Length of body in bytes, or -1 if unknown
+   */
+  public long getContentLength() {
+    return okResponse.body().contentLength();
+  }
+
+  /**
+   * Raw bytes of body. Closing the stream closes the response.
+   * @throws IllegalStateException if body is already consumed
+   */
+  public InputStream getInputStream() {
+    checkState(!consumed, "Body of %s is already consumed", okResponse.request().url());
+    consumed = true;
+    return okResponse.body().byteStream();
+  }
+
+  /**
+   * Body decoded with {@link #getCharset()}. Closing the reader closes the response.
+   * @throws IllegalStateException if body is already consumed
+   */
+  public Reader getReader() {
+    return new InputStreamReader(getInputStream(), charset);
+  }
+
+  @Override
+  public void close() {
+    okResponse.close();
+  }
+}
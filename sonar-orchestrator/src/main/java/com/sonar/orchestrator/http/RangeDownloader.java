@@ -0,0 +1,405 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.http;
+
+import com.sonar.orchestrator.util.Checksums;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Downloads a file with HTTP range requests:
+ * <ul>
+ *   <li>the first request asks for the range "bytes=0-". If the server supports ranges and the file
+ *   is large enough, the remaining segments are downloaded in parallel</li>
+ *   <li>segments are written at their position in the file through a {@link FileChannel}</li>
+ *   <li>when a connection is dropped, the segment is resumed from its last written byte, up
+ *   to {@code maxAttempts} times</li>
+ *   <li>the checksum is computed while writing, on the longest contiguous prefix of the file</li>
+ * </ul>
+ * Servers that do not support ranges return the whole file, which is downloaded sequentially. It is
+ * restarted from the beginning if interrupted.
+ */
+class RangeDownloader {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RangeDownloader.class);
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long RETRY_BACKOFF_MS = 500L;
+  private static final Pattern CONTENT_RANGE = Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+|\\*)$");
+
+  private final OkHttpClient okClient;
+  private final int maxSegments;
+  private final long minSegmentSize;
+  private final int maxAttempts;
+
+  RangeDownloader(OkHttpClient okClient, int maxSegments, long minSegmentSize, int maxAttempts) {
+    this.okClient = okClient;
+    this.maxSegments = Math.max(1, maxSegments);
+    this.minSegmentSize = Math.max(1L, minSegmentSize);
+    this.maxAttempts = Math.max(1, maxAttempts);
+  }
+
+  /**
+   * @param targetResolver the file to write, depending on the headers of the first response
+   * @param digestAlgorithm the algorithm of checksum, for example "SHA-256", or {@code null} if checksum is not needed
+   * @throws HttpException if the response code is not 2xx
+   * @throws IOException if the download failed after all the attempts
+   */
+  Download download(Request request, Function<Response, File> targetResolver, @Nullable String digestAlgorithm) throws IOException {
+    Response first = executeFirst(request);
+    File file;
+    try {
+      file = targetResolver.apply(first);
+      FileUtils.forceMkdir(file.getAbsoluteFile().getParentFile());
+    } catch (RuntimeException | IOException e) {
+      first.close();
+      throw e;
+    }
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+      StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      Progress progress = new Progress(request, channel, digestAlgorithm == null ? null : Checksums.newDigest(digestAlgorithm));
+      long total = totalLength(first);
+      int segmentCount = total < 0 ? 1 : (int) Math.max(1L, Math.min(maxSegments, total / minSegmentSize));
+      if (segmentCount == 1) {
+        progress.segments.add(new Segment(0L, total));
+        progress.fetch(progress.segments.get(0), first);
+      } else {
+        long segmentSize = (total + segmentCount - 1) / segmentCount;
+        for (long start = 0L; start < total; start += segmentSize) {
+          progress.segments.add(new Segment(start, Math.min(total, start + segmentSize)));
+        }
+        progress.fetchInParallel(first);
+      }
+      String checksum = progress.digest == null ? null : Checksums.toHex(progress.digest.digest());
+      return new Download(file, progress.segments.size(), checksum);
+    }
+  }
+
+  /**
+   * Length of file, or -1 if the server does not support range requests or does not declare the length
+   */
+  private static long totalLength(Response response) {
+    if (response.code() != 206) {
+      return -1L;
+    }
+    Matcher matcher = CONTENT_RANGE.matcher(String.valueOf(response.header("Content-Range")));
+    if (!matcher.matches() || "*".equals(matcher.group(3))) {
+      return -1L;
+    }
+    return Long.parseLong(matcher.group(3));
+  }
+
+  /**
+   * Servers can answer 416 (Range Not Satisfiable) to the range of an empty file, see RFC 7233. The file
+   * is then requested without range.
+   */
+  private Response executeFirst(Request request) throws IOException {
+    Response response = okClient.newCall(rangeRequest(request, 0L, null)).execute();
+    if (response.code() == 416) {
+      response.close();
+      response = okClient.newCall(request).execute();
+    }
+    return checkSuccessful(request, response);
+  }
+
+  private Response execute(Request request, long from, @Nullable Long toExclusive) throws IOException {
+    return checkSuccessful(request, okClient.newCall(rangeRequest(request, from, toExclusive)).execute());
+  }
+
+  private static Request rangeRequest(Request request, long from, @Nullable Long toExclusive) {
+    return request.newBuilder()
+      .header("Range", "bytes=" + from + "-" + (toExclusive == null ? "" : String.valueOf(toExclusive - 1)))
+      // compressed bodies can't be split in ranges of the file
+      .header("Accept-Encoding", "identity")
+      .build();
+  }
+
+  private static Response checkSuccessful(Request request, Response response) throws IOException {
+    if (!response.isSuccessful()) {
+      try (Response r = response) {
+        throw new HttpException(request.url(), r.code(), r.body().string());
+      }
+    }
+    return response;
+  }
+
+  static class Download {
+    private final File file;
+    private final int segments;
+    @Nullable
+    private final String checksum;
+
+    Download(File file, int segments, @Nullable String checksum) {
+      this.file = file;
+      this.segments = segments;
+      this.checksum = checksum;
+    }
+
+    File getFile() {
+      return file;
+    }
+
+    int getSegments() {
+      return segments;
+    }
+
+    /**
+     * Hexadecimal checksum of file, or {@code null} if no algorithm is requested
+     */
+    @CheckForNull
+    String getChecksum() {
+      return checksum;
+    }
+  }
+
+  /**
+   * Range [start, end) of file. End is -1 if the length of file is unknown.
+   */
+  private static class Segment {
+    private final long start;
+    private volatile long end;
+    private volatile long written = 0L;
+
+    Segment(long start, long end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    long position() {
+      return start + written;
+    }
+
+    boolean isComplete() {
+      return end >= 0 && position() == end;
+    }
+  }
+
+  private class Progress {
+    private final Request request;
+    private final FileChannel channel;
+    @Nullable
+    private final MessageDigest digest;
+    private final List<Segment> segments = new ArrayList<>();
+    // the bytes [0, hashed) have been added to digest
+    private long hashed = 0L;
+
+    Progress(Request request, FileChannel channel, @Nullable MessageDigest digest) {
+      this.request = request;
+      this.channel = channel;
+      this.digest = digest;
+    }
+
+    void fetchInParallel(Response first) throws IOException {
+      AtomicInteger threadCount = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(segments.size() - 1, r -> {
+        Thread thread = new Thread(r, "orchestrator-download-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      try {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Segment segment : segments.subList(1, segments.size())) {
+          futures.add(executor.submit(() -> {
+            fetch(segment, null);
+            return null;
+          }));
+        }
+        // first segment is downloaded by the calling thread, from the response of the first request
+        fetch(segments.get(0), first);
+        for (Future<Void> future : futures) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Download of " + request.url() + " is interrupted");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IllegalStateException(cause);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    void fetch(Segment segment, @Nullable Response opened) throws IOException {
+      Response response = opened;
+      for (int attempt = 1; ; attempt++) {
+        try {
+          if (response == null) {
+            response = execute(request, segment.position(), segment.end < 0 ? null : segment.end);
+          }
+          copy(segment, response);
+          return;
+        } catch (IOException e) {
+          if (attempt >= maxAttempts) {
+            throw e;
+          }
+          LOG.warn(format("Download of %s interrupted at byte %d (%s). Resuming (%d/%d)...",
+            request.url(), segment.position(), e.getMessage(), attempt, maxAttempts - 1));
+          sleep(attempt * RETRY_BACKOFF_MS);
+        } finally {
+          if (response != null) {
+            response.close();
+          }
+          response = null;
+        }
+      }
+    }
+
+    private void copy(Segment segment, Response response) throws IOException {
+      if (response.code() == 206) {
+        Matcher matcher = CONTENT_RANGE.matcher(String.valueOf(response.header("Content-Range")));
+        if (!matcher.matches() || Long.parseLong(matcher.group(1)) != segment.position()) {
+          throw new IOException(format("Unexpected range %s, expected start at byte %d", response.header("Content-Range"), segment.position()));
+        }
+      } else if (segment.position() > 0L) {
+        if (segments.size() > 1) {
+          throw new IOException("Server did not return the requested range");
+        }
+        // range is not supported, restart from the beginning
+        restart(segment);
+      }
+      byte[] bytes = new byte[BUFFER_SIZE];
+      try (InputStream input = response.body().byteStream()) {
+        while (segment.end < 0 || segment.position() < segment.end) {
+          int max = segment.end < 0 ? bytes.length : (int) Math.min(bytes.length, segment.end - segment.position());
+          int read = input.read(bytes, 0, max);
+          if (read == -1) {
+            break;
+          }
+          write(segment, bytes, read);
+        }
+      }
+      if (segment.end < 0) {
+        segment.end = segment.position();
+      } else if (segment.position() < segment.end) {
+        throw new EOFException(format("Unexpected end of stream at byte %d, expected %d", segment.position(), segment.end));
+      }
+      updateDigest();
+    }
+
+    private void write(Segment segment, byte[] bytes, int length) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+      long position = segment.position();
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      if (digest != null) {
+        synchronized (this) {
+          if (segment.position() == hashed) {
+            // fast path, bytes are still in memory
+            digest.update(bytes, 0, length);
+            hashed += length;
+          }
+          segment.written += length;
+        }
+        updateDigest();
+      } else {
+        segment.written += length;
+      }
+    }
+
+    /**
+     * Reads back from file the bytes written by the next segments, as soon as they are contiguous
+     * with the bytes already added to digest
+     */
+    private synchronized void updateDigest() throws IOException {
+      if (digest == null) {
+        return;
+      }
+      long contiguousEnd = contiguousEnd();
+      ByteBuffer buffer = null;
+      while (hashed < contiguousEnd) {
+        if (buffer == null) {
+          buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        buffer.clear();
+        buffer.limit((int) Math.min(BUFFER_SIZE, contiguousEnd - hashed));
+        int read = channel.read(buffer, hashed);
+        if (read <= 0) {
+          throw new EOFException("Fail to read " + request.url() + " at byte " + hashed);
+        }
+        digest.update(buffer.array(), 0, read);
+        hashed += read;
+      }
+    }
+
+    private long contiguousEnd() {
+      long end = 0L;
+      for (Segment segment : segments) {
+        end = segment.position();
+        if (!segment.isComplete()) {
+          break;
+        }
+      }
+      return end;
+    }
+
+    private synchronized void restart(Segment segment) throws IOException {
+      LOG.warn("Server does not support range requests, restarting download of {}", request.url());
+      segment.written = 0L;
+      hashed = 0L;
+      if (digest != null) {
+        digest.reset();
+      }
+      channel.truncate(0L);
+    }
+  }
+
+  private static void sleep(long durationMs) throws InterruptedIOException {
+    try {
+      Thread.sleep(durationMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Download is interrupted");
+    }
+  }
+}
@@ -0,0 +1,345 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.locator;
+
+import com.sonar.orchestrator.config.Configuration;
+import com.sonar.orchestrator.util.Checksums;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.function.Function;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Persistent cache of the files downloaded by {@link URLLocator}, shared between executions
+ * and between the JVMs of the same host.
+ * <ul>
+ *   <li>files are stored in "objects/" and are named by the SHA-256 of their content</li>
+ *   <li>"index.properties" maps URLs to objects. It is modified under an exclusive file lock</li>
+ *   <li>downloads are moved atomically to "objects/", so that partial files are never visible</li>
+ *   <li>least recently used objects are evicted when the total size exceeds the limit</li>
+ *   <li>cache hits are served by hard links, or by a zero-copy transfer when links are not supported.
+ *   Files are linked or copied after the lock is released. An object evicted in the meantime is a cache miss.</li>
+ * </ul>
+ * Only the URLs of immutable artifacts are cached, see {@link #isCacheable(URLLocation)}.
+ */
+class DownloadCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DownloadCache.class);
+  private static final String INDEX_FILENAME = "index.properties";
+  private static final String LOCK_FILENAME = "index.lock";
+  // a file lock is held by the JVM, so threads must be synchronized on top of it
+  private static final Object JVM_LOCK = new Object();
+  private static final long MB = 1024L * 1024L;
+
+  private final Configuration config;
+  private final boolean enabled;
+  private final long maxSizeBytes;
+  private File dir;
+
+  DownloadCache(Configuration config) {
+    this.config = config;
+    this.enabled = Boolean.parseBoolean(config.getString("orchestrator.downloadCache", "true"));
+    this.maxSizeBytes = config.getInt("orchestrator.downloadCacheMaxSizeMb", 4096) * MB;
+  }
+
+  DownloadCache(File dir, long maxSizeBytes) {
+    this.config = null;
+    this.enabled = true;
+    this.maxSizeBytes = maxSizeBytes;
+    this.dir = dir;
+  }
+
+  /**
+   * Directory is loaded lazily, because locators are created before
+   * {@link com.sonar.orchestrator.config.FileSystem} is fully initialized.
+   */
+  private synchronized File dir() {
+    if (dir == null) {
+      String path = config.getString("orchestrator.downloadCacheDir");
+      dir = path != null ? new File(path) : new File(config.fileSystem().sonarInstallsDir(), "downloads");
+    }
+    return dir;
+  }
+
+  /**
+   * Only JAR and ZIP files are cached, except snapshots. Other URLs, like update center
+   * properties files, may change between calls.
+   */
+  boolean isCacheable(URLLocation location) {
+    String path = location.getURL().getPath().toLowerCase(Locale.ENGLISH);
+    return enabled && (path.endsWith(".jar") || path.endsWith(".zip")) && !path.contains("snapshot");
+  }
+
+  /**
+   * @return the file copied to {@code toDir}, or {@code null} if the URL is not cached
+   */
+  @CheckForNull
+  File copyToDirectory(URLLocation location, File toDir) {
+    Entry entry = withIndex(index -> hit(index, location));
+    return entry == null ? null : materialize(location, entry, new File(toDir, entry.filename));
+  }
+
+  /**
+   * @return {@code toFile}, or {@code null} if the URL is not cached
+   */
+  @CheckForNull
+  File copyToFile(URLLocation location, File toFile) {
+    Entry entry = withIndex(index -> hit(index, location));
+    return entry == null ? null : materialize(location, entry, toFile);
+  }
+
+  /**
+   * New empty directory to download files before calling {@link #put(URLLocation, File, File)}
+   */
+  File newTempDir() {
+    File tempDir = new File(dir(), "tmp/" + UUID.randomUUID());
+    try {
+      FileUtils.forceMkdir(tempDir);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create directory " + tempDir, e);
+    }
+    return tempDir;
+  }
+
+  /**
+   * Copies the downloaded file to {@code target}, then moves it to cache.
+   */
+  File put(URLLocation location, File downloaded, File target) {
+    String hash = Checksums.sha256(downloaded);
+    File object = objectFile(hash);
+    long size = downloaded.length();
+    try {
+      link(downloaded, target);
+    } catch (IOException e) {
+      throw new IllegalStateException(format("Fail to copy %s to %s", downloaded, target), e);
+    }
+    return withIndex(index -> {
+      try {
+        if (object.exists()) {
+          Files.delete(downloaded.toPath());
+        } else {
+          FileUtils.forceMkdir(object.getParentFile());
+          Files.move(downloaded.toPath(), object.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException(format("Fail to move %s to cache", downloaded), e);
+      }
+      Entry entry = new Entry(hash, size, System.currentTimeMillis(), downloaded.getName());
+      index.put(key(location), entry);
+      evict(index, key(location));
+      return target;
+    });
+  }
+
+  @CheckForNull
+  private Entry hit(Map<String, Entry> index, URLLocation location) {
+    Entry entry = index.get(key(location));
+    if (entry == null) {
+      return null;
+    }
+    if (!objectFile(entry.hash).exists()) {
+      index.remove(key(location));
+      return null;
+    }
+    LOG.info("Found {} in download cache", location);
+    entry.lastAccess = System.currentTimeMillis();
+    return entry;
+  }
+
+  /**
+   * Called without lock, so the object may have been evicted by another thread or JVM since the index was read
+   */
+  @CheckForNull
+  private File materialize(URLLocation location, Entry entry, File target) {
+    File object = objectFile(entry.hash);
+    try {
+      link(object, target);
+      return target;
+    } catch (NoSuchFileException e) {
+      LOG.info("{} has been evicted from download cache", location);
+      return null;
+    } catch (IOException e) {
+      throw new IllegalStateException(format("Fail to copy %s to %s", object, target), e);
+    }
+  }
+
+  private static void link(File from, File to) throws IOException {
+    File dir = to.getAbsoluteFile().getParentFile();
+    FileUtils.forceMkdir(dir);
+    Files.deleteIfExists(to.toPath());
+    try {
+      Files.createLink(to.toPath(), from.toPath());
+    } catch (NoSuchFileException e) {
+      throw e;
+    } catch (IOException | UnsupportedOperationException e) {
+      // copy to a temporary file, so that a partial copy is never visible
+      File tempFile = new File(dir, to.getName() + "." + UUID.randomUUID() + ".tmp");
+      try {
+        transfer(from, tempFile);
+        Files.move(tempFile.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tempFile.toPath());
+      }
+    }
+  }
+
+  private static void transfer(File from, File to) throws IOException {
+    try (FileChannel in = FileChannel.open(from.toPath(), StandardOpenOption.READ);
+      FileChannel out = FileChannel.open(to.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      long size = in.size();
+      long position = 0L;
+      while (position < size) {
+        position += in.transferTo(position, size - position, out);
+      }
+    }
+  }
+
+  /**
+   * Least recently used entries are removed until total size of objects is lower than limit.
+   * The entry that has just been added is kept, even if it exceeds the limit.
+   */
+  private void evict(Map<String, Entry> index, String keptKey) {
+    Map<String, Long> objectSizes = new HashMap<>();
+    index.values().forEach(e -> objectSizes.put(e.hash, e.size));
+    long totalSize = objectSizes.values().stream().mapToLong(Long::longValue).sum();
+    List<Map.Entry<String, Entry>> byAccess = new ArrayList<>(index.entrySet());
+    byAccess.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+    for (Map.Entry<String, Entry> candidate : byAccess) {
+      if (totalSize <= maxSizeBytes) {
+        break;
+      }
+      if (!candidate.getKey().equals(keptKey)) {
+        index.remove(candidate.getKey());
+        String hash = candidate.getValue().hash;
+        if (index.values().stream().noneMatch(e -> e.hash.equals(hash))) {
+          LOG.info("Evict {} from download cache", candidate.getKey());
+          FileUtils.deleteQuietly(objectFile(hash));
+          totalSize -= candidate.getValue().size;
+        }
+      }
+    }
+  }
+
+  private <T> T withIndex(Function<Map<String, Entry>, T> action) {
+    synchronized (JVM_LOCK) {
+      try {
+        FileUtils.forceMkdir(dir());
+        try (FileChannel lockChannel = FileChannel.open(new File(dir(), LOCK_FILENAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock lock = lockChannel.lock()) {
+          Map<String, Entry> index = loadIndex();
+          T result = action.apply(index);
+          storeIndex(index);
+          return result;
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to access download cache " + dir(), e);
+      }
+    }
+  }
+
+  private Map<String, Entry> loadIndex() throws IOException {
+    Map<String, Entry> index = new HashMap<>();
+    File file = new File(dir(), INDEX_FILENAME);
+    if (file.exists()) {
+      Properties props = new Properties();
+      try (InputStream input = FileUtils.openInputStream(file)) {
+        props.load(input);
+      }
+      props.forEach((key, value) -> {
+        Entry entry = Entry.parse((String) value);
+        if (entry != null) {
+          index.put((String) key, entry);
+        }
+      });
+    }
+    return index;
+  }
+
+  private void storeIndex(Map<String, Entry> index) throws IOException {
+    Properties props = new Properties();
+    index.forEach((key, entry) -> props.setProperty(key, entry.format()));
+    File file = new File(dir(), INDEX_FILENAME);
+    File tempFile = new File(dir(), INDEX_FILENAME + ".tmp");
+    try (OutputStream output = FileUtils.openOutputStream(tempFile)) {
+      props.store(output, "Generated by Orchestrator");
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private File objectFile(String hash) {
+    return new File(dir(), "objects/" + hash);
+  }
+
+  private static String key(URLLocation location) {
+    return location.getURL().toString();
+  }
+
+  private static class Entry {
+    private final String hash;
+    private final long size;
+    private long lastAccess;
+    private final String filename;
+
+    Entry(String hash, long size, long lastAccess, String filename) {
+      this.hash = hash;
+      this.size = size;
+      this.lastAccess = lastAccess;
+      this.filename = filename;
+    }
+
+    String format() {
+      return hash + "," + size + "," + lastAccess + "," + filename;
+    }
+
+    @CheckForNull
+    static Entry parse(String value) {
+      String[] fields = value.split(",", 4);
+      if (fields.length != 4) {
+        return null;
+      }
+      try {
+        return new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+}
@@ -20,6 +20,7 @@
 package com.sonar.orchestrator.locator;
 
 import com.sonar.orchestrator.config.Configuration;
+import com.sonar.orchestrator.http.HttpClientFactory;
 import java.io.File;
 import java.io.InputStream;
 
@@ -35,7 +36,7 @@ public class Locators {
     fileLocator = new FileLocator();
     mavenLocator = new MavenLocator(config);
     resourceLocator = new ResourceLocator();
-    urlLocator = new URLLocator();
+    urlLocator = new URLLocator(new DownloadCache(config), HttpClientFactory.create(config));
     pluginLocator = new PluginLocator(config, mavenLocator, urlLocator);
   }
 
@@ -20,6 +20,7 @@
 package com.sonar.orchestrator.locator;
 
 import com.sonar.orchestrator.http.HttpCall;
+import com.sonar.orchestrator.http.HttpClient;
 import com.sonar.orchestrator.http.HttpClientFactory;
 import java.io.File;
 import java.io.IOException;
@@ -40,6 +41,23 @@ class URLLocator implements Locator<URLLocation> {
 
   private static final Logger LOG = LoggerFactory.getLogger(URLLocator.class);
 
+  @Nullable
+  private final DownloadCache cache;
+  private final HttpClient httpClient;
+
+  URLLocator() {
+    this(null);
+  }
+
+  URLLocator(@Nullable DownloadCache cache) {
+    this(cache, HttpClientFactory.create());
+  }
+
+  URLLocator(@Nullable DownloadCache cache, HttpClient httpClient) {
+    this.cache = cache;
+    this.httpClient = httpClient;
+  }
+
   @Override
   public File locate(URLLocation location) {
     throw new UnsupportedOperationException();
@@ -48,6 +66,19 @@ class URLLocator implements Locator<URLLocation> {
   @Override
   public File copyToDirectory(URLLocation location, File toDir) {
     try {
+      if (isCached(location)) {
+        File cached = cache.copyToDirectory(location, toDir);
+        if (cached != null) {
+          return cached;
+        }
+        File tempDir = cache.newTempDir();
+        try {
+          File downloaded = callHttpRequest(location).downloadToDirectory(tempDir);
+          return cache.put(location, downloaded, new File(toDir, downloaded.getName()));
+        } finally {
+          FileUtils.deleteQuietly(tempDir);
+        }
+      }
       if (isHttpRequest(location)) {
         HttpCall httpCall = callHttpRequest(location);
         return httpCall.downloadToDirectory(toDir);
@@ -73,6 +104,19 @@ class URLLocator implements Locator<URLLocation> {
   @Override
   public File copyToFile(URLLocation location, File toFile) {
     try {
+      if (isCached(location)) {
+        File cached = cache.copyToFile(location, toFile);
+        if (cached != null) {
+          return cached;
+        }
+        File tempDir = cache.newTempDir();
+        try {
+          File downloaded = callHttpRequest(location).downloadToDirectory(tempDir);
+          return cache.put(location, downloaded, toFile);
+        } finally {
+          FileUtils.deleteQuietly(tempDir);
+        }
+      }
       if (isHttpRequest(location)) {
         HttpCall httpCall = callHttpRequest(location);
         httpCall.downloadToFile(toFile);
@@ -85,14 +129,18 @@ class URLLocator implements Locator<URLLocation> {
     }
   }
 
+  private boolean isCached(URLLocation location) {
+    return cache != null && isHttpRequest(location) && cache.isCacheable(location);
+  }
+
   private static boolean isHttpRequest(URLLocation location) {
     return location.getURL().getProtocol().toLowerCase(Locale.ENGLISH).startsWith("http");
   }
 
-  private static HttpCall callHttpRequest(URLLocation location) {
+  private HttpCall callHttpRequest(URLLocation location) {
     LOG.info("Downloading: " + location.getURL());
 
-    return HttpClientFactory.create().newCall(HttpUrl.get(location.getURL()));
+    return httpClient.newCall(HttpUrl.get(location.getURL()));
   }
 
   @CheckForNull
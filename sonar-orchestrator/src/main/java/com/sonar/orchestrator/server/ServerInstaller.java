@@ -23,16 +23,26 @@ import com.sonar.orchestrator.config.Configuration;
 import com.sonar.orchestrator.container.Server;
 import com.sonar.orchestrator.container.SonarDistribution;
 import com.sonar.orchestrator.db.DatabaseClient;
+import com.sonar.orchestrator.http.HttpClientFactory;
 import com.sonar.orchestrator.locator.Location;
 import com.sonar.orchestrator.util.NetworkUtils;
+import com.sonar.orchestrator.util.Timings;
+import com.sonar.orchestrator.util.ZipEntryFilter;
 import com.sonar.orchestrator.util.ZipUtils;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetAddress;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import okhttp3.HttpUrl;
 import org.apache.commons.io.FileUtils;
@@ -51,36 +61,65 @@ public class ServerInstaller {
   private static final String WEB_HOST_PROPERTY = "sonar.web.host";
   private static final String WEB_PORT_PROPERTY = "sonar.web.port";
   private static final String WEB_CONTEXT_PROPERTY = "sonar.web.context";
+  private static final String TEMPLATE_CACHE_PROPERTY = "orchestrator.serverTemplateCache";
+  private static final String MAX_TEMPLATES_PROPERTY = "orchestrator.serverTemplatesMax";
+  private static final String BUNDLED_PLUGINS_DIR = "lib/bundled-plugins";
+  private static final String PLUGIN_THREADS_PROPERTY = "orchestrator.pluginInstallThreads";
+  private static final int DEFAULT_PLUGIN_THREADS = 4;
 
   private final ServerZipFinder zipFinder;
   private final Configuration configuration;
   private final DatabaseClient databaseClient;
+  private final ServerTemplateCache templateCache;
+  private final Timings timings;
 
   public ServerInstaller(ServerZipFinder zipFinder, Configuration configuration, DatabaseClient databaseClient) {
+    this(zipFinder, configuration, databaseClient, new Timings());
+  }
+
+  /**
+   * @param timings records the durations of phases "install.zipLookup", "install.unzip",
+   *                "install.plugins" and "install.configuration"
+   * @since 3.16
+   */
+  public ServerInstaller(ServerZipFinder zipFinder, Configuration configuration, DatabaseClient databaseClient, Timings timings) {
     this.zipFinder = zipFinder;
     this.configuration = configuration;
     this.databaseClient = databaseClient;
+    this.templateCache = new ServerTemplateCache(configuration.fileSystem(),
+      configuration.getInt(MAX_TEMPLATES_PROPERTY, ServerTemplateCache.DEFAULT_MAX_TEMPLATES));
+    this.timings = timings;
   }
 
   public Server install(SonarDistribution distrib) {
     File homeDir = locateAndUnzip(distrib);
-    copyPlugins(distrib, homeDir);
-    copyJdbcDriver(homeDir);
-    Properties properties = configureProperties(distrib);
-    writePropertiesFile(properties, homeDir);
+    timings.run("install.plugins", () -> copyPlugins(distrib, homeDir));
+    Properties properties = timings.call("install.configuration", () -> {
+      copyJdbcDriver(homeDir);
+      Properties props = configureProperties(distrib);
+      writePropertiesFile(props, homeDir);
+      return props;
+    });
     String url = format("http://%s:%s%s", properties.getProperty(WEB_HOST_PROPERTY), properties.getProperty(WEB_PORT_PROPERTY), properties.getProperty(WEB_CONTEXT_PROPERTY));
-    return new Server(configuration.fileSystem(), homeDir, distrib, HttpUrl.parse(url));
+    return new Server(configuration.fileSystem(), homeDir, distrib, HttpUrl.parse(url), HttpClientFactory.create(configuration));
   }
 
   private File locateAndUnzip(SonarDistribution distrib) {
-    File zip = zipFinder.find(distrib);
+    File zip = timings.call("install.zipLookup", () -> zipFinder.find(distrib));
     File toDir = new File(configuration.fileSystem().workspace(), String.valueOf(sharedDirId.addAndGet(1)));
     try {
       FileUtils.deleteDirectory(toDir);
     } catch (IOException e) {
       throw new IllegalStateException("Fail to delete directory " + toDir, e);
     }
-    ZipUtils.unzip(zip, toDir);
+    Predicate<String> filter = zipEntryFilter(distrib);
+    timings.run("install.unzip", () -> {
+      if (Boolean.parseBoolean(configuration.getString(TEMPLATE_CACHE_PROPERTY, "true"))) {
+        templateCache.install(zip, toDir, filter);
+      } else {
+        ZipUtils.unzip(zip, toDir, filter);
+      }
+    });
     File[] roots = toDir.listFiles((FileFilter) FileFilterUtils.directoryFileFilter());
     if (roots == null || roots.length != 1) {
       throw new IllegalStateException("ZIP is badly structured. Missing root directory in " + toDir);
@@ -88,6 +127,20 @@ public class ServerInstaller {
     return roots[0];
   }
 
+  /**
+   * Entries of ZIP are prefixed by the root directory, for example "sonarqube-6.3/". Patterns
+   * are relative to SonarQube home, so the root directory is ignored.
+   */
+  private static Predicate<String> zipEntryFilter(SonarDistribution distrib) {
+    ZipEntryFilter filter = new ZipEntryFilter();
+    if (distrib.removeDistributedPlugins()) {
+      LOG.info("Remove distribution plugins");
+      filter.exclude(BUNDLED_PLUGINS_DIR + "/*");
+    }
+    distrib.getZipExclusions().forEach(filter::exclude);
+    return entryName -> filter.test(entryName.substring(entryName.indexOf('/') + 1));
+  }
+
   private void copyJdbcDriver(File sonarHome) {
     if (databaseClient.getDriverFile() != null) {
       try {
@@ -100,27 +153,54 @@ public class ServerInstaller {
     }
   }
 
+  /**
+   * Plugins are resolved, downloaded and copied concurrently. The first failure
+   * cancels the pending installations.
+   */
   private void copyPlugins(SonarDistribution distribution, File sonarHome) {
     File downloadDir = new File(sonarHome, "extensions/downloads");
     try {
       FileUtils.forceMkdir(downloadDir);
-      if (distribution.removeDistributedPlugins()) {
-        LOG.info("Remove distribution plugins");
-        File dirToClean = new File(sonarHome, "lib/bundled-plugins");
-        if (dirToClean.exists()) {
-          FileUtils.cleanDirectory(dirToClean);
-        }
-      }
     } catch (Exception e) {
-      throw new IllegalStateException("Fail to clean the download directory: " + downloadDir, e);
+      throw new IllegalStateException("Fail to create the download directory: " + downloadDir, e);
     }
-    for (Location plugin : distribution.getPluginLocations()) {
-      File pluginFile = configuration.fileSystem().copyToDirectory(plugin, downloadDir);
-      if (pluginFile == null || !pluginFile.exists()) {
-        throw new IllegalStateException("Can not find the plugin " + plugin);
+    List<Location> plugins = distribution.getPluginLocations();
+    if (plugins.isEmpty()) {
+      return;
+    }
+    int threads = Math.max(1, Math.min(plugins.size(), configuration.getInt(PLUGIN_THREADS_PROPERTY, DEFAULT_PLUGIN_THREADS)));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CompletionService<File> completionService = new ExecutorCompletionService<>(executor);
+    AtomicInteger installed = new AtomicInteger(0);
+    try {
+      for (Location plugin : plugins) {
+        completionService.submit(() -> copyPlugin(plugin, downloadDir, installed, plugins.size()));
+      }
+      for (int i = 0; i < plugins.size(); i++) {
+        completionService.take().get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while installing plugins", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
       }
-      LOG.info("Installed plugin: {}", pluginFile.getName());
+      throw new IllegalStateException("Fail to install plugins", cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private File copyPlugin(Location plugin, File downloadDir, AtomicInteger installed, int total) {
+    long start = System.currentTimeMillis();
+    File pluginFile = configuration.fileSystem().copyToDirectory(plugin, downloadDir);
+    if (pluginFile == null || !pluginFile.exists()) {
+      throw new IllegalStateException("Can not find the plugin " + plugin);
     }
+    LOG.info("Installed plugin: {} ({}/{}, {} ms)", pluginFile.getName(), installed.incrementAndGet(), total, System.currentTimeMillis() - start);
+    return pluginFile;
   }
 
   private Properties configureProperties(SonarDistribution distribution) {
@@ -27,10 +27,15 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.annotation.Nullable;
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.DefaultExecuteResultHandler;
 import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteException;
 import org.apache.commons.exec.ExecuteWatchdog;
 import org.apache.commons.exec.PumpStreamHandler;
 import org.apache.commons.io.FileUtils;
@@ -44,7 +49,6 @@ public class ServerProcessImpl implements ServerProcess {
 
   private static final String MIN_SQ_SUPPORTED_VERSION = "5.2";
   private static final Logger LOGGER = LoggerFactory.getLogger(ServerProcessImpl.class);
-  private static final long START_RETRY_TIMEOUT_MS = 100L;
   private static final long START_TIMEOUT_MS = 300_000L;
   private static final long STOP_TIMEOUT_MS = 300_000L;
 
@@ -54,7 +58,7 @@ public class ServerProcessImpl implements ServerProcess {
   private long startTimeoutMs;
   private long stopTimeoutMs;
 
-  private DefaultExecuteResultHandler processResultHandler;
+  private ProcessResultHandler processResultHandler;
   private DefaultExecutor executor;
   private Thread shutdhownHook;
 
@@ -93,31 +97,35 @@ public class ServerProcessImpl implements ServerProcess {
 
     StartupLogListener listener = new StartupLogListener(startupLogWatcher);
     executor.setStreamHandler(new PumpStreamHandler(listener));
-    processResultHandler = new DefaultExecuteResultHandler();
+    processResultHandler = new ProcessResultHandler();
     try {
       executor.execute(command, freshEnv(), processResultHandler);
     } catch (IOException e) {
       throw fail("Can not execute command: " + command, e);
     }
 
-    for (int i = 0; i < startTimeoutMs / START_RETRY_TIMEOUT_MS; i++) {
-      if (listener.isStarted()) {
-        shutdhownHook = new Thread(new StopShutdownHook());
-        Runtime.getRuntime().addShutdownHook(shutdhownHook);
-        return;
-      }
-      if (processResultHandler.hasResult()) {
-        // process is down
-        throw fail("Server startup failure", processResultHandler.getException());
-      }
-      try {
-        Thread.sleep(START_RETRY_TIMEOUT_MS);
-      } catch (InterruptedException ignored) {
-        Thread.currentThread().interrupt();
-      }
+    // wakes up as soon as server is detected as started or failed, or as process exits
+    try {
+      CompletableFuture.anyOf(listener.startedFuture(), processResultHandler.exitFuture()).get(startTimeoutMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      stop();
+      throw fail("Server did not start in timely fashion", null);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      stop();
+      throw fail("Interrupted while waiting for server startup", e);
+    } catch (ExecutionException e) {
+      // failure detected in logs. Process may still be alive.
+      stop();
+      throw fail(e.getCause().getMessage(), e.getCause());
+    }
+    if (listener.isStarted()) {
+      shutdhownHook = new Thread(new StopShutdownHook());
+      Runtime.getRuntime().addShutdownHook(shutdhownHook);
+      return;
     }
-    stop();
-    throw fail("Server did not start in timely fashion", null);
+    // process is down
+    throw fail("Server startup failure", processResultHandler.getException());
   }
 
   @Override
@@ -176,7 +184,7 @@ public class ServerProcessImpl implements ServerProcess {
     return processResultHandler != null && !processResultHandler.hasResult();
   }
 
-  private RuntimeException fail(String message, @Nullable Exception cause) {
+  private RuntimeException fail(String message, @Nullable Throwable cause) {
     cleanState();
     throw new IllegalStateException(message, cause);
   }
@@ -196,6 +204,26 @@ public class ServerProcessImpl implements ServerProcess {
     return env;
   }
 
+  private static class ProcessResultHandler extends DefaultExecuteResultHandler {
+    private final CompletableFuture<Void> exit = new CompletableFuture<>();
+
+    @Override
+    public void onProcessComplete(int exitValue) {
+      super.onProcessComplete(exitValue);
+      exit.complete(null);
+    }
+
+    @Override
+    public void onProcessFailed(ExecuteException e) {
+      super.onProcessFailed(e);
+      exit.complete(null);
+    }
+
+    CompletableFuture<Void> exitFuture() {
+      return exit;
+    }
+  }
+
   private class StopShutdownHook implements Runnable {
     @Override
     public void run() {
@@ -0,0 +1,260 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.server;
+
+import com.sonar.orchestrator.config.FileSystem;
+import com.sonar.orchestrator.util.Checksums;
+import com.sonar.orchestrator.util.ZipUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Persistent cache of extracted SonarQube ZIP files, shared between executions
+ * of Orchestrator. A template is keyed by the SHA-256 of the ZIP content and is
+ * never modified once published.
+ * <p/>
+ * Installations are created from a template by hard-linking files, except
+ * for the directories that are written by SonarQube, which are copied. Files
+ * are copied when the file system does not support hard links.
+ * <p/>
+ * Hard-linked files are shared by the template and by all the installations created
+ * from it, so they must be considered as read-only. Writing in place a file outside
+ * {@link #PRIVATE_DIRS}, for example under lib/ or web/, corrupts the template.
+ * Files must be deleted or replaced instead, which breaks the link.
+ * <p/>
+ * Only the {@code maxTemplates} most recently installed templates are kept, the
+ * others are deleted. Installations already created from a deleted template are not
+ * impacted. Templates are installed and evicted while holding a file lock, so
+ * a template is never deleted while being installed by another process.
+ */
+public class ServerTemplateCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ServerTemplateCache.class);
+
+  /**
+   * Directories, relative to SonarQube home, that are modified at runtime
+   */
+  static final Set<String> PRIVATE_DIRS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("conf", "temp", "logs", "data", "extensions")));
+
+  // hash computation is expensive on big ZIP files. It is kept in memory for the zip path, size and date.
+  private static final Map<String, String> HASHES = new ConcurrentHashMap<>();
+  static final int DEFAULT_MAX_TEMPLATES = 3;
+  private static final String LOCK_FILENAME = ".lock";
+  private static final Object JVM_LOCK = new Object();
+
+  private final File templatesDir;
+  private final int maxTemplates;
+  private volatile boolean hardLinksSupported = true;
+
+  public ServerTemplateCache(FileSystem fs) {
+    this(fs, DEFAULT_MAX_TEMPLATES);
+  }
+
+  /**
+   * @param maxTemplates the maximum number of templates kept on disk
+   * @since 3.16
+   */
+  public ServerTemplateCache(FileSystem fs, int maxTemplates) {
+    this(new File(fs.sonarInstallsDir(), "templates"), maxTemplates);
+  }
+
+  ServerTemplateCache(File templatesDir, int maxTemplates) {
+    checkArgument(maxTemplates > 0, "Maximum number of server templates must be positive: %s", maxTemplates);
+    this.templatesDir = templatesDir;
+    this.maxTemplates = maxTemplates;
+  }
+
+  public void install(File zip, File toDir) {
+    install(zip, toDir, path -> true);
+  }
+
+  /**
+   * Creates the installation {@code toDir} from the content of {@code zip}. The ZIP file
+   * is extracted only if its template does not exist yet. Templates always contain all the
+   * entries of the ZIP file, the filter being applied when installing files.
+   *
+   * @param filter the files to be installed, with the same semantic as in {@link ZipUtils#unzip(File, File, Predicate)}
+   */
+  public void install(File zip, File toDir, Predicate<String> filter) {
+    withLock(() -> {
+      File template = getOrExtract(zip);
+      LOG.info("Install {} from template {}", toDir, template);
+      try {
+        copyTree(template.toPath(), toDir.toPath(), filter);
+      } catch (IOException e) {
+        throw new IllegalStateException(format("Fail to install template [%s] to [%s]", template, toDir), e);
+      }
+      // last modification date of template directory is the date of last usage
+      template.setLastModified(System.currentTimeMillis());
+      evict(template);
+    });
+  }
+
+  File getOrExtract(File zip) {
+    File template = new File(templatesDir, hash(zip));
+    if (!template.isDirectory()) {
+      publish(zip, template);
+    }
+    return template;
+  }
+
+  /**
+   * The ZIP is extracted in a temporary directory which is atomically renamed, so that
+   * concurrent processes never see a partially extracted template.
+   */
+  private static void publish(File zip, File template) {
+    File tempDir = new File(template.getParentFile(), template.getName() + ".tmp-" + UUID.randomUUID());
+    try {
+      LOG.info("Extract {} to template {}", zip, template);
+      ZipUtils.unzip(zip, tempDir);
+      Files.move(tempDir.toPath(), template.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      if (!template.isDirectory()) {
+        throw new IllegalStateException(format("Fail to create template [%s] from [%s]", template, zip), e);
+      }
+      // template has been published in the meantime by another process
+    } finally {
+      FileUtils.deleteQuietly(tempDir);
+    }
+  }
+
+  /**
+   * Deletes the least recently used templates, including the temporary directories
+   * left by interrupted extractions. Must be called with lock.
+   */
+  private void evict(File keptTemplate) {
+    File[] dirs = templatesDir.listFiles(File::isDirectory);
+    if (dirs == null) {
+      return;
+    }
+    List<File> templates = Arrays.stream(dirs)
+      .filter(dir -> !dir.equals(keptTemplate))
+      .sorted(Comparator.comparingLong(File::lastModified).reversed())
+      .collect(Collectors.toList());
+    int kept = 1;
+    for (File dir : templates) {
+      if (dir.getName().contains(".") || kept >= maxTemplates) {
+        delete(dir);
+      } else {
+        kept++;
+      }
+    }
+  }
+
+  private static void delete(File dir) {
+    LOG.info("Delete server template {}", dir);
+    // rename first, so that a partially deleted directory is never considered as a template
+    File trash = new File(dir.getParentFile(), dir.getName() + ".deleted-" + UUID.randomUUID());
+    File toDelete = dir.renameTo(trash) ? trash : dir;
+    FileUtils.deleteQuietly(toDelete);
+  }
+
+  private void withLock(Runnable action) {
+    synchronized (JVM_LOCK) {
+      try {
+        FileUtils.forceMkdir(templatesDir);
+        try (FileChannel lockChannel = FileChannel.open(new File(templatesDir, LOCK_FILENAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock lock = lockChannel.lock()) {
+          action.run();
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to lock server templates " + templatesDir, e);
+      }
+    }
+  }
+
+  private void copyTree(Path from, Path to, Predicate<String> filter) throws IOException {
+    Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Path relativePath = from.relativize(file);
+        if (!filter.test(FilenameUtils.separatorsToUnix(relativePath.toString()))) {
+          return FileVisitResult.CONTINUE;
+        }
+        Path target = to.resolve(relativePath.toString());
+        if (isPrivate(relativePath) || !link(file, target)) {
+          Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * @param relativePath path relative to the template. First element is the root directory
+   *                     of the ZIP, for example "sonarqube-6.3".
+   */
+  static boolean isPrivate(Path relativePath) {
+    return relativePath.getNameCount() > 2 && PRIVATE_DIRS.contains(relativePath.getName(1).toString());
+  }
+
+  private boolean link(Path existing, Path link) {
+    if (!hardLinksSupported) {
+      return false;
+    }
+    try {
+      Files.deleteIfExists(link);
+      Files.createLink(link, existing);
+      return true;
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.warn("Hard links are not supported, files are copied instead: {}", e.getMessage());
+      hardLinksSupported = false;
+      return false;
+    }
+  }
+
+  static String hash(File zip) {
+    String key = format("%s:%d:%d", zip.getAbsolutePath(), zip.length(), zip.lastModified());
+    return HASHES.computeIfAbsent(key, k -> Checksums.sha256(zip));
+  }
+}
@@ -19,29 +19,70 @@
  */
 package com.sonar.orchestrator.server;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import com.sonar.orchestrator.util.ConsoleLog;
+import com.sonar.orchestrator.util.StreamConsumer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.exec.LogOutputStream;
 
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Completes {@link #startedFuture()} as soon as the watcher detects that server is started.
+ * It applies to the default watcher as well as to the custom ones.
+ * <p/>
+ * {@link #startedFuture()} completes exceptionally as soon as the watcher detects a failure
+ * before startup. The error contains the latest lines of logs.
+ */
 class StartupLogListener extends LogOutputStream {
 
-  private final AtomicBoolean started = new AtomicBoolean(false);
+  static final int EXCERPT_LINES = 30;
+
+  private final CompletableFuture<Void> started = new CompletableFuture<>();
   private final StartupLogWatcher watcher;
+  private final StreamConsumer console;
+  private final Deque<String> excerpt = new ArrayDeque<>(EXCERPT_LINES);
 
   StartupLogListener(StartupLogWatcher watcher) {
+    this(watcher, ConsoleLog.current());
+  }
+
+  StartupLogListener(StartupLogWatcher watcher, StreamConsumer console) {
     this.watcher = requireNonNull(watcher);
+    this.console = console;
   }
 
   @Override
   protected void processLine(String line, @SuppressWarnings("unused") int logLevel) {
+    if (!started.isDone()) {
+      watch(line);
+    }
+    console.consumeLine("> " + line);
+  }
+
+  private void watch(String line) {
+    if (excerpt.size() == EXCERPT_LINES) {
+      excerpt.removeFirst();
+    }
+    excerpt.addLast(line);
     if (watcher.isStarted(line)) {
-      started.set(true);
+      started.complete(null);
+      excerpt.clear();
+    } else if (watcher.isFailed(line)) {
+      StringBuilder message = new StringBuilder("Server startup failure detected in logs: ").append(line)
+        .append(System.lineSeparator()).append("Latest logs:");
+      excerpt.forEach(l -> message.append(System.lineSeparator()).append(l));
+      started.completeExceptionally(new IllegalStateException(message.toString()));
+      excerpt.clear();
     }
-    System.out.println("> " + line);
   }
 
   boolean isStarted() {
-    return started.get();
+    return started.isDone() && !started.isCompletedExceptionally();
+  }
+
+  CompletableFuture<Void> startedFuture() {
+    return started;
   }
 }
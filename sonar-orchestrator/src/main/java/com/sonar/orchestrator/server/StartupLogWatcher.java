@@ -27,10 +27,26 @@ package com.sonar.orchestrator.server;
 public interface StartupLogWatcher {
 
   /**
+   * Called for each line of logs, in the thread that consumes the output of server process.
+   * Server is considered as started as soon as this method returns {@code true}, without any
+   * polling delay.
    *
    * @param logLine a line of logs/sonar.log
    * @return true if server is detected as started and operational, otherwise false
    */
   boolean isStarted(String logLine);
 
+  /**
+   * Called for each line of logs as long as server is not detected as started. Startup is
+   * aborted as soon as this method returns {@code true}, instead of waiting for the startup timeout.
+   * The error then contains the latest lines of logs.
+   *
+   * @param logLine a line of logs/sonar.log
+   * @return true if the line reports a failure that prevents server from starting, otherwise false
+   * @since 3.16
+   */
+  default boolean isFailed(String logLine) {
+    return false;
+  }
+
 }
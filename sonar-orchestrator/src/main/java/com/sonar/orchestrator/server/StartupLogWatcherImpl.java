@@ -19,18 +19,80 @@
  */
 package com.sonar.orchestrator.server;
 
+import com.sonar.orchestrator.util.MultiPatternMatcher;
 import com.sonar.orchestrator.version.Version;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
 
+import static java.util.Arrays.asList;
+
+/**
+ * Success and failure messages are searched in a single pass over each line. As
+ * {@link StartupLogListener} calls {@link #isStarted(String)} then {@link #isFailed(String)}
+ * on the same line, the result of the last search is reused.
+ * <p/>
+ * Fatal exceptions are failures only on ERROR log lines and on uncaught exceptions, as
+ * they can also be logged as warnings by processes that recover from them.
+ */
 class StartupLogWatcherImpl implements StartupLogWatcher {
-  private final String startupExpectedMessage;
 
-  private StartupLogWatcherImpl(String startupExpectedMessage) {
-    this.startupExpectedMessage = startupExpectedMessage;
+  static final List<String> FAILURE_MESSAGES = asList(
+    "Process[es] is stopped",
+    "Process[search] is stopped",
+    "Process[web] is stopped",
+    "Process[ce] is stopped",
+    "Web server startup failed",
+    "Background initialization failed",
+    "bootstrap checks failed");
+
+  static final List<String> FATAL_EXCEPTIONS = asList(
+    "java.lang.OutOfMemoryError",
+    "java.net.BindException");
+
+  /**
+   * ERROR lines of SonarQube ("2017.03.01 10:00:00 ERROR web[][o.s.s.a.EmbeddedTomcat] ..."),
+   * of Elasticsearch ("[2017-03-01T10:00:00,000][ERROR][o.e.b.Bootstrap] ...") and uncaught
+   * exceptions of JVM ("Exception in thread "main" java.lang.OutOfMemoryError ...").
+   */
+  private static final Pattern ERROR_LINE = Pattern.compile("^(?:\\d{4}\\.\\d{2}\\.\\d{2} \\d{2}:\\d{2}:\\d{2} ERROR |\\[[^\\]]*\\]\\[ERROR\\s*\\]|ERROR\\b|Exception in thread )");
+
+  private final MultiPatternMatcher matcher;
+  private final int successCount;
+  private final int failureCount;
+  private String lastLine;
+  private int lastMatch;
+
+  private StartupLogWatcherImpl(List<String> successMessages, List<String> failureMessages, List<String> fatalExceptions) {
+    List<String> patterns = new ArrayList<>(successMessages);
+    patterns.addAll(failureMessages);
+    patterns.addAll(fatalExceptions);
+    this.matcher = MultiPatternMatcher.create(patterns);
+    this.successCount = successMessages.size();
+    this.failureCount = failureMessages.size();
   }
 
   @Override
   public boolean isStarted(String logLine) {
-    return logLine.contains(startupExpectedMessage);
+    int match = search(logLine);
+    return match >= 0 && match < successCount;
+  }
+
+  @Override
+  public boolean isFailed(String logLine) {
+    return search(logLine) >= successCount;
+  }
+
+  private int search(String logLine) {
+    if (!logLine.equals(lastLine)) {
+      int match = matcher.indexOfFirstMatch(logLine);
+      if (match >= successCount + failureCount && !ERROR_LINE.matcher(logLine).find()) {
+        match = -1;
+      }
+      lastMatch = match;
+      lastLine = logLine;
+    }
+    return lastMatch;
   }
 
   static StartupLogWatcherImpl create(Version serverVersion) {
@@ -40,6 +102,6 @@ class StartupLogWatcherImpl implements StartupLogWatcher {
     } else {
       startupExpectedMessage = "Process[web] is up";
     }
-    return new StartupLogWatcherImpl(startupExpectedMessage);
+    return new StartupLogWatcherImpl(asList(startupExpectedMessage), FAILURE_MESSAGES, FATAL_EXCEPTIONS);
   }
 }
@@ -0,0 +1,147 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import com.sonar.orchestrator.config.Configuration;
+import java.util.function.Predicate;
+
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkArgument;
+
+/**
+ * Pipeline printing the output of builds and server to the console. It is configured by:
+ * <ul>
+ *   <li>"orchestrator.consoleVerbosity": "all" (default) prints all the lines, "warn" prints only warnings and errors,
+ *   "none" prints nothing</li>
+ *   <li>"orchestrator.consoleBufferLines": capacity of buffer, 10'000 lines by default</li>
+ *   <li>"orchestrator.consoleBlockWhenFull": if "true" (default), then processes are blocked when console
+ *   is too slow. If "false", then lines are dropped.</li>
+ * </ul>
+ * Logs of builds are not impacted, see {@link com.sonar.orchestrator.build.BuildResult#getLogs()}.
+ *
+ * @since 3.16
+ */
+public final class ConsoleLog {
+
+  static final String VERBOSITY_PROPERTY = "orchestrator.consoleVerbosity";
+  static final String BUFFER_LINES_PROPERTY = "orchestrator.consoleBufferLines";
+  static final String BLOCK_WHEN_FULL_PROPERTY = "orchestrator.consoleBlockWhenFull";
+  private static final int DEFAULT_BUFFER_LINES = 10_000;
+  private static final boolean DEFAULT_BLOCK_WHEN_FULL = true;
+
+  private static volatile LogPipeline instance;
+  private static String instanceSettings;
+
+  enum Verbosity {
+    ALL, WARN, NONE
+  }
+
+  private ConsoleLog() {
+    // only static methods
+  }
+
+  /**
+   * The current pipeline, with default settings if {@link #configure(Configuration)} has not been called.
+   */
+  public static LogPipeline get() {
+    LogPipeline pipeline = instance;
+    if (pipeline != null) {
+      return pipeline;
+    }
+    synchronized (ConsoleLog.class) {
+      if (instance == null) {
+        instance = create(Verbosity.ALL, DEFAULT_BUFFER_LINES, DEFAULT_BLOCK_WHEN_FULL);
+        instanceSettings = settings(Verbosity.ALL, DEFAULT_BUFFER_LINES, DEFAULT_BLOCK_WHEN_FULL);
+      }
+      return instance;
+    }
+  }
+
+  /**
+   * Prints lines to the current pipeline. Contrary to {@link #get()}, the pipeline is looked up for each line,
+   * so lines are not dropped by the pipelines closed by {@link #configure(Configuration)}.
+   */
+  public static StreamConsumer current() {
+    return line -> get().consumeLine(line);
+  }
+
+  /**
+   * Replaces the current pipeline if settings changed. Lines buffered by the previous one are printed first.
+   */
+  public static synchronized LogPipeline configure(Configuration config) {
+    Verbosity verbosity = verbosity(config);
+    int bufferLines = config.getInt(BUFFER_LINES_PROPERTY, DEFAULT_BUFFER_LINES);
+    boolean blockWhenFull = Boolean.parseBoolean(config.getString(BLOCK_WHEN_FULL_PROPERTY, String.valueOf(DEFAULT_BLOCK_WHEN_FULL)));
+    String settings = settings(verbosity, bufferLines, blockWhenFull);
+    if (instance != null && settings.equals(instanceSettings)) {
+      return instance;
+    }
+    LogPipeline previous = instance;
+    instance = create(verbosity, bufferLines, blockWhenFull);
+    instanceSettings = settings;
+    if (previous != null) {
+      previous.close();
+    }
+    return instance;
+  }
+
+  private static Verbosity verbosity(Configuration config) {
+    String value = config.getString(VERBOSITY_PROPERTY, Verbosity.ALL.name());
+    Verbosity verbosity = null;
+    for (Verbosity candidate : Verbosity.values()) {
+      if (candidate.name().equalsIgnoreCase(value.trim())) {
+        verbosity = candidate;
+      }
+    }
+    checkArgument(verbosity != null, "Unsupported value of property %s: %s. Supported values are all, warn and none", VERBOSITY_PROPERTY, value);
+    return verbosity;
+  }
+
+  private static String settings(Verbosity verbosity, int bufferLines, boolean blockWhenFull) {
+    return verbosity + ":" + bufferLines + ":" + blockWhenFull;
+  }
+
+  static LogPipeline create(Verbosity verbosity, int bufferLines, boolean blockWhenFull) {
+    LogSink sink;
+    switch (verbosity) {
+      case ALL:
+        sink = LogSink.console();
+        break;
+      case WARN:
+        sink = LogSink.filter(isWarnOrError(), LogSink.console());
+        break;
+      case NONE:
+        sink = lines -> {
+          // nothing to print
+        };
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported verbosity: " + verbosity);
+    }
+    return new LogPipeline("orchestrator-console", bufferLines, blockWhenFull, sink);
+  }
+
+  /**
+   * Matches the formats of Maven ("[WARNING]", "[ERROR]"), of scanners ("WARN: ", "ERROR: ")
+   * and of server ("WARN ", "ERROR ")
+   */
+  static Predicate<String> isWarnOrError() {
+    return line -> line.contains("WARN") || line.contains("ERROR");
+  }
+}
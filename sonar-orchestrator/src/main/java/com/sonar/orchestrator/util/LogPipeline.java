@@ -0,0 +1,195 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkArgument;
+
+/**
+ * Decouples the threads that read the output of processes from the sinks of logs, which
+ * can be slow, like the console of CI. Lines are buffered in a bounded ring buffer, then written
+ * in batches to the sinks by a background thread.
+ * <p/>
+ * When the buffer is full, lines are either dropped or the caller is blocked until space is
+ * available, depending on {@code blockWhenFull}. Dropped lines are reported to sinks by a marker line.
+ *
+ * @since 3.16
+ */
+public class LogPipeline implements StreamConsumer, Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LogPipeline.class);
+  static final int MAX_BATCH_SIZE = 1_000;
+
+  private final BlockingQueue<String> buffer;
+  private final boolean blockWhenFull;
+  private final List<LogSink> sinks;
+  private final Thread thread;
+  private final AtomicLong droppedLines = new AtomicLong();
+  private final AtomicLong blockedLines = new AtomicLong();
+  private final Object lock = new Object();
+  // guarded by lock
+  private long acceptedLines = 0L;
+  private long writtenLines = 0L;
+  private long reportedDroppedLines = 0L;
+  private volatile boolean closed = false;
+
+  public LogPipeline(String name, int capacity, boolean blockWhenFull, LogSink... sinks) {
+    checkArgument(capacity > 0, "Capacity must be positive: %s", capacity);
+    this.buffer = new ArrayBlockingQueue<>(capacity);
+    this.blockWhenFull = blockWhenFull;
+    this.sinks = Collections.unmodifiableList(Arrays.asList(sinks));
+    this.thread = new Thread(this::run, name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  @Override
+  public void consumeLine(String line) {
+    if (closed) {
+      droppedLines.incrementAndGet();
+      return;
+    }
+    if (buffer.offer(line)) {
+      incrementAccepted();
+    } else if (blockWhenFull) {
+      blockedLines.incrementAndGet();
+      try {
+        buffer.put(line);
+        incrementAccepted();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        droppedLines.incrementAndGet();
+      }
+    } else {
+      droppedLines.incrementAndGet();
+    }
+  }
+
+  private void incrementAccepted() {
+    synchronized (lock) {
+      acceptedLines++;
+    }
+  }
+
+  private void run() {
+    List<String> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    while (!closed || !buffer.isEmpty()) {
+      try {
+        String first = buffer.poll(100L, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        buffer.drainTo(batch, MAX_BATCH_SIZE - 1);
+        write(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        synchronized (lock) {
+          writtenLines += batch.size();
+          lock.notifyAll();
+        }
+        batch.clear();
+      }
+    }
+  }
+
+  private void write(List<String> batch) {
+    List<String> lines = batch;
+    long dropped = droppedLines.get();
+    if (dropped > reportedDroppedLines) {
+      lines = new ArrayList<>(batch.size() + 1);
+      lines.add("[... " + (dropped - reportedDroppedLines) + " lines of logs dropped ...]");
+      lines.addAll(batch);
+      reportedDroppedLines = dropped;
+    }
+    for (LogSink sink : sinks) {
+      try {
+        sink.write(lines);
+        sink.flush();
+      } catch (Exception e) {
+        LOG.warn("Fail to write logs to " + sink, e);
+      }
+    }
+  }
+
+  /**
+   * Waits until the lines consumed so far are written to sinks
+   */
+  public void flush() {
+    synchronized (lock) {
+      long target = acceptedLines;
+      while (writtenLines < target && thread.isAlive()) {
+        try {
+          lock.wait(100L);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the buffered lines, then stops the background thread. The next lines are dropped.
+   */
+  @Override
+  public void close() {
+    flush();
+    closed = true;
+    try {
+      thread.join(1_000L);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Number of lines that have been dropped because buffer was full
+   */
+  public long getDroppedLines() {
+    return droppedLines.get();
+  }
+
+  /**
+   * Number of lines whose caller has been blocked because buffer was full
+   */
+  public long getBlockedLines() {
+    return blockedLines.get();
+  }
+
+  public long getWrittenLines() {
+    synchronized (lock) {
+      return writtenLines;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Destination of the lines of logs dispatched by {@link LogPipeline}. Lines are
+ * received in batches, so that the sinks can write them at once.
+ *
+ * @since 3.16
+ */
+@FunctionalInterface
+public interface LogSink {
+
+  void write(List<String> lines) throws IOException;
+
+  default void flush() throws IOException {
+    // nothing to flush by default
+  }
+
+  /**
+   * Prints to {@link System#out}, which is resolved on each call so that
+   * a stream replaced by {@link System#setOut(PrintStream)} is honored
+   */
+  static LogSink console() {
+    return new LogSink() {
+      @Override
+      public void write(List<String> lines) throws IOException {
+        stream(System.out).write(lines);
+      }
+
+      @Override
+      public void flush() {
+        System.out.flush();
+      }
+    };
+  }
+
+  /**
+   * Each batch is printed with a single call to the stream
+   */
+  static LogSink stream(PrintStream stream) {
+    return new LogSink() {
+      @Override
+      public void write(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+          sb.append(line).append(System.lineSeparator());
+        }
+        stream.print(sb);
+      }
+
+      @Override
+      public void flush() {
+        stream.flush();
+      }
+    };
+  }
+
+  static LogSink writer(Writer writer) {
+    return new LogSink() {
+      @Override
+      public void write(List<String> lines) throws IOException {
+        for (String line : lines) {
+          writer.write(line);
+          writer.write("\n");
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        writer.flush();
+      }
+    };
+  }
+
+  /**
+   * Appends lines to file, which is created if needed
+   */
+  static LogSink file(File file) {
+    return lines -> Files.write(file.toPath(), lines, UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Collection must be thread-safe if it is read during execution of {@link LogPipeline}
+   */
+  static LogSink memory(Collection<String> collection) {
+    return collection::addAll;
+  }
+
+  /**
+   * Forwards only the lines accepted by the predicate
+   */
+  static LogSink filter(Predicate<String> predicate, LogSink sink) {
+    return new LogSink() {
+      @Override
+      public void write(List<String> lines) throws IOException {
+        List<String> accepted = new ArrayList<>();
+        for (String line : lines) {
+          if (predicate.test(line)) {
+            accepted.add(line);
+          }
+        }
+        if (!accepted.isEmpty()) {
+          sink.write(accepted);
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        sink.flush();
+      }
+    };
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import static com.sonar.orchestrator.util.OrchestratorUtils.checkArgument;
+
+/**
+ * Searches a set of literal patterns in a text in a single pass, whatever the number of
+ * patterns (Aho-Corasick automaton). Instances are immutable and thread-safe.
+ *
+ * @since 3.16
+ */
+public final class MultiPatternMatcher {
+
+  private static final int ROOT = 0;
+
+  private final List<String> patterns;
+  private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+  private final List<Integer> terminals = new ArrayList<>();
+  private final int[] failures;
+  private final int[] matches;
+
+  private MultiPatternMatcher(List<String> patterns) {
+    this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+    newNode();
+    for (int i = 0; i < patterns.size(); i++) {
+      String pattern = patterns.get(i);
+      checkArgument(!pattern.isEmpty(), "Pattern must not be empty");
+      int node = ROOT;
+      for (char c : pattern.toCharArray()) {
+        Integer next = transitions.get(node).get(c);
+        if (next == null) {
+          next = newNode();
+          transitions.get(node).put(c, next);
+        }
+        node = next;
+      }
+      if (terminals.get(node) < 0) {
+        // first declared pattern wins on duplicates
+        terminals.set(node, i);
+      }
+    }
+    failures = new int[transitions.size()];
+    matches = new int[transitions.size()];
+    link();
+  }
+
+  public static MultiPatternMatcher create(List<String> patterns) {
+    return new MultiPatternMatcher(patterns);
+  }
+
+  public List<String> getPatterns() {
+    return patterns;
+  }
+
+  /**
+   * @return the index in {@link #getPatterns()} of the pattern that ends first in text, or -1
+   * if none of the patterns is found.
+   */
+  public int indexOfFirstMatch(String text) {
+    int node = ROOT;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      Integer next = transitions.get(node).get(c);
+      while (next == null && node != ROOT) {
+        node = failures[node];
+        next = transitions.get(node).get(c);
+      }
+      node = next == null ? ROOT : next;
+      if (matches[node] >= 0) {
+        return matches[node];
+      }
+    }
+    return -1;
+  }
+
+  public boolean matches(String text) {
+    return indexOfFirstMatch(text) >= 0;
+  }
+
+  private int newNode() {
+    transitions.add(new HashMap<>());
+    terminals.add(-1);
+    return transitions.size() - 1;
+  }
+
+  /**
+   * Breadth-first computation of failure links. As parents are processed before their children,
+   * the match of the failure node is already known when a node is visited.
+   */
+  private void link() {
+    Queue<Integer> queue = new ArrayDeque<>();
+    matches[ROOT] = -1;
+    for (int child : transitions.get(ROOT).values()) {
+      failures[child] = ROOT;
+      matches[child] = terminals.get(child);
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      int node = queue.remove();
+      for (Map.Entry<Character, Integer> transition : transitions.get(node).entrySet()) {
+        int child = transition.getValue();
+        int fallback = failures[node];
+        Integer next = transitions.get(fallback).get(transition.getKey());
+        while (next == null && fallback != ROOT) {
+          fallback = failures[fallback];
+          next = transitions.get(fallback).get(transition.getKey());
+        }
+        failures[child] = next == null ? ROOT : next;
+        matches[child] = terminals.get(child) >= 0 ? terminals.get(child) : matches[failures[child]];
+        queue.add(child);
+      }
+    }
+  }
+}
@@ -28,23 +28,35 @@ public interface StreamConsumer {
 
   void consumeLine(String line);
 
+  /**
+   * Writes lines to the given writer and prints them asynchronously to the console,
+   * see {@link ConsoleLog}.
+   */
   class Pipe implements StreamConsumer {
 
     private final Writer writer;
+    private final StreamConsumer console;
 
     public Pipe(Writer writer) {
+      this(writer, ConsoleLog.current());
+    }
+
+    /**
+     * @since 3.16
+     */
+    public Pipe(Writer writer, StreamConsumer console) {
       this.writer = writer;
+      this.console = console;
     }
 
     @Override
     public void consumeLine(String line) {
       try {
-        System.out.println(line);
-        writer.write(line);
-        writer.write("\n");
+        writer.write(line + "\n");
       } catch (IOException e) {
         LoggerFactory.getLogger(Pipe.class).error("Fail to write : " + line, e);
       }
+      console.consumeLine(line);
     }
   }
 
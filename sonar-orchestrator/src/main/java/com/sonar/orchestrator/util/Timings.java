@@ -0,0 +1,168 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.apache.commons.io.FileUtils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Records the durations, in nanoseconds, of the phases executed by Orchestrator. A phase can
+ * be recorded many times, for example once per build. Phases are named with dot-separated
+ * categories, like "start.database" or "build.run". This class is thread-safe.
+ *
+ * @since 3.16
+ */
+public final class Timings {
+
+  private final long origin = System.nanoTime();
+  private final List<Timing> timings = new ArrayList<>();
+
+  public void run(String phase, Runnable task) {
+    long start = System.nanoTime();
+    try {
+      task.run();
+    } finally {
+      record(phase, start, System.nanoTime() - start);
+    }
+  }
+
+  public <T> T call(String phase, Supplier<T> task) {
+    long start = System.nanoTime();
+    try {
+      return task.get();
+    } finally {
+      record(phase, start, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * @param startNanos value of {@link System#nanoTime()} when phase started
+   */
+  public Timings record(String phase, long startNanos, long durationNanos) {
+    Timing timing = new Timing(phase, startNanos - origin, durationNanos);
+    synchronized (timings) {
+      timings.add(timing);
+    }
+    return this;
+  }
+
+  /**
+   * All the recorded phases, in the order of their completion.
+   */
+  public List<Timing> getTimings() {
+    synchronized (timings) {
+      return Collections.unmodifiableList(new ArrayList<>(timings));
+    }
+  }
+
+  /**
+   * Sum of durations per phase, in nanoseconds, in the order of first completion.
+   */
+  public Map<String, Long> getTotalNanosByPhase() {
+    Map<String, Long> totals = new LinkedHashMap<>();
+    for (Timing timing : getTimings()) {
+      totals.merge(timing.getPhase(), timing.getDurationNanos(), Long::sum);
+    }
+    return totals;
+  }
+
+  public String toJson() {
+    StringBuilder json = new StringBuilder("{\"timings\":[");
+    List<Timing> list = getTimings();
+    for (int i = 0; i < list.size(); i++) {
+      Timing timing = list.get(i);
+      json.append(i == 0 ? "" : ",")
+        .append("{\"phase\":").append(quote(timing.getPhase()))
+        .append(",\"startNanos\":").append(timing.getStartNanos())
+        .append(",\"durationNanos\":").append(timing.getDurationNanos())
+        .append('}');
+    }
+    json.append("],\"totalNanos\":{");
+    boolean first = true;
+    for (Map.Entry<String, Long> total : getTotalNanosByPhase().entrySet()) {
+      json.append(first ? "" : ",").append(quote(total.getKey())).append(':').append(total.getValue());
+      first = false;
+    }
+    return json.append("}}").toString();
+  }
+
+  public void writeJson(File file) {
+    try {
+      FileUtils.write(file, toJson(), UTF_8);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write timings to " + file, e);
+    }
+  }
+
+  private static String quote(String s) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (char c : s.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < ' ') {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  public static final class Timing {
+    private final String phase;
+    private final long startNanos;
+    private final long durationNanos;
+
+    Timing(String phase, long startNanos, long durationNanos) {
+      this.phase = phase;
+      this.startNanos = startNanos;
+      this.durationNanos = durationNanos;
+    }
+
+    public String getPhase() {
+      return phase;
+    }
+
+    /**
+     * Start of phase, relative to the creation of {@link Timings}
+     */
+    public long getStartNanos() {
+      return startNanos;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    @Override
+    public String toString() {
+      return phase + ": " + durationNanos + " ns";
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Selects the ZIP entries to be extracted by {@link ZipUtils#unzip(java.io.File, java.io.File, Predicate)}.
+ * Patterns are matched against the entry names, with "/" as separator, and support the
+ * wildcards "*" and "?". Note that "*" also matches "/", so "web/docs/*" excludes the whole
+ * directory.
+ * <p/>
+ * An entry is accepted if it matches at least one inclusion (or if there are no inclusions)
+ * and if it does not match any exclusion.
+ *
+ * @since 3.16
+ */
+public final class ZipEntryFilter implements Predicate<String> {
+
+  private final List<String> inclusions = new ArrayList<>();
+  private final List<String> exclusions = new ArrayList<>();
+
+  public ZipEntryFilter include(String... patterns) {
+    inclusions.addAll(asList(patterns));
+    return this;
+  }
+
+  public ZipEntryFilter exclude(String... patterns) {
+    exclusions.addAll(asList(patterns));
+    return this;
+  }
+
+  public List<String> getInclusions() {
+    return Collections.unmodifiableList(inclusions);
+  }
+
+  public List<String> getExclusions() {
+    return Collections.unmodifiableList(exclusions);
+  }
+
+  @Override
+  public boolean test(String entryName) {
+    return (inclusions.isEmpty() || matchesAny(inclusions, entryName)) && !matchesAny(exclusions, entryName);
+  }
+
+  private static boolean matchesAny(List<String> patterns, String entryName) {
+    for (String pattern : patterns) {
+      if (FilenameUtils.wildcardMatch(entryName, pattern, IOCase.SENSITIVE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,454 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static java.lang.String.format;
+
+/**
+ * Pure Java extraction of ZIP files. The central directory is read once, then
+ * file entries are extracted in parallel from a shared {@link FileChannel} with
+ * positional reads:
+ * <ul>
+ *   <li>STORED entries are copied with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}</li>
+ *   <li>DEFLATED entries are inflated and checked against their CRC</li>
+ * </ul>
+ * Unix permissions are restored when available. Entries that would be extracted outside
+ * the target directory are rejected.
+ * <p/>
+ * ZIP64 archives are not supported, see {@link #isSupported(File)}.
+ */
+final class ZipExtractor {
+
+  private static final int EOCD_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int EOCD_MIN_LENGTH = 22;
+  private static final int ZIP64_EOCD_LENGTH = 56;
+  private static final int ZIP64_LOCATOR_LENGTH = 20;
+  private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+  private static final int CENTRAL_HEADER_LENGTH = 46;
+  private static final int LOCAL_HEADER_LENGTH = 30;
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+  private static final int UNIX_PLATFORM = 3;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final int threads;
+
+  ZipExtractor(int threads) {
+    this.threads = threads;
+  }
+
+  static ZipExtractor create() {
+    return new ZipExtractor(Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors())));
+  }
+
+  /**
+   * @return false if the ZIP file can't be read by this extractor, for example if it uses the ZIP64 format.
+   */
+  static boolean isSupported(File zip) {
+    try (FileChannel channel = FileChannel.open(zip.toPath(), StandardOpenOption.READ)) {
+      readEntries(channel);
+      return true;
+    } catch (UnsupportedZipException e) {
+      return false;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read " + zip, e);
+    }
+  }
+
+  void extract(File zip, File toDir) throws IOException {
+    extract(zip, toDir, entryName -> true);
+  }
+
+  /**
+   * @param filter the file entries to be extracted. Directories are always created.
+   */
+  void extract(File zip, File toDir, Predicate<String> filter) throws IOException {
+    Path targetDir = toDir.toPath().toAbsolutePath().normalize();
+    try (FileChannel channel = FileChannel.open(zip.toPath(), StandardOpenOption.READ)) {
+      List<Entry> entries = readEntries(channel);
+      List<Entry> files = new ArrayList<>();
+      for (Entry entry : entries) {
+        Path target = resolve(targetDir, entry.name);
+        if (entry.isDirectory()) {
+          Files.createDirectories(target);
+        } else {
+          Files.createDirectories(target.getParent());
+          if (filter.test(entry.name)) {
+            files.add(entry);
+          }
+        }
+      }
+      // biggest entries first for better balancing between threads
+      files.sort(Comparator.comparingLong((Entry e) -> e.compressedSize).reversed());
+      extractFiles(channel, files, targetDir);
+      for (Entry entry : entries) {
+        if (entry.isDirectory()) {
+          setPermissions(resolve(targetDir, entry.name), entry);
+        }
+      }
+    }
+  }
+
+  private void extractFiles(FileChannel channel, List<Entry> files, Path targetDir) throws IOException {
+    if (threads == 1 || files.size() < 2) {
+      for (Entry entry : files) {
+        extractFile(channel, entry, resolve(targetDir, entry.name));
+      }
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (Entry entry : files) {
+        futures.add(executor.submit(() -> {
+          extractFile(channel, entry, resolve(targetDir, entry.name));
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while extracting ZIP entries", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void extractFile(FileChannel channel, Entry entry, Path target) throws IOException {
+    long dataOffset = dataOffset(channel, entry);
+    // never write through an existing file, which may be read-only or a hard link
+    Files.deleteIfExists(target);
+    try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      if (entry.method == STORED) {
+        transfer(channel, dataOffset, entry.compressedSize, out);
+      } else {
+        inflate(channel, dataOffset, entry, out);
+      }
+    }
+    setPermissions(target, entry);
+  }
+
+  private static void transfer(FileChannel channel, long offset, long size, FileChannel out) throws IOException {
+    long transferred = 0L;
+    while (transferred < size) {
+      long count = channel.transferTo(offset + transferred, size - transferred, out);
+      if (count <= 0) {
+        throw new IOException("Unexpected end of ZIP file");
+      }
+      transferred += count;
+    }
+  }
+
+  private static void inflate(FileChannel channel, long offset, Entry entry, FileChannel out) throws IOException {
+    Inflater inflater = new Inflater(true);
+    CRC32 crc = new CRC32();
+    ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+    byte[] output = new byte[BUFFER_SIZE];
+    long position = offset;
+    long remaining = entry.compressedSize;
+    boolean dummyByteSent = false;
+    try {
+      while (!inflater.finished()) {
+        if (inflater.needsInput()) {
+          if (remaining > 0) {
+            input.clear();
+            input.limit((int) Math.min(BUFFER_SIZE, remaining));
+            int read = channel.read(input, position);
+            if (read <= 0) {
+              throw new IOException("Unexpected end of ZIP file");
+            }
+            inflater.setInput(input.array(), 0, read);
+            position += read;
+            remaining -= read;
+          } else if (!dummyByteSent) {
+            // "nowrap" inflater may require an extra byte, see javadoc of java.util.zip.Inflater
+            inflater.setInput(new byte[1]);
+            dummyByteSent = true;
+          } else {
+            throw new IOException(format("Unexpected end of ZIP entry %s", entry.name));
+          }
+        }
+        int length = inflater.inflate(output);
+        if (length == 0 && inflater.needsDictionary()) {
+          throw new IOException(format("Unsupported compression of ZIP entry %s", entry.name));
+        }
+        crc.update(output, 0, length);
+        ByteBuffer buffer = ByteBuffer.wrap(output, 0, length);
+        while (buffer.hasRemaining()) {
+          out.write(buffer);
+        }
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(format("Invalid ZIP entry %s", entry.name), e);
+    } finally {
+      inflater.end();
+    }
+    if (crc.getValue() != entry.crc) {
+      throw new IOException(format("Invalid CRC of ZIP entry %s", entry.name));
+    }
+  }
+
+  private static long dataOffset(FileChannel channel, Entry entry) throws IOException {
+    ByteBuffer header = read(channel, entry.localHeaderOffset, LOCAL_HEADER_LENGTH);
+    if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new IOException(format("Invalid local header of ZIP entry %s", entry.name));
+    }
+    return entry.localHeaderOffset + LOCAL_HEADER_LENGTH + unsignedShort(header, 26) + unsignedShort(header, 28);
+  }
+
+  /**
+   * Protection against "zip slip": entries must be extracted in the target directory.
+   */
+  static Path resolve(Path targetDir, String entryName) throws IOException {
+    Path target = targetDir.resolve(entryName).normalize();
+    if (!target.startsWith(targetDir) || target.equals(targetDir)) {
+      throw new IOException(format("ZIP entry %s is outside of the target directory", entryName));
+    }
+    return target;
+  }
+
+  private static void setPermissions(Path path, Entry entry) throws IOException {
+    setPermissions(path, entry.unixMode());
+  }
+
+  static void setPermissions(Path path, int mode) throws IOException {
+    if (mode != 0 && FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      Files.setPosixFilePermissions(path, toPermissions(mode));
+    }
+  }
+
+  static Set<PosixFilePermission> toPermissions(int mode) {
+    Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+    PosixFilePermission[] values = {
+      PosixFilePermission.OTHERS_EXECUTE, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_READ,
+      PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_READ,
+      PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_READ};
+    for (int bit = 0; bit < values.length; bit++) {
+      if ((mode & (1 << bit)) != 0) {
+        permissions.add(values[bit]);
+      }
+    }
+    return permissions;
+  }
+
+  static List<Entry> readEntries(FileChannel channel) throws IOException {
+    ByteBuffer eocd = read(channel, findEndOfCentralDirectory(channel), EOCD_MIN_LENGTH);
+    int count = unsignedShort(eocd, 10);
+    long size = unsignedInt(eocd, 12);
+    long offset = unsignedInt(eocd, 16);
+    if (count == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+      throw new UnsupportedZipException("ZIP64 format is not supported");
+    }
+    ByteBuffer directory = read(channel, offset, (int) size);
+    List<Entry> entries = new ArrayList<>(count);
+    int position = 0;
+    for (int i = 0; i < count; i++) {
+      Entry entry = readCentralHeader(directory, position);
+      if ((entry.flags & 1) != 0) {
+        throw new UnsupportedZipException("Encrypted ZIP entries are not supported");
+      }
+      if (entry.compressedSize == 0xFFFFFFFFL || entry.uncompressedSize == 0xFFFFFFFFL || entry.localHeaderOffset == 0xFFFFFFFFL) {
+        throw new UnsupportedZipException("ZIP64 format is not supported");
+      }
+      if (entry.method != STORED && entry.method != DEFLATED) {
+        throw new UnsupportedZipException("Unsupported compression method " + entry.method);
+      }
+      entries.add(entry);
+      position += entry.headerLength;
+    }
+    return entries;
+  }
+
+  /**
+   * Unix permissions of the entries that have some, by entry name. Contrary to {@link #readEntries(FileChannel)},
+   * all the archives are supported, including ZIP64 ones.
+   */
+  static Map<String, Integer> readUnixModes(File zip) throws IOException {
+    try (FileChannel channel = FileChannel.open(zip.toPath(), StandardOpenOption.READ)) {
+      long eocdOffset = findEndOfCentralDirectory(channel);
+      ByteBuffer eocd = read(channel, eocdOffset, EOCD_MIN_LENGTH);
+      long size = unsignedInt(eocd, 12);
+      long offset = unsignedInt(eocd, 16);
+      if (eocdOffset >= ZIP64_LOCATOR_LENGTH) {
+        ByteBuffer locator = read(channel, eocdOffset - ZIP64_LOCATOR_LENGTH, ZIP64_LOCATOR_LENGTH);
+        if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+          ByteBuffer zip64Eocd = read(channel, locator.getLong(8), ZIP64_EOCD_LENGTH);
+          if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+            throw new IOException("Invalid ZIP64 end of central directory");
+          }
+          size = zip64Eocd.getLong(40);
+          offset = zip64Eocd.getLong(48);
+        }
+      }
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Central directory of ZIP file is too large: " + size);
+      }
+      ByteBuffer directory = read(channel, offset, (int) size);
+      Map<String, Integer> modes = new HashMap<>();
+      int position = 0;
+      // the number of entries of the end of central directory is ignored, it may be truncated
+      while (position < directory.limit()) {
+        Entry entry = readCentralHeader(directory, position);
+        if (entry.unixMode() != 0) {
+          modes.put(entry.name, entry.unixMode());
+        }
+        position += entry.headerLength;
+      }
+      return modes;
+    }
+  }
+
+  private static Entry readCentralHeader(ByteBuffer directory, int position) throws IOException {
+    if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+      throw new IOException("Invalid central directory of ZIP file");
+    }
+    Entry entry = new Entry();
+    entry.versionMadeBy = unsignedShort(directory, position + 4);
+    entry.flags = unsignedShort(directory, position + 8);
+    entry.method = unsignedShort(directory, position + 10);
+    entry.crc = unsignedInt(directory, position + 16);
+    entry.compressedSize = unsignedInt(directory, position + 20);
+    entry.uncompressedSize = unsignedInt(directory, position + 24);
+    int nameLength = unsignedShort(directory, position + 28);
+    int extraLength = unsignedShort(directory, position + 30);
+    int commentLength = unsignedShort(directory, position + 32);
+    entry.externalAttributes = unsignedInt(directory, position + 38);
+    entry.localHeaderOffset = unsignedInt(directory, position + 42);
+    byte[] name = new byte[nameLength];
+    directory.position(position + CENTRAL_HEADER_LENGTH);
+    directory.get(name);
+    entry.name = new String(name, StandardCharsets.UTF_8);
+    entry.headerLength = CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+    return entry;
+  }
+
+  /**
+   * @return the position of the end of central directory record in the file
+   */
+  private static long findEndOfCentralDirectory(FileChannel channel) throws IOException {
+    long fileSize = channel.size();
+    if (fileSize < EOCD_MIN_LENGTH) {
+      throw new IOException("Invalid ZIP file");
+    }
+    int length = (int) Math.min(fileSize, (long) EOCD_MIN_LENGTH + MAX_COMMENT_LENGTH);
+    ByteBuffer tail = read(channel, fileSize - length, length);
+    for (int position = length - EOCD_MIN_LENGTH; position >= 0; position--) {
+      if (tail.getInt(position) == EOCD_SIGNATURE) {
+        return fileSize - length + position;
+      }
+    }
+    throw new IOException("Invalid ZIP file: end of central directory not found");
+  }
+
+  private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of ZIP file");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static int unsignedShort(ByteBuffer buffer, int index) {
+    return buffer.getShort(index) & 0xFFFF;
+  }
+
+  private static long unsignedInt(ByteBuffer buffer, int index) {
+    return buffer.getInt(index) & 0xFFFFFFFFL;
+  }
+
+  static class Entry {
+    private String name;
+    private int versionMadeBy;
+    private int flags;
+    private int method;
+    private long crc;
+    private long compressedSize;
+    private long uncompressedSize;
+    private long externalAttributes;
+    private long localHeaderOffset;
+    private int headerLength;
+
+    boolean isDirectory() {
+      return name.endsWith("/");
+    }
+
+    String getName() {
+      return name;
+    }
+
+    /**
+     * @return the Unix permission bits, or 0 if the entry was not created on Unix
+     */
+    int unixMode() {
+      if ((versionMadeBy >> 8) != UNIX_PLATFORM) {
+        return 0;
+      }
+      return (int) ((externalAttributes >> 16) & 0777);
+    }
+  }
+
+  static class UnsupportedZipException extends IOException {
+    UnsupportedZipException(String message) {
+      super(message);
+    }
+  }
+}
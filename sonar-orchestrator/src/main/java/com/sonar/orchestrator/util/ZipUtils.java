@@ -20,14 +20,18 @@
 package com.sonar.orchestrator.util;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.SystemUtils;
+import org.slf4j.LoggerFactory;
 
 public final class ZipUtils {
   private ZipUtils() {
@@ -35,6 +39,17 @@ public final class ZipUtils {
   }
 
   public static void unzip(File zip, File toDir) {
+    unzip(zip, toDir, entryName -> true);
+  }
+
+  /**
+   * Extracts the file entries accepted by {@code filter}, for example a {@link ZipEntryFilter}.
+   * The filter is applied on the entry names, for instance "sonarqube-6.3/lib/foo.jar".
+   * Directories are always created.
+   *
+   * @since 3.16
+   */
+  public static void unzip(File zip, File toDir, Predicate<String> filter) {
     try {
       if (!toDir.exists()) {
         FileUtils.forceMkdir(toDir);
@@ -43,48 +58,66 @@ public final class ZipUtils {
       throw new IllegalStateException("Fail to create folder " + toDir, e);
     }
 
-    if (SystemUtils.IS_OS_WINDOWS) {
-      javaUnzip(zip, toDir);
-    } else {
-      nativeUnzip(zip, toDir);
+    parallelUnzip(zip, toDir, filter);
+  }
+
+  static void parallelUnzip(File zip, File toDir) {
+    parallelUnzip(zip, toDir, entryName -> true);
+  }
+
+  /**
+   * Extracts entries in parallel, see {@link ZipExtractor}. Falls back to {@link #javaUnzip(File, File, Predicate)}
+   * for the archives that are not supported, for example ZIP64.
+   */
+  static void parallelUnzip(File zip, File toDir, Predicate<String> filter) {
+    try {
+      ZipExtractor.create().extract(zip, toDir, filter);
+    } catch (ZipExtractor.UnsupportedZipException e) {
+      LoggerFactory.getLogger(ZipUtils.class).debug("Fallback to sequential unzip of {}: {}", zip, e.getMessage());
+      javaUnzip(zip, toDir, filter);
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to unzip " + zip + " to " + toDir, e);
     }
   }
 
   static void javaUnzip(File zip, File toDir) {
+    javaUnzip(zip, toDir, entryName -> true);
+  }
+
+  /**
+   * Sequential extraction, which supports all the archives readable by {@link ZipFile}. Unix permissions
+   * are restored like in {@link ZipExtractor}.
+   */
+  static void javaUnzip(File zip, File toDir, Predicate<String> filter) {
     try {
+      Path targetDir = toDir.toPath().toAbsolutePath().normalize();
+      Map<String, Integer> unixModes = ZipExtractor.readUnixModes(zip);
+      Map<Path, Integer> dirModes = new LinkedHashMap<>();
       try (ZipFile zipFile = new ZipFile(zip)) {
         Enumeration<? extends ZipEntry> entries = zipFile.entries();
         while (entries.hasMoreElements()) {
           ZipEntry entry = entries.nextElement();
-          File to = new File(toDir, entry.getName());
+          Path to = ZipExtractor.resolve(targetDir, entry.getName());
           if (entry.isDirectory()) {
-            FileUtils.forceMkdir(to);
-          } else {
-            File parent = to.getParentFile();
-            if (parent != null) {
-              FileUtils.forceMkdir(parent);
-            }
-
-            try (OutputStream fos = new FileOutputStream(to)) {
+            FileUtils.forceMkdir(to.toFile());
+            dirModes.put(to, unixModes.getOrDefault(entry.getName(), 0));
+          } else if (filter.test(entry.getName())) {
+            FileUtils.forceMkdir(to.getParent().toFile());
+            // never write through an existing file, which may be read-only or a hard link
+            Files.deleteIfExists(to);
+            try (OutputStream fos = Files.newOutputStream(to)) {
               IOUtils.copy(zipFile.getInputStream(entry), fos);
             }
+            ZipExtractor.setPermissions(to, unixModes.getOrDefault(entry.getName(), 0));
           }
         }
       }
+      // permissions of directories are restored last, as they may be read-only
+      for (Map.Entry<Path, Integer> dirMode : dirModes.entrySet()) {
+        ZipExtractor.setPermissions(dirMode.getKey(), dirMode.getValue());
+      }
     } catch (Exception e) {
       throw new IllegalStateException("Fail to unzip " + zip + " to " + toDir, e);
     }
   }
-
-  static void nativeUnzip(File zip, File toDir) {
-    Command command = Command.create("unzip");
-    command.addArgument("-o");
-    command.addArgument("-q");
-    command.addArgument(zip.getAbsolutePath());
-    command.setDirectory(toDir);
-    int result = CommandExecutor.create().execute(command, 60L * 60 * 1000);
-    if (result != 0) {
-      throw new IllegalStateException("Fail to unzip " + zip + " to " + toDir);
-    }
-  }
 }
@@ -0,0 +1,154 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator;
+
+import com.sonar.orchestrator.build.Build;
+import com.sonar.orchestrator.build.BuildResult;
+import com.sonar.orchestrator.build.BuildRunner;
+import com.sonar.orchestrator.build.SonarScanner;
+import com.sonar.orchestrator.build.SynchronousAnalyzer;
+import com.sonar.orchestrator.container.Server;
+import com.sonar.orchestrator.util.Timings;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class ParallelBuildsTest {
+
+  @Rule
+  public Timeout timeout = new Timeout(10, TimeUnit.SECONDS);
+
+  private final Timings timings = new Timings();
+  private final BuildRunner buildRunner = mock(BuildRunner.class);
+  private final Server server = mock(Server.class);
+  private final SynchronousAnalyzer analyzer = mock(SynchronousAnalyzer.class);
+  private final ParallelBuilds underTest = new ParallelBuilds(timings, buildRunner, server, analyzer);
+
+  @Test
+  public void results_are_in_the_same_order_as_builds() {
+    Build<?>[] builds = newBuilds(4);
+    BuildResult[] expected = new BuildResult[builds.length];
+    for (int i = 0; i < builds.length; i++) {
+      // first builds are the last to complete
+      long sleepMs = (builds.length - i) * 20L;
+      BuildResult result = new BuildResult();
+      expected[i] = result;
+      when(buildRunner.run(server, builds[i])).thenAnswer(invocation -> {
+        Thread.sleep(sleepMs);
+        return result;
+      });
+    }
+
+    BuildResult[] results = underTest.execute(4, true, builds);
+
+    assertThat(results).containsExactly(expected);
+    verify(analyzer).waitForDone(expected[0], expected[1], expected[2], expected[3]);
+    assertThat(timings.getTotalNanosByPhase()).containsOnlyKeys("build.run", "build.parallel", "build.waitForComputeEngine");
+  }
+
+  @Test
+  public void builds_are_not_started_after_first_failure() {
+    Build<?>[] builds = newBuilds(3);
+    when(buildRunner.run(server, builds[0])).thenThrow(new IllegalStateException("build 0 failed"));
+
+    try {
+      underTest.execute(1, true, builds);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("build 0 failed");
+    }
+
+    verify(buildRunner, never()).run(server, builds[1]);
+    verify(buildRunner, never()).run(server, builds[2]);
+    verifyZeroInteractions(analyzer);
+  }
+
+  @Test
+  public void first_failure_is_thrown_and_next_ones_are_suppressed() {
+    Build<?>[] builds = newBuilds(3);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    for (int i = 0; i < 2; i++) {
+      String message = "build " + i + " failed";
+      when(buildRunner.run(server, builds[i])).thenAnswer(invocation -> {
+        bothStarted.countDown();
+        bothStarted.await();
+        throw new IllegalStateException(message);
+      });
+    }
+
+    try {
+      underTest.execute(2, true, builds);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("build 0 failed");
+      assertThat(e.getSuppressed()).hasSize(1);
+      assertThat(e.getSuppressed()[0]).hasMessage("build 1 failed");
+    }
+
+    verify(buildRunner, never()).run(server, builds[2]);
+    verifyZeroInteractions(analyzer);
+  }
+
+  @Test
+  public void all_builds_are_executed_quietly_if_not_fail_fast() {
+    Build<?>[] builds = newBuilds(3);
+    BuildResult[] expected = new BuildResult[builds.length];
+    for (int i = 0; i < builds.length; i++) {
+      expected[i] = new BuildResult().addStatus(i == 0 ? 1 : 0);
+      when(buildRunner.runQuietly(server, builds[i])).thenReturn(expected[i]);
+    }
+
+    BuildResult[] results = underTest.execute(1, false, builds);
+
+    assertThat(results).containsExactly(expected);
+    assertThat(results[0].isSuccess()).isFalse();
+    verify(buildRunner, never()).run(any(Server.class), any(Build.class));
+    verify(analyzer).waitForDone(expected[0], expected[1], expected[2]);
+  }
+
+  @Test
+  public void fail_if_number_of_workers_is_not_positive() {
+    try {
+      underTest.execute(0, true, newBuilds(1));
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Number of workers must be positive: 0");
+    }
+  }
+
+  private static Build<?>[] newBuilds(int count) {
+    Build<?>[] builds = new Build<?>[count];
+    for (int i = 0; i < count; i++) {
+      builds[i] = SonarScanner.create().setProjectKey("project" + i);
+    }
+    return builds;
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator;
+
+import com.sonar.orchestrator.util.Timings;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class StartupGraphTest {
+
+  @Rule
+  public Timeout timeout = new Timeout(10, TimeUnit.SECONDS);
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(3);
+  private final Timings timings = new Timings();
+  private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void database_and_install_are_executed_concurrently_before_process() {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    StartupGraph underTest = new StartupGraph(timings,
+      () -> awaitSibling(bothStarted, "database"),
+      () -> awaitSibling(bothStarted, "install"),
+      record("process"),
+      record("profiles"),
+      record("licenses"),
+      record("rollback"));
+
+    underTest.execute(executor).join();
+
+    assertThat(events.subList(0, 2)).containsOnly("database", "install");
+    assertThat(events.get(2)).isEqualTo("process");
+    assertThat(events.subList(3, 5)).containsExactly("profiles", "licenses");
+    assertThat(events).doesNotContain("rollback");
+  }
+
+  @Test
+  public void licenses_are_installed_after_profiles_are_restored() {
+    CountDownLatch profilesRestored = new CountDownLatch(1);
+    StartupGraph underTest = new StartupGraph(timings,
+      record("database"),
+      record("install"),
+      record("process"),
+      () -> {
+        // licenses would be installed meanwhile if both stages were executed concurrently
+        sleep(100L);
+        events.add("profiles");
+        profilesRestored.countDown();
+      },
+      () -> {
+        assertThat(profilesRestored.getCount()).isEqualTo(0L);
+        events.add("licenses");
+      },
+      record("rollback"));
+
+    underTest.execute(executor).join();
+
+    assertThat(events.subList(0, 2)).containsOnly("database", "install");
+    assertThat(events.subList(2, 5)).containsExactly("process", "profiles", "licenses");
+  }
+
+  @Test
+  public void durations_of_stages_are_recorded() {
+    StartupGraph underTest = new StartupGraph(timings, record("database"), record("install"), record("process"),
+      record("profiles"), record("licenses"), record("rollback"));
+
+    underTest.execute(executor).join();
+
+    assertThat(timings.getTotalNanosByPhase().keySet())
+      .containsOnly("start.database", "start.install", "start.process", "start.profiles", "start.licenses");
+  }
+
+  @Test
+  public void failure_of_install_waits_for_database_then_rolls_back() throws Exception {
+    CountDownLatch installFailed = new CountDownLatch(1);
+    IllegalStateException failure = new IllegalStateException("Fail to download");
+    StartupGraph underTest = new StartupGraph(timings,
+      () -> {
+        await(installFailed);
+        events.add("database");
+      },
+      () -> {
+        installFailed.countDown();
+        throw failure;
+      },
+      record("process"),
+      record("profiles"),
+      record("licenses"),
+      record("rollback"));
+
+    CompletableFuture<Void> future = underTest.execute(executor);
+
+    assertFailure(future, failure);
+    assertThat(events).containsExactly("database", "rollback");
+  }
+
+  @Test
+  public void failure_of_database_waits_for_install_then_rolls_back() throws Exception {
+    CountDownLatch databaseFailed = new CountDownLatch(1);
+    IllegalStateException failure = new IllegalStateException("Fail to connect");
+    StartupGraph underTest = new StartupGraph(timings,
+      () -> {
+        databaseFailed.countDown();
+        throw failure;
+      },
+      () -> {
+        await(databaseFailed);
+        events.add("install");
+      },
+      record("process"),
+      record("profiles"),
+      record("licenses"),
+      record("rollback"));
+
+    CompletableFuture<Void> future = underTest.execute(executor);
+
+    assertFailure(future, failure);
+    assertThat(events).containsExactly("install", "rollback");
+  }
+
+  @Test
+  public void failure_of_process_rolls_back_without_installing_profiles_and_licenses() {
+    IllegalStateException failure = new IllegalStateException("Server failed to start");
+    StartupGraph underTest = new StartupGraph(timings, record("database"), record("install"),
+      () -> {
+        throw failure;
+      },
+      record("profiles"),
+      record("licenses"),
+      record("rollback"));
+
+    assertFailure(underTest.execute(executor), failure);
+    assertThat(events).containsOnly("database", "install", "rollback");
+    assertThat(events.get(2)).isEqualTo("rollback");
+  }
+
+  @Test
+  public void failure_of_profiles_rolls_back_without_installing_licenses() {
+    IllegalStateException failure = new IllegalStateException("Fail to restore profile");
+    StartupGraph underTest = new StartupGraph(timings, record("database"), record("install"), record("process"),
+      () -> {
+        throw failure;
+      },
+      record("licenses"),
+      record("rollback"));
+
+    assertFailure(underTest.execute(executor), failure);
+    assertThat(events).hasSize(4).doesNotContain("licenses");
+    assertThat(events.subList(2, 4)).containsExactly("process", "rollback");
+  }
+
+  @Test
+  public void failure_of_rollback_is_suppressed() {
+    IllegalStateException failure = new IllegalStateException("Server failed to start");
+    IllegalStateException rollbackFailure = new IllegalStateException("Can not stop server");
+    StartupGraph underTest = new StartupGraph(timings, record("database"), record("install"),
+      () -> {
+        throw failure;
+      },
+      record("profiles"),
+      record("licenses"),
+      () -> {
+        throw rollbackFailure;
+      });
+
+    assertFailure(underTest.execute(executor), failure);
+    assertThat(failure.getSuppressed()).containsExactly(rollbackFailure);
+  }
+
+  private Runnable record(String event) {
+    return () -> events.add(event);
+  }
+
+  private void awaitSibling(CountDownLatch bothStarted, String event) {
+    bothStarted.countDown();
+    await(bothStarted);
+    events.add(event);
+  }
+
+  private static void sleep(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      if (!latch.await(5, TimeUnit.SECONDS)) {
+        throw new IllegalStateException("Stages are not executed concurrently");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void assertFailure(CompletableFuture<Void> future, Throwable expected) {
+    try {
+      future.join();
+      fail();
+    } catch (CompletionException e) {
+      assertThat(e.getCause()).isSameAs(expected);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.build;
+
+import com.sonar.orchestrator.config.Configuration;
+import java.io.File;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BuildResultTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void search_in_logs_kept_in_memory() throws Exception {
+    BuildResult underTest = new BuildResult();
+    writeLines(underTest, 10);
+
+    verifySearch(underTest, 10);
+  }
+
+  @Test
+  public void search_in_logs_spilled_to_file() throws Exception {
+    File workspace = temp.newFolder();
+    Configuration config = Configuration.builder()
+      .setProperty("orchestrator.workspaceDir", workspace.getAbsolutePath())
+      .setProperty("orchestrator.buildLogsInMemoryKb", "1")
+      .build();
+    BuildResult underTest = new BuildResult(config);
+    writeLines(underTest, 10_000);
+
+    verifySearch(underTest, 10_000);
+    assertThat(new File(workspace, "build-logs").listFiles()).hasSize(1);
+    assertThat(underTest.getLogsSummary().length()).isLessThan(2_000);
+    assertThat(underTest.getLogsSummary()).startsWith("line 0\n").endsWith("line 9999\n");
+  }
+
+  @Test
+  public void spilled_logs_of_next_process_are_appended_to_file() throws Exception {
+    File workspace = temp.newFolder();
+    Configuration config = Configuration.builder()
+      .setProperty("orchestrator.workspaceDir", workspace.getAbsolutePath())
+      .setProperty("orchestrator.buildLogsInMemoryKb", "1")
+      .build();
+    BuildResult underTest = new BuildResult(config);
+    writeLines(underTest, 5_000);
+    underTest.addStatus(0);
+    underTest.getLogsWriter().write("line 5000\n");
+    underTest.addStatus(0);
+
+    assertThat(new File(workspace, "build-logs").listFiles()).hasSize(1);
+    assertThat(underTest.logsContain("line 4999\nline 5000\n")).isTrue();
+    assertThat(underTest.getLogs()).startsWith("line 0\n").endsWith("line 5000\n");
+  }
+
+  @Test
+  public void logsContain_finds_text_across_chunks() throws Exception {
+    BuildResult underTest = new BuildResult();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 64 * 1024 - 3; i++) {
+      sb.append('x');
+    }
+    underTest.getLogsWriter().write(sb.append("foobar").toString());
+
+    assertThat(underTest.logsContain("foobar")).isTrue();
+    assertThat(underTest.logsContain("")).isTrue();
+    assertThat(underTest.logsContain("barfoo")).isFalse();
+  }
+
+  @Test
+  public void isSuccess_if_all_statuses_are_zero() {
+    assertThat(new BuildResult().addStatus(0).addStatus(0).isSuccess()).isTrue();
+    assertThat(new BuildResult().addStatus(0).addStatus(1).isSuccess()).isFalse();
+    assertThat(new BuildResult().addStatus(0).addStatus(1).getLastStatus()).isEqualTo(1);
+  }
+
+  private static void writeLines(BuildResult result, int count) throws Exception {
+    Writer writer = result.getLogsWriter();
+    for (int i = 0; i < count; i++) {
+      writer.write("line " + i + "\n");
+    }
+  }
+
+  private static void verifySearch(BuildResult underTest, int count) {
+    String last = "line " + (count - 1);
+    assertThat(underTest.getLogs()).startsWith("line 0\n").endsWith(last + "\n");
+    assertThat(underTest.getLogsLength()).isEqualTo(underTest.getLogs().length());
+    assertThat(underTest.logsContain(last + "\n")).isTrue();
+    assertThat(underTest.logsContain("line " + count)).isFalse();
+    assertThat(underTest.findLogLines(Pattern.compile("^line [5-6]$"))).containsExactly("line 5", "line 6");
+    List<String> lines = new ArrayList<>();
+    underTest.forEachLogLine(lines::add);
+    assertThat(lines).hasSize(count);
+  }
+}
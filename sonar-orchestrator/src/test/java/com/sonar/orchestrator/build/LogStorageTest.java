@@ -0,0 +1,113 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.build;
+
+import java.io.File;
+import java.io.Reader;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogStorageTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void small_logs_are_kept_in_memory() throws Exception {
+    File dir = temp.newFolder();
+    LogStorage underTest = new LogStorage(() -> dir, 5, 5);
+
+    underTest.write("abcde");
+    underTest.write("fghij");
+
+    assertThat(underTest.file()).isNull();
+    assertThat(dir.listFiles()).isEmpty();
+    assertThat(underTest.length()).isEqualTo(10L);
+    assertThat(underTest.content()).isEqualTo("abcdefghij");
+    assertThat(underTest.summary()).isEqualTo("abcdefghij");
+    try (Reader reader = underTest.openReader()) {
+      assertThat(IOUtils.toString(reader)).isEqualTo("abcdefghij");
+    }
+  }
+
+  @Test
+  public void large_logs_are_spilled_to_file() throws Exception {
+    File dir = new File(temp.newFolder(), "build-logs");
+    LogStorage underTest = new LogStorage(() -> dir, 5, 5);
+
+    underTest.write("abcdefgh");
+    underTest.write("ijklmnopqrstuvwxyz");
+
+    assertThat(underTest.file()).isNotNull();
+    assertThat(underTest.file().getParentFile()).isEqualTo(dir);
+    assertThat(underTest.length()).isEqualTo(26L);
+    assertThat(underTest.content()).isEqualTo("abcdefghijklmnopqrstuvwxyz");
+    assertThat(underTest.file()).hasContent("abcdefghijklmnopqrstuvwxyz");
+    assertThat(underTest.summary()).startsWith("abcde\n[... 16 characters truncated, see ").endsWith(" ...]\nvwxyz");
+    try (Reader reader = underTest.openReader()) {
+      assertThat(IOUtils.toString(reader)).isEqualTo("abcdefghijklmnopqrstuvwxyz");
+    }
+  }
+
+  @Test
+  public void tail_is_a_ring_buffer() throws Exception {
+    LogStorage underTest = new LogStorage(() -> temp.getRoot(), 2, 4);
+
+    for (char c = 'a'; c <= 'z'; c++) {
+      underTest.write(c);
+    }
+    underTest.write("0123456789", 3, 3);
+
+    assertThat(underTest.summary()).startsWith("ab\n[... 23 characters truncated").endsWith("\nz345");
+    assertThat(underTest.content()).isEqualTo("abcdefghijklmnopqrstuvwxyz345");
+  }
+
+  @Test
+  public void logs_can_be_read_and_written_after_close() throws Exception {
+    LogStorage underTest = new LogStorage(() -> temp.getRoot(), 1, 1);
+
+    underTest.write("foo");
+    underTest.close();
+    underTest.write("bar");
+
+    assertThat(underTest.content()).isEqualTo("foobar");
+  }
+
+  @Test
+  public void spilled_logs_are_appended_to_file_after_close() throws Exception {
+    LogStorage underTest = new LogStorage(() -> temp.getRoot(), 1, 1);
+
+    underTest.write("foo");
+    underTest.close();
+    assertThat(underTest.file()).hasContent("foo");
+
+    underTest.write("bar");
+    underTest.close();
+    underTest.close();
+
+    assertThat(underTest.file()).hasContent("foobar");
+    assertThat(underTest.content()).isEqualTo("foobar");
+    assertThat(underTest.summary()).startsWith("f\n[... 4 characters truncated").endsWith("\nr");
+  }
+}
@@ -56,7 +56,7 @@ public class ScannerForMSBuildExecutorTest {
     props.put("sonar.jdbc.dialect", "h2");
 
     ScannerForMSBuildInstaller installer = mock(ScannerForMSBuildInstaller.class);
-    when(installer.install(eq(Version.create("2.2")), eq(null), any(File.class), eq(false))).thenReturn(new File("SonarQube.Scanner.MSBuild.exe"));
+    when(installer.acquire(eq(Version.create("2.2")), eq(null), any(File.class), eq(false))).thenReturn(new File("SonarQube.Scanner.MSBuild.exe"));
     CommandExecutor executor = mock(CommandExecutor.class);
     when(executor.execute(any(Command.class), any(StreamConsumer.class), anyLong())).thenReturn(2);
 
@@ -90,7 +90,7 @@ public class ScannerForMSBuildExecutorTest {
     Map<String, String> props = new TreeMap<>();
 
     ScannerForMSBuildInstaller installer = mock(ScannerForMSBuildInstaller.class);
-    when(installer.install(eq(null), eq(null), any(File.class), eq(false))).thenReturn(new File("SonarQube.Scanner.MSBuild.exe"));
+    when(installer.acquire(eq(null), eq(null), any(File.class), eq(false))).thenReturn(new File("SonarQube.Scanner.MSBuild.exe"));
     CommandExecutor executor = mock(CommandExecutor.class);
     when(executor.execute(any(Command.class), any(StreamConsumer.class), anyLong())).thenReturn(2);
 
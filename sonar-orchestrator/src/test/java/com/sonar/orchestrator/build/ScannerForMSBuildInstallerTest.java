@@ -114,6 +114,23 @@ public class ScannerForMSBuildInstallerTest {
     assertThat(txt).doesNotExist();
   }
 
+  @Test
+  public void do_not_install_twice_with_location_used_by_other_build() throws Exception {
+    File toDir = temp.newFolder();
+    URL zip = ScannerForMSBuildInstaller.class.getResource("/com/sonar/orchestrator/build/sonar-scanner-msbuild-" + ScannerForMSBuildInstaller.DEFAULT_SCANNER_VERSION + ".zip");
+
+    File script = installer.acquire(null, FileLocation.of(new File(zip.toURI())), toDir, true);
+    File txt = new File(script.getParentFile(), "text.txt");
+    txt.createNewFile();
+
+    installer.install(null, FileLocation.of(new File(zip.toURI())), toDir, true);
+    assertThat(txt).exists();
+
+    installer.release(script);
+    installer.install(null, FileLocation.of(new File(zip.toURI())), toDir, true);
+    assertThat(txt).doesNotExist();
+  }
+
   @Test
   public void fail_if_file_doesnt_exist() throws Exception {
     File toDir = temp.newFolder();
@@ -152,6 +152,22 @@ public class SonarScannerInstallerTest {
     verify(installer, times(2)).doInstall(Version.create("1.4-SNAPSHOT"), null, toDir);
   }
 
+  @Test
+  public void should_keep_cache_of_snapshot_versions_used_by_other_builds() throws Exception {
+    File toDir = temp.newFolder();
+    when(fileSystem.locate(SonarScannerInstaller.mavenLocation(Version.create("1.4-SNAPSHOT")))).thenReturn(
+      new File(getClass().getResource("/com/sonar/orchestrator/build/SonarRunnerInstallerTest/sonar-runner-1.4-SNAPSHOT.zip").toURI()));
+
+    File script = installer.acquire(Version.create("1.4-SNAPSHOT"), null, toDir, true);
+    installer.install(Version.create("1.4-SNAPSHOT"), toDir, true);
+    assertThat(script).exists();
+    verify(installer, times(1)).doInstall(Version.create("1.4-SNAPSHOT"), null, toDir);
+
+    installer.release(script);
+    installer.install(Version.create("1.4-SNAPSHOT"), toDir, true);
+    verify(installer, times(2)).doInstall(Version.create("1.4-SNAPSHOT"), null, toDir);
+  }
+
   @Test
   public void maven_location_before_2_1() {
     MavenLocation location = SonarScannerInstaller.mavenLocation(Version.create("1.2.3"));
@@ -19,7 +19,9 @@
  */
 package com.sonar.orchestrator.build;
 
+import com.sonar.orchestrator.config.Configuration;
 import com.sonar.orchestrator.container.Server;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 import okhttp3.Credentials;
 import okhttp3.mockwebserver.MockResponse;
@@ -27,6 +29,7 @@ import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.Timeout;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -38,6 +41,8 @@ public class SynchronousAnalyzerTest {
   public Timeout timeout = new Timeout(10, TimeUnit.SECONDS);
   @Rule
   public MockWebServer webServer = new MockWebServer();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
 
   @Test
   public void wait_as_long_queue_is_not_empty() throws Exception {
@@ -45,8 +50,7 @@ public class SynchronousAnalyzerTest {
     webServer.enqueue(new MockResponse().setBody("false"));
     webServer.enqueue(new MockResponse().setBody("true"));
 
-    Server server = new Server(null, null, null, webServer.url(""));
-    new SynchronousAnalyzer(server, 1L, 2).waitForDone();
+    newAnalyzer(1_000L).waitForDone();
 
     // fast enough to finish before junit timeout
     assertThat(webServer.getRequestCount()).isEqualTo(3);
@@ -57,11 +61,107 @@ public class SynchronousAnalyzerTest {
     }
   }
 
+  @Test
+  public void wait_for_tasks_of_build() throws Exception {
+    webServer.enqueue(taskResponse("PENDING"));
+    webServer.enqueue(taskResponse("IN_PROGRESS"));
+    webServer.enqueue(taskResponse("SUCCESS"));
+
+    newAnalyzer(1_000L).waitForDone(buildResult("INFO: More about the report processing at http://localhost:9000/api/ce/task?id=AVsP3TXl-p5ey\n"));
+
+    assertThat(webServer.getRequestCount()).isEqualTo(3);
+    for (int i = 0; i < 3; i++) {
+      RecordedRequest recordedRequest = webServer.takeRequest();
+      assertThat(recordedRequest.getPath()).isEqualTo(SynchronousAnalyzer.TASK_PATH + "?id=AVsP3TXl-p5ey");
+      assertThat(recordedRequest.getHeader("Authorization")).isEqualTo(Credentials.basic("admin", "admin"));
+    }
+  }
+
+  @Test
+  public void failed_task_does_not_fail_the_wait() throws Exception {
+    webServer.enqueue(taskResponse("FAILED"));
+    webServer.enqueue(taskResponse("SUCCESS"));
+
+    newAnalyzer(1_000L).waitForTasks(Arrays.asList("T1", "T2"));
+
+    assertThat(webServer.takeRequest().getPath()).isEqualTo(SynchronousAnalyzer.TASK_PATH + "?id=T1");
+    assertThat(webServer.takeRequest().getPath()).isEqualTo(SynchronousAnalyzer.TASK_PATH + "?id=T2");
+  }
+
+  @Test
+  public void wait_for_empty_queue_if_tasks_are_not_logged() throws Exception {
+    webServer.enqueue(new MockResponse().setBody("true"));
+
+    newAnalyzer(1_000L).waitForDone(buildResult("INFO: More about the report processing at http://localhost:9000/api/ce/task?id=T1"), buildResult("no tasks"));
+
+    assertThat(webServer.getRequestCount()).isEqualTo(1);
+    assertThat(webServer.takeRequest().getPath()).isEqualTo(SynchronousAnalyzer.RELATIVE_PATH);
+  }
+
+  @Test
+  public void wait_for_empty_queue_if_web_service_of_tasks_does_not_exist() throws Exception {
+    webServer.enqueue(new MockResponse().setResponseCode(404));
+    webServer.enqueue(new MockResponse().setBody("true"));
+
+    newAnalyzer(1_000L).waitForTasks(Arrays.asList("T1"));
+
+    assertThat(webServer.takeRequest().getPath()).isEqualTo(SynchronousAnalyzer.TASK_PATH + "?id=T1");
+    assertThat(webServer.takeRequest().getPath()).isEqualTo(SynchronousAnalyzer.RELATIVE_PATH);
+  }
+
+  @Test
+  public void fail_if_task_is_not_processed_before_timeout() {
+    for (int i = 0; i < 100; i++) {
+      webServer.enqueue(taskResponse("PENDING"));
+    }
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Timeout of 20 ms while waiting for task T1 to be processed");
+
+    newAnalyzer(20L).waitForTasks(Arrays.asList("T1"));
+  }
+
+  @Test
+  public void findTaskIds_in_logs() {
+    assertThat(SynchronousAnalyzer.findTaskIds("")).isEmpty();
+    assertThat(SynchronousAnalyzer.findTaskIds("foo\n" +
+      "INFO: More about the report processing at http://localhost:9000/api/ce/task?id=T1\n" +
+      "[INFO] More about the report processing at http://localhost:9000/sonarqube/api/ce/task?id=T2\n" +
+      "INFO: More about the report processing at http://localhost:9000/api/ce/task?id=T1\n")).containsExactly("T1", "T2");
+  }
+
   @Test
   public void test_default_settings() {
     Server server = mock(Server.class);
     SynchronousAnalyzer analyzer = new SynchronousAnalyzer(server);
-    assertThat(analyzer.getDelayMs()).isEqualTo(100L);
-    assertThat(analyzer.getLogFrequency()).isEqualTo(10);
+    assertThat(analyzer.getInitialDelayMs()).isEqualTo(5L);
+    assertThat(analyzer.getMaxDelayMs()).isEqualTo(500L);
+    assertThat(analyzer.getTimeoutMs()).isEqualTo(30L * 60L * 1000L);
+  }
+
+  @Test
+  public void settings_are_configurable() {
+    Configuration config = Configuration.builder()
+      .setProperty("orchestrator.computeEngineMaxPollingIntervalMs", "2000")
+      .setProperty("orchestrator.computeEngineTimeoutMs", "60000")
+      .build();
+    SynchronousAnalyzer analyzer = new SynchronousAnalyzer(mock(Server.class), config);
+    assertThat(analyzer.getMaxDelayMs()).isEqualTo(2_000L);
+    assertThat(analyzer.getTimeoutMs()).isEqualTo(60_000L);
+  }
+
+  private SynchronousAnalyzer newAnalyzer(long timeoutMs) {
+    Server server = new Server(null, null, null, webServer.url(""));
+    return new SynchronousAnalyzer(server, 1L, 2L, timeoutMs);
+  }
+
+  private static MockResponse taskResponse(String status) {
+    return new MockResponse().setBody("{\"task\": {\"id\": \"T1\", \"type\": \"REPORT\", \"status\": \"" + status + "\"}}");
+  }
+
+  private static BuildResult buildResult(String logs) throws Exception {
+    BuildResult result = new BuildResult();
+    result.getLogsWriter().write(logs);
+    return result;
   }
 }
@@ -21,9 +21,17 @@ package com.sonar.orchestrator.container;
 
 import com.sonar.orchestrator.config.Configuration;
 import com.sonar.orchestrator.config.FileSystem;
+import com.sonar.orchestrator.http.HttpClient;
+import com.sonar.orchestrator.http.HttpClientFactory;
 import com.sonar.orchestrator.locator.FileLocation;
 import com.sonar.orchestrator.version.Version;
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import okhttp3.HttpUrl;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
@@ -97,6 +105,18 @@ public class ServerTest {
     underTest.version();
   }
 
+  @Test
+  public void http_calls_are_executed_by_the_client_of_orchestrator_configuration() throws Exception {
+    server.enqueue(new MockResponse().setBody("pong"));
+    HttpClient httpClient = HttpClientFactory.create(Configuration.builder().setProperty("orchestrator.httpReadTimeoutMs", "12345").build());
+    long requests = httpClient.getStats().getRequests();
+    Server underTest = new Server(mock(FileSystem.class), temp.newFolder(), new SonarDistribution(), HttpUrl.parse(this.server.url("").toString()), httpClient);
+
+    assertThat(underTest.newHttpCall("/api/system/ping").execute().getBodyAsString()).isEqualTo("pong");
+
+    assertThat(httpClient.getStats().getRequests()).isEqualTo(requests + 1);
+  }
+
   @Test
   public void restoreProfile_sends_POST_request() throws Exception {
     File backup = temp.newFile();
@@ -153,6 +173,58 @@ public class ServerTest {
     assertThat(receivedRequest.getBody().readUtf8()).isEqualTo("key=foo&name=Foo");
   }
 
+  @Test
+  public void provisionProjects_sends_one_POST_request_per_project() throws Exception {
+    server.enqueue(new MockResponse());
+    server.enqueue(new MockResponse());
+    Server underTest = newServerForUrl(this.server.url("").toString());
+    Map<String, String> projects = new LinkedHashMap<>();
+    projects.put("foo", "Foo");
+    projects.put("bar", "Bar");
+
+    underTest.provisionProjects(projects);
+
+    Set<String> bodies = new HashSet<>();
+    for (int i = 0; i < 2; i++) {
+      RecordedRequest receivedRequest = server.takeRequest();
+      assertThat(receivedRequest.getMethod()).isEqualTo("POST");
+      assertThat(receivedRequest.getPath()).isEqualTo("/api/projects/create");
+      bodies.add(receivedRequest.getBody().readUtf8());
+    }
+    assertThat(bodies).containsOnly("key=foo&name=Foo", "key=bar&name=Bar");
+  }
+
+  @Test
+  public void provisionProjects_throws_ISE_if_a_project_can_not_be_provisioned() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(400));
+    Server underTest = newServerForUrl(this.server.url("").toString());
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("1 of 1 HTTP calls failed");
+
+    underTest.provisionProjects(Collections.singletonMap("foo", "Foo"));
+  }
+
+  @Test
+  public void associateProjectsToQualityProfile_sends_one_POST_request_per_project() throws Exception {
+    server.enqueue(new MockResponse());
+    server.enqueue(new MockResponse());
+    Server underTest = newServerForUrl(this.server.url("").toString());
+
+    underTest.associateProjectsToQualityProfile(Arrays.asList("foo", "bar"), "java", "Sonar_way");
+
+    Set<String> bodies = new HashSet<>();
+    for (int i = 0; i < 2; i++) {
+      RecordedRequest receivedRequest = server.takeRequest();
+      assertThat(receivedRequest.getMethod()).isEqualTo("POST");
+      assertThat(receivedRequest.getPath()).isEqualTo("/api/qualityprofiles/add_project");
+      bodies.add(receivedRequest.getBody().readUtf8());
+    }
+    assertThat(bodies).containsOnly(
+      "projectKey=foo&language=java&profileName=Sonar_way",
+      "projectKey=bar&language=java&profileName=Sonar_way");
+  }
+
   private Server newServerForUrl(String url) {
     FileSystem fs = new FileSystem(Configuration.builder().build());
     return new Server(fs, mock(File.class), new SonarDistribution(), HttpUrl.parse(url));
@@ -0,0 +1,171 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionPoolTest {
+
+  private Connection physical1 = newPhysicalConnection();
+  private Connection physical2 = newPhysicalConnection();
+  private ConnectionPool.ConnectionFactory factory = mock(ConnectionPool.ConnectionFactory.class);
+
+  @Test
+  public void released_connection_is_reused() throws SQLException {
+    when(factory.open()).thenReturn(physical1, physical2);
+    ConnectionPool underTest = new ConnectionPool(factory, 2, 1_000L);
+
+    Connection connection = underTest.borrow();
+    assertThat(underTest.getStats().getActive()).isEqualTo(1);
+    connection.close();
+    assertThat(connection.isClosed()).isTrue();
+    verify(physical1, never()).close();
+    assertThat(underTest.getStats().getIdle()).isEqualTo(1);
+
+    Connection reused = underTest.borrow();
+    reused.createStatement();
+    verify(physical1).createStatement();
+    assertThat(underTest.getStats().getCreated()).isEqualTo(1);
+    assertThat(underTest.getStats().getBorrowed()).isEqualTo(2);
+  }
+
+  @Test
+  public void closed_connection_can_not_be_used() throws SQLException {
+    when(factory.open()).thenReturn(physical1);
+    ConnectionPool underTest = new ConnectionPool(factory, 2, 1_000L);
+
+    Connection connection = underTest.borrow();
+    connection.close();
+    // close is idempotent
+    connection.close();
+    try {
+      connection.createStatement();
+      fail();
+    } catch (SQLException e) {
+      assertThat(e).hasMessage("Connection is closed");
+    }
+    assertThat(underTest.getStats().getIdle()).isEqualTo(1);
+  }
+
+  @Test
+  public void fail_if_timeout_is_reached_while_pool_is_exhausted() throws SQLException {
+    when(factory.open()).thenReturn(physical1, physical2);
+    ConnectionPool underTest = new ConnectionPool(factory, 1, 10L);
+    underTest.borrow();
+
+    try {
+      underTest.borrow();
+      fail();
+    } catch (SQLException e) {
+      assertThat(e.getMessage()).contains("Timeout of 10 ms reached while waiting for a JDBC connection");
+    }
+    assertThat(underTest.getStats().getWaitTimeMs()).isGreaterThanOrEqualTo(10L);
+  }
+
+  @Test
+  public void pending_transaction_is_rolled_back_on_release() throws SQLException {
+    when(factory.open()).thenReturn(physical1);
+    when(physical1.getAutoCommit()).thenReturn(false);
+    ConnectionPool underTest = new ConnectionPool(factory, 1, 1_000L);
+
+    underTest.borrow().close();
+
+    verify(physical1).rollback();
+    verify(physical1).setAutoCommit(true);
+  }
+
+  @Test
+  public void invalid_idle_connection_is_discarded() throws SQLException {
+    when(factory.open()).thenReturn(physical1, physical2);
+    when(physical1.isValid(5)).thenReturn(false);
+    ConnectionPool underTest = new ConnectionPool(factory, 1, 1_000L, 0L);
+
+    underTest.borrow().close();
+    underTest.borrow().createStatement();
+
+    verify(physical1).close();
+    verify(physical2).createStatement();
+  }
+
+  @Test
+  public void drain_closes_idle_connections_and_borrowed_connections_on_release() throws SQLException {
+    when(factory.open()).thenReturn(physical1, physical2);
+    ConnectionPool underTest = new ConnectionPool(factory, 2, 1_000L);
+    Connection connection1 = underTest.borrow();
+    Connection connection2 = underTest.borrow();
+    connection1.close();
+
+    underTest.drain();
+    verify(physical1).close();
+    verify(physical2, never()).close();
+
+    connection2.close();
+    verify(physical2).close();
+    assertThat(underTest.getStats().getIdle()).isEqualTo(0);
+    assertThat(underTest.getStats().getActive()).isEqualTo(0);
+  }
+
+  @Test
+  public void prepared_statements_are_cached_by_physical_connection() throws SQLException {
+    when(factory.open()).thenReturn(physical1);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(physical1.prepareStatement("select 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(statement);
+    ConnectionPool underTest = new ConnectionPool(factory, 1, 1_000L);
+
+    for (int i = 0; i < 3; i++) {
+      try (Connection connection = underTest.borrow();
+        PreparedStatement prepared = connection.prepareStatement("select 1")) {
+        prepared.executeQuery();
+      }
+    }
+
+    verify(physical1, times(1)).prepareStatement("select 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    verify(statement, times(3)).executeQuery();
+    verify(statement, never()).close();
+    assertThat(underTest.getStats().getStatementCacheHits()).isEqualTo(2);
+    assertThat(underTest.getStats().getStatementCacheMisses()).isEqualTo(1);
+
+    underTest.drain();
+    verify(statement).close();
+  }
+
+  private static Connection newPhysicalConnection() {
+    Connection connection = mock(Connection.class);
+    try {
+      when(connection.getAutoCommit()).thenReturn(true);
+      when(connection.isValid(5)).thenReturn(true);
+    } catch (SQLException e) {
+      throw new IllegalStateException(e);
+    }
+    return connection;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CsvFixtureReaderTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void read_rows() throws IOException {
+    CsvFixtureReader underTest = new CsvFixtureReader(new StringReader("kee,name\nstruts,Apache Struts\r\nlog4j,Log4J\n"));
+
+    assertThat(underTest.getColumns()).containsExactly("kee", "name");
+    assertThat(underTest.next()).containsExactly("struts", "Apache Struts");
+    assertThat(underTest.next()).containsExactly("log4j", "Log4J");
+    assertThat(underTest.next()).isNull();
+    assertThat(underTest.next()).isNull();
+  }
+
+  @Test
+  public void read_quoted_values() throws IOException {
+    CsvFixtureReader underTest = new CsvFixtureReader(new StringReader("kee,name\n\"a,b\",\"say \"\"hello\"\"\nworld\"\n"));
+
+    assertThat(underTest.next()).containsExactly("a,b", "say \"hello\"\nworld");
+    assertThat(underTest.next()).isNull();
+  }
+
+  @Test
+  public void unquoted_empty_values_are_null() throws IOException {
+    CsvFixtureReader underTest = new CsvFixtureReader(new StringReader("kee,name,description\nstruts,,\"\""));
+
+    assertThat(underTest.next()).containsExactly("struts", null, "");
+  }
+
+  @Test
+  public void blank_lines_are_ignored() throws IOException {
+    CsvFixtureReader underTest = new CsvFixtureReader(new StringReader("\nkee\n\nstruts\n\n\nlog4j"));
+
+    assertThat(underTest.next()).containsExactly("struts");
+    assertThat(underTest.next()).containsExactly("log4j");
+    assertThat(underTest.next()).isNull();
+  }
+
+  @Test
+  public void fail_if_number_of_values_does_not_match_columns() throws IOException {
+    CsvFixtureReader underTest = new CsvFixtureReader(new StringReader("kee,name\nstruts,Apache Struts\nlog4j\n"));
+    underTest.next();
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Row 2 of CSV fixture has 1 values but 2 columns are declared");
+    underTest.next();
+  }
+
+  @Test
+  public void fail_if_empty() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("CSV fixture is empty");
+    new CsvFixtureReader(new StringReader(""));
+  }
+
+  @Test
+  public void fail_if_quoted_value_is_not_terminated() throws IOException {
+    CsvFixtureReader underTest = new CsvFixtureReader(new StringReader("kee\n\"struts"));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unterminated quoted value in row 1 of CSV fixture");
+    underTest.next();
+  }
+}
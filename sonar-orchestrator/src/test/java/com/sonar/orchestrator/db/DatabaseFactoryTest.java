@@ -73,6 +73,51 @@ public class DatabaseFactoryTest {
     assertThat(databaseClient.getDialect()).isEqualTo("h2");
   }
 
+  @Test
+  public void configure_storage_of_h2() {
+    File tmpfs = new File("target/tmpfs");
+    Configuration config = Configuration.builder()
+      .setProperty("orchestrator.h2Storage", "tmpfs")
+      .setProperty("orchestrator.h2TmpfsDir", tmpfs)
+      .build();
+
+    H2 h2 = (H2) DatabaseFactory.create(config);
+
+    assertThat(h2.getStorage()).isEqualTo(H2.Storage.TMPFS);
+    assertThat(h2.getDataDir(new File("home")).getParentFile()).isEqualTo(tmpfs);
+  }
+
+  @Test
+  public void configure_in_memory_h2() {
+    Configuration config = Configuration.builder()
+      .setProperty("orchestrator.h2Storage", "memory")
+      .build();
+
+    H2 h2 = (H2) DatabaseFactory.create(config);
+
+    assertThat(h2.getStorage()).isEqualTo(H2.Storage.MEMORY);
+    assertThat(h2.getUrl()).contains("/mem:sonar");
+  }
+
+  @Test
+  public void fail_if_unsupported_storage_of_h2() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unsupported value of property orchestrator.h2Storage: floppy");
+
+    DatabaseFactory.create(Configuration.builder().setProperty("orchestrator.h2Storage", "floppy").build());
+  }
+
+  @Test
+  public void fail_if_storage_of_h2_is_set_with_custom_url() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Property orchestrator.h2Storage can't be used when sonar.jdbc.url is defined");
+
+    DatabaseFactory.create(Configuration.builder()
+      .setProperty("sonar.jdbc.url", "jdbc:h2:tcp://localhost:9092/sonar")
+      .setProperty("orchestrator.h2Storage", "memory")
+      .build());
+  }
+
   @Test
   public void default_db_is_h2() {
     Configuration config = Configuration.builder()
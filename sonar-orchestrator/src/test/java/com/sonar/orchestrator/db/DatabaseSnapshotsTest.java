@@ -0,0 +1,120 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DatabaseSnapshotsTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File dir;
+  private File sonarHome;
+  private DatabaseSnapshots underTest;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = temp.newFolder();
+    sonarHome = temp.newFolder();
+    underTest = new DatabaseSnapshots(PostgreSql.builder().build(), () -> dir);
+  }
+
+  @Test
+  public void name_depends_on_version_and_plugins() throws IOException {
+    String name = underTest.name("6.3.0.1234", sonarHome);
+    assertThat(name).startsWith("sonar_snapshot_").hasSize("sonar_snapshot_".length() + 16);
+    assertThat(underTest.name("6.3.0.1234", sonarHome)).isEqualTo(name);
+    assertThat(underTest.name("6.3.0.1235", sonarHome)).isNotEqualTo(name);
+
+    File plugin = new File(sonarHome, "extensions/plugins/sonar-java-plugin-4.5.jar");
+    FileUtils.write(plugin, "java", UTF_8);
+    String nameWithPlugin = underTest.name("6.3.0.1234", sonarHome);
+    assertThat(nameWithPlugin).isNotEqualTo(name);
+
+    FileUtils.write(plugin, "another java", UTF_8);
+    assertThat(underTest.name("6.3.0.1234", sonarHome)).isNotEqualTo(nameWithPlugin);
+  }
+
+  @Test
+  public void name_does_not_change_when_server_moves_downloaded_plugins() throws IOException {
+    File downloaded = new File(sonarHome, "extensions/downloads/sonar-java-plugin-4.5.jar");
+    FileUtils.write(downloaded, "java", UTF_8);
+    FileUtils.write(new File(sonarHome, "extensions/plugins/sonar-xoo-plugin-1.0.jar"), "xoo", UTF_8);
+    String beforeStartup = underTest.name("6.3", sonarHome);
+
+    FileUtils.moveFileToDirectory(downloaded, new File(sonarHome, "extensions/plugins"), false);
+    String afterStartup = underTest.name("6.3", sonarHome);
+
+    assertThat(afterStartup).isEqualTo(beforeStartup);
+  }
+
+  @Test
+  public void name_depends_on_database() {
+    DatabaseSnapshots other = new DatabaseSnapshots(PostgreSql.builder().setUrl("jdbc:postgresql://other/sonar").build(), () -> dir);
+    assertThat(other.name("6.3", sonarHome)).isNotEqualTo(underTest.name("6.3", sonarHome));
+  }
+
+  @Test
+  public void register_and_unregister_snapshots() {
+    assertThat(underTest.getTables("sonar_snapshot_1")).isNull();
+    assertThat(underTest.list()).isEmpty();
+
+    underTest.register("sonar_snapshot_1", asList("issues", "projects"));
+    underTest.register("sonar_snapshot_2", asList());
+
+    assertThat(underTest.getTables("sonar_snapshot_1")).containsExactly("issues", "projects");
+    assertThat(underTest.getTables("sonar_snapshot_2")).isEmpty();
+    assertThat(underTest.list()).containsOnly("sonar_snapshot_1", "sonar_snapshot_2");
+
+    underTest.unregister("sonar_snapshot_1");
+    assertThat(underTest.getTables("sonar_snapshot_1")).isNull();
+    assertThat(underTest.list()).containsOnly("sonar_snapshot_2");
+  }
+
+  @Test
+  public void list_ignores_snapshots_of_other_databases() {
+    new DatabaseSnapshots(PostgreSql.builder().setUrl("jdbc:postgresql://other/sonar").build(), () -> dir)
+      .register("sonar_snapshot_1", asList());
+
+    assertThat(underTest.list()).isEmpty();
+  }
+
+  @Test
+  public void support_of_dialects() {
+    assertThat(DatabaseSnapshots.isSupported(H2.builder().build())).isTrue();
+    assertThat(DatabaseSnapshots.isSupported(H2.builder().setStorage(H2.Storage.MEMORY, null).build())).isFalse();
+    assertThat(DatabaseSnapshots.isSupported(PostgreSql.builder().build())).isTrue();
+    assertThat(DatabaseSnapshots.isSupported(MySql.builder().build())).isTrue();
+    assertThat(DatabaseSnapshots.isSupported(MsSql.jtdsBuilder().build())).isTrue();
+    // database is kept
+    assertThat(DatabaseSnapshots.isSupported(PostgreSql.builder().setDropAndCreate(false).build())).isFalse();
+  }
+}
@@ -19,12 +19,21 @@
  */
 package com.sonar.orchestrator.db;
 
+import com.sonar.orchestrator.config.Configuration;
 import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import org.h2.tools.Server;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -34,7 +43,17 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class DefaultDatabaseTest {
 
@@ -184,6 +203,80 @@ public class DefaultDatabaseTest {
     }
   }
 
+  @Test
+  public void snapshot_of_embedded_database_is_copied_from_and_to_sonar_home() throws IOException {
+    File snapshotsDir = temporaryFolder.newFolder();
+    File sonarHome = temporaryFolder.newFolder();
+    File otherSonarHome = temporaryFolder.newFolder();
+    FileUtils.write(new File(sonarHome, "data/sonar.h2.db"), "migrated", UTF_8);
+    DefaultDatabase underTest = new DefaultDatabase(H2.builder()
+      .setUrl("jdbc:h2:mem:snapshots;DB_CLOSE_DELAY=-1")
+      .setDropAndCreate(false)
+      .build(), snapshotsDir);
+    try {
+      underTest.start();
+      assertThat(underTest.isSnapshotEnabled()).isTrue();
+      assertThat(underTest.restoreSnapshot("6.3", sonarHome)).isFalse();
+
+      underTest.createSnapshot("6.3", sonarHome);
+      assertThat(underTest.restoreSnapshot("6.3", otherSonarHome)).isTrue();
+      assertThat(FileUtils.readFileToString(new File(otherSonarHome, "data/sonar.h2.db"), UTF_8)).isEqualTo("migrated");
+
+      // another version drops the obsolete snapshot
+      assertThat(underTest.restoreSnapshot("6.4", otherSonarHome)).isFalse();
+      assertThat(underTest.restoreSnapshot("6.3", temporaryFolder.newFolder())).isFalse();
+    } finally {
+      underTest.stop();
+    }
+  }
+
+  @Test
+  public void snapshot_created_after_installation_of_plugins_by_server_is_restored_by_next_startup() throws IOException {
+    File snapshotsDir = temporaryFolder.newFolder();
+    H2 client = H2.builder()
+      .setUrl("jdbc:h2:mem:snapshots_plugins;DB_CLOSE_DELAY=-1")
+      .setDropAndCreate(false)
+      .build();
+    File sonarHome = installServerWithDownloadedPlugin();
+    DefaultDatabase firstRun = new DefaultDatabase(client, snapshotsDir);
+    try {
+      firstRun.start();
+      assertThat(firstRun.restoreSnapshot("6.3", sonarHome)).isFalse();
+      // startup of server replaces the bundled plugin by the downloaded one
+      FileUtils.forceDelete(new File(sonarHome, "extensions/plugins/sonar-java-plugin-4.5.jar"));
+      FileUtils.moveFileToDirectory(new File(sonarHome, "extensions/downloads/sonar-java-plugin-4.7.jar"), new File(sonarHome, "extensions/plugins"), false);
+      FileUtils.write(new File(sonarHome, "data/sonar.h2.db"), "migrated", UTF_8);
+      firstRun.createSnapshot("6.3", sonarHome);
+    } finally {
+      firstRun.stop();
+    }
+
+    File nextSonarHome = installServerWithDownloadedPlugin();
+    DefaultDatabase nextRun = new DefaultDatabase(client, snapshotsDir);
+    try {
+      nextRun.start();
+      assertThat(nextRun.restoreSnapshot("6.3", nextSonarHome)).isTrue();
+      assertThat(FileUtils.readFileToString(new File(nextSonarHome, "data/sonar.h2.db"), UTF_8)).isEqualTo("migrated");
+    } finally {
+      nextRun.stop();
+    }
+  }
+
+  private File installServerWithDownloadedPlugin() throws IOException {
+    File sonarHome = temporaryFolder.newFolder();
+    FileUtils.write(new File(sonarHome, "extensions/plugins/sonar-java-plugin-4.5.jar"), "bundled java", UTF_8);
+    FileUtils.write(new File(sonarHome, "extensions/downloads/sonar-java-plugin-4.7.jar"), "downloaded java", UTF_8);
+    return sonarHome;
+  }
+
+  @Test
+  public void snapshots_are_disabled_by_default() {
+    assertThat(db.isSnapshotEnabled()).isFalse();
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Database snapshots are not enabled");
+    db.restoreSnapshot("6.3", temporaryFolder.getRoot());
+  }
+
   @Test
   public void shouldCreateDatabase() throws SQLException {
     assertConnected(db);
@@ -199,6 +292,101 @@ public class DefaultDatabaseTest {
     assertThat(connection.isClosed()).isTrue();
   }
 
+  @Test
+  public void connections_are_pooled() throws SQLException {
+    long created = db.getConnectionPoolStats().getCreated();
+    db.countSql("select count(kee) from metrics");
+    db.executeSql("select * from metrics");
+    db.countSql("select count(kee) from metrics");
+
+    ConnectionPoolStats stats = db.getConnectionPoolStats();
+    assertThat(stats.getCreated()).isLessThanOrEqualTo(created + 1);
+    assertThat(stats.getActive()).isEqualTo(0);
+    assertThat(stats.getIdle()).isGreaterThan(0);
+  }
+
+  @Test
+  public void count_with_parameters_reuses_prepared_statement() {
+    long hits = db.getConnectionPoolStats().getStatementCacheHits();
+
+    assertThat(db.countSql(SqlQuery.create("select count(kee) from metrics where kee = ?", "ncloc"))).isEqualTo(1);
+    assertThat(db.countSql(SqlQuery.create("select count(kee) from metrics where kee = ?", "lines"))).isEqualTo(1);
+    assertThat(db.countSql(SqlQuery.create("select count(kee) from metrics where kee = ?", "unknown"))).isEqualTo(0);
+
+    assertThat(db.getConnectionPoolStats().getStatementCacheHits()).isGreaterThanOrEqualTo(hits + 2);
+    assertThat(db.getConnectionPoolStats().getActive()).isEqualTo(0);
+  }
+
+  @Test
+  public void execute_sql_with_parameters() {
+    List<Map<String, String>> rows = db.executeSql(SqlQuery.create("select kee, name from metrics where kee = ?", "ncloc"));
+
+    assertThat(rows).hasSize(1);
+    assertThat(rows.get(0).get("KEE")).isEqualTo("ncloc");
+    assertThat(rows.get(0).get("NAME")).isEqualTo("Lines of Code");
+  }
+
+  @Test
+  public void load_csv_fixture() throws IOException {
+    File csv = temporaryFolder.newFile("projects.csv");
+    FileUtils.write(csv, "kee,name\nlog4j,Log4J\n\"guava\",\"Google, Guava\"\n", UTF_8);
+
+    assertThat(db.load("projects", csv)).isEqualTo(2);
+
+    assertThat(db.countSql("select count(kee) from projects")).isEqualTo(3);
+    assertThat(db.executeSql(SqlQuery.create("select name from projects where kee = ?", "guava")).get(0).get("NAME")).isEqualTo("Google, Guava");
+  }
+
+  @Test
+  public void load_json_fixture() throws IOException {
+    File json = temporaryFolder.newFile("properties.json");
+    FileUtils.write(json, "[{\"id\": 3, \"resource_id\": 30}, {\"id\": 4, \"resource_id\": null}]", UTF_8);
+
+    assertThat(db.load("properties", json)).isEqualTo(2);
+
+    assertThat(db.countSql("select count(id) from properties")).isEqualTo(4);
+    assertThat(db.countSql("select count(id) from properties where resource_id is null")).isEqualTo(2);
+    assertThat(db.countSql(SqlQuery.create("select count(id) from properties where resource_id = ?", 30))).isEqualTo(1);
+  }
+
+  @Test
+  public void fail_to_load_fixture_if_table_does_not_exist() throws IOException {
+    File csv = temporaryFolder.newFile("unknown.csv");
+    FileUtils.write(csv, "kee\nfoo\n", UTF_8);
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Table unknown does not exist");
+    db.load("unknown", csv);
+  }
+
+  @Test
+  public void fixtures_of_embedded_database_are_loaded_while_server_is_up() throws Exception {
+    File csv = temporaryFolder.newFile("rules.csv");
+    FileUtils.write(csv, "kee,name\nS100,Naming\nS101,\"Naming, again\"\n", UTF_8);
+    Configuration config = Configuration.builder()
+      .setProperty("orchestrator.databaseFixtures", csv.getAbsolutePath())
+      .build();
+    DefaultDatabase embedded = new DefaultDatabase(config);
+    assertThat(embedded.isEmbedded()).isTrue();
+    assertThat(embedded.getClient().getUrl()).startsWith("jdbc:h2:tcp://");
+
+    // the embedded database is served by the web process of SonarQube
+    String port = embedded.getSonarProperties().get("sonar.embeddedDatabase.port");
+    Server webServer = Server.createTcpServer("-tcpPort", port, "-baseDir", temporaryFolder.newFolder().getAbsolutePath()).start();
+    try {
+      embedded.start();
+      embedded.executeDdl("CREATE TABLE \"RULES\"( \"KEE\" VARCHAR(10), \"NAME\" VARCHAR(50))");
+
+      assertThat(embedded.loadFixtures()).isTrue();
+
+      assertThat(embedded.countSql("select count(kee) from rules")).isEqualTo(2);
+      assertThat(embedded.executeSql(SqlQuery.create("select name from rules where kee = ?", "S101")).get(0).get("NAME")).isEqualTo("Naming, again");
+    } finally {
+      embedded.stop();
+      webServer.stop();
+    }
+  }
+
   @Test
   public void failIfUnknownDriver() {
     thrown.expect(RuntimeException.class);
@@ -241,6 +429,78 @@ public class DefaultDatabaseTest {
     db.executeSql("this is not sql");
   }
 
+  @Test
+  public void forEachRow_binds_parameters() {
+    List<String> names = new ArrayList<>();
+    db.forEachRow(SqlQuery.create("select name from metrics where kee = ? or kee = ? order by kee", "lines", "ncloc"),
+      row -> names.add(row.getString("NAME")));
+
+    assertThat(names).containsExactly("Lines", "Lines of Code");
+    assertThat(db.getConnectionPoolStats().getActive()).isEqualTo(0);
+  }
+
+  @Test
+  public void forEachRow_reads_primitive_values() {
+    long[] sum = new long[1];
+    List<Boolean> nulls = new ArrayList<>();
+    db.forEachRow(SqlQuery.create("select id, resource_id from properties order by id").setFetchSize(1), row -> {
+      sum[0] += row.getLong(1);
+      row.getLong("resource_id");
+      nulls.add(row.wasNull());
+    });
+
+    assertThat(sum[0]).isEqualTo(3L);
+    assertThat(nulls).containsExactly(false, true);
+  }
+
+  @Test
+  public void row_provides_column_metadata() {
+    db.forEachRow(SqlQuery.create("select kee, name as label from metrics where kee = ?", "lines"), row -> {
+      assertThat(row.getColumnCount()).isEqualTo(2);
+      assertThat(row.getColumnName(1)).isEqualTo("KEE");
+      assertThat(row.getColumnName(2)).isEqualTo("LABEL");
+      assertThat(row.getColumnIndex("label")).isEqualTo(2);
+    });
+  }
+
+  @Test
+  public void fail_if_unknown_column() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Column foo does not exist. Available columns are KEE");
+    db.forEachRow(SqlQuery.create("select kee from metrics"), row -> row.getString("foo"));
+  }
+
+  @Test
+  public void stream_rows() {
+    try (Stream<String> keys = db.stream(SqlQuery.create("select kee from metrics order by kee"), row -> row.getString(1))) {
+      assertThat(keys.collect(Collectors.toList())).containsExactly("lines", "ncloc");
+    }
+    assertThat(db.getConnectionPoolStats().getActive()).isEqualTo(0);
+  }
+
+  @Test
+  public void resources_are_released_when_stream_is_consumed() {
+    assertThat(db.stream(SqlQuery.create("select kee from metrics"), row -> row.getString(1)).count()).isEqualTo(2);
+    assertThat(db.getConnectionPoolStats().getActive()).isEqualTo(0);
+  }
+
+  @Test
+  public void resources_are_released_when_partially_consumed_stream_is_closed() {
+    Stream<String> keys = db.stream(SqlQuery.create("select kee from metrics order by kee"), row -> row.getString(1));
+    assertThat(keys.findFirst().get()).isEqualTo("lines");
+    assertThat(db.getConnectionPoolStats().getActive()).isEqualTo(1);
+
+    keys.close();
+    assertThat(db.getConnectionPoolStats().getActive()).isEqualTo(0);
+  }
+
+  @Test
+  public void stream_fails_if_bad_sql() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Fail to execute SQL request: this is not sql [foo]");
+    db.stream(SqlQuery.create("this is not sql", "foo"), row -> row.getString(1));
+  }
+
   @Test
   public void truncate() {
     assertThat(db.countSql("select count(kee) from metrics")).isGreaterThan(0);
@@ -248,6 +508,32 @@ public class DefaultDatabaseTest {
     assertThat(db.countSql("select count(kee) from metrics")).isEqualTo(0);
   }
 
+  @Test
+  public void truncate_tables() {
+    db.truncate(asList("metrics", "properties", "does_not_exist"));
+
+    assertThat(db.countSql("select count(kee) from metrics")).isEqualTo(0);
+    assertThat(db.countSql("select count(id) from properties")).isEqualTo(0);
+    assertThat(db.countSql("select count(kee) from projects")).isEqualTo(1);
+    assertThat(db.getConnectionPoolStats().getActive()).isEqualTo(0);
+  }
+
+  @Test
+  public void truncate_tables_fails_if_uppercase() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Table name [METRICS] should be lowercase to avoid issues");
+    db.truncate(asList("projects", "METRICS"));
+  }
+
+  @Test
+  public void truncate_all_tables_except_some() {
+    db.truncateAll("projects");
+
+    assertThat(db.countSql("select count(kee) from metrics")).isEqualTo(0);
+    assertThat(db.countSql("select count(id) from properties")).isEqualTo(0);
+    assertThat(db.countSql("select count(kee) from projects")).isEqualTo(1);
+  }
+
   @Test
   public void truncateShouldFailIfUppercase() {
     thrown.expect(IllegalStateException.class);
@@ -255,6 +541,102 @@ public class DefaultDatabaseTest {
     db.truncate("METRICS");
   }
 
+  @Test
+  public void orphan_connections_are_killed_in_a_single_batch() throws Exception {
+    DatabaseClient client = mockClient();
+    Connection connection = mock(Connection.class);
+    Statement stmt = mockStatement(connection);
+    when(connection.getAutoCommit()).thenReturn(true);
+    when(stmt.executeQuery("select ids")).thenAnswer(invocation -> resultSet("1", "2")).thenAnswer(invocation -> resultSet());
+
+    long durationMs = new DefaultDatabase(client, 3, 10_000L).killOtherConnections(connection);
+
+    assertThat(durationMs).isGreaterThanOrEqualTo(0L);
+    verify(stmt).addBatch("kill 1");
+    verify(stmt).addBatch("kill 2");
+    verify(stmt).executeBatch();
+    verify(stmt, never()).execute(anyString());
+  }
+
+  @Test
+  public void orphan_connections_are_killed_one_by_one_if_batch_is_rejected() throws Exception {
+    DatabaseClient client = mockClient();
+    Connection connection = mock(Connection.class);
+    Statement stmt = mockStatement(connection);
+    when(connection.getAutoCommit()).thenReturn(true);
+    when(stmt.executeQuery("select ids")).thenAnswer(invocation -> resultSet("1", "2")).thenAnswer(invocation -> resultSet());
+    when(stmt.executeBatch()).thenThrow(new SQLException("batch not supported"));
+
+    new DefaultDatabase(client, 3, 10_000L).killOtherConnections(connection);
+
+    verify(stmt).execute("kill 1");
+    verify(stmt).execute("kill 2");
+  }
+
+  @Test
+  public void fail_if_orphan_connections_remain_after_all_attempts() throws Exception {
+    DatabaseClient client = mockClient();
+    Connection connection = mock(Connection.class);
+    Statement stmt = mockStatement(connection);
+    when(connection.getAutoCommit()).thenReturn(true);
+    when(stmt.executeQuery("select ids")).thenAnswer(invocation -> resultSet("1", "2"));
+
+    try {
+      new DefaultDatabase(client, 2, 10_000L).killOtherConnections(connection);
+      fail();
+    } catch (SQLException e) {
+      assertThat(e).hasMessage("Some connections remains dangling after killing [1, 2]");
+    }
+    verify(client, times(2)).getKillConnectionsSql(asList("1", "2"));
+  }
+
+  @Test
+  public void fail_if_orphan_connections_remain_after_deadline() throws Exception {
+    DatabaseClient client = mockClient();
+    Connection connection = mock(Connection.class);
+    Statement stmt = mockStatement(connection);
+    when(connection.getAutoCommit()).thenReturn(true);
+    when(stmt.executeQuery("select ids")).thenAnswer(invocation -> resultSet("1"));
+
+    long start = System.currentTimeMillis();
+    try {
+      new DefaultDatabase(client, 1_000, 300L).killOtherConnections(connection);
+      fail();
+    } catch (SQLException e) {
+      assertThat(e).hasMessage("Some connections remains dangling after killing [1]");
+    }
+    assertThat(System.currentTimeMillis() - start).isLessThan(5_000L);
+  }
+
+  private static DatabaseClient mockClient() {
+    DatabaseClient client = mock(DatabaseClient.class);
+    when(client.getSelectConnectionIdsSql()).thenReturn("select ids");
+    when(client.getKillConnectionsSql(anyListOf(String.class))).thenAnswer(invocation -> {
+      List<String> ids = (List<String>) invocation.getArguments()[0];
+      return ids.stream().map(id -> "kill " + id).collect(Collectors.toList());
+    });
+    return client;
+  }
+
+  private static Statement mockStatement(Connection connection) throws SQLException {
+    Statement stmt = mock(Statement.class);
+    when(connection.createStatement()).thenReturn(stmt);
+    return stmt;
+  }
+
+  private static ResultSet resultSet(String... ids) throws SQLException {
+    ResultSet rs = mock(ResultSet.class);
+    Boolean[] next = new Boolean[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      next[i] = i < ids.length - 1;
+    }
+    when(rs.next()).thenReturn(ids.length > 0, next);
+    if (ids.length > 0) {
+      when(rs.getString(1)).thenReturn(ids[0], Arrays.copyOfRange(ids, 1, ids.length));
+    }
+    return rs;
+  }
+
   private void assertConnected(Database operations) throws SQLException {
     Connection connection = operations.openConnection();
     try {
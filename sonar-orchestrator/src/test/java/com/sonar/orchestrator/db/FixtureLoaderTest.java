@@ -0,0 +1,99 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FixtureLoaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private DefaultDatabase db;
+
+  @Before
+  public void setUp() {
+    db = new DefaultDatabase(H2.builder().setUrl("jdbc:h2:mem:fixtures;DB_CLOSE_DELAY=-1").setDropAndCreate(false).build());
+    db.start();
+    db.executeDdl("CREATE TABLE \"ISSUES\"(\"KEE\" VARCHAR(20), \"LINE\" INTEGER, \"RESOLVED\" BOOLEAN)");
+  }
+
+  @After
+  public void tearDown() {
+    db.executeDdl("DROP TABLE \"ISSUES\"");
+    db.stop();
+  }
+
+  @Test
+  public void insert_rows_by_batches() throws IOException, SQLException {
+    File csv = temp.newFile("issues.csv");
+    StringBuilder content = new StringBuilder("kee,line,resolved\n");
+    for (int i = 0; i < 25; i++) {
+      content.append("issue").append(i).append(',').append(i).append(',').append(i % 2 == 0).append('\n');
+    }
+    content.append("issue25,,\n");
+    FileUtils.write(csv, content, UTF_8);
+
+    try (Connection connection = db.openConnection()) {
+      long rows = new FixtureLoader(db.getClient(), 10).batchInsert(connection, "ISSUES", csv);
+      assertThat(rows).isEqualTo(26);
+      assertThat(connection.getAutoCommit()).isTrue();
+    }
+
+    assertThat(db.countSql("select count(*) from issues")).isEqualTo(26);
+    assertThat(db.countSql("select count(*) from issues where resolved = true")).isEqualTo(13);
+    assertThat(db.countSql("select sum(line) from issues")).isEqualTo(300);
+    assertThat(db.countSql("select count(*) from issues where line is null and resolved is null")).isEqualTo(1);
+  }
+
+  @Test
+  public void load_csv_with_csvread_on_h2() throws IOException, SQLException {
+    File csv = temp.newFile("issues.csv");
+    FileUtils.write(csv, "kee,line,resolved\nissue1,10,true\nissue2,20,false\n", UTF_8);
+
+    try (Connection connection = db.openConnection()) {
+      assertThat(new FixtureLoader(db.getClient(), 10).load(connection, "ISSUES", csv)).isEqualTo(2);
+    }
+
+    assertThat(db.countSql("select sum(line) from issues")).isEqualTo(30);
+  }
+
+  @Test
+  public void load_empty_json() throws IOException, SQLException {
+    File json = temp.newFile("issues.json");
+    FileUtils.write(json, "[]", UTF_8);
+
+    try (Connection connection = db.openConnection()) {
+      assertThat(new FixtureLoader(db.getClient(), 10).load(connection, "ISSUES", json)).isEqualTo(0);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import com.sonar.orchestrator.Orchestrator;
+import com.sonar.orchestrator.build.SonarScanner;
+import java.io.File;
+
+import static java.lang.String.format;
+
+/**
+ * Compares the durations of startup of SonarQube and of analysis when the embedded H2 database
+ * is stored on disk, in memory or in a RAM-backed directory. This is not a unit test, it must be
+ * executed manually, with the usual configuration of Orchestrator (Maven repository, ...):
+ * <pre>
+ *   java -cp ... com.sonar.orchestrator.db.H2StorageBenchmark &lt;sonarVersion&gt; [path/to/project]
+ * </pre>
+ * Analysis is not measured when no project is provided.
+ */
+public class H2StorageBenchmark {
+
+  private static final int ITERATIONS = 3;
+
+  public static void main(String[] args) {
+    if (args.length == 0) {
+      System.err.println("Usage: H2StorageBenchmark <sonarVersion> [path/to/project]");
+      System.exit(1);
+    }
+    String sonarVersion = args[0];
+    File projectDir = args.length > 1 ? new File(args[1]) : null;
+    for (H2.Storage storage : H2.Storage.values()) {
+      long bestStartMs = Long.MAX_VALUE;
+      long bestAnalysisMs = Long.MAX_VALUE;
+      for (int i = 0; i < ITERATIONS; i++) {
+        Orchestrator orchestrator = Orchestrator.builderEnv()
+          .setSonarVersion(sonarVersion)
+          .setOrchestratorProperty(DatabaseFactory.H2_STORAGE_PROPERTY, storage.name())
+          .build();
+        try {
+          long start = System.nanoTime();
+          orchestrator.start();
+          bestStartMs = Math.min(bestStartMs, (System.nanoTime() - start) / 1_000_000);
+          if (projectDir != null) {
+            start = System.nanoTime();
+            orchestrator.executeBuild(SonarScanner.create(projectDir, "sonar.projectKey", "h2-benchmark", "sonar.sources", "."));
+            bestAnalysisMs = Math.min(bestAnalysisMs, (System.nanoTime() - start) / 1_000_000);
+          }
+        } finally {
+          orchestrator.stop();
+        }
+      }
+      System.out.println(format("%-8s best of %d: startup %d ms, analysis %s", storage, ITERATIONS, bestStartMs,
+        projectDir == null ? "-" : (bestAnalysisMs + " ms")));
+    }
+  }
+}
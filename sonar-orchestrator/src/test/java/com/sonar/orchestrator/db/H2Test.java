@@ -86,6 +86,52 @@ public class H2Test {
     assertThat(h2.getAdditionalProperties().get("sonar.embeddedDatabase.port")).isEqualTo("1234");
   }
 
+  @Test
+  public void in_memory_storage() {
+    H2 h2 = H2.builder().setStorage(H2.Storage.MEMORY, null).build();
+
+    assertThat(h2.getStorage()).isEqualTo(H2.Storage.MEMORY);
+    assertThat(h2.getUrl()).matches("jdbc:h2:tcp://.*:\\d*/mem:sonar;DB_CLOSE_DELAY=-1;USER=sonar;PASSWORD=sonar");
+    assertThat(h2.getAdditionalProperties().get("sonar.embeddedDatabase.port")).isNotEmpty().doesNotContain("sonar");
+    assertThat(h2.getAdditionalProperties()).doesNotContainKey("sonar.path.data");
+    assertThat(h2.getDataDir(new File("home"))).isNull();
+  }
+
+  @Test
+  public void tmpfs_storage() {
+    File tmpfs = new File("tmpfs");
+    H2 h2 = H2.builder().setStorage(H2.Storage.TMPFS, tmpfs).build();
+
+    String port = h2.getAdditionalProperties().get("sonar.embeddedDatabase.port");
+    assertThat(h2.getStorage()).isEqualTo(H2.Storage.TMPFS);
+    assertThat(h2.getUrl()).matches("jdbc:h2:tcp://.*:" + port + "/sonar;LOG=0;CACHE_SIZE=131072;USER=sonar;PASSWORD=sonar");
+    assertThat(h2.getProperties().get("sonar.jdbc.url")).contains("CACHE_SIZE");
+    File dataDir = new File(tmpfs, "sonarqube-data-" + port);
+    assertThat(h2.getDataDir(new File("home"))).isEqualTo(dataDir);
+    assertThat(h2.getAdditionalProperties().get("sonar.path.data")).isEqualTo(dataDir.getAbsolutePath());
+  }
+
+  @Test
+  public void default_storage_is_disk() {
+    H2 h2 = H2.builder().build();
+
+    assertThat(h2.getStorage()).isEqualTo(H2.Storage.DISK);
+    assertThat(h2.getDataDir(new File("home"))).isEqualTo(new File("home", "data"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void tmpfs_storage_requires_directory() {
+    H2.builder().setStorage(H2.Storage.TMPFS, null);
+  }
+
+  @Test
+  public void port_property_is_not_set_if_url_is_not_tcp() {
+    H2 h2 = H2.builder().setUrl("jdbc:h2:mem:sonar;DB_CLOSE_DELAY=-1").build();
+
+    // port of the default URL, set by constructor of builder, is kept
+    assertThat(h2.getAdditionalProperties().get("sonar.embeddedDatabase.port")).matches("\\d+");
+  }
+
   @Test
   public void driver_and_schema_must_not_be_set() {
     H2 h2 = H2.builder().setSchema("foo").setDriverFile(new File(".")).build();
@@ -0,0 +1,93 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JsonFixtureReaderTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void read_objects() throws IOException {
+    JsonFixtureReader underTest = new JsonFixtureReader(new StringReader(
+      "[ {\"kee\": \"struts\", \"enabled\": true, \"lines\": 1250},\n {\"kee\": \"log4j\", \"enabled\": false, \"lines\": -1.5e3} ]"));
+
+    assertThat(underTest.getColumns()).containsExactly("kee", "enabled", "lines");
+    assertThat(underTest.next()).containsExactly("struts", "true", "1250");
+    assertThat(underTest.next()).containsExactly("log4j", "false", "-1.5e3");
+    assertThat(underTest.next()).isNull();
+    assertThat(underTest.next()).isNull();
+  }
+
+  @Test
+  public void missing_keys_and_null_values_are_null() throws IOException {
+    JsonFixtureReader underTest = new JsonFixtureReader(new StringReader("[{\"kee\": \"struts\", \"name\": null}, {\"kee\": \"log4j\"}]"));
+
+    assertThat(underTest.next()).containsExactly("struts", null);
+    assertThat(underTest.next()).containsExactly("log4j", null);
+  }
+
+  @Test
+  public void unescape_strings() throws IOException {
+    JsonFixtureReader underTest = new JsonFixtureReader(new StringReader("[{\"name\": \"say \\\"hello\\\"\\n\\u00e9t\\u00E9 \\\\ \\/\"}]"));
+
+    assertThat(underTest.next()).containsExactly("say \"hello\"\n\u00e9t\u00e9 \\ /");
+  }
+
+  @Test
+  public void read_empty_array() throws IOException {
+    JsonFixtureReader underTest = new JsonFixtureReader(new StringReader(" [ ] "));
+
+    assertThat(underTest.getColumns()).isEmpty();
+    assertThat(underTest.next()).isNull();
+  }
+
+  @Test
+  public void fail_if_key_is_not_declared_by_first_object() throws IOException {
+    JsonFixtureReader underTest = new JsonFixtureReader(new StringReader("[{\"kee\": \"struts\"}, {\"kee\": \"log4j\", \"name\": \"Log4J\"}]"));
+    underTest.next();
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Invalid JSON fixture: keys are not declared by the first object: [kee, name] (object 2)");
+    underTest.next();
+  }
+
+  @Test
+  public void fail_if_nested_values() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Invalid JSON fixture: nested objects and arrays are not supported (object 1)");
+    new JsonFixtureReader(new StringReader("[{\"kee\": {\"foo\": \"bar\"}}]"));
+  }
+
+  @Test
+  public void fail_if_not_an_array() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Invalid JSON fixture: '[' expected (object 1)");
+    new JsonFixtureReader(new StringReader("{\"kee\": \"struts\"}"));
+  }
+}
@@ -19,8 +19,10 @@
  */
 package com.sonar.orchestrator.db;
 
+import java.util.Collections;
 import org.junit.Test;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class MsSqlTest {
@@ -72,4 +74,19 @@ public class MsSqlTest {
     assertThat(mssql.getKillConnectionSql("007")).contains("KILL");
   }
 
+  @Test
+  public void connections_are_killed_by_one_request_per_connection() {
+    MsSql mssql = MsSql.jtdsBuilder().build();
+    assertThat(mssql.getKillConnectionsSql(asList("7", "8"))).containsExactly("KILL 7", "KILL 8");
+  }
+
+
+  @Test
+  public void snapshot_is_a_backup() {
+    MsSql mssql = MsSql.jtdsBuilder().build();
+    assertThat(mssql.getCreateSnapshotDdl("snap", Collections.emptyList()))
+      .containsExactly("BACKUP DATABASE [sonar] TO DISK = N'sonar-orchestrator-snapshot.bak' WITH INIT, COPY_ONLY");
+    assertThat(mssql.getRestoreSnapshotDdl("snap", Collections.emptyList()))
+      .contains("RESTORE DATABASE [sonar] FROM DISK = N'sonar-orchestrator-snapshot.bak' WITH REPLACE");
+  }
 }
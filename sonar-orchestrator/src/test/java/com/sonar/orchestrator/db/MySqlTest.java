@@ -21,6 +21,7 @@ package com.sonar.orchestrator.db;
 
 import org.junit.Test;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class MySqlTest {
@@ -78,4 +79,29 @@ public class MySqlTest {
     assertThat(mysql.getSchema()).isEqualTo("sonar");
     assertThat(mysql.getDropDdl().length).isGreaterThan(0);
   }
+
+  @Test
+  public void snapshot_copies_tables() {
+    MySql mysql = MySql.builder().build();
+    assertThat(mysql.getCreateSnapshotDdl("snap", asList("issues", "projects"))).containsExactly(
+      "drop database IF EXISTS `snap`",
+      "create database `snap`",
+      "create table `snap`.`issues` like `sonar`.`issues`",
+      "insert into `snap`.`issues` select * from `sonar`.`issues`",
+      "create table `snap`.`projects` like `sonar`.`projects`",
+      "insert into `snap`.`projects` select * from `sonar`.`projects`");
+    assertThat(mysql.getRestoreSnapshotDdl("snap", asList("issues"))).containsExactly(
+      "drop database IF EXISTS `sonar`",
+      "create database `sonar`",
+      "create table `sonar`.`issues` like `snap`.`issues`",
+      "insert into `sonar`.`issues` select * from `snap`.`issues`");
+    assertThat(mysql.getDropSnapshotDdl("snap")).containsExactly("drop database IF EXISTS `snap`");
+  }
+
+  @Test
+  public void tables_are_truncated_concurrently() {
+    MySql mysql = MySql.builder().build();
+    assertThat(mysql.getTruncateSql(asList("issues", "projects"))).containsExactly("TRUNCATE TABLE issues", "TRUNCATE TABLE projects");
+    assertThat(mysql.getTruncateParallelism()).isGreaterThan(1);
+  }
 }
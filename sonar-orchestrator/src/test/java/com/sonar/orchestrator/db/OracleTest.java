@@ -20,6 +20,7 @@
 package com.sonar.orchestrator.db;
 
 import java.io.File;
+import java.util.Collections;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
@@ -80,4 +81,18 @@ public class OracleTest {
     Oracle oracle = Oracle.builder().setDriverFile(driverFile).build();
     assertThat(oracle.getSchema()).isNull();
   }
+
+  @Test
+  public void snapshots_are_not_supported() {
+    Oracle oracle = Oracle.builder().setDriverFile(driverFile).build();
+    assertThat(oracle.getCreateSnapshotDdl("snap", Collections.emptyList())).isNull();
+    assertThat(DatabaseSnapshots.isSupported(oracle)).isFalse();
+  }
+
+  @Test
+  public void tables_are_listed_in_schema_of_user() {
+    Oracle oracle = Oracle.builder().setDriverFile(driverFile).build();
+    assertThat(oracle.getMetadataSchema()).isEqualTo("SONAR");
+    assertThat(oracle.getTruncateParallelism()).isGreaterThan(1);
+  }
 }
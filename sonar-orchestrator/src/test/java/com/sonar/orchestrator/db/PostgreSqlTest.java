@@ -19,8 +19,10 @@
  */
 package com.sonar.orchestrator.db;
 
+import java.util.Collections;
 import org.junit.Test;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class PostgreSqlTest {
@@ -69,4 +71,28 @@ public class PostgreSqlTest {
     assertThat(postgreSql.getSelectConnectionIdsSql()).contains("SELECT");
     assertThat(postgreSql.getKillConnectionSql("007")).contains("pg_terminate_backend");
   }
+
+  @Test
+  public void connections_are_killed_by_a_single_request() {
+    PostgreSql postgreSql = PostgreSql.builder().build();
+    assertThat(postgreSql.getKillConnectionsSql(asList("7", "8")))
+      .containsExactly("SELECT pg_terminate_backend(id) FROM unnest(ARRAY[7,8]) AS id");
+  }
+
+  @Test
+  public void snapshot_is_a_template_database() {
+    PostgreSql postgreSql = PostgreSql.builder().build();
+    assertThat(postgreSql.getCreateSnapshotDdl("snap", Collections.emptyList()))
+      .containsExactly("drop database IF EXISTS \"snap\"", "create database \"snap\" template \"sonar\"");
+    assertThat(postgreSql.getRestoreSnapshotDdl("snap", Collections.emptyList()))
+      .containsExactly("drop database IF EXISTS \"sonar\"", "create database \"sonar\" template \"snap\" owner \"sonar\"");
+    assertThat(postgreSql.getDropSnapshotDdl("snap")).containsExactly("drop database IF EXISTS \"snap\"");
+  }
+
+  @Test
+  public void tables_are_truncated_by_a_single_request() {
+    PostgreSql postgreSql = PostgreSql.builder().build();
+    assertThat(postgreSql.getTruncateSql(asList("issues", "projects"))).containsExactly("TRUNCATE TABLE issues, projects");
+    assertThat(postgreSql.getTruncateParallelism()).isEqualTo(1);
+  }
 }
@@ -0,0 +1,156 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StatementCacheTest {
+
+  private static final String SQL = "select count(*) from projects where kee = ?";
+
+  private Connection physical = mock(Connection.class);
+  private Connection owner = mock(Connection.class);
+  private AtomicLong hits = new AtomicLong();
+  private AtomicLong misses = new AtomicLong();
+
+  @Test
+  public void closed_statement_is_reused() throws SQLException {
+    PreparedStatement physicalStatement = mockStatement();
+    when(physical.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(physicalStatement);
+    StatementCache underTest = new StatementCache(10, hits, misses);
+
+    PreparedStatement statement = underTest.prepare(physical, owner, SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    statement.setString(1, "foo");
+    statement.close();
+    assertThat(statement.isClosed()).isTrue();
+    verify(physicalStatement, never()).close();
+    verify(physicalStatement).clearParameters();
+    assertThat(underTest.size()).isEqualTo(1);
+
+    PreparedStatement reused = underTest.prepare(physical, owner, SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    reused.setString(1, "bar");
+    verify(physicalStatement).setString(1, "bar");
+    verify(physical, times(1)).prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    assertThat(hits.get()).isEqualTo(1);
+    assertThat(misses.get()).isEqualTo(1);
+    assertThat(reused.getConnection()).isSameAs(owner);
+  }
+
+  @Test
+  public void closed_statement_can_not_be_used() throws SQLException {
+    when(physical.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(mockStatement());
+    StatementCache underTest = new StatementCache(10, hits, misses);
+
+    PreparedStatement statement = underTest.prepare(physical, owner, SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    statement.close();
+    try {
+      statement.executeQuery();
+      fail();
+    } catch (SQLException e) {
+      assertThat(e).hasMessage("Statement is closed");
+    }
+  }
+
+  @Test
+  public void result_set_is_closed_and_fetch_size_is_restored_when_statement_is_released() throws SQLException {
+    PreparedStatement physicalStatement = mockStatement();
+    ResultSet rs = mock(ResultSet.class);
+    when(physicalStatement.executeQuery()).thenReturn(rs);
+    when(physical.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(physicalStatement);
+    StatementCache underTest = new StatementCache(10, hits, misses);
+
+    PreparedStatement statement = underTest.prepare(physical, owner, SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    statement.executeQuery();
+    when(physicalStatement.getFetchSize()).thenReturn(1000);
+    statement.close();
+
+    verify(rs).close();
+    verify(physicalStatement).setFetchSize(0);
+  }
+
+  @Test
+  public void max_rows_and_query_timeout_are_restored_when_statement_is_released() throws SQLException {
+    PreparedStatement physicalStatement = mockStatement();
+    when(physical.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(physicalStatement);
+    StatementCache underTest = new StatementCache(10, hits, misses);
+
+    PreparedStatement statement = underTest.prepare(physical, owner, SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    statement.setMaxRows(10);
+    statement.setQueryTimeout(30);
+    when(physicalStatement.getMaxRows()).thenReturn(10);
+    when(physicalStatement.getQueryTimeout()).thenReturn(30);
+    statement.close();
+
+    verify(physicalStatement).setMaxRows(0);
+    verify(physicalStatement).setQueryTimeout(0);
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void least_recently_used_statements_are_closed_when_cache_is_full() throws SQLException {
+    PreparedStatement statement1 = mockStatement();
+    PreparedStatement statement2 = mockStatement();
+    when(physical.prepareStatement("select 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(statement1);
+    when(physical.prepareStatement("select 2", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(statement2);
+    StatementCache underTest = new StatementCache(1, hits, misses);
+
+    underTest.prepare(physical, owner, "select 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY).close();
+    underTest.prepare(physical, owner, "select 2", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY).close();
+
+    verify(statement1).close();
+    verify(statement2, never()).close();
+    assertThat(underTest.size()).isEqualTo(1);
+
+    underTest.closeAll();
+    verify(statement2).close();
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void statements_are_closed_if_cache_is_disabled() throws SQLException {
+    PreparedStatement physicalStatement = mockStatement();
+    when(physical.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(physicalStatement);
+    StatementCache underTest = new StatementCache(0, hits, misses);
+
+    underTest.prepare(physical, owner, SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY).close();
+
+    verify(physicalStatement).close();
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+
+  private static PreparedStatement mockStatement() throws SQLException {
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(statement.isClosed()).thenReturn(false);
+    return statement;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.DisableOnDebug;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class HttpBatchTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public MockWebServer server = new MockWebServer();
+  @Rule
+  public TestRule safeguardTimeout = new DisableOnDebug(Timeout.seconds(60L));
+
+  @Test
+  public void execute_all_calls() throws Exception {
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return new MockResponse().setBody(request.getPath());
+      }
+    });
+    List<HttpCall> calls = newCalls(20);
+
+    HttpBatchResult result = HttpBatch.execute(calls, 3);
+
+    assertThat(result.isSuccessful()).isTrue();
+    assertThat(result.size()).isEqualTo(20);
+    assertThat(result.getFailures()).isEmpty();
+    for (int i = 0; i < 20; i++) {
+      assertThat(result.getCall(i)).isSameAs(calls.get(i));
+      assertThat(result.getResponse(i).getBodyAsString()).isEqualTo("/" + i);
+      assertThat(result.getFailure(i)).isNull();
+    }
+    assertThat(result.getResponses()).hasSize(20);
+    assertThat(server.getRequestCount()).isEqualTo(20);
+    assertThat(result.failIfAnyFailure()).isSameAs(result);
+  }
+
+  @Test
+  public void failures_are_collected_per_call() throws Exception {
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return "/1".equals(request.getPath()) ? new MockResponse().setResponseCode(500).setBody("boom") : new MockResponse().setBody("ok");
+      }
+    });
+    List<HttpCall> calls = newCalls(3);
+
+    HttpBatchResult result = HttpBatch.execute(calls, 2);
+
+    assertThat(result.isSuccessful()).isFalse();
+    assertThat(result.getResponse(0).getBodyAsString()).isEqualTo("ok");
+    assertThat(result.getResponse(1)).isNull();
+    assertThat(result.getFailure(1)).isInstanceOf(HttpException.class);
+    assertThat(((HttpException) result.getFailure(1)).getCode()).isEqualTo(500);
+    assertThat(result.getResponse(2).getBodyAsString()).isEqualTo("ok");
+    assertThat(result.getFailures()).containsOnlyKeys(calls.get(1));
+    assertThat(result.getResponses()).hasSize(2);
+
+    try {
+      result.failIfAnyFailure();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).startsWith("1 of 3 HTTP calls failed:").contains(server.url("1").toString());
+      assertThat(e.getSuppressed()).hasSize(1);
+    }
+  }
+
+  @Test
+  public void concurrency_is_limited() throws Exception {
+    int[] running = new int[1];
+    int[] maxRunning = new int[1];
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        synchronized (running) {
+          running[0]++;
+          maxRunning[0] = Math.max(maxRunning[0], running[0]);
+        }
+        Thread.sleep(20L);
+        synchronized (running) {
+          running[0]--;
+        }
+        return new MockResponse();
+      }
+    });
+
+    HttpBatchResult result = HttpBatch.execute(newCalls(10), 2);
+
+    assertThat(result.isSuccessful()).isTrue();
+    assertThat(maxRunning[0]).isLessThanOrEqualTo(2);
+  }
+
+  @Test
+  public void execute_empty_list_of_calls() {
+    HttpBatchResult result = HttpBatch.execute(Collections.emptyList(), 2);
+
+    assertThat(result.size()).isEqualTo(0);
+    assertThat(result.isSuccessful()).isTrue();
+  }
+
+  @Test
+  public void fail_if_max_concurrency_is_not_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Max concurrency must be positive: 0");
+
+    HttpBatch.execute(newCalls(1), 0);
+  }
+
+  @Test
+  public void calls_failing_synchronously_do_not_overflow_stack() {
+    HttpCall failingCall = new HttpCall(HttpClientFactory.create(), server.url("/")) {
+      @Override
+      public CompletableFuture<HttpResponse> executeAsync() {
+        throw new IllegalArgumentException("Bad parameter");
+      }
+    };
+    List<HttpCall> calls = Collections.nCopies(100_000, failingCall);
+
+    HttpBatchResult result = HttpBatch.execute(calls, 2);
+
+    assertThat(result.size()).isEqualTo(100_000);
+    assertThat(result.isSuccessful()).isFalse();
+    for (int i = 0; i < result.size(); i++) {
+      assertThat(result.getFailure(i)).hasMessage("Bad parameter");
+    }
+    assertThat(server.getRequestCount()).isEqualTo(0);
+  }
+
+  private List<HttpCall> newCalls(int count) {
+    HttpClient client = HttpClientFactory.create();
+    List<HttpCall> calls = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      calls.add(client.newCall(server.url(String.valueOf(i))));
+    }
+    return calls;
+  }
+}
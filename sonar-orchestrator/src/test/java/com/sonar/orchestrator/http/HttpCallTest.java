@@ -20,12 +20,17 @@
 package com.sonar.orchestrator.http;
 
 import java.io.File;
+import java.io.Reader;
 import java.util.Base64;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.DisableOnDebug;
@@ -282,6 +287,85 @@ public class HttpCallTest {
     }
   }
 
+  @Test
+  public void executeAsync_returns_response() throws Exception {
+    server.enqueue(new MockResponse().setBody(PONG));
+
+    HttpResponse response = newCall("api/system/ping").executeAsync().get(10, TimeUnit.SECONDS);
+
+    verifySuccess(response, PONG);
+  }
+
+  @Test
+  public void executeAsync_fails_with_HttpException_if_response_code_is_not_2xx() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(404).setBody("<error>"));
+
+    try {
+      newCall("api/system/ping").executeAsync().get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(HttpException.class);
+      HttpException cause = (HttpException) e.getCause();
+      assertThat(cause.getCode()).isEqualTo(404);
+      assertThat(cause.getBody()).isEqualTo("<error>");
+    }
+  }
+
+  @Test
+  public void executeAsync_fails_with_ISE_if_network_failure() throws Exception {
+    HttpUrl url = server.url("api/system/ping");
+    server.shutdown();
+
+    try {
+      HttpClientFactory.create().newCall(url).executeAsync().get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause())
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Can not call " + url + " due to network failure");
+    }
+  }
+
+  @Test
+  public void executeStreaming_returns_body_as_stream() throws Exception {
+    server.enqueue(new MockResponse().setBody(new Buffer().writeString("caf\u00e9", ISO_8859_1)).setHeader("Content-Type", "text/plain; charset=ISO-8859-1"));
+
+    try (HttpStreamingResponse response = newCall("api/system/info").executeStreaming();
+      Reader reader = response.getReader()) {
+      assertThat(response.getCode()).isEqualTo(200);
+      assertThat(response.isSuccessful()).isTrue();
+      assertThat(response.getCharset()).isEqualTo(ISO_8859_1);
+      assertThat(response.getHeader("Content-Type")).isEqualTo("text/plain; charset=ISO-8859-1");
+      assertThat(IOUtils.toString(reader)).isEqualTo("caf\u00e9");
+    }
+  }
+
+  @Test
+  public void executeStreaming_body_can_be_consumed_only_once() throws Exception {
+    server.enqueue(new MockResponse().setBody(PONG));
+
+    try (HttpStreamingResponse response = newCall("api/system/ping").executeStreaming()) {
+      assertThat(IOUtils.toByteArray(response.getInputStream())).isEqualTo(PONG.getBytes(UTF_8));
+
+      expectedException.expect(IllegalStateException.class);
+      expectedException.expectMessage("is already consumed");
+      response.getReader();
+    }
+  }
+
+  @Test
+  public void executeStreaming_throws_HttpException_if_response_code_is_not_2xx() {
+    server.enqueue(new MockResponse().setResponseCode(500).setBody("<error>"));
+
+    try {
+      newCall("api/system/info").executeStreaming();
+      fail();
+    } catch (HttpException e) {
+      assertThat(e.getCode()).isEqualTo(500);
+      assertThat(e.getBody()).isEqualTo("<error>");
+    }
+  }
+
   @Test
   public void executeUnsafely_does_not_throw_HttpException_if_response_code_is_not_2xx() {
     server.enqueue(new MockResponse().setResponseCode(404).setBody("<error>"));
@@ -362,6 +446,39 @@ public class HttpCallTest {
     }
   }
 
+  @Test
+  public void downloadToFile_verifies_checksum() throws Exception {
+    server.enqueue(new MockResponse().setBody(PONG));
+    File file = temp.newFile();
+
+    newCall("api/system/ping").setExpectedChecksum("MD5", "6FDB087AA3FBFBCB8287A593A0919E61").downloadToFile(file);
+
+    assertThat(file).hasContent(PONG);
+  }
+
+  @Test
+  public void downloadToFile_deletes_file_and_throws_ISE_if_checksum_does_not_match() throws Exception {
+    server.enqueue(new MockResponse().setBody(PONG));
+    File file = temp.newFile();
+
+    try {
+      newCall("api/system/ping").setExpectedChecksum("SHA-256", "abcdef").downloadToFile(file);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("SHA-256 checksum of " + server.url("api/system/ping") + " is "
+        + "9795c5ff8937f23526ccb207a5684c1fc94a7854e19c021b39d944e51f5baef2, expected abcdef");
+      assertThat(file).doesNotExist();
+    }
+  }
+
+  @Test
+  public void setExpectedChecksum_throws_IAE_if_algorithm_is_not_supported() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Unsupported hash algorithm: foo");
+
+    newCall("").setExpectedChecksum("foo", "abcdef");
+  }
+
   @Test
   public void downloadToDir_downloads_content_in_file_named_specified_by_ContentDisposition_header() throws Exception {
     server.enqueue(new MockResponse().setBody(PONG)
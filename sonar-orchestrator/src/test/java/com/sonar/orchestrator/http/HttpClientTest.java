@@ -19,8 +19,11 @@
  */
 package com.sonar.orchestrator.http;
 
+import com.sonar.orchestrator.config.Configuration;
 import okhttp3.Authenticator;
 import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -42,6 +45,89 @@ public class HttpClientTest {
     assertThat(okClient.retryOnConnectionFailure()).isTrue();
   }
 
+  @Test
+  public void settings_are_configurable() {
+    Configuration config = Configuration.builder()
+      .setProperty("orchestrator.httpConnectTimeoutMs", "1000")
+      .setProperty("orchestrator.httpReadTimeoutMs", "2000")
+      .setProperty("orchestrator.httpWriteTimeoutMs", "3000")
+      .setProperty("orchestrator.httpMaxRequests", "100")
+      .setProperty("orchestrator.httpMaxRequestsPerHost", "20")
+      .build();
+
+    OkHttpClient okClient = new HttpClient.Builder().setConfiguration(config).build().getUnderlying();
+
+    assertThat(okClient.connectTimeoutMillis()).isEqualTo(1_000);
+    assertThat(okClient.readTimeoutMillis()).isEqualTo(2_000);
+    assertThat(okClient.writeTimeoutMillis()).isEqualTo(3_000);
+    assertThat(okClient.dispatcher().getMaxRequests()).isEqualTo(100);
+    assertThat(okClient.dispatcher().getMaxRequestsPerHost()).isEqualTo(20);
+  }
+
+  @Test
+  public void settings_can_be_set_without_configuration() {
+    OkHttpClient okClient = new HttpClient.Builder()
+      .setSetting("orchestrator.httpConnectTimeoutMs", "1000")
+      .setSetting("orchestrator.httpReadTimeoutMs", "")
+      .build().getUnderlying();
+
+    assertThat(okClient.connectTimeoutMillis()).isEqualTo(1_000);
+    assertThat(okClient.readTimeoutMillis()).isEqualTo(300_000);
+  }
+
+  @Test
+  public void factory_creates_clients_from_orchestrator_configuration() {
+    Configuration config = Configuration.builder().setProperty("orchestrator.httpReadTimeoutMs", "4321").build();
+
+    HttpClient underTest = HttpClientFactory.create(config);
+
+    assertThat(underTest.getUnderlying().readTimeoutMillis()).isEqualTo(4_321);
+    assertThat(underTest).isNotSameAs(HttpClientFactory.create());
+    // same settings share the same client
+    assertThat(HttpClientFactory.create(Configuration.builder().setProperty("orchestrator.httpReadTimeoutMs", "4321").build())).isSameAs(underTest);
+    assertThat(HttpClientFactory.create(Configuration.builder().setProperty("orchestrator.httpReadTimeoutMs", "1234").build())).isNotSameAs(underTest);
+  }
+
+  @Test
+  public void clients_overriding_timeout_are_cached_and_share_pool() {
+    HttpClient underTest = newClient();
+
+    OkHttpClient okClient = underTest.getUnderlying(1_000L);
+
+    assertThat(okClient.readTimeoutMillis()).isEqualTo(1_000);
+    assertThat(okClient.writeTimeoutMillis()).isEqualTo(1_000);
+    assertThat(okClient.connectionPool()).isSameAs(underTest.getUnderlying().connectionPool());
+    assertThat(okClient.dispatcher()).isSameAs(underTest.getUnderlying().dispatcher());
+    assertThat(underTest.getUnderlying(1_000L)).isSameAs(okClient);
+    assertThat(underTest.getUnderlying(2_000L)).isNotSameAs(okClient);
+    assertThat(underTest.getStats().getTimeoutVariants()).isEqualTo(2);
+  }
+
+  @Test
+  public void stats_count_reused_connections() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setBody("foo"));
+      server.enqueue(new MockResponse().setBody("bar"));
+      server.enqueue(new MockResponse().setBody("baz"));
+      HttpClient underTest = newClient();
+
+      underTest.newCall(server.url("/foo")).execute();
+      underTest.newCall(server.url("/bar")).execute();
+      underTest.newCall(server.url("/baz")).setTimeoutMs(1_000L).execute();
+
+      HttpClientStats stats = underTest.getStats();
+      assertThat(stats.getRequests()).isEqualTo(3);
+      assertThat(stats.getConnectionsCreated()).isEqualTo(1);
+      assertThat(stats.getConnectionsReused()).isEqualTo(2);
+      assertThat(stats.getIdleConnections()).isEqualTo(1);
+      assertThat(stats.getConnections()).isEqualTo(1);
+      assertThat(stats.getEvictions()).isEqualTo(0);
+
+      underTest.getUnderlying().connectionPool().evictAll();
+      assertThat(underTest.getStats().getEvictions()).isEqualTo(1);
+    }
+  }
+
   @Test
   public void should_enable_proxy_authentication_if_system_properties_for_proxy_host_and_credentials_are_defined() {
     HttpClient.SystemProperties sysProps = mock(HttpClient.SystemProperties.class);
@@ -40,6 +40,16 @@ public class HttpResponseTest {
     verifyCodeSuccessful(404, false);
   }
 
+  @Test
+  public void body_is_decoded_only_once() {
+    HttpResponse response = new HttpResponse(200, UTF_8, "caf\u00e9".getBytes(UTF_8), new Headers.Builder().build());
+
+    String body = response.getBodyAsString();
+
+    assertThat(body).isEqualTo("caf\u00e9");
+    assertThat(response.getBodyAsString()).isSameAs(body);
+  }
+
   private void verifyCodeSuccessful(int code, boolean expectedSuccessfulFlag) {
     HttpResponse response = new HttpResponse(code, UTF_8, new byte[0], new Headers.Builder().build());
     assertThat(response.getCode()).isEqualTo(code);
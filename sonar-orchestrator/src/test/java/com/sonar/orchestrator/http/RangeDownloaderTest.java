@@ -0,0 +1,240 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.http;
+
+import com.sonar.orchestrator.util.Checksums;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.DisableOnDebug;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class RangeDownloaderTest {
+
+  private static final int KB = 1024;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public MockWebServer server = new MockWebServer();
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public TestRule safeguardTimeout = new DisableOnDebug(Timeout.seconds(60L));
+
+  private OkHttpClient okClient = new OkHttpClient();
+  private RangeDispatcher dispatcher;
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    file = new File(temp.newFolder(), "foo.zip");
+  }
+
+  @Test
+  public void download_small_file_with_a_single_request() throws Exception {
+    byte[] content = serve(10 * KB, true);
+
+    RangeDownloader.Download download = newDownloader(4, 100 * KB, 1).download(request(), r -> file, "SHA-256");
+
+    assertThat(Files.readAllBytes(file.toPath())).isEqualTo(content);
+    assertThat(download.getFile()).isEqualTo(file);
+    assertThat(download.getSegments()).isEqualTo(1);
+    assertThat(download.getChecksum()).isEqualTo(hash("SHA-256", content));
+    assertThat(dispatcher.ranges).containsExactly("bytes=0-");
+  }
+
+  @Test
+  public void download_large_file_in_parallel_segments() throws Exception {
+    byte[] content = serve(1000 * KB, true);
+
+    RangeDownloader.Download download = newDownloader(4, 100 * KB, 1).download(request(), r -> file, "MD5");
+
+    assertThat(Files.readAllBytes(file.toPath())).isEqualTo(content);
+    assertThat(download.getSegments()).isEqualTo(4);
+    assertThat(download.getChecksum()).isEqualTo(hash("MD5", content));
+    assertThat(dispatcher.ranges).containsOnly("bytes=0-", "bytes=256000-511999", "bytes=512000-767999", "bytes=768000-1023999");
+  }
+
+  @Test
+  public void checksum_is_optional() throws Exception {
+    byte[] content = serve(1000 * KB, true);
+
+    RangeDownloader.Download download = newDownloader(4, 100 * KB, 1).download(request(), r -> file, null);
+
+    assertThat(Files.readAllBytes(file.toPath())).isEqualTo(content);
+    assertThat(download.getChecksum()).isNull();
+  }
+
+  @Test
+  public void interrupted_segments_are_resumed() throws Exception {
+    byte[] content = serve(1000 * KB, true);
+    dispatcher.failures.set(3);
+
+    RangeDownloader.Download download = newDownloader(4, 100 * KB, 4).download(request(), r -> file, "SHA-256");
+
+    assertThat(Files.readAllBytes(file.toPath())).isEqualTo(content);
+    assertThat(download.getChecksum()).isEqualTo(hash("SHA-256", content));
+    assertThat(dispatcher.ranges).hasSize(4 + 3);
+  }
+
+  @Test
+  public void interrupted_download_is_restarted_if_server_does_not_support_ranges() throws Exception {
+    byte[] content = serve(1000 * KB, false);
+    dispatcher.failures.set(1);
+
+    RangeDownloader.Download download = newDownloader(4, 100 * KB, 2).download(request(), r -> file, "SHA-256");
+
+    assertThat(Files.readAllBytes(file.toPath())).isEqualTo(content);
+    assertThat(download.getSegments()).isEqualTo(1);
+    assertThat(download.getChecksum()).isEqualTo(hash("SHA-256", content));
+    assertThat(dispatcher.ranges).hasSize(2);
+  }
+
+  @Test
+  public void fail_if_download_is_still_interrupted_after_max_attempts() throws Exception {
+    serve(10 * KB, true);
+    dispatcher.failures.set(2);
+
+    try {
+      newDownloader(4, 100 * KB, 2).download(request(), r -> file, "SHA-256");
+      fail();
+    } catch (IOException e) {
+      assertThat(dispatcher.ranges).hasSize(2);
+    }
+  }
+
+  @Test
+  public void download_empty_file_without_range_if_range_is_not_satisfiable() throws Exception {
+    serve(0, true);
+
+    RangeDownloader.Download download = newDownloader(4, 100 * KB, 1).download(request(), r -> file, "MD5");
+
+    assertThat(file).isFile();
+    assertThat(file.length()).isEqualTo(0L);
+    assertThat(download.getSegments()).isEqualTo(1);
+    assertThat(download.getChecksum()).isEqualTo(hash("MD5", new byte[0]));
+    assertThat(dispatcher.ranges).containsExactly("bytes=0-", null);
+  }
+
+  @Test
+  public void fail_if_response_code_is_not_2xx() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(404).setBody("<error>"));
+
+    try {
+      newDownloader(4, 100 * KB, 2).download(request(), r -> file, "SHA-256");
+      fail();
+    } catch (HttpException e) {
+      assertThat(e.getCode()).isEqualTo(404);
+      assertThat(e.getBody()).isEqualTo("<error>");
+      assertThat(file).doesNotExist();
+    }
+  }
+
+  private byte[] serve(int size, boolean rangesSupported) {
+    byte[] content = new byte[size];
+    new Random(size).nextBytes(content);
+    dispatcher = new RangeDispatcher(content, rangesSupported);
+    server.setDispatcher(dispatcher);
+    return content;
+  }
+
+  private RangeDownloader newDownloader(int maxSegments, long minSegmentSize, int maxAttempts) {
+    return new RangeDownloader(okClient, maxSegments, minSegmentSize, maxAttempts);
+  }
+
+  private Request request() {
+    return new Request.Builder().url(server.url("foo.zip")).build();
+  }
+
+  private static String hash(String algorithm, byte[] content) {
+    MessageDigest digest = Checksums.newDigest(algorithm);
+    return Checksums.toHex(digest.digest(content));
+  }
+
+  private static class RangeDispatcher extends Dispatcher {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final byte[] content;
+    private final boolean rangesSupported;
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger failures = new AtomicInteger();
+
+    RangeDispatcher(byte[] content, boolean rangesSupported) {
+      this.content = content;
+      this.rangesSupported = rangesSupported;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+      String range = request.getHeader("Range");
+      ranges.add(range);
+      int start = 0;
+      int end = content.length - 1;
+      MockResponse response = new MockResponse();
+      if (rangesSupported && range != null) {
+        Matcher matcher = RANGE.matcher(range);
+        assertThat(matcher.matches()).isTrue();
+        start = Integer.parseInt(matcher.group(1));
+        if (!matcher.group(2).isEmpty()) {
+          end = Integer.parseInt(matcher.group(2));
+        }
+        if (start >= content.length) {
+          return new MockResponse().setResponseCode(416).setHeader("Content-Range", "bytes */" + content.length);
+        }
+        response.setResponseCode(206).setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+      }
+      int length = end - start + 1;
+      if (failures.getAndDecrement() > 0) {
+        // connection is dropped in the middle of body
+        return response
+          .setBody(new Buffer().write(content, start, length / 2))
+          .setHeader("Content-Length", length)
+          .setSocketPolicy(SocketPolicy.DISCONNECT_AT_END);
+      }
+      return response.setBody(new Buffer().write(content, start, length));
+    }
+  }
+}
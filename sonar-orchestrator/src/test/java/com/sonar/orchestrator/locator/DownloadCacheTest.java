@@ -0,0 +1,134 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.locator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DownloadCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File cacheDir;
+  private DownloadCache underTest;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheDir = temp.newFolder();
+    underTest = new DownloadCache(cacheDir, 100L);
+  }
+
+  @Test
+  public void only_release_artifacts_are_cacheable() throws Exception {
+    assertThat(underTest.isCacheable(location("http://foo/sonar-java-plugin-4.0.jar"))).isTrue();
+    assertThat(underTest.isCacheable(location("http://foo/sonarqube-6.3.zip"))).isTrue();
+    assertThat(underTest.isCacheable(location("http://foo/sonar-java-plugin-4.0-SNAPSHOT.jar"))).isFalse();
+    assertThat(underTest.isCacheable(location("http://foo/update-center.properties"))).isFalse();
+  }
+
+  @Test
+  public void miss() throws Exception {
+    assertThat(underTest.copyToDirectory(location("http://foo/a.jar"), temp.newFolder())).isNull();
+    assertThat(underTest.copyToFile(location("http://foo/a.jar"), new File(temp.newFolder(), "a.jar"))).isNull();
+  }
+
+  @Test
+  public void put_then_hit() throws Exception {
+    URLLocation location = location("http://foo/a.jar");
+    File target = new File(temp.newFolder(), "a.jar");
+
+    File put = underTest.put(location, download("a.jar", "content of a"), target);
+    assertThat(put).isEqualTo(target).hasContent("content of a");
+
+    File toDir = temp.newFolder();
+    File hit = underTest.copyToDirectory(location, toDir);
+    assertThat(hit).isEqualTo(new File(toDir, "a.jar")).hasContent("content of a");
+
+    File toFile = new File(temp.newFolder(), "b.jar");
+    assertThat(underTest.copyToFile(location, toFile)).isEqualTo(toFile).hasContent("content of a");
+  }
+
+  @Test
+  public void index_is_shared_between_instances() throws Exception {
+    URLLocation location = location("http://foo/a.jar");
+    underTest.put(location, download("a.jar", "content of a"), new File(temp.newFolder(), "a.jar"));
+
+    DownloadCache other = new DownloadCache(cacheDir, 100L);
+    assertThat(other.copyToDirectory(location, temp.newFolder())).hasContent("content of a");
+  }
+
+  @Test
+  public void objects_are_deduplicated_by_content() throws Exception {
+    underTest.put(location("http://foo/a.jar"), download("a.jar", "same"), new File(temp.newFolder(), "a.jar"));
+    underTest.put(location("http://bar/a.jar"), download("a.jar", "same"), new File(temp.newFolder(), "a.jar"));
+
+    assertThat(new File(cacheDir, "objects").list()).hasSize(1);
+  }
+
+  @Test
+  public void evict_least_recently_used_objects() throws Exception {
+    // limit is 100 bytes
+    URLLocation first = location("http://foo/first.jar");
+    URLLocation second = location("http://foo/second.jar");
+    URLLocation third = location("http://foo/third.jar");
+    underTest.put(first, download("first.jar", new String(new byte[40], UTF_8)), new File(temp.newFolder(), "first.jar"));
+    Thread.sleep(5L);
+    underTest.put(second, download("second.jar", new String(new byte[41], UTF_8)), new File(temp.newFolder(), "second.jar"));
+    Thread.sleep(5L);
+    // access to first, so that second becomes the least recently used
+    assertThat(underTest.copyToDirectory(first, temp.newFolder())).isNotNull();
+    Thread.sleep(5L);
+    underTest.put(third, download("third.jar", new String(new byte[42], UTF_8)), new File(temp.newFolder(), "third.jar"));
+
+    assertThat(underTest.copyToDirectory(first, temp.newFolder())).isNotNull();
+    assertThat(underTest.copyToDirectory(second, temp.newFolder())).isNull();
+    assertThat(underTest.copyToDirectory(third, temp.newFolder())).isNotNull();
+    assertThat(new File(cacheDir, "objects").list()).hasSize(2);
+  }
+
+  @Test
+  public void deleted_object_is_a_miss() throws Exception {
+    URLLocation location = location("http://foo/a.jar");
+    underTest.put(location, download("a.jar", "content of a"), new File(temp.newFolder(), "a.jar"));
+    FileUtils.cleanDirectory(new File(cacheDir, "objects"));
+
+    assertThat(underTest.copyToDirectory(location, temp.newFolder())).isNull();
+  }
+
+  private File download(String filename, String content) throws IOException {
+    File file = new File(underTest.newTempDir(), filename);
+    FileUtils.write(file, content, UTF_8);
+    return file;
+  }
+
+  private static URLLocation location(String url) throws Exception {
+    return URLLocation.create(new URL(url));
+  }
+}
@@ -173,4 +173,32 @@ public class URLLocatorTest {
     File toFile = new File(toDir, "foo.txt");
     assertThat(toFile).exists().isFile().hasContent("hello world");
   }
+
+  @Test
+  public void downloads_are_cached() throws Exception {
+    URLLocator cachedLocator = new URLLocator(new DownloadCache(temp.newFolder(), 1024L * 1024L));
+    webServer.enqueue(new MockResponse().setBody("hello world"));
+    URLLocation location = URLLocation.create(webServer.url("/foo.jar").url());
+
+    File first = cachedLocator.copyToDirectory(location, temp.newFolder());
+    File second = cachedLocator.copyToDirectory(location, temp.newFolder());
+    File third = cachedLocator.copyToFile(location, new File(temp.newFolder(), "bar.jar"));
+
+    assertThat(first).hasContent("hello world");
+    assertThat(second).hasContent("hello world");
+    assertThat(second.getName()).isEqualTo("foo.jar");
+    assertThat(third).hasContent("hello world");
+    assertThat(webServer.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void snapshots_are_not_cached() throws Exception {
+    URLLocator cachedLocator = new URLLocator(new DownloadCache(temp.newFolder(), 1024L * 1024L));
+    webServer.enqueue(new MockResponse().setBody("hello"));
+    webServer.enqueue(new MockResponse().setBody("world"));
+    URLLocation location = URLLocation.create(webServer.url("/foo-1.0-SNAPSHOT.jar").url());
+
+    assertThat(cachedLocator.copyToDirectory(location, temp.newFolder())).hasContent("hello");
+    assertThat(cachedLocator.copyToDirectory(location, temp.newFolder())).hasContent("world");
+  }
 }
@@ -24,6 +24,7 @@ import com.sonar.orchestrator.container.Server;
 import com.sonar.orchestrator.container.SonarDistribution;
 import com.sonar.orchestrator.db.DatabaseClient;
 import com.sonar.orchestrator.locator.FileLocation;
+import com.sonar.orchestrator.util.Timings;
 import com.sonar.orchestrator.version.Version;
 import java.io.File;
 import java.io.IOException;
@@ -82,6 +83,22 @@ public class ServerInstallerTest {
     assertThat(props.getProperty("sonar.jdbc.url")).isEqualTo("jdbc:h2:mem");
   }
 
+  @Test
+  public void record_durations_of_installation_phases() throws Exception {
+    when(zipFinder.find(any(SonarDistribution.class))).thenReturn(ZIP_4_5_6);
+    Timings timings = new Timings();
+    Configuration config = Configuration.builder()
+      .setProperty("orchestrator.sonarInstallsDir", installsDir.getAbsolutePath())
+      .setProperty("orchestrator.workspaceDir", workspaceDir.getAbsolutePath())
+      .setProperty("maven.localRepository", mavenLocalDir.getAbsolutePath())
+      .build();
+
+    new ServerInstaller(zipFinder, config, dbClient, timings).install(new SonarDistribution(VERSION_4_5_6));
+
+    assertThat(timings.getTotalNanosByPhase().keySet())
+      .containsExactly("install.zipLookup", "install.unzip", "install.plugins", "install.configuration");
+  }
+
   @Test
   public void use_random_web_port_on_loopback_address_if_not_defined() throws Exception {
     when(zipFinder.find(any(SonarDistribution.class))).thenReturn(ZIP_4_5_6);
@@ -185,6 +202,39 @@ public class ServerInstallerTest {
     assertThat(new File(server.getHome(), "extensions/downloads/fake-plugin.jar")).exists().isFile();
   }
 
+  @Test
+  public void copy_plugins_concurrently() throws Exception {
+    when(zipFinder.find(any(SonarDistribution.class))).thenReturn(ZIP_4_5_6);
+    SonarDistribution distrib = new SonarDistribution(VERSION_4_5_6);
+    File fakePlugin = FileUtils.toFile(getClass().getResource("ServerInstallerTest/fake-plugin.jar"));
+    for (int i = 0; i < 10; i++) {
+      File plugin = temp.newFile("plugin" + i + ".jar");
+      FileUtils.copyFile(fakePlugin, plugin);
+      distrib.addPluginLocation(FileLocation.of(plugin));
+    }
+
+    Server server = newInstaller(Configuration.builder().setProperty("orchestrator.pluginInstallThreads", "3")).install(distrib);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(new File(server.getHome(), "extensions/downloads/plugin" + i + ".jar")).exists().isFile();
+    }
+  }
+
+  @Test
+  public void throw_ISE_if_fail_to_copy_one_of_the_plugins() throws Exception {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Can not find the plugin");
+
+    when(zipFinder.find(any(SonarDistribution.class))).thenReturn(ZIP_4_5_6);
+    SonarDistribution distrib = new SonarDistribution(VERSION_4_5_6);
+    distrib.addPluginLocation(FileLocation.of(FileUtils.toFile(getClass().getResource("ServerInstallerTest/fake-plugin.jar"))));
+    File invalidPlugin = temp.newFile("plugin.jar");
+    invalidPlugin.delete();
+    distrib.addPluginLocation(FileLocation.of(invalidPlugin));
+
+    newInstaller().install(distrib);
+  }
+
   @Test
   public void throw_ISE_if_fail_to_copy_plugins() throws Exception {
     expectedException.expect(IllegalStateException.class);
@@ -219,6 +269,48 @@ public class ServerInstallerTest {
     assertThat(bundledPlugin(server)).isFile().exists();
   }
 
+  @Test
+  public void installations_are_created_from_a_shared_template() throws Exception {
+    when(zipFinder.find(any(SonarDistribution.class))).thenReturn(ZIP_4_5_6);
+
+    newInstaller().install(new SonarDistribution(VERSION_4_5_6));
+    newInstaller().install(new SonarDistribution(VERSION_4_5_6));
+
+    assertThat(new File(installsDir, "templates").list()).hasSize(1);
+  }
+
+  @Test
+  public void template_cache_can_be_disabled() throws Exception {
+    when(zipFinder.find(any(SonarDistribution.class))).thenReturn(ZIP_4_5_6);
+
+    Server server = newInstaller(Configuration.builder().setProperty("orchestrator.serverTemplateCache", "false")).install(new SonarDistribution(VERSION_4_5_6));
+
+    assertThat(server.getHome()).isDirectory();
+    assertThat(new File(installsDir, "templates")).doesNotExist();
+  }
+
+  @Test
+  public void bundled_plugins_are_not_extracted() throws Exception {
+    when(zipFinder.find(any(SonarDistribution.class))).thenReturn(ZIP_4_5_6);
+    SonarDistribution distrib = new SonarDistribution(VERSION_4_5_6);
+
+    Server server = newInstaller(Configuration.builder().setProperty("orchestrator.serverTemplateCache", "false")).install(distrib);
+
+    assertThat(bundledPlugin(server)).doesNotExist();
+    assertThat(bundledPlugin(server).getParentFile()).isDirectory();
+  }
+
+  @Test
+  public void exclude_files_from_zip() throws Exception {
+    when(zipFinder.find(any(SonarDistribution.class))).thenReturn(ZIP_4_5_6);
+    SonarDistribution distrib = new SonarDistribution(VERSION_4_5_6).addZipExclusion("web/*");
+
+    Server server = newInstaller().install(distrib);
+
+    assertThat(new File(server.getHome(), "web/index.html")).doesNotExist();
+    assertThat(new File(server.getHome(), "lib/sonar-application-4.5.6.jar")).isFile();
+  }
+
   private File bundledPlugin(Server server) {
     return new File(server.getHome(), "lib/bundled-plugins/sonar-java-plugin-2.0.jar");
   }
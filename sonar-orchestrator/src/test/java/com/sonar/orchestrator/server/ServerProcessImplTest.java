@@ -35,6 +35,7 @@ import org.junit.rules.TestRule;
 import org.junit.rules.Timeout;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -120,6 +121,23 @@ public class ServerProcessImplTest {
     underTest.stop();
   }
 
+  @Test
+  public void fail_fast_if_failure_is_detected_in_logs() throws Exception {
+    prepareValidCommand("com.sonar.orchestrator.echo.FailWithoutExit");
+    when(logWatcher.isFailed("error")).thenReturn(true);
+    // process does not stop by itself, do not wait before killing it
+    underTest.setStopTimeout(1);
+
+    try {
+      underTest.start();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Server startup failure detected in logs: error");
+      assertThat(e).hasMessageContaining("starting");
+    }
+    assertThat(underTest.isProcessAlive()).isFalse();
+  }
+
   @Test
   public void fail_if_server_version_is_older_than_5_2() throws Exception {
     when(server.version()).thenReturn(Version.create("5.1"));
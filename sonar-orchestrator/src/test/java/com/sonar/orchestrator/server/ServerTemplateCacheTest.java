@@ -0,0 +1,176 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ServerTemplateCacheTest {
+
+  private static final File ZIP = FileUtils.toFile(ServerTemplateCacheTest.class.getResource("ServerInstallerTest/sonarqube-4.5.6-lite.zip"));
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File templatesDir;
+  private ServerTemplateCache underTest;
+
+  @Before
+  public void setUp() throws IOException {
+    templatesDir = temp.newFolder();
+    underTest = new ServerTemplateCache(templatesDir, 2);
+  }
+
+  @Test
+  public void extract_zip_once() throws Exception {
+    File template = underTest.getOrExtract(ZIP);
+    assertThat(new File(template, "sonarqube-4.5.6/conf/sonar.properties")).isFile();
+    long date = template.lastModified();
+
+    assertThat(underTest.getOrExtract(ZIP)).isEqualTo(template);
+    assertThat(template.lastModified()).isEqualTo(date);
+    // no temporary directories are left
+    assertThat(templatesDir.list()).containsOnly(template.getName());
+  }
+
+  @Test
+  public void least_recently_used_templates_are_evicted() throws Exception {
+    File zip1 = newZip("one");
+    File zip2 = newZip("two");
+    File installedFromZip1 = temp.newFolder();
+    underTest.install(zip1, installedFromZip1);
+    underTest.install(zip2, temp.newFolder());
+    File template1 = underTest.getOrExtract(zip1);
+    File template2 = underTest.getOrExtract(zip2);
+    template1.setLastModified(System.currentTimeMillis() - 60_000L);
+
+    underTest.install(ZIP, temp.newFolder());
+
+    File template3 = underTest.getOrExtract(ZIP);
+    assertThat(template1).doesNotExist();
+    assertThat(template2).isDirectory();
+    assertThat(template3).isDirectory();
+    assertThat(templatesDir.listFiles(File::isDirectory)).containsOnly(template2, template3);
+    // installations are not impacted by eviction
+    assertThat(new File(installedFromZip1, "one/file.txt")).hasContent("one");
+  }
+
+  @Test
+  public void leftovers_of_interrupted_extractions_are_deleted() throws Exception {
+    File leftover = new File(templatesDir, "abc.tmp-123");
+    FileUtils.forceMkdir(leftover);
+
+    underTest.install(ZIP, temp.newFolder());
+
+    assertThat(leftover).doesNotExist();
+  }
+
+  @Test
+  public void max_templates_must_be_positive() {
+    try {
+      new ServerTemplateCache(templatesDir, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Maximum number of server templates must be positive: 0");
+    }
+  }
+
+  @Test
+  public void template_is_keyed_by_zip_content() throws Exception {
+    File copy = temp.newFile("copy.zip");
+    FileUtils.copyFile(ZIP, copy);
+
+    assertThat(ServerTemplateCache.hash(copy)).isEqualTo(ServerTemplateCache.hash(ZIP)).hasSize(64);
+    assertThat(underTest.getOrExtract(copy)).isEqualTo(underTest.getOrExtract(ZIP));
+  }
+
+  @Test
+  public void install_links_shared_files_and_copies_private_directories() throws Exception {
+    File toDir = temp.newFolder();
+    underTest.install(ZIP, toDir);
+    File template = underTest.getOrExtract(ZIP);
+
+    File installedLib = new File(toDir, "sonarqube-4.5.6/lib/sonar-application-4.5.6.jar");
+    assertThat(installedLib).isFile();
+    assertThat(Files.isSameFile(installedLib.toPath(), new File(template, "sonarqube-4.5.6/lib/sonar-application-4.5.6.jar").toPath())).isTrue();
+
+    File installedConf = new File(toDir, "sonarqube-4.5.6/conf/sonar.properties");
+    File templateConf = new File(template, "sonarqube-4.5.6/conf/sonar.properties");
+    assertThat(Files.isSameFile(installedConf.toPath(), templateConf.toPath())).isFalse();
+    FileUtils.write(installedConf, "foo", UTF_8);
+    assertThat(FileUtils.readFileToString(templateConf, UTF_8)).isNotEqualTo("foo");
+  }
+
+  @Test
+  public void installations_do_not_share_private_directories() throws Exception {
+    File dir1 = temp.newFolder();
+    File dir2 = temp.newFolder();
+    underTest.install(ZIP, dir1);
+    underTest.install(ZIP, dir2);
+
+    FileUtils.write(new File(dir1, "sonarqube-4.5.6/logs/sonar.log"), "foo", UTF_8);
+    assertThat(new File(dir2, "sonarqube-4.5.6/logs/sonar.log")).doesNotExist();
+  }
+
+  @Test
+  public void install_only_accepted_files() throws Exception {
+    File toDir = temp.newFolder();
+
+    underTest.install(ZIP, toDir, path -> !path.startsWith("sonarqube-4.5.6/web/"));
+
+    assertThat(new File(toDir, "sonarqube-4.5.6/web/index.html")).doesNotExist();
+    assertThat(new File(toDir, "sonarqube-4.5.6/COPYING")).isFile();
+    // template is not filtered
+    assertThat(new File(underTest.getOrExtract(ZIP), "sonarqube-4.5.6/web/index.html")).isFile();
+  }
+
+  @Test
+  public void private_paths() {
+    assertThat(ServerTemplateCache.isPrivate(Paths.get("sonarqube-6.3/conf/sonar.properties"))).isTrue();
+    assertThat(ServerTemplateCache.isPrivate(Paths.get("sonarqube-6.3/extensions/plugins/foo.jar"))).isTrue();
+    assertThat(ServerTemplateCache.isPrivate(Paths.get("sonarqube-6.3/lib/foo.jar"))).isFalse();
+    assertThat(ServerTemplateCache.isPrivate(Paths.get("sonarqube-6.3/COPYING"))).isFalse();
+    assertThat(ServerTemplateCache.isPrivate(Paths.get("sonarqube-6.3/conf"))).isFalse();
+  }
+
+  private File newZip(String name) throws IOException {
+    File zip = temp.newFile(name + ".zip");
+    try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip))) {
+      output.putNextEntry(new ZipEntry(name + "/file.txt"));
+      output.write(name.getBytes(UTF_8));
+      output.closeEntry();
+    }
+    return zip;
+  }
+}
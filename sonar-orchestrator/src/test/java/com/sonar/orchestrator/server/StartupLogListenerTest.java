@@ -19,16 +19,33 @@
  */
 package com.sonar.orchestrator.server;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class StartupLogListenerTest {
 
   private StartupLogWatcher watcher = mock(StartupLogWatcher.class);
 
+  @Test
+  public void lines_are_printed_to_console() {
+    List<String> console = new ArrayList<>();
+    StartupLogListener underTest = new StartupLogListener(watcher, console::add);
+
+    underTest.processLine("foo", 2);
+    underTest.processLine("bar", 2);
+
+    assertThat(console).containsExactly("> foo", "> bar");
+  }
+
   @Test
   public void isStarted_returns_true_as_soon_as_startup_log_is_displayed() {
     when(watcher.isStarted("Process[web] is up")).thenReturn(true);
@@ -47,4 +64,75 @@ public class StartupLogListenerTest {
     assertThat(underTest.isStarted()).isTrue();
   }
 
+  @Test
+  public void future_is_completed_as_soon_as_startup_log_is_displayed() {
+    when(watcher.isStarted("Process[ce] is up")).thenReturn(true);
+    StartupLogListener underTest = new StartupLogListener(watcher);
+
+    underTest.processLine("foo", 2);
+    assertThat(underTest.startedFuture().isDone()).isFalse();
+
+    underTest.processLine("Process[ce] is up", 2);
+    assertThat(underTest.startedFuture().isDone()).isTrue();
+  }
+
+  @Test
+  public void future_fails_with_latest_logs_as_soon_as_failure_is_detected() {
+    when(watcher.isFailed("Background initialization failed")).thenReturn(true);
+    StartupLogListener underTest = new StartupLogListener(watcher);
+
+    underTest.processLine("foo", 2);
+    underTest.processLine("bar", 2);
+    assertThat(underTest.startedFuture().isDone()).isFalse();
+
+    underTest.processLine("Background initialization failed", 2);
+    assertThat(underTest.isStarted()).isFalse();
+    assertThat(underTest.startedFuture().isCompletedExceptionally()).isTrue();
+    try {
+      underTest.startedFuture().join();
+      fail();
+    } catch (CompletionException e) {
+      assertThat(e.getCause())
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("Server startup failure detected in logs: Background initialization failed")
+        .hasMessageContaining("foo")
+        .hasMessageContaining("bar");
+    }
+  }
+
+  @Test
+  public void failures_are_ignored_once_started() {
+    when(watcher.isStarted("Process[ce] is up")).thenReturn(true);
+    when(watcher.isFailed("Process[web] is stopped")).thenReturn(true);
+    StartupLogListener underTest = new StartupLogListener(watcher);
+
+    underTest.processLine("Process[ce] is up", 2);
+    underTest.processLine("Process[web] is stopped", 2);
+
+    assertThat(underTest.isStarted()).isTrue();
+    verify(watcher, never()).isFailed("Process[web] is stopped");
+  }
+
+  @Test
+  public void excerpt_is_limited_to_latest_lines() {
+    when(watcher.isFailed("error")).thenReturn(true);
+    StartupLogListener underTest = new StartupLogListener(watcher);
+
+    for (int i = 0; i < StartupLogListener.EXCERPT_LINES * 2; i++) {
+      underTest.processLine("line" + i + ";", 2);
+    }
+    underTest.processLine("error", 2);
+
+    assertThat(underTest.startedFuture().isCompletedExceptionally()).isTrue();
+    String message = null;
+    try {
+      underTest.startedFuture().join();
+    } catch (CompletionException e) {
+      message = e.getCause().getMessage();
+    }
+    assertThat(message)
+      .doesNotContain("line0;")
+      .doesNotContain("line" + StartupLogListener.EXCERPT_LINES + ";")
+      .contains("line" + (StartupLogListener.EXCERPT_LINES * 2 - 1) + ";");
+  }
 }
@@ -41,4 +41,42 @@ public class StartupLogWatcherImplTest {
     assertThat(underTest.isStarted("foo")).isFalse();
     assertThat(underTest.isStarted("Process[web] is up")).isTrue();
   }
+
+  @Test
+  public void detect_failures() {
+    StartupLogWatcherImpl underTest = StartupLogWatcherImpl.create(Version.create("6.3"));
+    assertThat(underTest.isFailed("foo")).isFalse();
+    assertThat(underTest.isFailed("Process[ce] is up")).isFalse();
+    assertThat(underTest.isFailed("2017.03.01 10:00:00 INFO  app[][o.s.a.SchedulerImpl] Process[web] is stopped")).isTrue();
+    assertThat(underTest.isFailed("ERROR: [1] bootstrap checks failed")).isTrue();
+    assertThat(underTest.isFailed("2017.03.01 10:00:00 ERROR web[][o.s.s.p.Platform] Background initialization failed. Stopping SonarQube")).isTrue();
+    assertThat(underTest.isStarted("Background initialization failed")).isFalse();
+  }
+
+  @Test
+  public void detect_fatal_exceptions_on_error_lines() {
+    StartupLogWatcherImpl underTest = StartupLogWatcherImpl.create(Version.create("6.3"));
+    assertThat(underTest.isFailed("2017.03.01 10:00:00 ERROR web[][o.s.s.a.EmbeddedTomcat] Fail to start: java.net.BindException: Address already in use")).isTrue();
+    assertThat(underTest.isFailed("[2017-03-01T10:00:00,000][ERROR][o.e.b.Bootstrap] Exception java.lang.OutOfMemoryError: Java heap space")).isTrue();
+    assertThat(underTest.isFailed("Exception in thread \"main\" java.lang.OutOfMemoryError: Java heap space")).isTrue();
+  }
+
+  @Test
+  public void ignore_fatal_exceptions_on_other_lines() {
+    StartupLogWatcherImpl underTest = StartupLogWatcherImpl.create(Version.create("6.3"));
+    assertThat(underTest.isFailed("2017.03.01 10:00:00 WARN  es[][o.e.t.n.Netty4Transport] Retrying bind after java.net.BindException: Address already in use")).isFalse();
+    assertThat(underTest.isFailed("java.net.BindException: Address already in use")).isFalse();
+    assertThat(underTest.isFailed("Caused by: java.lang.OutOfMemoryError: unable to create new native thread")).isFalse();
+    assertThat(underTest.isFailed("2017.03.01 10:00:00 INFO  web[][o.s.p.Plugin] Setting -XX:+HeapDumpOnOutOfMemoryError for java.lang.OutOfMemoryError")).isFalse();
+  }
+
+  @Test
+  public void success_and_failure_can_be_checked_on_same_line() {
+    StartupLogWatcherImpl underTest = StartupLogWatcherImpl.create(Version.create("6.3"));
+    String line = "2017.03.01 10:00:00 INFO  app[][o.s.a.SchedulerImpl] Process[ce] is up";
+    assertThat(underTest.isStarted(line)).isTrue();
+    assertThat(underTest.isFailed(line)).isFalse();
+    assertThat(underTest.isStarted("bar")).isFalse();
+    assertThat(underTest.isFailed("bar")).isFalse();
+  }
 }
@@ -0,0 +1,90 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import com.sonar.orchestrator.config.Configuration;
+import java.util.function.Predicate;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConsoleLogTest {
+
+  @Test
+  public void pipeline_is_replaced_only_if_settings_change() {
+    LogPipeline pipeline = ConsoleLog.configure(Configuration.builder().build());
+    assertThat(ConsoleLog.get()).isSameAs(pipeline);
+    assertThat(ConsoleLog.configure(Configuration.builder().build())).isSameAs(pipeline);
+
+    LogPipeline quiet = ConsoleLog.configure(Configuration.builder().setProperty("orchestrator.consoleVerbosity", "warn").build());
+    assertThat(quiet).isNotSameAs(pipeline);
+    assertThat(ConsoleLog.get()).isSameAs(quiet);
+
+    // restore default settings
+    ConsoleLog.configure(Configuration.builder().build());
+  }
+
+  @Test
+  public void processes_are_blocked_when_console_is_full_by_default() {
+    LogPipeline pipeline = ConsoleLog.configure(Configuration.builder().build());
+
+    assertThat(ConsoleLog.configure(Configuration.builder().setProperty("orchestrator.consoleBlockWhenFull", "true").build())).isSameAs(pipeline);
+    assertThat(ConsoleLog.configure(Configuration.builder().setProperty("orchestrator.consoleBlockWhenFull", "false").build())).isNotSameAs(pipeline);
+
+    // restore default settings
+    ConsoleLog.configure(Configuration.builder().build());
+  }
+
+  @Test
+  public void current_console_is_looked_up_for_each_line() {
+    StreamConsumer underTest = ConsoleLog.current();
+
+    LogPipeline quiet = ConsoleLog.configure(Configuration.builder().setProperty("orchestrator.consoleVerbosity", "NONE").build());
+    underTest.consumeLine("foo");
+    quiet.flush();
+
+    assertThat(quiet.getWrittenLines()).isEqualTo(1L);
+    assertThat(quiet.getDroppedLines()).isEqualTo(0L);
+
+    // restore default settings
+    ConsoleLog.configure(Configuration.builder().build());
+  }
+
+  @Test
+  public void fail_if_verbosity_is_not_supported() {
+    try {
+      ConsoleLog.configure(Configuration.builder().setProperty("orchestrator.consoleVerbosity", "debug").build());
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Unsupported value of property orchestrator.consoleVerbosity: debug. Supported values are all, warn and none");
+    }
+  }
+
+  @Test
+  public void warn_verbosity_accepts_warnings_and_errors() {
+    Predicate<String> predicate = ConsoleLog.isWarnOrError();
+
+    assertThat(predicate.test("[WARNING] Using platform encoding")).isTrue();
+    assertThat(predicate.test("ERROR: Error during SonarQube Scanner execution")).isTrue();
+    assertThat(predicate.test("2017.01.01 10:00:00 WARN  web[][o.s.p.ProcessEntryPoint] Fail")).isTrue();
+    assertThat(predicate.test("INFO: Analysis report uploaded")).isFalse();
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.Timeout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogPipelineTest {
+
+  @Rule
+  public Timeout timeout = new Timeout(10, TimeUnit.SECONDS);
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private final List<String> lines = Collections.synchronizedList(new ArrayList<>());
+  private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+  private LogPipeline underTest;
+
+  @After
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.close();
+    }
+  }
+
+  @Test
+  public void lines_are_written_to_all_sinks() {
+    List<String> otherLines = Collections.synchronizedList(new ArrayList<>());
+    underTest = new LogPipeline("test", 100, true, LogSink.memory(lines), LogSink.memory(otherLines));
+
+    underTest.consumeLine("foo");
+    underTest.consumeLine("bar");
+    underTest.flush();
+
+    assertThat(lines).containsExactly("foo", "bar");
+    assertThat(otherLines).containsExactly("foo", "bar");
+    assertThat(underTest.getWrittenLines()).isEqualTo(2L);
+    assertThat(underTest.getDroppedLines()).isEqualTo(0L);
+    assertThat(underTest.getBlockedLines()).isEqualTo(0L);
+  }
+
+  @Test
+  public void lines_are_written_in_batches() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    underTest = new LogPipeline("test", 10_000, true, batch -> {
+      Uninterruptibles.awaitUninterruptibly(latch);
+      batchSizes.add(batch.size());
+      lines.addAll(batch);
+    });
+
+    for (int i = 0; i < 5_000; i++) {
+      underTest.consumeLine("line " + i);
+    }
+    latch.countDown();
+    underTest.flush();
+
+    assertThat(lines).hasSize(5_000);
+    assertThat(lines.get(4_999)).isEqualTo("line 4999");
+    assertThat(batchSizes.size()).isLessThan(5_000);
+    for (int size : batchSizes) {
+      assertThat(size).isLessThanOrEqualTo(LogPipeline.MAX_BATCH_SIZE);
+    }
+  }
+
+  @Test
+  public void lines_are_dropped_when_buffer_is_full() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    underTest = new LogPipeline("test", 2, false, batch -> {
+      Uninterruptibles.awaitUninterruptibly(latch);
+      lines.addAll(batch);
+    });
+
+    for (int i = 0; i < 100; i++) {
+      underTest.consumeLine("line " + i);
+    }
+    latch.countDown();
+    underTest.flush();
+    assertThat(underTest.getDroppedLines()).isGreaterThan(0L);
+    assertThat(underTest.getBlockedLines()).isEqualTo(0L);
+    assertThat(underTest.getWrittenLines()).isEqualTo(100L - underTest.getDroppedLines());
+
+    // drop is reported with the next lines
+    underTest.consumeLine("next");
+    underTest.flush();
+    assertThat(lines).contains("[... " + underTest.getDroppedLines() + " lines of logs dropped ...]");
+    assertThat(lines.get(lines.size() - 1)).isEqualTo("next");
+  }
+
+  @Test
+  public void callers_are_blocked_when_buffer_is_full() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    underTest = new LogPipeline("test", 2, true, batch -> {
+      Uninterruptibles.awaitUninterruptibly(latch);
+      lines.addAll(batch);
+    });
+    Thread producer = new Thread(() -> {
+      for (int i = 0; i < 100; i++) {
+        underTest.consumeLine("line " + i);
+      }
+    });
+    producer.start();
+
+    while (underTest.getBlockedLines() == 0L) {
+      Thread.sleep(1L);
+    }
+    latch.countDown();
+    producer.join();
+    underTest.flush();
+
+    assertThat(lines).hasSize(100);
+    assertThat(underTest.getDroppedLines()).isEqualTo(0L);
+  }
+
+  @Test
+  public void failure_of_sink_does_not_stop_pipeline() {
+    underTest = new LogPipeline("test", 100, true, batch -> {
+      throw new IllegalStateException("boom");
+    }, LogSink.memory(lines));
+
+    underTest.consumeLine("foo");
+    underTest.flush();
+
+    assertThat(lines).containsExactly("foo");
+  }
+
+  @Test
+  public void lines_are_dropped_after_close() {
+    underTest = new LogPipeline("test", 100, true, LogSink.memory(lines));
+
+    underTest.consumeLine("foo");
+    underTest.close();
+    underTest.consumeLine("bar");
+
+    assertThat(lines).containsExactly("foo");
+    assertThat(underTest.getDroppedLines()).isEqualTo(1L);
+  }
+
+  @Test
+  public void fail_if_capacity_is_not_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Capacity must be positive: 0");
+
+    new LogPipeline("test", 0, true);
+  }
+}
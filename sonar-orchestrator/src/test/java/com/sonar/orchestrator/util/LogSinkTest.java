@@ -0,0 +1,96 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogSinkTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void stream_prints_lines() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    LogSink.stream(new PrintStream(output, true, "UTF-8")).write(Arrays.asList("foo", "bar"));
+
+    assertThat(new String(output.toByteArray(), UTF_8)).isEqualTo("foo" + System.lineSeparator() + "bar" + System.lineSeparator());
+  }
+
+  @Test
+  public void console_prints_to_current_system_out() throws Exception {
+    LogSink sink = LogSink.console();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PrintStream initialOut = System.out;
+    System.setOut(new PrintStream(output, true, "UTF-8"));
+    try {
+      sink.write(Arrays.asList("foo"));
+      sink.flush();
+    } finally {
+      System.setOut(initialOut);
+    }
+
+    assertThat(new String(output.toByteArray(), UTF_8)).isEqualTo("foo" + System.lineSeparator());
+  }
+
+  @Test
+  public void writer_keeps_newlines() throws Exception {
+    StringWriter writer = new StringWriter();
+
+    LogSink.writer(writer).write(Arrays.asList("foo", "bar"));
+
+    assertThat(writer.toString()).isEqualTo("foo\nbar\n");
+  }
+
+  @Test
+  public void file_appends_lines() throws Exception {
+    File file = new File(temp.newFolder(), "logs.txt");
+    LogSink sink = LogSink.file(file);
+
+    sink.write(Arrays.asList("foo", "bar"));
+    sink.write(Arrays.asList("baz"));
+
+    assertThat(file).hasContent("foo\nbar\nbaz");
+  }
+
+  @Test
+  public void filter_forwards_accepted_lines() throws Exception {
+    List<String> lines = new ArrayList<>();
+    LogSink sink = LogSink.filter(line -> line.startsWith("b"), LogSink.memory(lines));
+
+    sink.write(Arrays.asList("foo", "bar", "baz"));
+    sink.write(Arrays.asList("foo"));
+
+    assertThat(lines).containsExactly("bar", "baz");
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MultiPatternMatcherTest {
+
+  @Test
+  public void return_index_of_matched_pattern() {
+    MultiPatternMatcher underTest = MultiPatternMatcher.create(asList("he", "she", "his", "hers"));
+
+    assertThat(underTest.indexOfFirstMatch("ushers")).isEqualTo(1);
+    assertThat(underTest.indexOfFirstMatch("this")).isEqualTo(2);
+    assertThat(underTest.indexOfFirstMatch("the")).isEqualTo(0);
+    assertThat(underTest.indexOfFirstMatch("hhhers")).isEqualTo(0);
+    assertThat(underTest.indexOfFirstMatch("foo")).isEqualTo(-1);
+    assertThat(underTest.indexOfFirstMatch("")).isEqualTo(-1);
+  }
+
+  @Test
+  public void pattern_ending_first_wins() {
+    MultiPatternMatcher underTest = MultiPatternMatcher.create(asList("is up", "Process"));
+
+    assertThat(underTest.indexOfFirstMatch("Process[ce] is up")).isEqualTo(1);
+  }
+
+  @Test
+  public void pattern_found_through_failure_links() {
+    MultiPatternMatcher underTest = MultiPatternMatcher.create(asList("abcd", "bce", "c"));
+
+    assertThat(underTest.indexOfFirstMatch("abce")).isEqualTo(2);
+    assertThat(underTest.indexOfFirstMatch("xbcex")).isEqualTo(2);
+    assertThat(MultiPatternMatcher.create(asList("abcd", "bce")).indexOfFirstMatch("abce")).isEqualTo(1);
+  }
+
+  @Test
+  public void matches() {
+    MultiPatternMatcher underTest = MultiPatternMatcher.create(singletonList("Process[ce] is up"));
+
+    assertThat(underTest.matches("2017.03.01 INFO app[][o.s.a.SchedulerImpl] Process[ce] is up")).isTrue();
+    assertThat(underTest.matches("2017.03.01 INFO app[][o.s.a.SchedulerImpl] Process[ce] is stopped")).isFalse();
+    assertThat(underTest.getPatterns()).containsExactly("Process[ce] is up");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fail_if_empty_pattern() {
+    MultiPatternMatcher.create(asList("foo", ""));
+  }
+}
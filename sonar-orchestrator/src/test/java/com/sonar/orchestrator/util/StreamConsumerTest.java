@@ -20,6 +20,8 @@
 package com.sonar.orchestrator.util;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -37,4 +39,17 @@ public class StreamConsumerTest {
     // https://jira.sonarsource.com/browse/ORCH-342 keep newlines
     assertThat(writer.toString()).isEqualTo("foo\nbar\n");
   }
+
+  @Test
+  public void pipe_forwards_lines_to_console() {
+    StringWriter writer = new StringWriter();
+    List<String> console = new ArrayList<>();
+    StreamConsumer.Pipe pipe = new StreamConsumer.Pipe(writer, console::add);
+
+    pipe.consumeLine("foo");
+    pipe.consumeLine("bar");
+
+    assertThat(writer.toString()).isEqualTo("foo\nbar\n");
+    assertThat(console).containsExactly("foo", "bar");
+  }
 }
@@ -0,0 +1,85 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import java.io.File;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class TimingsTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Timings underTest = new Timings();
+
+  @Test
+  public void record_phases() {
+    underTest.run("start.database", () -> {
+    });
+    String result = underTest.call("build.run", () -> "foo");
+    underTest.call("build.run", () -> "bar");
+
+    assertThat(result).isEqualTo("foo");
+    List<Timings.Timing> timings = underTest.getTimings();
+    assertThat(timings).extracting("phase").containsExactly("start.database", "build.run", "build.run");
+    assertThat(timings.get(0).getStartNanos()).isGreaterThanOrEqualTo(0L);
+    assertThat(timings.get(0).getDurationNanos()).isGreaterThanOrEqualTo(0L);
+    assertThat(underTest.getTotalNanosByPhase().get("build.run"))
+      .isEqualTo(timings.get(1).getDurationNanos() + timings.get(2).getDurationNanos());
+  }
+
+  @Test
+  public void record_phase_even_if_it_fails() {
+    try {
+      underTest.run("start.process", () -> {
+        throw new IllegalStateException("boom");
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("boom");
+    }
+    assertThat(underTest.getTotalNanosByPhase()).containsOnlyKeys("start.process");
+  }
+
+  @Test
+  public void write_json_report() throws Exception {
+    long start = System.nanoTime();
+    underTest.record("build.run", start, 1_000L);
+    underTest.record("build.run", start, 2_000L);
+    underTest.record("weird\"phase", start, 5L);
+    File report = new File(temp.newFolder(), "sub/timings.json");
+
+    underTest.writeJson(report);
+
+    String json = FileUtils.readFileToString(report, UTF_8);
+    assertThat(json)
+      .startsWith("{\"timings\":[{\"phase\":\"build.run\",\"startNanos\":")
+      .contains("\"durationNanos\":2000}")
+      .contains("\"totalNanos\":{\"build.run\":3000,\"weird\\\"phase\":5}}");
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Orchestrator
+ * Copyright (C) 2011-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package com.sonar.orchestrator.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ZipEntryFilterTest {
+
+  @Test
+  public void accept_all_by_default() {
+    ZipEntryFilter underTest = new ZipEntryFilter();
+
+    assertThat(underTest.test("foo.txt")).isTrue();
+    assertThat(underTest.test("dir/foo.txt")).isTrue();
+  }
+
+  @Test
+  public void exclusions() {
+    ZipEntryFilter underTest = new ZipEntryFilter().exclude("web/docs/*", "*.md");
+
+    assertThat(underTest.test("web/docs/index.html")).isFalse();
+    assertThat(underTest.test("web/docs/api/index.html")).isFalse();
+    assertThat(underTest.test("lib/README.md")).isFalse();
+    assertThat(underTest.test("web/index.html")).isTrue();
+    assertThat(underTest.getExclusions()).containsExactly("web/docs/*", "*.md");
+  }
+
+  @Test
+  public void inclusions() {
+    ZipEntryFilter underTest = new ZipEntryFilter().include("lib/*").exclude("lib/bundled-plugins/*");
+
+    assertThat(underTest.test("lib/foo.jar")).isTrue();
+    assertThat(underTest.test("lib/bundled-plugins/foo.jar")).isFalse();
+    assertThat(underTest.test("web/index.html")).isFalse();
+    assertThat(underTest.getInclusions()).containsExactly("lib/*");
+  }
+
+  @Test
+  public void patterns_are_case_sensitive() {
+    ZipEntryFilter underTest = new ZipEntryFilter().exclude("web/*");
+
+    assertThat(underTest.test("WEB/index.html")).isTrue();
+  }
+}
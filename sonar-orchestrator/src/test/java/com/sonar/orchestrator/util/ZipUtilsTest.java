@@ -19,20 +19,35 @@
  */
 package com.sonar.orchestrator.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 public class ZipUtilsTest {
 
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   private File zip = FileUtils.toFile(getClass().getResource("ZipUtilsTest/shouldUnzipFile.zip"));
 
   @Test
@@ -72,4 +87,197 @@ public class ZipUtilsTest {
 
     assertThat(toDir.list()).hasSize(3);
   }
+
+  @Test
+  public void unzip_in_parallel() throws IOException {
+    File toDir = temp.newFolder();
+
+    new ZipExtractor(4).extract(zip, toDir);
+
+    assertThat(toDir.list()).hasSize(3);
+    assertThat(FileUtils.readFileToString(new File(toDir, "foo.txt"), UTF_8)).isEqualTo(readWithJavaUnzip(zip, "foo.txt"));
+    assertThat(new File(toDir, "dir/hello.properties")).isFile();
+  }
+
+  @Test
+  public void unzip_stored_and_deflated_entries() throws IOException {
+    File toDir = temp.newFolder();
+
+    ZipUtils.unzip(permissionsZip(), toDir);
+
+    assertThat(FileUtils.readFileToString(new File(toDir, "lib/stored.jar"), UTF_8)).isEqualTo("stored content");
+    assertThat(FileUtils.readFileToString(new File(toDir, "bin/run.sh"), UTF_8)).startsWith("#!/bin/sh");
+    assertThat(FileUtils.readFileToString(new File(toDir, "conf/readonly.properties"), UTF_8)).startsWith("foo=bar");
+  }
+
+  @Test
+  public void unzip_preserves_unix_permissions() throws IOException {
+    assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    File toDir = temp.newFolder();
+
+    ZipUtils.unzip(permissionsZip(), toDir);
+
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(new File(toDir, "bin/run.sh").toPath()))).isEqualTo("rwxr-xr-x");
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(new File(toDir, "lib/stored.jar").toPath()))).isEqualTo("rw-r--r--");
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(new File(toDir, "conf/readonly.properties").toPath()))).isEqualTo("r--r--r--");
+  }
+
+  @Test
+  public void unzip_using_java_implementation_preserves_unix_permissions() throws IOException {
+    assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    File toDir = temp.newFolder();
+
+    ZipUtils.javaUnzip(permissionsZip(), toDir);
+    // read-only files are overridden
+    ZipUtils.javaUnzip(permissionsZip(), toDir);
+
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(new File(toDir, "bin/run.sh").toPath()))).isEqualTo("rwxr-xr-x");
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(new File(toDir, "lib/stored.jar").toPath()))).isEqualTo("rw-r--r--");
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(new File(toDir, "conf/readonly.properties").toPath()))).isEqualTo("r--r--r--");
+  }
+
+  @Test
+  public void unzip_zip64_preserves_unix_permissions() throws IOException {
+    assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    File zip64 = zip64WithExecutableScript();
+    assertThat(ZipExtractor.isSupported(zip64)).isFalse();
+    File toDir = temp.newFolder();
+
+    ZipUtils.unzip(zip64, toDir, "bin/run.sh"::equals);
+
+    assertThat(new File(toDir, "bin/run.sh")).hasContent("#!/bin/sh");
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(new File(toDir, "bin/run.sh").toPath()))).isEqualTo("rwxr-xr-x");
+  }
+
+  @Test
+  public void unzip_overrides_read_only_files() throws IOException {
+    File toDir = temp.newFolder();
+
+    ZipUtils.unzip(permissionsZip(), toDir);
+    ZipUtils.unzip(permissionsZip(), toDir);
+
+    assertThat(new File(toDir, "conf/readonly.properties")).isFile();
+  }
+
+  @Test
+  public void fail_if_entry_is_outside_target_directory() throws IOException {
+    File toDir = temp.newFolder();
+    File zipSlip = FileUtils.toFile(getClass().getResource("ZipUtilsTest/zip-slip.zip"));
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to unzip");
+
+    try {
+      ZipUtils.unzip(zipSlip, toDir);
+    } finally {
+      assertThat(new File(toDir.getParentFile().getParentFile(), "evil.txt")).doesNotExist();
+    }
+  }
+
+  @Test
+  public void fail_if_entry_is_outside_target_directory_using_java_implementation() throws IOException {
+    File toDir = temp.newFolder();
+    File zipSlip = zipSlipWithZip64EntryCount();
+    assertThat(ZipExtractor.isSupported(zipSlip)).isFalse();
+
+    try {
+      ZipUtils.unzip(zipSlip, toDir);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Fail to unzip");
+      assertThat(e.getCause()).hasMessage("ZIP entry ../evil.txt is outside of the target directory");
+    }
+    assertThat(new File(toDir.getParentFile(), "evil.txt")).doesNotExist();
+  }
+
+  @Test
+  public void unzip_only_accepted_files() throws IOException {
+    File toDir = temp.newFolder();
+
+    ZipUtils.unzip(zip, toDir, new ZipEntryFilter().exclude("dir/*"));
+
+    assertThat(new File(toDir, "foo.txt")).isFile();
+    assertThat(new File(toDir, "dir")).isDirectory();
+    assertThat(new File(toDir, "dir/hello.properties")).doesNotExist();
+  }
+
+  @Test
+  public void unzip_only_accepted_files_using_java_implementation() throws IOException {
+    File toDir = temp.newFolder();
+
+    ZipUtils.javaUnzip(zip, toDir, new ZipEntryFilter().include("dir/*"));
+
+    assertThat(new File(toDir, "foo.txt")).doesNotExist();
+    assertThat(new File(toDir, "dir/hello.properties")).isFile();
+  }
+
+  @Test
+  public void zip_is_supported() {
+    assertThat(ZipExtractor.isSupported(zip)).isTrue();
+  }
+
+  /**
+   * The number of entries is declared as a ZIP64 one, which is not supported by {@link ZipExtractor}, so that
+   * extraction falls back to {@link ZipUtils#javaUnzip(File, File)}.
+   */
+  private File zipSlipWithZip64EntryCount() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream output = new ZipOutputStream(bytes)) {
+      output.putNextEntry(new ZipEntry("foo.txt"));
+      output.write("foo".getBytes(UTF_8));
+      output.putNextEntry(new ZipEntry("../evil.txt"));
+      output.write("evil".getBytes(UTF_8));
+    }
+    byte[] content = bytes.toByteArray();
+    ByteBuffer buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = content.length - 22; i >= 0; i--) {
+      // end of central directory record
+      if (buffer.getInt(i) == 0x06054b50) {
+        buffer.putShort(i + 8, (short) 0xFFFF);
+        buffer.putShort(i + 10, (short) 0xFFFF);
+        break;
+      }
+    }
+    File file = temp.newFile("zip-slip.zip");
+    FileUtils.writeByteArrayToFile(file, content);
+    return file;
+  }
+
+  /**
+   * More than 65535 entries, so the archive is written in ZIP64 format. The first entry "bin/run.sh"
+   * is declared as created on Unix with permissions 755.
+   */
+  private File zip64WithExecutableScript() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream output = new ZipOutputStream(bytes)) {
+      output.putNextEntry(new ZipEntry("bin/run.sh"));
+      output.write("#!/bin/sh".getBytes(UTF_8));
+      for (int i = 0; i < 0xFFFF; i++) {
+        output.putNextEntry(new ZipEntry("lib/" + i + ".txt"));
+      }
+    }
+    byte[] content = bytes.toByteArray();
+    ByteBuffer buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < content.length - 4; i++) {
+      // first central directory header, which is the one of bin/run.sh
+      if (buffer.getInt(i) == 0x02014b50) {
+        buffer.putShort(i + 4, (short) ((3 << 8) | 20));
+        buffer.putInt(i + 38, 0100755 << 16);
+        break;
+      }
+    }
+    File file = temp.newFile("zip64.zip");
+    FileUtils.writeByteArrayToFile(file, content);
+    return file;
+  }
+
+  private File permissionsZip() {
+    return FileUtils.toFile(getClass().getResource("ZipUtilsTest/permissions.zip"));
+  }
+
+  private String readWithJavaUnzip(File zipFile, String path) throws IOException {
+    File dir = temp.newFolder();
+    ZipUtils.javaUnzip(zipFile, dir);
+    return FileUtils.readFileToString(new File(dir, path), UTF_8);
+  }
 }